@@ -0,0 +1,100 @@
+// Mehmet Arda Kutlu
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Prepares the input files of the benchmarks and loads them the same way Main and Bonus do.
+ * Generated maps are cached in the temporary directory, so every size is written only once.
+ * Map names are the kinds of SyntheticGrids.generate, or "tc-" followed by a directory of
+ * testCases.zip (for example "tc-20-20"), which is looked up through the goldtrail.testCases
+ * system property (default: testCases.zip in the working directory).
+ */
+public class BenchMaps {
+    // Number of coins written to the objectives file of generated maps.
+    public static final int GENERATED_COINS = 12;
+
+    /**
+     * Stores the loaded objects of one map.
+     */
+    public static class Loaded {
+        public final Map map;
+        public final PathFinder pathFinder;
+        public final File directory;
+
+        Loaded(Map map, PathFinder pathFinder, File directory){
+            this.map = map;
+            this.pathFinder = pathFinder;
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * Returns the directory with the three input files of a map, generating or extracting them if needed.
+     * @param name the map kind or test case name
+     * @param size width and height of generated maps (ignored for test cases)
+     * @return the directory of the input files
+     * @throws IOException if the files cannot be written
+     */
+    public static File prepare(String name, int size) throws IOException {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "goldtrail-bench/" + name
+                + (name.startsWith("tc-") ? "" : "-" + size));
+        if(new File(directory, "objectives.txt").exists()){
+            return directory;
+        }
+        if(name.startsWith("tc-")){
+            extractTestCase(name.substring(3), directory);
+        }
+        else{
+            GridGraph graph = SyntheticGrids.generate(name, size, size, size);
+            SyntheticGrids.writeFiles(graph, SyntheticGrids.randomPassable(graph, GENERATED_COINS + 1, 7), directory);
+        }
+        return directory;
+    }
+
+    // Copies one directory of testCases.zip.
+    private static void extractTestCase(String testCase, File directory) throws IOException {
+        File zip = new File(System.getProperty("goldtrail.testCases", "testCases.zip"));
+        directory.mkdirs();
+        try(ZipFile zipFile = new ZipFile(zip)){
+            for(String fileName : new String[]{"mapData.txt", "travelCosts.txt", "objectives.txt"}){
+                ZipEntry entry = zipFile.getEntry(testCase + "/" + fileName);
+                if(entry == null){
+                    throw new IOException(zip + " has no " + testCase + "/" + fileName);
+                }
+                try(InputStream input = zipFile.getInputStream(entry);
+                    FileOutputStream output = new FileOutputStream(new File(directory, fileName))){
+                    input.transferTo(output);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads a map directory the same way Main does (tiles, adjacency, knight, costs and coins).
+     * @param directory the directory of the input files
+     * @return the loaded objects
+     * @throws IOException if a file cannot be read
+     */
+    public static Loaded load(File directory) throws IOException {
+        Reader reader = new Reader(new File(directory, "mapData.txt"), new File(directory, "objectives.txt"));
+        Map map = new Map(reader.readMap(), reader.readMap());
+        while(reader.isMapInfoFinished()){
+            int colNum = reader.readMap();
+            int rowNum = reader.readMap();
+            map.fillTiles(colNum, rowNum, new Tile(colNum, rowNum, reader.readMap()));
+        }
+        map.adjacentFinder();
+        map.setKnight(new Knight(reader.readObjectives(), reader.readObjectives()));
+        PathFinder pathFinder = new PathFinder(new File(directory, "travelCosts.txt"));
+        while(reader.isObjectiveInfoFinished()){
+            map.addCoin(new Coin(reader.readObjectives(), reader.readObjectives()));
+        }
+        reader.closeScanners();
+        return new Loaded(map, pathFinder, directory);
+    }
+}
@@ -0,0 +1,87 @@
+// Mehmet Arda Kutlu
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the tours of ClusteredRoute with the nearest-neighbor + local search baseline on generated
+ * maps with many coins, and with the exact tour of ShortestRoute where the DP still fits. For every coin
+ * count it reports the tour costs (summed from the paths the tours walk) and the wall times, which
+ * include computing the path costs between the coins.
+ * Usage: java ClusterBenchmark [size] [clusterSize] [threads] [coins ...]
+ */
+public class ClusterBenchmark {
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 150;
+        int clusterSize = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int[] coinCounts = {14, 50, 100, 300};
+        if(args.length > 3){
+            coinCounts = new int[args.length - 3];
+            for(int i = 3; i < args.length; i++){
+                coinCounts[i - 3] = Integer.parseInt(args[i]);
+            }
+        }
+        GridGraph generated = SyntheticGrids.mixed(size, size, 0.1, 0.4, size);
+        System.out.println("coins clusters exact(cost) clustered(cost) heuristic(cost) gap exact(ms) clustered(ms) heuristic(ms)");
+        for(int coins : coinCounts){
+            File directory = new File(System.getProperty("java.io.tmpdir"), "goldtrail-bench/cluster-" + size + "-" + coins);
+            SyntheticGrids.writeFiles(generated, SyntheticGrids.randomPassable(generated, coins + 1, coins), directory);
+            BenchMaps.Loaded loaded = BenchMaps.load(directory);
+            Map map = loaded.map;
+            GridGraph graph = GridGraph.fromMap(map, loaded.pathFinder);
+            Tile start = map.knightIsOn(map.getKnight());
+            List<Tile> objectives = new ArrayList<>();
+            for(Coin coin : map.getCoins()){
+                objectives.add(map.coinIsOn(coin));
+            }
+
+            double exactCost = Double.NaN;
+            double exactMillis = Double.NaN;
+            if(coins <= 16){
+                long exactStart = System.nanoTime();
+                Tour exact = new ShortestRoute().planShortestTour(start, objectives, loaded.pathFinder);
+                exactMillis = (System.nanoTime() - exactStart) / 1e6;
+                exactCost = tourCost(exact, loaded.pathFinder);
+            }
+            ClusteredRoute route = new ClusteredRoute(graph, DpKernel.create(), clusterSize, threads);
+            long clusteredStart = System.nanoTime();
+            Tour clustered = route.planTour(start, objectives, loaded.pathFinder);
+            double clusteredMillis = (System.nanoTime() - clusteredStart) / 1e6;
+            int clusters = route.getLastClusterCount();
+            long heuristicStart = System.nanoTime();
+            Tour heuristic = route.planHeuristicTour(start, objectives, loaded.pathFinder);
+            double heuristicMillis = (System.nanoTime() - heuristicStart) / 1e6;
+
+            double clusteredCost = tourCost(clustered, loaded.pathFinder);
+            double heuristicCost = tourCost(heuristic, loaded.pathFinder);
+            checkVisitsAll(clustered, objectives.size());
+            System.out.printf("%d %d %.2f %.2f %.2f %+.2f%% %.0f %.0f %.0f%n", coins, clusters, exactCost, clusteredCost,
+                    heuristicCost, 100 * (clusteredCost - heuristicCost) / heuristicCost, exactMillis, clusteredMillis,
+                    heuristicMillis);
+        }
+    }
+
+    // Sums the costs of the moves of a tour.
+    private static double tourCost(Tour tour, PathFinder pathFinder){
+        double cost = 0;
+        Tile previous = null;
+        for(Tile tile : tour){
+            if(previous != null){
+                cost += pathFinder.costCalculator(previous, tile);
+            }
+            previous = tile;
+        }
+        return cost;
+    }
+
+    // Checks that a tour has a stop for every coin and returns to the start.
+    private static void checkVisitsAll(Tour tour, int coins){
+        List<Tile> stops = tour.getStops();
+        if(stops.size() != coins + 2 || stops.get(0) != stops.get(stops.size() - 1)){
+            throw new IllegalStateException("Tour has " + stops.size() + " stops for " + coins + " coins");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+// Mehmet Arda Kutlu
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Builds a ContractionHierarchy for synthetic maps of growing size, saves and reloads it, and compares
+ * its queries with Dijkstra. Every query must return the same cost and a valid unpacked path.
+ * Usage: java ContractionBenchmark [queries] [size ...]
+ */
+public class ContractionBenchmark {
+    public static void main(String[] args) throws IOException {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int[] sizes = {100, 250, 500};
+        if(args.length > 1){
+            sizes = new int[args.length - 1];
+            for(int i = 1; i < args.length; i++){
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.println("size threads preprocess(ms) edges file(MB) load(ms) dijkstra(us/query) ch(us/query) speedup");
+        for(int size : sizes){
+            GridGraph graph = SyntheticGrids.mixed(size, size, 0.2, 0.3, size);
+            ContractionHierarchy built = new ContractionHierarchy(graph);
+            File file = File.createTempFile("hierarchy", ".ch");
+            file.deleteOnExit();
+            built.save(file);
+            long loadStart = System.nanoTime();
+            ContractionHierarchy hierarchy = ContractionHierarchy.load(file, graph);
+            double loadMillis = (System.nanoTime() - loadStart) / 1e6;
+
+            GridDijkstra dijkstra = new GridDijkstra(graph);
+            Random random = new Random(42);
+            int[] starts = new int[queries];
+            int[] goals = new int[queries];
+            for(int q = 0; q < queries; q++){
+                starts[q] = random.nextInt(graph.size());
+                goals[q] = random.nextInt(graph.size());
+            }
+            double[] expected = new double[queries];
+            long dijkstraStart = System.nanoTime();
+            for(int q = 0; q < queries; q++){
+                expected[q] = dijkstra.search(starts[q], goals[q]);
+            }
+            double dijkstraMicros = (System.nanoTime() - dijkstraStart) / 1e3 / queries;
+            long chStart = System.nanoTime();
+            for(int q = 0; q < queries; q++){
+                double cost = hierarchy.distance(starts[q], goals[q]);
+                if(Math.abs(cost - expected[q]) > 1e-9 * Math.max(1, expected[q]) && cost != expected[q]){
+                    throw new IllegalStateException("Cost differs for query " + q + ": " + cost + " vs " + expected[q]);
+                }
+            }
+            double chMicros = (System.nanoTime() - chStart) / 1e3 / queries;
+            for(int q = 0; q < queries; q++){
+                int[] path = hierarchy.findPath(starts[q], goals[q]);
+                if(path != null && (path[0] != starts[q] || path[path.length - 1] != goals[q]
+                        || Math.abs(graph.pathCost(path) - expected[q]) > 1e-9 * Math.max(1, expected[q]))){
+                    throw new IllegalStateException("Unpacked path is not a shortest path for query " + q);
+                }
+            }
+            System.out.printf("%d %d %.1f %d %.1f %.1f %.1f %.1f %.1f%n", size, Runtime.getRuntime().availableProcessors(),
+                    built.getPreprocessingMillis(), hierarchy.getEdgeCount(), file.length() / 1e6, loadMillis,
+                    dijkstraMicros, chMicros, dijkstraMicros / chMicros);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+// Mehmet Arda Kutlu
+
+/**
+ * Times GridDijkstra on generated maps with the tile ids in column-major order and along the blocked
+ * Morton and Hilbert curves of CurveGridGraph: a full search from the middle of the map (every tile
+ * settled) and searches between random objectives. Every tile must get the same cost in every layout.
+ * The JMH LayoutBenchmark runs the objective searches with -prof perfnorm for the cache misses.
+ * Usage: java CurveLayoutBenchmark [block] [size ...]
+ */
+public class CurveLayoutBenchmark {
+    public static void main(String[] args){
+        int block = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int[] sizes = {2000, 4000};
+        if(args.length > 1){
+            sizes = new int[args.length - 1];
+            for(int i = 1; i < args.length; i++){
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        int blockShift = Integer.numberOfTrailingZeros(block);
+        System.out.println("size layout fullSearch(ms) objectiveSearches(ms) speedup identical");
+        for(int size : sizes){
+            GridGraph column = SyntheticGrids.generate("mixed", size, size, size);
+            int[] objectives = SyntheticGrids.randomPassable(column, 6, 7);
+            double[] expected = null;
+            double columnMillis = 0;
+            String[] names = {"column", "morton", "hilbert"};
+            for(String name : names){
+                GridGraph graph = name.equals("column") ? column : CurveGridGraph.of(column, name.equals("hilbert"), blockShift);
+                GridDijkstra dijkstra = new GridDijkstra(graph);
+                int source = graph.id(size / 2, size / 2);
+                // The best of three runs hides JIT warm-up.
+                double fullMillis = Double.POSITIVE_INFINITY;
+                double pairMillis = Double.POSITIVE_INFINITY;
+                for(int r = 0; r < 3; r++){
+                    long start = System.nanoTime();
+                    dijkstra.search(source, -1);
+                    fullMillis = Math.min(fullMillis, (System.nanoTime() - start) / 1e6);
+                    start = System.nanoTime();
+                    for(int i = 0; i + 1 < objectives.length; i++){
+                        dijkstra.search(graph.id(column.col(objectives[i]), column.row(objectives[i])),
+                                graph.id(column.col(objectives[i + 1]), column.row(objectives[i + 1])));
+                    }
+                    pairMillis = Math.min(pairMillis, (System.nanoTime() - start) / 1e6);
+                }
+                // The costs of the full search, indexed by the column-major id.
+                dijkstra.search(source, -1);
+                double[] costs = new double[column.size()];
+                for(int id = 0; id < graph.size(); id++){
+                    costs[column.id(graph.col(id), graph.row(id))] = dijkstra.cost(id);
+                }
+                if(expected == null){
+                    expected = costs;
+                    columnMillis = fullMillis;
+                }
+                boolean identical = java.util.Arrays.equals(expected, costs);
+                System.out.printf("%d %s %.0f %.0f %.2f %b%n", size, name, fullMillis, pairMillis, columnMillis / fullMillis, identical);
+                if(!identical){
+                    throw new IllegalStateException("The " + name + " layout finds different costs on " + size + "x" + size);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+// Mehmet Arda Kutlu
+
+/**
+ * Computes the full shortest path tree from the middle of a generated map with GridDijkstra and with
+ * DeltaStepping on different thread counts, checks that every tile gets exactly the same cost and that
+ * the paths of DeltaStepping cost what it says, and reports the times and the speedup over Dijkstra.
+ * Usage: java DeltaSteppingBenchmark [size] [threads ...]
+ */
+public class DeltaSteppingBenchmark {
+    public static void main(String[] args){
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int[] threadCounts = {1, 2, 4, 8};
+        if(args.length > 1){
+            threadCounts = new int[args.length - 1];
+            for(int i = 1; i < args.length; i++){
+                threadCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        GridGraph graph = SyntheticGrids.generate("mixed", size, size, size);
+        int source = graph.id(size / 2, size / 2);
+        System.out.printf("%dx%d mixed map, %d cores, delta %.2f%n", size, size,
+                Runtime.getRuntime().availableProcessors(), DeltaStepping.tuneDelta(graph));
+
+        GridDijkstra dijkstra = new GridDijkstra(graph);
+        // The best of three runs hides JIT warm-up.
+        double dijkstraMillis = Double.POSITIVE_INFINITY;
+        for(int r = 0; r < 3; r++){
+            long start = System.nanoTime();
+            dijkstra.search(source, -1);
+            dijkstraMillis = Math.min(dijkstraMillis, (System.nanoTime() - start) / 1e6);
+        }
+        System.out.printf("GridDijkstra: %.0fms%n", dijkstraMillis);
+
+        System.out.println("threads deltaStepping(ms) rounds speedup identical");
+        for(int threads : threadCounts){
+            DeltaStepping deltaStepping = new DeltaStepping(graph, threads, 0);
+            double millis = Double.POSITIVE_INFINITY;
+            for(int r = 0; r < 3; r++){
+                long start = System.nanoTime();
+                deltaStepping.search(source);
+                millis = Math.min(millis, (System.nanoTime() - start) / 1e6);
+            }
+            boolean identical = true;
+            for(int id = 0; id < graph.size() && identical; id++){
+                identical = Double.doubleToLongBits(dijkstra.cost(id)) == Double.doubleToLongBits(deltaStepping.cost(id));
+            }
+            // A few paths are walked to check that they are shortest paths.
+            for(int id = 0; id < graph.size() && identical; id += graph.size() / 97 + 1){
+                int[] path = deltaStepping.path(id);
+                identical = path == null ? deltaStepping.cost(id) == Double.POSITIVE_INFINITY
+                        : path[0] == source && graph.pathCost(path) == deltaStepping.cost(id);
+            }
+            deltaStepping.close();
+            System.out.printf("%d %.0f %d %.2f %b%n", threads, millis, deltaStepping.getRounds(), dijkstraMillis / millis, identical);
+            if(!identical){
+                throw new IllegalStateException("DeltaStepping disagrees with GridDijkstra on " + threads + " threads");
+            }
+        }
+    }
+}
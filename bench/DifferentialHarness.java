@@ -0,0 +1,635 @@
+// Mehmet Arda Kutlu
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Differential testing of the shortest path and tour engines on random maps. Every case is a random map
+ * (size, obstacle and sand density, cost ranges with ties and free moves, moves missing from
+ * travelCosts.txt, coins on impassable or walled-in tiles) written in the mapData.txt, travelCosts.txt
+ * and objectives.txt format and loaded like Main does. The costs between the knight and the coins are
+ * computed by a plain Bellman-Ford on the case itself and every engine has to find the same costs with
+ * valid paths (neighboring steps, no impassable tiles, no missing moves, the cost it reports). PathFinder
+ * with the DistanceTable has to return exactly the paths of PathFinder. The tour solvers have to find
+ * tours that are as cheap as the best order found by trying every order of the reachable coins.
+ * A failing case is shrunk (fewer coins, fewer rows and columns, plainer tiles and costs) while the same
+ * engine still fails, and the smallest case is written to the output directory.
+ * Usage: java DifferentialHarness [cases] [seed] [maxSize] [outputDirectory]
+ */
+public class DifferentialHarness {
+    // Largest number of coins, the brute force tries every order of them.
+    private static final int MAX_COINS = 7;
+    // Largest difference between two costs of the same path length, sums of two-decimal costs in any order.
+    private static final double EPSILON = 1e-6;
+
+    /**
+     * A random map: the tile types, the cost of every move (-1 if it is missing from travelCosts.txt),
+     * the knight and the coins. Tile ids are col * rows + row like GridGraph.
+     */
+    static class Case {
+        final int cols;
+        final int rows;
+        final byte[] types;
+        // Cost of the move from a tile to its right and lower neighbor (the same in both directions).
+        final double[] right;
+        final double[] down;
+        // Tile ids of the knight (first entry) and the coins.
+        final int[] objectives;
+
+        Case(int cols, int rows, byte[] types, double[] right, double[] down, int[] objectives){
+            this.cols = cols;
+            this.rows = rows;
+            this.types = types;
+            this.right = right;
+            this.down = down;
+            this.objectives = objectives;
+        }
+
+        // Copy with other objectives.
+        Case withObjectives(int[] objectives){
+            return new Case(cols, rows, types.clone(), right.clone(), down.clone(), objectives);
+        }
+
+        // Copy of the columns fromCol .. toCol - 1 and rows fromRow .. toRow - 1, or null if the knight is cut off.
+        Case crop(int fromCol, int toCol, int fromRow, int toRow){
+            int newRows = toRow - fromRow;
+            int size = (toCol - fromCol) * newRows;
+            byte[] newTypes = new byte[size];
+            double[] newRight = new double[size];
+            double[] newDown = new double[size];
+            for(int col = fromCol; col < toCol; col++){
+                for(int row = fromRow; row < toRow; row++){
+                    int id = (col - fromCol) * newRows + row - fromRow;
+                    newTypes[id] = types[col * rows + row];
+                    newRight[id] = col < toCol - 1 ? right[col * rows + row] : -1;
+                    newDown[id] = row < toRow - 1 ? down[col * rows + row] : -1;
+                }
+            }
+            int[] newObjectives = new int[objectives.length];
+            int count = 0;
+            for(int k = 0; k < objectives.length; k++){
+                int col = objectives[k] / rows;
+                int row = objectives[k] % rows;
+                if(col >= fromCol && col < toCol && row >= fromRow && row < toRow){
+                    newObjectives[count++] = (col - fromCol) * newRows + row - fromRow;
+                }
+                else if(k == 0){
+                    return null;
+                }
+            }
+            return new Case(toCol - fromCol, newRows, newTypes, newRight, newDown, Arrays.copyOf(newObjectives, count));
+        }
+
+        // Cost of the move from a tile to a neighboring tile as PathFinder sees it, -1 if it cannot be taken.
+        double move(int from, int to){
+            if(types[to] == 2){
+                return -1;
+            }
+            if(to == from + rows) return right[from];
+            if(to == from - rows) return right[to];
+            if(to == from + 1 && to % rows != 0) return down[from];
+            if(to == from - 1 && from % rows != 0) return down[to];
+            return -1;
+        }
+
+        // Writes the three input files.
+        void write(File directory) throws IOException {
+            directory.mkdirs();
+            try(BufferedWriter writer = new BufferedWriter(new FileWriter(new File(directory, "mapData.txt")))){
+                writer.write(cols + " " + rows + "\n");
+                for(int id = 0; id < types.length; id++){
+                    writer.write(id / rows + " " + id % rows + " " + types[id] + "\n");
+                }
+            }
+            try(BufferedWriter writer = new BufferedWriter(new FileWriter(new File(directory, "travelCosts.txt")))){
+                for(int id = 0; id < types.length; id++){
+                    if(right[id] >= 0){
+                        writer.write(String.format(Locale.US, "%d %d %d %d %.2f\n", id / rows, id % rows, id / rows + 1, id % rows, right[id]));
+                    }
+                    if(down[id] >= 0){
+                        writer.write(String.format(Locale.US, "%d %d %d %d %.2f\n", id / rows, id % rows, id / rows, id % rows + 1, down[id]));
+                    }
+                }
+            }
+            try(BufferedWriter writer = new BufferedWriter(new FileWriter(new File(directory, "objectives.txt")))){
+                for(int id : objectives){
+                    writer.write(id / rows + " " + id % rows + "\n");
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int cases = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int maxSize = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+        File output = new File(args.length > 3 ? args[3] : "out/differential");
+        int failures = 0;
+        for(int k = 0; k < cases; k++){
+            Case testCase = randomCase(new Random(seed + k), maxSize);
+            String failure = check(testCase);
+            if(failure == null){
+                continue;
+            }
+            failures++;
+            Case smallest = shrink(testCase, failure);
+            String smallestFailure = check(smallest);
+            File directory = new File(output, "case-" + (seed + k));
+            smallest.write(directory);
+            System.out.printf("case %d (%dx%d, %d coins) fails: %s%n  shrunk to %dx%d with %d coins: %s%n  written to %s%n",
+                    seed + k, testCase.cols, testCase.rows, testCase.objectives.length - 1, failure,
+                    smallest.cols, smallest.rows, smallest.objectives.length - 1, smallestFailure, directory);
+        }
+        System.out.printf("%d cases, %d failed%n", cases, failures);
+        if(failures > 0){
+            System.exit(1);
+        }
+    }
+
+    // Generates a random case.
+    private static Case randomCase(Random random, int maxSize){
+        int cols = 1 + random.nextInt(maxSize);
+        int rows = 1 + random.nextInt(maxSize);
+        int size = cols * rows;
+        double obstacles = random.nextDouble() * 0.4;
+        double sand = random.nextDouble() * 0.5;
+        double missing = random.nextInt(3) == 0 ? random.nextDouble() * 0.2 : 0;
+        // Whole costs give many ties, a zero low end gives free moves.
+        boolean whole = random.nextInt(3) == 0;
+        int grassLow = random.nextInt(4) == 0 ? 0 : 100;
+        int grassHigh = grassLow + random.nextInt(500);
+        int sandLow = grassHigh + random.nextInt(300);
+        int sandHigh = sandLow + random.nextInt(300);
+        byte[] types = new byte[size];
+        for(int id = 0; id < size; id++){
+            double draw = random.nextDouble();
+            types[id] = (byte) (draw < obstacles ? 2 : draw < obstacles + sand ? 1 : 0);
+        }
+        double[] right = new double[size];
+        double[] down = new double[size];
+        for(int id = 0; id < size; id++){
+            right[id] = id / rows < cols - 1 ? randomCost(random, types, id, id + rows, grassLow, grassHigh, sandLow, sandHigh, whole, missing) : -1;
+            down[id] = id % rows < rows - 1 ? randomCost(random, types, id, id + 1, grassLow, grassHigh, sandLow, sandHigh, whole, missing) : -1;
+        }
+        int coins = 1 + random.nextInt(MAX_COINS);
+        int[] objectives = new int[coins + 1];
+        // The knight stands on a passable tile if there is one, the coins can be anywhere (also twice on a tile).
+        objectives[0] = random.nextInt(size);
+        for(int tries = 0; tries < size && types[objectives[0]] == 2; tries++){
+            objectives[0] = random.nextInt(size);
+        }
+        for(int k = 1; k <= coins; k++){
+            objectives[k] = random.nextInt(size);
+        }
+        return new Case(cols, rows, types, right, down, objectives);
+    }
+
+    // Random two-decimal cost of a move, -1 if the move is missing.
+    private static double randomCost(Random random, byte[] types, int from, int to, int grassLow, int grassHigh,
+                                     int sandLow, int sandHigh, boolean whole, double missing){
+        if(random.nextDouble() < missing){
+            return -1;
+        }
+        boolean sand = types[from] == 1 || types[to] == 1;
+        int low = sand ? sandLow : grassLow;
+        int high = sand ? sandHigh : grassHigh;
+        int cents = low + random.nextInt(high - low + 1);
+        return whole ? Math.round(cents / 100.0) : cents / 100.0;
+    }
+
+    // Shrinks a failing case while the same engine fails on it.
+    private static Case shrink(Case testCase, String failure) throws IOException {
+        String engine = engineOf(failure);
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            for(Case candidate : candidates(testCase)){
+                String candidateFailure = candidate == null ? null : check(candidate);
+                if(candidateFailure != null && engineOf(candidateFailure).equals(engine)){
+                    testCase = candidate;
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return testCase;
+    }
+
+    // The smaller cases tried by shrink, the larger steps first.
+    private static List<Case> candidates(Case testCase){
+        ArrayList<Case> candidates = new ArrayList<>();
+        for(int k = 1; k < testCase.objectives.length; k++){
+            int[] objectives = new int[testCase.objectives.length - 1];
+            for(int i = 0, j = 0; i < testCase.objectives.length; i++){
+                if(i != k) objectives[j++] = testCase.objectives[i];
+            }
+            candidates.add(testCase.withObjectives(objectives));
+        }
+        if(testCase.cols > 1){
+            candidates.add(testCase.crop(1, testCase.cols, 0, testCase.rows));
+            candidates.add(testCase.crop(0, testCase.cols - 1, 0, testCase.rows));
+        }
+        if(testCase.rows > 1){
+            candidates.add(testCase.crop(0, testCase.cols, 1, testCase.rows));
+            candidates.add(testCase.crop(0, testCase.cols, 0, testCase.rows - 1));
+        }
+        for(int id = 0; id < testCase.types.length; id++){
+            if(testCase.types[id] != 0){
+                Case grass = testCase.withObjectives(testCase.objectives);
+                grass.types[id] = 0;
+                candidates.add(grass);
+            }
+            if(testCase.right[id] != -1 && testCase.right[id] != 1){
+                Case plain = testCase.withObjectives(testCase.objectives);
+                plain.right[id] = 1;
+                candidates.add(plain);
+            }
+            if(testCase.down[id] != -1 && testCase.down[id] != 1){
+                Case plain = testCase.withObjectives(testCase.objectives);
+                plain.down[id] = 1;
+                candidates.add(plain);
+            }
+        }
+        return candidates;
+    }
+
+    // The engine named at the start of a failure.
+    private static String engineOf(String failure){
+        return failure.substring(0, failure.indexOf(':'));
+    }
+
+    /**
+     * Runs every engine on a case.
+     * @param testCase the case
+     * @return the first failure as "engine: description", or null if every engine agrees
+     * @throws IOException if the files of the case cannot be written
+     */
+    static String check(Case testCase) throws IOException {
+        File directory = Files.createTempDirectory("goldtrail-differential").toFile();
+        try{
+            testCase.write(directory);
+            return checkFiles(testCase, directory);
+        }
+        catch(RuntimeException e){
+            return "crash: " + e;
+        }
+        finally{
+            for(File file : directory.listFiles()){
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    // Runs every engine on the written files of a case.
+    private static String checkFiles(Case testCase, File directory) throws IOException {
+        BenchMaps.Loaded loaded = BenchMaps.load(directory);
+        Map map = loaded.map;
+        File travelCosts = new File(directory, "travelCosts.txt");
+        PathFinder reference = new PathFinder(travelCosts, false);
+        Tile[][] tiles = map.getTiles();
+        int[] objectives = testCase.objectives;
+        int n = objectives.length;
+        Tile[] stops = new Tile[n];
+        for(int k = 0; k < n; k++){
+            stops[k] = tiles[objectives[k] / testCase.rows][objectives[k] % testCase.rows];
+        }
+        double[][] expected = new double[n][];
+        for(int k = 0; k < n; k++){
+            expected[k] = bellmanFord(testCase, objectives[k]);
+        }
+
+        // The engines that return Tile paths.
+        PathFinder fixed = new PathFinder(travelCosts, true);
+        PathFinder flat = new PathFinder(travelCosts, testCase.cols, testCase.rows, 2);
+        PathFinder table = new PathFinder(travelCosts, false);
+        table.setDistanceTable(new DistanceTable(map, table, 2));
+        GridGraph graph = GridGraph.fromMap(map, reference);
+        PathEngine[] engines = {reference, fixed, flat, table, new ContractionHierarchy(graph),
+                new HierarchicalPathFinder(graph, 4, true), new RectangleSymmetryReduction(graph)};
+        String[] names = {"PathFinder", "PathFinder(fixed)", "PathFinder(loader)", "DistanceTable", "ContractionHierarchy",
+                "HierarchicalPathFinder", "RectangleSymmetryReduction"};
+        for(int e = 0; e < engines.length; e++){
+            for(int i = 0; i < n; i++){
+                for(int j = 0; j < n; j++){
+                    if(objectives[i] == objectives[j]){
+                        continue;
+                    }
+                    double target = expected[i][objectives[j]];
+                    ArrayList<Tile> path = engines[e].algorithm(stops[i], stops[j]);
+                    int[] ids = new int[path.size()];
+                    for(int k = 0; k < ids.length; k++){
+                        ids[k] = path.get(k).getColumn() * testCase.rows + path.get(k).getRow();
+                    }
+                    String failure = checkPath(testCase, ids, objectives[i], objectives[j], target);
+                    if(failure == null && e == 3 && !samePath(path, reference.algorithm(stops[i], stops[j]))){
+                        failure = "path differs from PathFinder";
+                    }
+                    if(failure != null){
+                        return names[e] + ": " + describe(testCase, objectives[i], objectives[j]) + " " + failure;
+                    }
+                }
+            }
+        }
+        for(int i = 0; i < n; i++){
+            for(int j = 0; j < n; j++){
+                if(objectives[i] == objectives[j]) continue;
+                double target = expected[i][objectives[j]];
+                if(Math.abs(table.pathCost(stops[i], stops[j]) - target) > EPSILON && table.pathCost(stops[i], stops[j]) != target){
+                    return "DistanceTable: " + describe(testCase, objectives[i], objectives[j]) + " cost " + table.pathCost(stops[i], stops[j])
+                            + " instead of " + target;
+                }
+            }
+        }
+
+        // The engines that search tile ids.
+        String failure = checkIdEngines(testCase, graph, objectives, expected);
+        if(failure != null){
+            return failure;
+        }
+        return checkTours(testCase, map, reference, graph, stops, expected);
+    }
+
+    // Runs the engines that work on tile ids of the flat graph.
+    private static String checkIdEngines(Case testCase, GridGraph graph, int[] objectives, double[][] expected) throws IOException {
+        GridGraph hilbert = CurveGridGraph.of(graph, true, 1);
+        GridGraph morton = CurveGridGraph.of(graph, false, 2);
+        GridGraph[] graphs = {graph, hilbert, morton};
+        String[] names = {"GridDijkstra", "GridDijkstra(hilbert)", "GridDijkstra(morton)"};
+        Reachability reachability = new Reachability(graph);
+        File pagedFile = File.createTempFile("goldtrail-differential", ".grid");
+        DeltaStepping[] deltaSteppings = new DeltaStepping[graphs.length];
+        for(int g = 0; g < graphs.length; g++){
+            deltaSteppings[g] = new DeltaStepping(graphs[g], 2, 0);
+        }
+        try(PagedGrid grid = PagedGrid.fromGraph(graph, pagedFile, 4, 4)){
+            PagedSearch paged = new PagedSearch(grid);
+            // Paged ids to case ids.
+            int[] caseIdOfGridId = new int[graph.size()];
+            for(int col = 0; col < testCase.cols; col++){
+                for(int row = 0; row < testCase.rows; row++){
+                    caseIdOfGridId[grid.id(col, row)] = col * testCase.rows + row;
+                }
+            }
+            for(int i = 0; i < objectives.length; i++){
+                int col = objectives[i] / testCase.rows;
+                int row = objectives[i] % testCase.rows;
+                for(int g = 0; g < graphs.length; g++){
+                    GridDijkstra dijkstra = new GridDijkstra(graphs[g]);
+                    DeltaStepping deltaStepping = deltaSteppings[g];
+                    dijkstra.search(graphs[g].id(col, row), -1);
+                    deltaStepping.search(graphs[g].id(col, row));
+                    for(int j = 0; j < objectives.length; j++){
+                        if(objectives[i] == objectives[j]) continue;
+                        int goal = graphs[g].id(objectives[j] / testCase.rows, objectives[j] % testCase.rows);
+                        double target = expected[i][objectives[j]];
+                        String failure = checkIdPath(testCase, graphs[g], dijkstra.path(goal), dijkstra.cost(goal), objectives[i], objectives[j], target);
+                        if(failure != null){
+                            return names[g] + ": " + describe(testCase, objectives[i], objectives[j]) + " " + failure;
+                        }
+                        failure = checkIdPath(testCase, graphs[g], deltaStepping.path(goal), deltaStepping.cost(goal), objectives[i], objectives[j], target);
+                        if(failure != null){
+                            return "DeltaStepping" + names[g].substring(12) + ": " + describe(testCase, objectives[i], objectives[j]) + " " + failure;
+                        }
+                    }
+                }
+                for(int j = 0; j < objectives.length; j++){
+                    if(objectives[i] == objectives[j]) continue;
+                    double target = expected[i][objectives[j]];
+                    int goalCol = objectives[j] / testCase.rows;
+                    int goalRow = objectives[j] % testCase.rows;
+                    double cost = paged.search(grid.id(col, row), grid.id(goalCol, goalRow));
+                    int[] path = paged.path(grid.id(goalCol, goalRow));
+                    if(path != null){
+                        for(int k = 0; k < path.length; k++){
+                            path[k] = caseIdOfGridId[path[k]];
+                        }
+                    }
+                    String failure = checkIdPath(testCase, null, path, cost, objectives[i], objectives[j], target);
+                    if(failure != null){
+                        return "PagedSearch: " + describe(testCase, objectives[i], objectives[j]) + " " + failure;
+                    }
+                    if(reachability.canReach(graph.id(col, row), graph.id(goalCol, goalRow)) != (target < Double.POSITIVE_INFINITY)){
+                        return "Reachability: " + describe(testCase, objectives[i], objectives[j]) + " says "
+                                + (target < Double.POSITIVE_INFINITY ? "unreachable" : "reachable");
+                    }
+                }
+            }
+        }
+        finally{
+            for(DeltaStepping deltaStepping : deltaSteppings){
+                deltaStepping.close();
+            }
+            pagedFile.delete();
+        }
+        return null;
+    }
+
+    // Checks a path of tile ids of a graph (null for case ids) and the cost the engine reports.
+    private static String checkIdPath(Case testCase, GridGraph graph, int[] path, double cost, int start, int goal, double target){
+        if(path == null){
+            path = new int[0];
+        }
+        int[] ids = new int[path.length];
+        for(int k = 0; k < path.length; k++){
+            ids[k] = graph == null ? path[k] : graph.col(path[k]) * testCase.rows + graph.row(path[k]);
+        }
+        String failure = checkPath(testCase, ids, start, goal, target);
+        if(failure == null && Math.abs(cost - target) > EPSILON && cost != target){
+            failure = "reports cost " + cost + " instead of " + target;
+        }
+        return failure;
+    }
+
+    // Checks a path of case ids against the Bellman-Ford cost of its goal, empty paths for unreachable goals.
+    private static String checkPath(Case testCase, int[] path, int start, int goal, double target){
+        if(path.length == 0){
+            return target == Double.POSITIVE_INFINITY ? null : "no path, expected cost " + target;
+        }
+        if(path[0] != start || path[path.length - 1] != goal){
+            return "path does not go from the start to the goal";
+        }
+        double cost = 0;
+        for(int k = 0; k + 1 < path.length; k++){
+            double move = testCase.move(path[k], path[k + 1]);
+            if(move < 0){
+                return "invalid step " + describe(testCase, path[k], path[k + 1]);
+            }
+            cost += move;
+        }
+        if(Math.abs(cost - target) > EPSILON){
+            return "path costs " + cost + " instead of " + target;
+        }
+        return null;
+    }
+
+    // Runs the tour solvers and compares them with the best order of the reachable coins.
+    private static String checkTours(Case testCase, Map map, PathFinder reference, GridGraph graph, Tile[] stops,
+                                     double[][] expected) throws IOException {
+        int[] objectives = testCase.objectives;
+        List<Tile> coins = new ArrayList<>(Arrays.asList(stops).subList(1, stops.length));
+        // The coins PathFinder reaches from the knight (not the knight's own tile), with duplicates.
+        ArrayList<Integer> reachable = new ArrayList<>();
+        for(int k = 1; k < objectives.length; k++){
+            if(objectives[k] != objectives[0] && expected[0][objectives[k]] < Double.POSITIVE_INFINITY){
+                reachable.add(k);
+            }
+        }
+        double best = bruteForceTour(testCase, expected, reachable);
+
+        File layeredDirectory = Files.createTempDirectory("goldtrail-differential-layered").toFile();
+        try{
+            Tour[] tours = {new ShortestRoute().planShortestTour(stops[0], coins, reference),
+                    new SolverPortfolio(0).planShortestTour(stops[0], coins, reference),
+                    new LayeredHeldKarp(layeredDirectory, 1).planShortestTour(stops[0], coins, reference),
+                    new PrunedHeldKarp(Long.MAX_VALUE).planShortestTour(stops[0], coins, reference),
+                    new ClusteredRoute(graph, DpKernel.create(), MAX_COINS + 1, 1).planTour(stops[0], coins, reference)};
+            String[] names = {"ShortestRoute", "SolverPortfolio", "LayeredHeldKarp", "PrunedHeldKarp", "ClusteredRoute"};
+            for(int t = 0; t < tours.length; t++){
+                // ClusteredRoute only solves the clusters exactly, its tour only has to be valid.
+                String failure = checkTour(testCase, tours[t], reachable, best, t < 4);
+                if(failure != null){
+                    return names[t] + ": " + failure;
+                }
+            }
+            // The pruned DP keeps the states of the full table that the tour goes through.
+            if(!tours[3].getStops().equals(tours[0].getStops())){
+                return "PrunedHeldKarp: the stops differ from the stops of ShortestRoute";
+            }
+        }
+        finally{
+            File[] files = layeredDirectory.listFiles();
+            for(File file : files == null ? new File[0] : files){
+                file.delete();
+            }
+            layeredDirectory.delete();
+        }
+        return null;
+    }
+
+    // Checks that a tour visits the reachable coins and walks valid moves. An exact tour has to cost the
+    // best tour, another tour only has to visit the tiles of the reachable coins.
+    private static String checkTour(Case testCase, Tour tour, ArrayList<Integer> reachable, double best, boolean exact){
+        int[] objectives = testCase.objectives;
+        if(best == Double.POSITIVE_INFINITY && exact){
+            return tour.isEmpty() ? null : "found a tour although there is none";
+        }
+        if(tour.isEmpty()){
+            return reachable.isEmpty() || best == Double.POSITIVE_INFINITY ? null : "no tour, expected cost " + best;
+        }
+        List<Tile> tourStops = tour.getStops();
+        int[] visited = new int[tourStops.size()];
+        for(int k = 0; k < visited.length; k++){
+            visited[k] = tourStops.get(k).getColumn() * testCase.rows + tourStops.get(k).getRow();
+        }
+        int[] expectedStops = new int[reachable.size()];
+        for(int k = 0; k < expectedStops.length; k++){
+            expectedStops[k] = objectives[reachable.get(k)];
+        }
+        int[] middle = Arrays.copyOfRange(visited, 1, Math.max(1, visited.length - 1));
+        Arrays.sort(middle);
+        Arrays.sort(expectedStops);
+        if(!exact){
+            middle = Arrays.stream(middle).distinct().toArray();
+            expectedStops = Arrays.stream(expectedStops).distinct().toArray();
+        }
+        if(visited[0] != objectives[0] || visited[visited.length - 1] != objectives[0] || !Arrays.equals(middle, expectedStops)){
+            return "the stops " + Arrays.toString(visited) + " are not the knight, the reachable coins and the knight";
+        }
+        ArrayList<Tile> path = tour.toList();
+        int[] ids = new int[path.size()];
+        for(int k = 0; k < ids.length; k++){
+            ids[k] = path.get(k).getColumn() * testCase.rows + path.get(k).getRow();
+        }
+        // A NaN cost is never compared.
+        return checkPath(testCase, ids, objectives[0], objectives[0], exact ? best : Double.NaN);
+    }
+
+    // Cost of the cheapest order of the reachable coins, trying every order. A coin that shares its tile
+    // with another one cannot be reached from it (PathFinder finds no path to the tile it is on), so
+    // such cases have no tour.
+    private static double bruteForceTour(Case testCase, double[][] expected, ArrayList<Integer> reachable){
+        if(reachable.isEmpty()){
+            return Double.POSITIVE_INFINITY;
+        }
+        int[] order = new int[reachable.size()];
+        for(int k = 0; k < order.length; k++){
+            order[k] = reachable.get(k);
+        }
+        return permute(testCase, expected, order, 0);
+    }
+
+    // Cheapest tour over the orders that keep order[0 .. fixedCount - 1].
+    private static double permute(Case testCase, double[][] expected, int[] order, int fixedCount){
+        int[] objectives = testCase.objectives;
+        if(fixedCount == order.length){
+            double cost = 0;
+            int previous = 0;
+            for(int k : order){
+                cost += objectives[previous] == objectives[k] ? Double.POSITIVE_INFINITY : expected[previous][objectives[k]];
+                previous = k;
+            }
+            return cost + expected[previous][objectives[0]];
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for(int k = fixedCount; k < order.length; k++){
+            int swap = order[fixedCount];
+            order[fixedCount] = order[k];
+            order[k] = swap;
+            best = Math.min(best, permute(testCase, expected, order, fixedCount + 1));
+            order[k] = order[fixedCount];
+            order[fixedCount] = swap;
+        }
+        return best;
+    }
+
+    // Costs from a tile to every tile with Bellman-Ford on the moves of the case.
+    private static double[] bellmanFord(Case testCase, int source){
+        int size = testCase.types.length;
+        double[] cost = new double[size];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        cost[source] = 0;
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            for(int from = 0; from < size; from++){
+                if(cost[from] == Double.POSITIVE_INFINITY) continue;
+                for(int to : new int[]{from - testCase.rows, from + testCase.rows, from - 1, from + 1}){
+                    if(to < 0 || to >= size) continue;
+                    double move = testCase.move(from, to);
+                    if(move >= 0 && cost[from] + move < cost[to] - EPSILON / 2){
+                        cost[to] = cost[from] + move;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return cost;
+    }
+
+    // Returns whether two paths visit the same tiles.
+    private static boolean samePath(ArrayList<Tile> first, ArrayList<Tile> second){
+        if(first.size() != second.size()){
+            return false;
+        }
+        for(int k = 0; k < first.size(); k++){
+            if(!first.get(k).isEqual(second.get(k))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Positions of two tiles as "(col,row)->(col,row)".
+    private static String describe(Case testCase, int from, int to){
+        return "(" + from / testCase.rows + "," + from % testCase.rows + ")->(" + to / testCase.rows + "," + to % testCase.rows + ")";
+    }
+}
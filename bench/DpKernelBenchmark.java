@@ -0,0 +1,98 @@
+// Mehmet Arda Kutlu
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the scalar DP kernel with the kernel returned by DpKernel.create (the Vector API kernel
+ * when it is compiled and the module is added) on random objective sets, and checks that both fill
+ * identical DP and parent tables, so the reconstructed tours are identical. The same is done for the
+ * fixed-point (int) tables, whose size is reported next to the double tables.
+ * Usage: java [--add-modules jdk.incubator.vector] DpKernelBenchmark [repetitions] [objectives ...]
+ */
+public class DpKernelBenchmark {
+    public static void main(String[] args){
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int[] objectiveCounts = {16, 17, 18, 19, 20};
+        if(args.length > 1){
+            objectiveCounts = new int[args.length - 1];
+            for(int i = 1; i < args.length; i++){
+                objectiveCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        DpKernel scalar = new ScalarDpKernel();
+        DpKernel candidate = DpKernel.create();
+        System.out.println("kernel: " + candidate.getClass().getName());
+        System.out.println("objectives scalar(ms) kernel(ms) speedup identical fixedScalar(ms) fixedKernel(ms) "
+                + "doubleTable(MB) intTable(MB) fixedIdentical");
+        for(int objectives : objectiveCounts){
+            int n = objectives + 1;
+            double[][] costTransposed = randomCosts(n, new Random(objectives));
+            double[] scalarDp = new double[n << n];
+            int[] scalarParent = new int[n << n];
+            double[] dp = new double[n << n];
+            int[] parent = new int[n << n];
+            double scalarMillis = Double.POSITIVE_INFINITY;
+            double kernelMillis = Double.POSITIVE_INFINITY;
+            // The best of several repetitions hides JIT warm-up.
+            for(int r = 0; r < repetitions; r++){
+                long start = System.nanoTime();
+                scalar.fill(costTransposed, scalarDp, scalarParent);
+                scalarMillis = Math.min(scalarMillis, (System.nanoTime() - start) / 1e6);
+                start = System.nanoTime();
+                candidate.fill(costTransposed, dp, parent);
+                kernelMillis = Math.min(kernelMillis, (System.nanoTime() - start) / 1e6);
+            }
+            boolean identical = Arrays.equals(scalarDp, dp) && Arrays.equals(scalarParent, parent);
+            dp = null;
+            scalarDp = null;
+
+            int[][] fixedCosts = toFixed(costTransposed);
+            int[] scalarFixedDp = new int[n << n];
+            int[] fixedDp = new int[n << n];
+            double fixedScalarMillis = Double.POSITIVE_INFINITY;
+            double fixedKernelMillis = Double.POSITIVE_INFINITY;
+            for(int r = 0; r < repetitions; r++){
+                long start = System.nanoTime();
+                scalar.fill(fixedCosts, scalarFixedDp, scalarParent);
+                fixedScalarMillis = Math.min(fixedScalarMillis, (System.nanoTime() - start) / 1e6);
+                start = System.nanoTime();
+                candidate.fill(fixedCosts, fixedDp, parent);
+                fixedKernelMillis = Math.min(fixedKernelMillis, (System.nanoTime() - start) / 1e6);
+            }
+            boolean fixedIdentical = Arrays.equals(scalarFixedDp, fixedDp) && Arrays.equals(scalarParent, parent);
+            System.out.printf("%d %.1f %.1f %.2f %b %.1f %.1f %.1f %.1f %b%n", objectives, scalarMillis, kernelMillis,
+                    scalarMillis / kernelMillis, identical, fixedScalarMillis, fixedKernelMillis,
+                    (n << n) * 8.0 / (1 << 20), (n << n) * 4.0 / (1 << 20), fixedIdentical);
+            if(!identical || !fixedIdentical){
+                throw new IllegalStateException("Kernels disagree for " + objectives + " objectives");
+            }
+        }
+    }
+
+    // The same costs in centi-units.
+    private static int[][] toFixed(double[][] costTransposed){
+        int n = costTransposed.length;
+        int[][] fixedCosts = new int[n][n];
+        for(int i = 0; i < n; i++){
+            for(int j = 0; j < n; j++){
+                double cost = costTransposed[i][j];
+                fixedCosts[i][j] = cost == Double.POSITIVE_INFINITY ? FixedCost.INFINITY
+                        : (int) Math.round(cost * FixedCost.SCALE);
+            }
+        }
+        return fixedCosts;
+    }
+
+    // Random transposed cost matrix with two-decimal costs and a few unreachable pairs.
+    private static double[][] randomCosts(int n, Random random){
+        double[][] costTransposed = new double[n][n];
+        for(int i = 0; i < n; i++){
+            for(int j = 0; j < n; j++){
+                boolean missing = i == j || random.nextInt(20) == 0;
+                costTransposed[j][i] = missing ? Double.POSITIVE_INFINITY : 1 + random.nextInt(50000) / 100.0;
+            }
+        }
+        return costTransposed;
+    }
+}
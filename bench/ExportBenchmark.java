@@ -0,0 +1,66 @@
+// Mehmet Arda Kutlu
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+/**
+ * Exports the frames of a long bonus tour on a generated map and reports the throughput and the heap
+ * usage. The tour is made of shortest paths between random tiles, so its length does not depend on the
+ * number of coins. Run it from the project root so misc/ is found, for example with -Xmx256m to check
+ * that the frames are not kept in memory.
+ * Usage: java -Djava.awt.headless=true ExportBenchmark [steps] [stride] [threads] [size]
+ */
+public class ExportBenchmark {
+    public static void main(String[] args) throws IOException {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int stride = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        BenchMaps.Loaded loaded = BenchMaps.load(BenchMaps.prepare("mixed", size));
+        Map map = loaded.map;
+        GridGraph graph = GridGraph.fromMap(map, loaded.pathFinder);
+        ArrayList<Tile> tour = tour(graph, map.knightIsOn(map.getKnight()), steps);
+
+        File directory = Files.createTempDirectory("goldtrail-frames").toFile();
+        long start = System.nanoTime();
+        FrameExporter exporter = new FrameExporter(map, true, directory, stride, threads, 1);
+        AlgorithmRunner runner = new AlgorithmRunner(map, loaded.pathFinder, new Writer(new File(directory, "bonus.txt").getPath()));
+        runner.setStepListener(exporter.getStepListener());
+        exporter.start();
+        runner.runBonus(tour);
+        runner.closeBuffer();
+        long runMillis = (System.nanoTime() - start) / 1_000_000;
+        exporter.finish();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("steps=%d stride=%d threads=%d frames=%d run=%dms total=%.1fs (%.1f frames/s) heapUsed=%.1fMB dir=%s%n",
+                tour.size() - 1, stride, threads, exporter.getExportedFrames(), runMillis, seconds,
+                exporter.getExportedFrames() / seconds, (runtime.totalMemory() - runtime.freeMemory()) / 1e6, directory);
+    }
+
+    // Builds a walk of the given number of steps from shortest paths between random tiles.
+    private static ArrayList<Tile> tour(GridGraph graph, Tile start, int steps){
+        GridDijkstra dijkstra = new GridDijkstra(graph);
+        ArrayList<Tile> tour = new ArrayList<>();
+        tour.add(start);
+        int current = graph.id(start);
+        long seed = 1;
+        while(tour.size() <= steps){
+            int target = SyntheticGrids.randomPassable(graph, 1, seed++)[0];
+            dijkstra.search(current, target);
+            int[] path = dijkstra.path(target);
+            if(path == null){
+                continue;
+            }
+            for(int step = 1; step < path.length && tour.size() <= steps; step++){
+                tour.add(graph.tile(path[step]));
+            }
+            current = graph.id(tour.get(tour.size() - 1));
+        }
+        return tour;
+    }
+}
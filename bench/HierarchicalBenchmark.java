@@ -0,0 +1,74 @@
+// Mehmet Arda Kutlu
+
+import java.util.Random;
+
+/**
+ * Compares HierarchicalPathFinder with Dijkstra on synthetic maps of growing size. For every size it
+ * reports the preprocessing time, the estimated memory of the abstract graph and the query speedup,
+ * and checks that the exact mode returns the same costs as Dijkstra.
+ * Usage: java HierarchicalBenchmark [clusterSize] [queries] [size ...]
+ */
+public class HierarchicalBenchmark {
+    public static void main(String[] args){
+        int clusterSize = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int[] sizes = {100, 250, 500, 1000};
+        if(args.length > 2){
+            sizes = new int[args.length - 2];
+            for(int i = 2; i < args.length; i++){
+                sizes[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.println("size mode preprocess(ms) memory(MB) nodes edges dijkstra(ms/query) hpa(ms/query) speedup maxError");
+        for(int size : sizes){
+            GridGraph graph = SyntheticGrids.mixed(size, size, 0.2, 0.3, size);
+            GridDijkstra dijkstra = new GridDijkstra(graph);
+            Random random = new Random(42);
+            int[] starts = new int[queries];
+            int[] goals = new int[queries];
+            for(int q = 0; q < queries; q++){
+                starts[q] = randomPassable(graph, random);
+                goals[q] = randomPassable(graph, random);
+            }
+            double[] expected = new double[queries];
+            long dijkstraStart = System.nanoTime();
+            for(int q = 0; q < queries; q++){
+                expected[q] = dijkstra.search(starts[q], goals[q]);
+            }
+            double dijkstraMillis = (System.nanoTime() - dijkstraStart) / 1e6 / queries;
+
+            for(boolean exact : new boolean[]{true, false}){
+                HierarchicalPathFinder hpa = new HierarchicalPathFinder(graph, clusterSize, exact);
+                double maxError = 0;
+                long hpaStart = System.nanoTime();
+                for(int q = 0; q < queries; q++){
+                    int[] path = hpa.findPath(starts[q], goals[q]);
+                    double cost = path == null ? Double.POSITIVE_INFINITY : graph.pathCost(path);
+                    if(expected[q] == Double.POSITIVE_INFINITY || cost == Double.POSITIVE_INFINITY){
+                        if(expected[q] != cost){
+                            throw new IllegalStateException("Reachability differs for query " + q);
+                        }
+                        continue;
+                    }
+                    maxError = Math.max(maxError, (cost - expected[q]) / Math.max(1, expected[q]));
+                }
+                double hpaMillis = (System.nanoTime() - hpaStart) / 1e6 / queries;
+                if(exact && maxError > 1e-9){
+                    throw new IllegalStateException("Exact mode returned a suboptimal path on size " + size);
+                }
+                System.out.printf("%d %s %.1f %.1f %d %d %.3f %.3f %.2f %.4f%n", size, exact ? "exact" : "approx",
+                        hpa.getPreprocessingMillis(), hpa.estimateMemoryBytes() / 1e6, hpa.getNodeCount(),
+                        hpa.getEdgeCount(), dijkstraMillis, hpaMillis, dijkstraMillis / hpaMillis, maxError);
+            }
+        }
+    }
+
+    // Picks a random tile that is not impassable.
+    private static int randomPassable(GridGraph graph, Random random){
+        int id;
+        do{
+            id = random.nextInt(graph.size());
+        } while(graph.type(id) == 2);
+        return id;
+    }
+}
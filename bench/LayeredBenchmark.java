@@ -0,0 +1,144 @@
+// Mehmet Arda Kutlu
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks the layered, file backed DP against the in-memory DP of ShortestRoute (the kernel and the same
+ * reconstruction) on random cost matrices, times it on more objectives than the in-memory table fits
+ * and kills a solve in a child JVM to check that the next solve resumes from its checkpoint and finds
+ * the same tour. Run it with a small heap (for example -Xmx128m) to see that the layers stay on disk.
+ * Usage: java LayeredBenchmark [killObjectives] [objectives ...]
+ *        java LayeredBenchmark child directory objectives   (the solve that is killed)
+ */
+public class LayeredBenchmark {
+    public static void main(String[] args) throws Exception {
+        if(args.length == 3 && args[0].equals("child")){
+            new LayeredHeldKarp(new File(args[1]), 1).solve(randomCosts(Integer.parseInt(args[2])));
+            return;
+        }
+        int killObjectives = args.length > 0 ? Integer.parseInt(args[0]) : 22;
+        int[] objectiveCounts = {12, 16, 18, 20, 22};
+        if(args.length > 1){
+            objectiveCounts = new int[args.length - 1];
+            for(int i = 1; i < args.length; i++){
+                objectiveCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        File directory = Files.createTempDirectory("goldtrail-heldkarp").toFile();
+
+        System.out.println("objectives layered(ms) spilled(MB) inMemory(ms) inMemoryTable(MB) sameTour");
+        for(int objectives : objectiveCounts){
+            double[][] cost = randomCosts(objectives);
+            LayeredHeldKarp layered = new LayeredHeldKarp(directory, threads);
+            long start = System.nanoTime();
+            int[] tour = layered.solve(cost);
+            double layeredMillis = (System.nanoTime() - start) / 1e6;
+            // The in-memory table needs n << n doubles and ints, it is only compared while it fits the heap.
+            int n = objectives + 1;
+            long tableBytes = (12L * n) << n;
+            String inMemory = "- -";
+            String same = "-";
+            if(tableBytes < Runtime.getRuntime().maxMemory() / 2){
+                start = System.nanoTime();
+                int[] expected = inMemoryTour(cost);
+                inMemory = String.format("%.0f %.1f", (System.nanoTime() - start) / 1e6, tableBytes / 1e6);
+                same = String.valueOf(Arrays.equals(tour, expected));
+                if(!Arrays.equals(tour, expected)){
+                    throw new IllegalStateException("Tours differ for " + objectives + " objectives");
+                }
+            }
+            System.out.printf("%d %.0f %.1f %s %s%n", objectives, layeredMillis, layered.getSpilledBytes() / 1e6,
+                    inMemory, same);
+        }
+
+        // Kill a solve once it has finished a few layers, then resume it.
+        Process child = new ProcessBuilder(System.getProperty("java.home") + "/bin/java", "-cp",
+                System.getProperty("java.class.path"), "LayeredBenchmark", "child", directory.getPath(),
+                String.valueOf(killObjectives)).inheritIO().start();
+        File checkpoint = new File(directory, "checkpoint");
+        while(child.isAlive() && !checkpointPast(checkpoint, killObjectives / 2)){
+            Thread.sleep(50);
+        }
+        child.destroyForcibly().waitFor();
+        double[][] cost = randomCosts(killObjectives);
+        LayeredHeldKarp resumed = new LayeredHeldKarp(directory, threads);
+        long start = System.nanoTime();
+        int[] resumedTour = resumed.solve(cost);
+        double resumedMillis = (System.nanoTime() - start) / 1e6;
+        File fresh = Files.createTempDirectory("goldtrail-heldkarp").toFile();
+        LayeredHeldKarp fromScratch = new LayeredHeldKarp(fresh, threads);
+        start = System.nanoTime();
+        int[] freshTour = fromScratch.solve(cost);
+        double freshMillis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("killed %d objectives after layer %d: resumed in %.0fms, from scratch %.0fms, sameTour %b%n",
+                killObjectives, resumed.getResumedLayer(), resumedMillis, freshMillis, Arrays.equals(resumedTour, freshTour));
+        if(resumed.getResumedLayer() == 0 || !Arrays.equals(resumedTour, freshTour)){
+            throw new IllegalStateException("The killed solve did not resume correctly");
+        }
+        fresh.delete();
+        directory.delete();
+    }
+
+    // Returns whether the checkpoint says that more than the given number of layers are finished.
+    private static boolean checkpointPast(File checkpoint, int layer){
+        try{
+            byte[] bytes = Files.readAllBytes(checkpoint.toPath());
+            return bytes.length == 24 && java.nio.ByteBuffer.wrap(bytes).getInt(20) > layer;
+        }
+        catch(IOException e){
+            return false;
+        }
+    }
+
+    // The in-memory DP of ShortestRoute: the kernel fills the whole table, the tour is reconstructed from it.
+    private static int[] inMemoryTour(double[][] cost){
+        int n = cost.length;
+        double[][] costTransposed = new double[n][n];
+        for(int i = 0; i < n; i++){
+            for(int j = 0; j < n; j++){
+                costTransposed[j][i] = cost[i][j];
+            }
+        }
+        double[] dp = new double[n << n];
+        int[] parent = new int[n << n];
+        new ScalarDpKernel().fill(costTransposed, dp, parent);
+        int endState = (1 << n) - 1;
+        double minCost = Double.POSITIVE_INFINITY;
+        int last = -1;
+        for(int i = 1; i < n; i++){
+            if(cost[i][0] == Double.POSITIVE_INFINITY) continue;
+            if(dp[endState * n + i] + cost[i][0] < minCost){
+                minCost = dp[endState * n + i] + cost[i][0];
+                last = i;
+            }
+        }
+        int[] order = new int[n + 1];
+        int state = endState;
+        for(int position = n - 1; position > 0; position--){
+            order[position] = last;
+            int previous = parent[state * n + last];
+            state ^= 1 << last;
+            last = previous;
+        }
+        return order;
+    }
+
+    // Random cost matrix with two-decimal costs, a few unreachable pairs and ties.
+    private static double[][] randomCosts(int objectives){
+        int n = objectives + 1;
+        Random random = new Random(objectives);
+        double[][] cost = new double[n][n];
+        for(int i = 0; i < n; i++){
+            for(int j = 0; j < n; j++){
+                boolean missing = i == j || random.nextInt(20) == 0;
+                cost[i][j] = missing ? Double.POSITIVE_INFINITY : 1 + random.nextInt(5000) / 100.0;
+            }
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,146 @@
+// Mehmet Arda Kutlu
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Checks PagedSearch against Dijkstra on the testCases.zip maps and a generated map, then runs local
+ * queries on a large generated paged map and reports the touched chunks, the chunk hit rate and the
+ * heap usage. The large map is written chunk by chunk from hashed tile types and costs, so it is never
+ * held in the heap; run it for example with -Xmx256m on a 20000x20000 map (about 13GB of disk).
+ * Usage: java PagedGridBenchmark [size] [chunkSize] [residentChunks] [queries] [radius]
+ */
+public class PagedGridBenchmark {
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int chunkSize = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int residentChunks = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int queries = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int radius = args.length > 4 ? Integer.parseInt(args[4]) : 200;
+        File file = File.createTempFile("goldtrail-paged", ".grid");
+        file.deleteOnExit();
+
+        // Same costs as Dijkstra, both for maps built from the input files and for copied graphs.
+        for(String testCase : new String[]{"5-5", "15-15", "20-20", "Bonus"}){
+            File directory = BenchMaps.prepare("tc-" + testCase, 0);
+            BenchMaps.Loaded loaded = BenchMaps.load(directory);
+            GridGraph graph = GridGraph.fromMap(loaded.map, loaded.pathFinder);
+            try(PagedGrid grid = PagedGrid.build(new File(directory, "mapData.txt"), new File(directory, "travelCosts.txt"), file, 8, 4)){
+                compare("tc-" + testCase, graph, grid, queries);
+            }
+        }
+        GridGraph mixed = SyntheticGrids.mixed(300, 300, 0.2, 0.3, 300);
+        try(PagedGrid grid = PagedGrid.fromGraph(mixed, file, 32, 8)){
+            compare("mixed-300", mixed, grid, queries);
+        }
+
+        long generateStart = System.nanoTime();
+        try(PagedGrid grid = generate(file, size, chunkSize, residentChunks)){
+            System.out.printf("generated %dx%d map: %d chunks, %.1fMB file, %.1fs%n", size, size, grid.getChunkCount(),
+                    file.length() / 1e6, (System.nanoTime() - generateStart) / 1e9);
+        }
+        try(PagedGrid grid = PagedGrid.open(file, residentChunks)){
+            PagedSearch search = new PagedSearch(grid);
+            Random random = new Random(42);
+            long settled = 0;
+            long touched = 0;
+            long searchStart = System.nanoTime();
+            for(int q = 0; q < queries; q++){
+                // Goals within the radius around the start, like the next coin of a tour.
+                int start;
+                int goal;
+                do{
+                    int col = random.nextInt(size);
+                    int row = random.nextInt(size);
+                    start = grid.id(col, row);
+                    goal = grid.id(Math.max(0, Math.min(size - 1, col + random.nextInt(2 * radius + 1) - radius)),
+                            Math.max(0, Math.min(size - 1, row + random.nextInt(2 * radius + 1) - radius)));
+                } while(type(start) == 2 || type(goal) == 2);
+                search.search(start, goal);
+                settled += search.getSettledCount();
+                touched += search.getTouchedChunks();
+            }
+            double millis = (System.nanoTime() - searchStart) / 1e6 / queries;
+            Runtime runtime = Runtime.getRuntime();
+            System.out.printf("local queries (radius %d): %.2fms/query, %d settled, %.1f touched chunks of %d, %d resident, "
+                    + "hits=%d misses=%d hitRate=%.4f heapUsed=%.1fMB%n", radius, millis, settled / queries,
+                    (double) touched / queries, grid.getChunkCount(), grid.getResidentChunks(), grid.getChunkHits(),
+                    grid.getChunkMisses(), grid.getHitRate(), (runtime.totalMemory() - runtime.freeMemory()) / 1e6);
+        }
+        file.delete();
+    }
+
+    // Compares random queries of PagedSearch with GridDijkstra and prints the chunk statistics.
+    private static void compare(String name, GridGraph graph, PagedGrid grid, int queries){
+        for(int id = 0; id < graph.size(); id++){
+            for(int direction = 0; direction < 4; direction++){
+                if(grid.cost(id, direction) != graph.cost(id, direction)){
+                    throw new IllegalStateException(name + ": cost of tile " + id + " in direction " + direction + " differs");
+                }
+            }
+        }
+        grid.resetCounters();
+        GridDijkstra dijkstra = new GridDijkstra(graph);
+        PagedSearch search = new PagedSearch(grid);
+        Random random = new Random(7);
+        for(int q = 0; q < queries; q++){
+            int start = random.nextInt(graph.size());
+            int goal = random.nextInt(graph.size());
+            double expected = dijkstra.search(start, goal);
+            double actual = search.search(start, goal);
+            int[] path = search.path(goal);
+            double pathCost = path == null ? Double.POSITIVE_INFINITY : graph.pathCost(path);
+            if(expected != actual || expected != pathCost){
+                throw new IllegalStateException(name + ": query " + q + " costs " + actual + " (path " + pathCost
+                        + "), Dijkstra found " + expected);
+            }
+        }
+        System.out.printf("%s: %d queries match Dijkstra, %d chunks, hitRate=%.4f%n", name, queries, grid.getChunkCount(),
+                grid.getHitRate());
+    }
+
+    // Writes a map with hashed tile types and symmetric hashed costs, one chunk at a time.
+    private static PagedGrid generate(File file, int size, int chunkSize, int residentChunks) throws IOException {
+        PagedGrid grid = PagedGrid.create(file, size, size, chunkSize, residentChunks);
+        for(int chunkCol = 0; chunkCol < size; chunkCol += chunkSize){
+            for(int chunkRow = 0; chunkRow < size; chunkRow += chunkSize){
+                for(int col = chunkCol; col < Math.min(size, chunkCol + chunkSize); col++){
+                    for(int row = chunkRow; row < Math.min(size, chunkRow + chunkSize); row++){
+                        int id = grid.id(col, row);
+                        grid.setType(col, row, type(id));
+                        setCost(grid, id, GridGraph.LEFT, col > 0 ? id - size : -1);
+                        setCost(grid, id, GridGraph.RIGHT, col < size - 1 ? id + size : -1);
+                        setCost(grid, id, GridGraph.UP, row > 0 ? id - 1 : -1);
+                        setCost(grid, id, GridGraph.DOWN, row < size - 1 ? id + 1 : -1);
+                    }
+                }
+            }
+        }
+        return grid;
+    }
+
+    // Sets the cost of a move from the hashes of both tiles, so both directions get the same cost.
+    private static void setCost(PagedGrid grid, int id, int direction, int neighbor){
+        if(neighbor < 0 || type(neighbor) == 2){
+            return;
+        }
+        long hash = mix(Math.min(id, neighbor) * 31L + Math.max(id, neighbor));
+        boolean sand = type(id) == 1 || type(neighbor) == 1;
+        int cents = Math.floorMod(hash, sand ? 201 : 401);
+        grid.setCost(id, direction, sand ? 8 + cents / 100.0 : 1 + cents / 100.0);
+    }
+
+    // Type of a generated tile: 15% impassable, 30% sand, grass otherwise.
+    private static int type(int id){
+        int roll = Math.floorMod(mix(id), 100);
+        return roll < 15 ? 2 : roll < 45 ? 1 : 0;
+    }
+
+    // Mixes the bits of a number (SplitMix64 finalizer).
+    private static long mix(long value){
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,95 @@
+// Mehmet Arda Kutlu
+
+import java.util.Random;
+
+/**
+ * Races the solvers of SolverPortfolio on random cost matrices shaped like grid path costs (Manhattan
+ * distances between random points, scaled by a random terrain cost) and compares them with the full DP
+ * of ShortestRoute: which solver wins, how long the race and the full DP take and whether the costs are
+ * the same. The last column races again with a short deadline and reports the gap of the tour it gets.
+ * Usage: java PortfolioBenchmark [deadlineMillis] [objectives ...]
+ */
+public class PortfolioBenchmark {
+    public static void main(String[] args){
+        long deadlineMillis = args.length > 0 ? Long.parseLong(args[0]) : 20;
+        int[] objectiveCounts = {8, 12, 16, 18, 20, 22};
+        if(args.length > 1){
+            objectiveCounts = new int[args.length - 1];
+            for(int i = 1; i < args.length; i++){
+                objectiveCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.println("objectives winner portfolio(ms) fullDp(ms) sameCost deadline(winner,gap)");
+        for(int objectives : objectiveCounts){
+            double[][] cost = gridCosts(objectives);
+            SolverPortfolio portfolio = new SolverPortfolio(0);
+            long start = System.nanoTime();
+            portfolio.solve(cost);
+            double portfolioMillis = (System.nanoTime() - start) / 1e6;
+
+            // The full table needs n << n doubles and ints, it is only compared while it fits the heap.
+            int n = objectives + 1;
+            String fullDp = "- -";
+            if(n <= 26 && (12L * n << n) < Runtime.getRuntime().maxMemory() / 2){
+                start = System.nanoTime();
+                double expected = fullDpCost(cost);
+                boolean same = Math.abs(expected - portfolio.getLastCost()) < 1e-6;
+                fullDp = String.format("%.0f %b", (System.nanoTime() - start) / 1e6, same);
+                if(!same){
+                    throw new IllegalStateException("Costs differ for " + objectives + " objectives: "
+                            + portfolio.getLastCost() + " instead of " + expected);
+                }
+            }
+
+            SolverPortfolio limited = new SolverPortfolio(deadlineMillis);
+            limited.solve(cost);
+            System.out.printf("%d %s %.0f %s %s,%.2f%%%n", objectives, portfolio.getWinner(), portfolioMillis, fullDp,
+                    limited.isOptimal() ? limited.getWinner() + "(optimal)" : limited.getWinner(), limited.getGap() * 100);
+        }
+    }
+
+    // Cost of the shortest tour from the full DP table filled by the scalar kernel.
+    private static double fullDpCost(double[][] cost){
+        int n = cost.length;
+        double[][] costTransposed = new double[n][n];
+        for(int i = 0; i < n; i++){
+            for(int j = 0; j < n; j++){
+                costTransposed[j][i] = cost[i][j];
+            }
+        }
+        double[] dp = new double[n << n];
+        new ScalarDpKernel().fill(costTransposed, dp, new int[n << n]);
+        int endState = (1 << n) - 1;
+        double minCost = Double.POSITIVE_INFINITY;
+        for(int i = 1; i < n; i++){
+            minCost = Math.min(minCost, dp[endState * n + i] + cost[i][0]);
+        }
+        return minCost;
+    }
+
+    // Manhattan distances between random points on a 100x100 grid times a terrain cost of 1 to 10 per
+    // pair, with two decimals.
+    private static double[][] gridCosts(int objectives){
+        int n = objectives + 1;
+        Random random = new Random(objectives);
+        int[] col = new int[n];
+        int[] row = new int[n];
+        for(int i = 0; i < n; i++){
+            col[i] = random.nextInt(100);
+            row[i] = random.nextInt(100);
+        }
+        double[][] cost = new double[n][n];
+        for(int i = 0; i < n; i++){
+            for(int j = i; j < n; j++){
+                if(i == j){
+                    cost[i][j] = Double.POSITIVE_INFINITY;
+                    continue;
+                }
+                int distance = Math.abs(col[i] - col[j]) + Math.abs(row[i] - row[j]);
+                cost[i][j] = Math.round(distance * (100 + random.nextInt(900))) / 100.0;
+                cost[j][i] = cost[i][j];
+            }
+        }
+        return cost;
+    }
+}
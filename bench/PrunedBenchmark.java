@@ -0,0 +1,130 @@
+// Mehmet Arda Kutlu
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the pruned DP of PrunedHeldKarp with the full DP of ShortestRoute on random cost matrices
+ * shaped like grid path costs (Manhattan distances between points on a 200x200 grid, scaled by a
+ * terrain cost), once with the points spread evenly and once gathered in a few tight clusters: the
+ * states the pruned DP keeps against the n << n entries of the full table, the memory both need, the
+ * times and whether the tours are the same.
+ * Usage: java PrunedBenchmark [clusters] [objectives ...]
+ */
+public class PrunedBenchmark {
+    public static void main(String[] args){
+        int clusters = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int[] objectiveCounts = {12, 16, 18, 20, 22};
+        if(args.length > 1){
+            objectiveCounts = new int[args.length - 1];
+            for(int i = 1; i < args.length; i++){
+                objectiveCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.println("layout objectives keptStates fullStates pruned(ms) pruned(MB) fullDp(ms) fullDp(MB) sameTour");
+        for(int objectives : objectiveCounts){
+            for(boolean clustered : new boolean[]{false, true}){
+                double[][] cost = gridCosts(objectives, clustered ? clusters : 0);
+                int n = objectives + 1;
+                PrunedHeldKarp pruned = new PrunedHeldKarp(Runtime.getRuntime().maxMemory() / 2);
+                long start = System.nanoTime();
+                String prunedResult;
+                int[] order = null;
+                try{
+                    order = pruned.solve(cost);
+                    prunedResult = String.format("%d %d %.0f %.1f", pruned.getKeptStates(), (long) objectives << objectives,
+                            (System.nanoTime() - start) / 1e6, pruned.getPeakBytes() / 1e6);
+                }
+                catch(IllegalStateException e){
+                    prunedResult = String.format("- %d - -", (long) objectives << objectives);
+                }
+
+                // The full table needs n << n doubles and ints, it is only compared while it fits the heap.
+                String fullDp = "- - -";
+                if(n <= 26 && (12L * n << n) < Runtime.getRuntime().maxMemory() / 2){
+                    start = System.nanoTime();
+                    int[] expected = fullDpOrder(cost);
+                    fullDp = String.format("%.0f %.1f %b", (System.nanoTime() - start) / 1e6, (12L * n << n) / 1e6,
+                            Arrays.equals(expected, order));
+                    if(order != null && !Arrays.equals(expected, order)){
+                        throw new IllegalStateException("Tours differ for " + objectives + " objectives");
+                    }
+                }
+                System.out.printf("%s %d %s %s%n", clustered ? "clustered" : "uniform", objectives, prunedResult, fullDp);
+            }
+        }
+    }
+
+    // Order of the shortest tour from the full DP table filled by the scalar kernel, rebuilt like
+    // ShortestRoute does.
+    private static int[] fullDpOrder(double[][] cost){
+        int n = cost.length;
+        double[][] costTransposed = new double[n][n];
+        for(int i = 0; i < n; i++){
+            for(int j = 0; j < n; j++){
+                costTransposed[j][i] = cost[i][j];
+            }
+        }
+        double[] dp = new double[n << n];
+        int[] parent = new int[n << n];
+        new ScalarDpKernel().fill(costTransposed, dp, parent);
+        int endState = (1 << n) - 1;
+        double minCost = Double.POSITIVE_INFINITY;
+        int lastIndex = -1;
+        for(int i = 1; i < n; i++){
+            double tourCost = dp[endState * n + i] + cost[i][0];
+            if(tourCost < minCost){
+                minCost = tourCost;
+                lastIndex = i;
+            }
+        }
+        int[] order = new int[n + 1];
+        int state = endState;
+        for(int t = n - 1, current = lastIndex; t > 0; t--){
+            order[t] = current;
+            int previous = parent[state * n + current];
+            state ^= 1 << current;
+            current = previous;
+        }
+        return order;
+    }
+
+    // Manhattan distances between random points on a 200x200 grid times a terrain cost of 1 to 2 per
+    // pair, with two decimals. With clusters, the points are within 6 tiles of one of the cluster centers.
+    private static double[][] gridCosts(int objectives, int clusters){
+        int n = objectives + 1;
+        Random random = new Random(objectives * 31 + clusters);
+        int[] centerCol = new int[Math.max(1, clusters)];
+        int[] centerRow = new int[centerCol.length];
+        for(int c = 0; c < centerCol.length; c++){
+            centerCol[c] = 6 + random.nextInt(188);
+            centerRow[c] = 6 + random.nextInt(188);
+        }
+        int[] col = new int[n];
+        int[] row = new int[n];
+        for(int i = 0; i < n; i++){
+            if(clusters > 0){
+                int c = random.nextInt(clusters);
+                col[i] = centerCol[c] - 6 + random.nextInt(13);
+                row[i] = centerRow[c] - 6 + random.nextInt(13);
+            }
+            else{
+                col[i] = random.nextInt(200);
+                row[i] = random.nextInt(200);
+            }
+        }
+        double[][] cost = new double[n][n];
+        for(int i = 0; i < n; i++){
+            for(int j = i; j < n; j++){
+                if(i == j){
+                    cost[i][j] = Double.POSITIVE_INFINITY;
+                    continue;
+                }
+                int distance = Math.abs(col[i] - col[j]) + Math.abs(row[i] - row[j]);
+                cost[i][j] = Math.round(distance * (100 + random.nextInt(100))) / 100.0;
+                cost[j][i] = cost[i][j];
+            }
+        }
+        return cost;
+    }
+}
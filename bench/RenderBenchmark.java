@@ -0,0 +1,155 @@
+// Mehmet Arda Kutlu
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Measures the frame time of the map animation on synthetic maps of growing size. The knight walks
+ * along shortest paths between random tiles and marks them like the standard part does. Three ways of
+ * drawing a frame are compared off-screen: redrawing every tile from its image (like the old draw),
+ * drawing the composed terrain layer with everything on it, and redrawing only the changed tiles.
+ * The last frame of the dirty-region renderer is checked to match a full redraw pixel by pixel.
+ * Run it from the project root so misc/ is found.
+ * Usage: java RenderBenchmark [frames] [size ...]
+ */
+public class RenderBenchmark {
+    public static void main(String[] args) throws IOException {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int[] sizes = {25, 50, 100};
+        if(args.length > 1){
+            sizes = new int[args.length - 1];
+            for(int i = 1; i < args.length; i++){
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        // Decoded terrain, knight and coin images for the per-tile redraw.
+        BufferedImage[] images = {ImageIO.read(new File("misc/grassTile.jpeg")), ImageIO.read(new File("misc/sandTile.png")),
+                ImageIO.read(new File("misc/impassableTile.jpeg")), ImageIO.read(new File("misc/knight.png")),
+                ImageIO.read(new File("misc/coin.png"))};
+        System.out.println("size setup(ms) perTile(ms/frame) terrainLayer(ms/frame) dirty(ms/frame) speedup");
+        for(int size : sizes){
+            GridGraph graph = SyntheticGrids.mixed(size, size, 0.1, 0.3, size);
+            int[] walk = walk(graph, frames, size);
+
+            Map map = buildMap(graph, walk[0]);
+            long setupStart = System.nanoTime();
+            ImageTarget dirtyTarget = new ImageTarget(map.getCanvasWidth(), map.getCanvasHeight(), 1);
+            MapRenderer renderer = new MapRenderer(map, dirtyTarget);
+            double setupMillis = (System.nanoTime() - setupStart) / 1e6;
+            renderer.drawFrame(false);
+            double dirtyMillis = animate(map, walk, () -> renderer.drawFrame(false));
+
+            Map layerMap = buildMap(graph, walk[0]);
+            MapRenderer layerRenderer = new MapRenderer(layerMap, new ImageTarget(map.getCanvasWidth(), map.getCanvasHeight(), 1));
+            double layerMillis = animate(layerMap, walk, () -> layerRenderer.drawFull(false));
+
+            Map tileMap = buildMap(graph, walk[0]);
+            ImageTarget tileTarget = new ImageTarget(map.getCanvasWidth(), map.getCanvasHeight(), 1);
+            double tileMillis = animate(tileMap, walk, () -> drawEveryTile(tileMap, tileTarget.getImage(), images));
+
+            // The dirty frames must add up to the same picture as a full redraw.
+            ImageTarget checkTarget = new ImageTarget(map.getCanvasWidth(), map.getCanvasHeight(), 1);
+            new MapRenderer(map, checkTarget).drawFull(false);
+            if(!samePixels(dirtyTarget.getImage(), checkTarget.getImage())){
+                throw new IllegalStateException("Dirty-region frame differs from a full redraw on size " + size);
+            }
+            System.out.printf("%d %.1f %.3f %.3f %.3f %.1f%n", size, setupMillis, tileMillis, layerMillis, dirtyMillis,
+                    tileMillis / dirtyMillis);
+        }
+    }
+
+    // Finds a walk through the graph made of shortest paths between random tiles.
+    private static int[] walk(GridGraph graph, int frames, long seed){
+        GridDijkstra dijkstra = new GridDijkstra(graph);
+        int[] targets = SyntheticGrids.randomPassable(graph, frames, seed);
+        int[] walk = new int[frames];
+        int length = 0;
+        walk[length++] = targets[0];
+        for(int k = 1; k < targets.length && length < frames; k++){
+            dijkstra.search(walk[length - 1], targets[k]);
+            int[] path = dijkstra.path(targets[k]);
+            if(path == null){
+                continue;
+            }
+            for(int step = 1; step < path.length && length < frames; step++){
+                walk[length++] = path[step];
+            }
+        }
+        return Arrays.copyOf(walk, length);
+    }
+
+    // Builds a Map of the graph with the knight on the given tile and a coin on every 50th tile of the map.
+    private static Map buildMap(GridGraph graph, int knightTile){
+        Map map = new Map(graph.getCols(), graph.getRows());
+        for(int id = 0; id < graph.size(); id++){
+            map.fillTiles(graph.col(id), graph.row(id), new Tile(graph.col(id), graph.row(id), graph.type(id)));
+        }
+        map.adjacentFinder();
+        map.setKnight(new Knight(graph.col(knightTile), graph.row(knightTile)));
+        for(int id = 0; id < graph.size(); id += 50){
+            if(graph.type(id) != 2){
+                map.addCoin(new Coin(graph.col(id), graph.row(id)));
+            }
+        }
+        return map;
+    }
+
+    // Moves the knight along the walk, marking the tiles it leaves, and returns the mean frame time.
+    private static double animate(Map map, int[] walk, Runnable drawFrame){
+        int rows = map.getTiles()[0].length;
+        long start = System.nanoTime();
+        for(int step = 1; step < walk.length; step++){
+            Knight knight = map.getKnight();
+            map.getTiles()[knight.getColNum()][knight.getRowNum()].setMarked(true);
+            knight.setColNum(walk[step] / rows);
+            knight.setRowNum(walk[step] % rows);
+            for(Coin coin : map.getCoins()){
+                if(coin.getColNum() == knight.getColNum() && coin.getRowNum() == knight.getRowNum()){
+                    coin.setCollected(true);
+                }
+            }
+            drawFrame.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / Math.max(1, walk.length - 1);
+    }
+
+    // Draws every tile, mark, the knight and the coins by scaling the decoded images, like the old draw.
+    private static void drawEveryTile(Map map, BufferedImage frame, BufferedImage[] images){
+        Graphics2D graphics = frame.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        graphics.setColor(Color.RED);
+        for(Tile[] tileList : map.getTiles()){
+            for(Tile tile : tileList){
+                graphics.drawImage(images[tile.getType()], tile.getColumn() * 30, tile.getRow() * 30, 30, 30, null);
+                if(tile.isMarked()){
+                    graphics.fillOval(tile.getColumn() * 30 + 10, tile.getRow() * 30 + 10, 10, 10);
+                }
+            }
+        }
+        Knight knight = map.getKnight();
+        graphics.drawImage(images[3], knight.getColNum() * 30, knight.getRowNum() * 30, 30, 30, null);
+        for(Coin coin : map.getCoins()){
+            if(!coin.isCollected()){
+                graphics.drawImage(images[4], coin.getColNum() * 30, coin.getRowNum() * 30, 30, 30, null);
+            }
+        }
+        graphics.dispose();
+    }
+
+    // Checks whether two images have the same pixels.
+    private static boolean samePixels(BufferedImage first, BufferedImage second){
+        for(int y = 0; y < first.getHeight(); y++){
+            for(int x = 0; x < first.getWidth(); x++){
+                if(first.getRGB(x, y) != second.getRGB(x, y)){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,103 @@
+// Mehmet Arda Kutlu
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares RectangleSymmetryReduction with Dijkstra on the testCases.zip maps and on generated maps.
+ * For every map it reports the number of rectangles and perimeter tiles, the tiles reached by Dijkstra,
+ * the tiles settled by the reduced search and the query times of both searches, and checks that every
+ * query returns the same cost as Dijkstra, both as the reported distance and as the cost of the
+ * expanded path.
+ * Usage: java SymmetryBenchmark [queries] [size ...]
+ */
+public class SymmetryBenchmark {
+    public static void main(String[] args) throws IOException {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int[] sizes = {100, 300, 1000};
+        if(args.length > 1){
+            sizes = new int[args.length - 1];
+            for(int i = 1; i < args.length; i++){
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.println("map tiles rectangles perimeter preprocess(ms) dijkstraReached rsrSettled dijkstra(ms/query) rsr(ms/query) speedup");
+        for(String testCase : new String[]{"5-5", "15-15", "20-20", "Bonus"}){
+            BenchMaps.Loaded loaded = BenchMaps.load(BenchMaps.prepare("tc-" + testCase, 0));
+            compare("tc-" + testCase, GridGraph.fromMap(loaded.map, loaded.pathFinder), queries);
+        }
+        for(int size : sizes){
+            for(String kind : new String[]{"uniform", "open", "mixed"}){
+                compare(kind + "-" + size, SyntheticGrids.generate(kind, size, size, size), queries);
+            }
+        }
+    }
+
+    // Runs the same random queries with both searches and prints one line of results.
+    private static void compare(String name, GridGraph graph, int queries){
+        GridDijkstra dijkstra = new GridDijkstra(graph);
+        RectangleSymmetryReduction rsr = new RectangleSymmetryReduction(graph);
+        Random random = new Random(42);
+        int[] starts = new int[queries];
+        int[] goals = new int[queries];
+        for(int q = 0; q < queries; q++){
+            // Impassable start tiles are allowed, like the knight standing on one.
+            starts[q] = random.nextInt(graph.size());
+            goals[q] = random.nextInt(graph.size());
+        }
+
+        double[] expected = new double[queries];
+        long dijkstraReached = 0;
+        long dijkstraStart = System.nanoTime();
+        for(int q = 0; q < queries; q++){
+            expected[q] = starts[q] == goals[q] ? 0 : dijkstra.search(starts[q], goals[q]);
+        }
+        double dijkstraMillis = (System.nanoTime() - dijkstraStart) / 1e6 / queries;
+        for(int q = 0; q < queries; q++){
+            if(starts[q] != goals[q]){
+                dijkstra.search(starts[q], goals[q]);
+                dijkstraReached += countReached(graph, dijkstra);
+            }
+        }
+
+        double[] actual = new double[queries];
+        long rsrSettled = 0;
+        long rsrStart = System.nanoTime();
+        for(int q = 0; q < queries; q++){
+            actual[q] = rsr.distance(starts[q], goals[q]);
+            rsrSettled += rsr.getSettledCount();
+        }
+        double rsrMillis = (System.nanoTime() - rsrStart) / 1e6 / queries;
+
+        for(int q = 0; q < queries; q++){
+            int[] path = rsr.findPath(starts[q], goals[q]);
+            double pathCost = path == null ? Double.POSITIVE_INFINITY : graph.pathCost(path);
+            if(!same(expected[q], actual[q]) || !same(expected[q], pathCost)){
+                throw new IllegalStateException(name + ": query " + q + " from " + starts[q] + " to " + goals[q]
+                        + " costs " + actual[q] + " (path " + pathCost + "), Dijkstra found " + expected[q]);
+            }
+        }
+        System.out.printf("%s %d %d %d %.1f %d %d %.3f %.3f %.2f%n", name, graph.size(), rsr.getRectangleCount(),
+                rsr.getPerimeterTiles(), rsr.getPreprocessingMillis(), dijkstraReached / queries, rsrSettled / queries,
+                dijkstraMillis, rsrMillis, dijkstraMillis / rsrMillis);
+    }
+
+    // Counts the tiles that have a cost after a Dijkstra search.
+    private static int countReached(GridGraph graph, GridDijkstra dijkstra){
+        int reached = 0;
+        for(int id = 0; id < graph.size(); id++){
+            if(dijkstra.cost(id) < Double.POSITIVE_INFINITY){
+                reached++;
+            }
+        }
+        return reached;
+    }
+
+    // Compares two path costs, allowing for the rounding of summing the moves in another order.
+    private static boolean same(double expected, double actual){
+        if(expected == Double.POSITIVE_INFINITY || actual == Double.POSITIVE_INFINITY){
+            return expected == actual;
+        }
+        return Math.abs(expected - actual) <= 1e-9 * Math.max(1, expected);
+    }
+}
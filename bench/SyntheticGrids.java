@@ -0,0 +1,247 @@
+// Mehmet Arda Kutlu
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates synthetic GridGraphs for the benchmarks. Grass moves cost 1-5 units and moves that touch
+ * sand cost 8-10 units (rounded to two decimals like travelCosts.txt), both directions of a move have
+ * the same cost and impassable tiles are spread randomly with the given density. The generated maps
+ * can be written in the mapData.txt, travelCosts.txt and objectives.txt format.
+ */
+public class SyntheticGrids {
+
+    /**
+     * Generates a map of a named kind: "open" (grass only), "maze" (corridors between impassable walls),
+     * "mixed" (grass and sand with a few obstacles), "dense" (grass and sand with many obstacles) or
+     * "uniform" (rectangular sand and obstacle patches with one cost per terrain).
+     * @param kind the kind of the map
+     * @param cols number of tile columns
+     * @param rows number of tile rows
+     * @param seed seed of the random generator
+     * @return the generated graph
+     */
+    public static GridGraph generate(String kind, int cols, int rows, long seed){
+        switch(kind){
+            case "open": return mixed(cols, rows, 0, 0, seed);
+            case "maze": return maze(cols, rows, seed);
+            case "mixed": return mixed(cols, rows, 0.1, 0.4, seed);
+            case "dense": return mixed(cols, rows, 0.3, 0.4, seed);
+            case "uniform": return uniform(cols, rows, cols * rows / 200, seed);
+            default: throw new IllegalArgumentException("Unknown map kind: " + kind);
+        }
+    }
+
+    /**
+     * Generates a map with randomly mixed grass, sand and impassable tiles.
+     * @param cols number of tile columns
+     * @param rows number of tile rows
+     * @param obstacleDensity probability of a tile being impassable
+     * @param sandDensity probability of a passable tile being sand
+     * @param seed seed of the random generator
+     * @return the generated graph
+     */
+    public static GridGraph mixed(int cols, int rows, double obstacleDensity, double sandDensity, long seed){
+        Random random = new Random(seed);
+        byte[] types = new byte[cols * rows];
+        for(int id = 0; id < types.length; id++){
+            double roll = random.nextDouble();
+            types[id] = (byte) (roll < obstacleDensity ? 2 : random.nextDouble() < sandDensity ? 1 : 0);
+        }
+        return withCosts(cols, rows, types, random);
+    }
+
+    /**
+     * Generates a maze: tiles with two even coordinates are rooms, the walls between them are opened
+     * by a randomized depth-first search, so every room is reachable through exactly one corridor.
+     * @param cols number of tile columns
+     * @param rows number of tile rows
+     * @param seed seed of the random generator
+     * @return the generated graph
+     */
+    public static GridGraph maze(int cols, int rows, long seed){
+        Random random = new Random(seed);
+        byte[] types = new byte[cols * rows];
+        Arrays.fill(types, (byte) 2);
+        int roomCols = (cols + 1) / 2;
+        int roomRows = (rows + 1) / 2;
+        boolean[] visited = new boolean[roomCols * roomRows];
+        int[] stack = new int[roomCols * roomRows];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        visited[0] = true;
+        types[0] = 0;
+        int[] order = {0, 1, 2, 3};
+        while(stackSize > 0){
+            int room = stack[stackSize - 1];
+            int roomCol = room / roomRows;
+            int roomRow = room % roomRows;
+            // Shuffle the directions and walk to the first unvisited neighbor room.
+            for(int k = 3; k > 0; k--){
+                int other = random.nextInt(k + 1);
+                int swap = order[k];
+                order[k] = order[other];
+                order[other] = swap;
+            }
+            boolean moved = false;
+            for(int direction : order){
+                int nextCol = roomCol + (direction == 0 ? -1 : direction == 1 ? 1 : 0);
+                int nextRow = roomRow + (direction == 2 ? -1 : direction == 3 ? 1 : 0);
+                if(nextCol < 0 || nextCol >= roomCols || nextRow < 0 || nextRow >= roomRows){
+                    continue;
+                }
+                int next = nextCol * roomRows + nextRow;
+                if(visited[next]){
+                    continue;
+                }
+                visited[next] = true;
+                // Open the wall between the rooms and the next room itself.
+                types[(roomCol + nextCol) * rows + (roomRow + nextRow)] = 0;
+                types[2 * nextCol * rows + 2 * nextRow] = (byte) (random.nextInt(5) == 0 ? 1 : 0);
+                stack[stackSize++] = next;
+                moved = true;
+                break;
+            }
+            if(!moved){
+                stackSize--;
+            }
+        }
+        return withCosts(cols, rows, types, random);
+    }
+
+    /**
+     * Generates a map of grass with rectangular sand and obstacle patches where every grass move costs
+     * 1 unit and every move that touches sand costs 9 units, so large regions have a uniform cost.
+     * @param cols number of tile columns
+     * @param rows number of tile rows
+     * @param patches number of sand and obstacle patches
+     * @param seed seed of the random generator
+     * @return the generated graph
+     */
+    public static GridGraph uniform(int cols, int rows, int patches, long seed){
+        Random random = new Random(seed);
+        byte[] types = new byte[cols * rows];
+        for(int patch = 0; patch < patches; patch++){
+            byte type = (byte) (random.nextInt(3) == 0 ? 2 : 1);
+            int left = random.nextInt(cols);
+            int top = random.nextInt(rows);
+            int right = Math.min(cols - 1, left + random.nextInt(Math.max(1, cols / 10)));
+            int bottom = Math.min(rows - 1, top + random.nextInt(Math.max(1, rows / 10)));
+            for(int col = left; col <= right; col++){
+                for(int row = top; row <= bottom; row++){
+                    types[col * rows + row] = type;
+                }
+            }
+        }
+        double[] costs = new double[cols * rows * 4];
+        Arrays.fill(costs, -1);
+        for(int id = 0; id < types.length; id++){
+            for(int direction = 0; direction < 4; direction++){
+                int col = id / rows + (direction == GridGraph.LEFT ? -1 : direction == GridGraph.RIGHT ? 1 : 0);
+                int row = id % rows + (direction == GridGraph.UP ? -1 : direction == GridGraph.DOWN ? 1 : 0);
+                if(col < 0 || col >= cols || row < 0 || row >= rows || types[col * rows + row] == 2){
+                    continue;
+                }
+                costs[id * 4 + direction] = types[id] == 1 || types[col * rows + row] == 1 ? 9 : 1;
+            }
+        }
+        return new GridGraph(cols, rows, types, costs, null);
+    }
+
+    /**
+     * Assigns random travel costs to every move between two neighboring tiles.
+     * @param cols number of tile columns
+     * @param rows number of tile rows
+     * @param types type of every tile indexed by id (col * rows + row)
+     * @param random the random generator
+     * @return the graph with the costs
+     */
+    public static GridGraph withCosts(int cols, int rows, byte[] types, Random random){
+        double[] costs = new double[cols * rows * 4];
+        Arrays.fill(costs, -1);
+        for(int i = 0; i < cols; i++){
+            for(int j = 0; j < rows; j++){
+                int id = i * rows + j;
+                // Every move is generated once, from its left or upper tile.
+                if(i < cols - 1){
+                    setCost(costs, types, id, id + rows, GridGraph.RIGHT, random);
+                }
+                if(j < rows - 1){
+                    setCost(costs, types, id, id + 1, GridGraph.DOWN, random);
+                }
+            }
+        }
+        return new GridGraph(cols, rows, types, costs, null);
+    }
+
+    // Sets the cost of the move between two tiles in both directions, skipping impassable targets.
+    private static void setCost(double[] costs, byte[] types, int from, int to, int direction, Random random){
+        boolean sand = types[from] == 1 || types[to] == 1;
+        double cost = sand ? 8 + random.nextInt(201) / 100.0 : 1 + random.nextInt(401) / 100.0;
+        if(types[to] != 2){
+            costs[from * 4 + direction] = cost;
+        }
+        if(types[from] != 2){
+            costs[to * 4 + GridGraph.opposite(direction)] = cost;
+        }
+    }
+
+    /**
+     * Picks random passable tiles, for example the knight and the coins of a generated map.
+     * @param graph the generated graph
+     * @param count number of tiles to pick
+     * @param seed seed of the random generator
+     * @return the ids of the picked tiles
+     */
+    public static int[] randomPassable(GridGraph graph, int count, long seed){
+        Random random = new Random(seed);
+        int[] picked = new int[count];
+        for(int k = 0; k < count; k++){
+            do{
+                picked[k] = random.nextInt(graph.size());
+            } while(graph.type(picked[k]) == 2);
+        }
+        return picked;
+    }
+
+    /**
+     * Writes a generated map as mapData.txt, travelCosts.txt and objectives.txt into a directory.
+     * @param graph the generated graph
+     * @param objectives tile ids of the knight (first entry) and the coins
+     * @param directory the directory of the files
+     * @throws IOException if writing fails
+     */
+    public static void writeFiles(GridGraph graph, int[] objectives, File directory) throws IOException {
+        directory.mkdirs();
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(new File(directory, "mapData.txt")))){
+            writer.write(graph.getCols() + " " + graph.getRows() + "\n");
+            for(int id = 0; id < graph.size(); id++){
+                writer.write(graph.col(id) + " " + graph.row(id) + " " + graph.type(id) + "\n");
+            }
+        }
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(new File(directory, "travelCosts.txt")))){
+            for(int id = 0; id < graph.size(); id++){
+                for(int direction : new int[]{GridGraph.RIGHT, GridGraph.DOWN}){
+                    int neighbor = graph.neighbor(id, direction);
+                    if(neighbor < 0){
+                        continue;
+                    }
+                    double cost = Math.max(graph.cost(id, direction), graph.cost(neighbor, GridGraph.opposite(direction)));
+                    if(cost >= 0){
+                        writer.write(String.format(java.util.Locale.US, "%d %d %d %d %.2f\n", graph.col(id), graph.row(id),
+                                graph.col(neighbor), graph.row(neighbor), cost));
+                    }
+                }
+            }
+        }
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(new File(directory, "objectives.txt")))){
+            for(int id : objectives){
+                writer.write(graph.col(id) + " " + graph.row(id) + "\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+// Mehmet Arda Kutlu
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Iterator;
+
+/**
+ * Writes the bonus output of a long walk on a generated map as text and as binary traces (with and
+ * without deflate), decodes the traces again and checks that the decoded text is the same as the text
+ * output. Reports the sizes and the encode and decode times (the encode times include generating the
+ * walk); run it with a small heap (for example -Xmx256m) to check that neither side keeps the route in
+ * memory.
+ * Usage: java TraceBenchmark [steps] [size]
+ */
+public class TraceBenchmark {
+    public static void main(String[] args) throws IOException {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        File mapDirectory = BenchMaps.prepare("mixed", size);
+        BenchMaps.Loaded loaded = BenchMaps.load(mapDirectory);
+        GridGraph graph = GridGraph.fromMap(loaded.map, loaded.pathFinder);
+        File directory = Files.createTempDirectory("goldtrail-trace").toFile();
+        File text = new File(directory, "bonus.txt");
+
+        long start = System.nanoTime();
+        AlgorithmRunner runner = new AlgorithmRunner(loaded.map, loaded.pathFinder, new Writer(text.getPath()));
+        runner.runBonus(walk(graph, loaded.map.knightIsOn(loaded.map.getKnight()), steps));
+        runner.writeTotal();
+        runner.closeBuffer();
+        System.out.printf("text: %.1fMB in %.2fs%n", text.length() / 1e6, (System.nanoTime() - start) / 1e9);
+
+        for(boolean deflate : new boolean[]{false, true}){
+            File trace = new File(directory, deflate ? "bonus.deflate.trace" : "bonus.trace");
+            start = System.nanoTime();
+            runner = new AlgorithmRunner(loaded.map, loaded.pathFinder, null);
+            runner.setTrace(new TraceEncoder(new BufferedOutputStream(new FileOutputStream(trace), 1 << 16), true, deflate, 4096));
+            runner.runBonus(walk(graph, loaded.map.knightIsOn(loaded.map.getKnight()), steps));
+            runner.writeTotal();
+            runner.closeBuffer();
+            double encodeSeconds = (System.nanoTime() - start) / 1e9;
+
+            File decoded = new File(directory, "decoded.txt");
+            start = System.nanoTime();
+            try(InputStream in = new BufferedInputStream(new FileInputStream(trace), 1 << 16);
+                BufferedWriter out = new BufferedWriter(new FileWriter(decoded), 1 << 16)){
+                new TraceDecoder(in, loaded.pathFinder).decode(out);
+            }
+            double decodeSeconds = (System.nanoTime() - start) / 1e9;
+            if(!sameLines(text, decoded)){
+                throw new IllegalStateException("Decoded trace differs from the text output");
+            }
+            System.out.printf("%s: %.3fMB (%.2f bits/step, %.0fx smaller), encode %.2fs, decode %.2fs, decoded text identical%n",
+                    deflate ? "deflate" : "binary", trace.length() / 1e6, trace.length() * 8.0 / steps,
+                    (double) text.length() / trace.length(), encodeSeconds, decodeSeconds);
+            decoded.delete();
+            trace.delete();
+        }
+        text.delete();
+        directory.delete();
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("heapUsed=%.1fMB%n", (runtime.totalMemory() - runtime.freeMemory()) / 1e6);
+    }
+
+    // Returns a walk of the given number of steps made of shortest paths between random tiles,
+    // generated while it is iterated so it is never stored.
+    private static Iterable<Tile> walk(GridGraph graph, Tile start, int steps){
+        return () -> new Iterator<Tile>() {
+            private final GridDijkstra dijkstra = new GridDijkstra(graph);
+            private int[] path = {graph.id(start)};
+            private int position;
+            private int produced;
+            private long seed = 1;
+
+            @Override
+            public boolean hasNext(){
+                return produced <= steps;
+            }
+
+            @Override
+            public Tile next(){
+                while(position >= path.length){
+                    int current = path[path.length - 1];
+                    int[] next = null;
+                    while(next == null){
+                        int target = SyntheticGrids.randomPassable(graph, 1, seed++)[0];
+                        dijkstra.search(current, target);
+                        next = target == current ? null : dijkstra.path(target);
+                    }
+                    path = next;
+                    position = 1;
+                }
+                produced++;
+                return graph.tile(path[position++]);
+            }
+        };
+    }
+
+    // Compares two text files line by line.
+    private static boolean sameLines(File expected, File actual) throws IOException {
+        try(BufferedReader first = new BufferedReader(new FileReader(expected));
+            BufferedReader second = new BufferedReader(new FileReader(actual))){
+            while(true){
+                String line = first.readLine();
+                if(line == null || !line.equals(second.readLine())){
+                    return line == null && second.readLine() == null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+// Mehmet Arda Kutlu
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Loads the travelCosts.txt of a generated map with the Scanner based PathFinder and with
+ * TravelCostLoader on different thread counts, checks that every edge slot gets the same cost and
+ * reports the load times and the speedup over one loader thread.
+ * Usage: java TravelCostBenchmark [size] [threads ...]
+ */
+public class TravelCostBenchmark {
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int[] threadCounts = {1, 2, 4, 8};
+        if(args.length > 1){
+            threadCounts = new int[args.length - 1];
+            for(int i = 1; i < args.length; i++){
+                threadCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        GridGraph graph = SyntheticGrids.generate("mixed", size, size, 1);
+        File directory = Files.createTempDirectory("goldtrail-costs").toFile();
+        SyntheticGrids.writeFiles(graph, new int[]{0}, directory);
+        File travelCosts = new File(directory, "travelCosts.txt");
+        System.out.printf("travelCosts.txt: %dx%d, %.1fMB, %d cores%n", size, size, travelCosts.length() / 1e6,
+                Runtime.getRuntime().availableProcessors());
+
+        long start = System.nanoTime();
+        PathFinder scanner = new PathFinder(travelCosts, false);
+        double scannerMillis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("Scanner: %.0fms%n", scannerMillis);
+
+        System.out.println("threads loader(ms) speedup vsScanner identical");
+        double oneThreadMillis = 0;
+        for(int threads : threadCounts){
+            double millis = Double.POSITIVE_INFINITY;
+            TravelCostLoader loader = null;
+            // The best of three runs hides JIT warm-up and the page cache.
+            for(int r = 0; r < 3; r++){
+                loader = new TravelCostLoader(travelCosts, size, size, false);
+                start = System.nanoTime();
+                loader.load(threads);
+                millis = Math.min(millis, (System.nanoTime() - start) / 1e6);
+            }
+            if(oneThreadMillis == 0){
+                oneThreadMillis = millis;
+            }
+            boolean identical = sameCosts(graph, scanner, loader.getCosts());
+            System.out.printf("%d %.0f %.2f %.1f %b%n", threads, millis, oneThreadMillis / millis,
+                    scannerMillis / millis, identical);
+            if(!identical){
+                throw new IllegalStateException("The loader disagrees with PathFinder on " + threads + " threads");
+            }
+        }
+        for(File file : directory.listFiles()){
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    // Checks every edge slot against the costs that the Scanner based PathFinder looks up.
+    private static boolean sameCosts(GridGraph graph, PathFinder scanner, double[] costs){
+        for(int id = 0; id < graph.size(); id++){
+            Tile from = new Tile(graph.col(id), graph.row(id), 0);
+            for(int direction = 0; direction < 4; direction++){
+                int neighbor = graph.neighbor(id, direction);
+                double expected = neighbor < 0 ? -1
+                        : scanner.costCalculator(from, new Tile(graph.col(neighbor), graph.row(neighbor), 0));
+                if(Double.doubleToLongBits(expected) != Double.doubleToLongBits(costs[id * 4 + direction])){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
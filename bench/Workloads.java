@@ -0,0 +1,280 @@
+// Mehmet Arda Kutlu
+
+import goldtrail.jmh.Workload;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The benchmarked operations of the project, created by name from the JMH benchmarks in goldtrail.jmh.
+ */
+public class Workloads {
+
+    /**
+     * One PathFinder.algorithm query, cycling through the knight-to-coin and coin-to-coin pairs of the map.
+     */
+    public static class PathFinderAlgorithm implements Workload {
+        private PathFinder pathFinder;
+        private List<Tile[]> pairs;
+        private int next;
+
+        public void setup(String map, int size, int count) throws IOException {
+            BenchMaps.Loaded loaded = BenchMaps.load(BenchMaps.prepare(map, size));
+            pathFinder = loaded.pathFinder;
+            pairs = objectivePairs(loaded.map);
+        }
+
+        public Object run(){
+            Tile[] pair = pairs.get(next);
+            next = (next + 1) % pairs.size();
+            return pathFinder.algorithm(pair[0], pair[1]);
+        }
+    }
+
+    /**
+     * The same queries as PathFinderAlgorithm on the flat GridGraph with GridDijkstra.
+     */
+    public static class GridDijkstraSearch implements Workload {
+        private GridDijkstra dijkstra;
+        private int[] objectives;
+        private int next;
+
+        public void setup(String map, int size, int count){
+            // Generated directly in memory, so the largest sizes do not need text files.
+            GridGraph graph = SyntheticGrids.generate(map, size, size, size);
+            dijkstra = new GridDijkstra(graph);
+            objectives = SyntheticGrids.randomPassable(graph, BenchMaps.GENERATED_COINS + 1, 7);
+        }
+
+        public Object run(){
+            int from = objectives[next];
+            int to = objectives[(next + 1) % objectives.length];
+            next = (next + 1) % objectives.length;
+            return dijkstra.search(from, to);
+        }
+    }
+
+    /**
+     * PathFinder.costCalculator for every move of the first tiles of the map.
+     */
+    public static class CostCalculator implements Workload {
+        private PathFinder pathFinder;
+        private Tile[] from;
+        private Tile[] to;
+
+        public void setup(String map, int size, int count) throws IOException {
+            BenchMaps.Loaded loaded = BenchMaps.load(BenchMaps.prepare(map, size));
+            pathFinder = loaded.pathFinder;
+            ArrayList<Tile> fromList = new ArrayList<>();
+            ArrayList<Tile> toList = new ArrayList<>();
+            for(Tile[] column : loaded.map.getTiles()){
+                for(Tile tile : column){
+                    for(Tile neighbor : tile.getAdjacentTiles()){
+                        if(fromList.size() < count){
+                            fromList.add(tile);
+                            toList.add(neighbor);
+                        }
+                    }
+                }
+            }
+            from = fromList.toArray(new Tile[0]);
+            to = toList.toArray(new Tile[0]);
+        }
+
+        public Object run(){
+            double sum = 0;
+            for(int i = 0; i < from.length; i++){
+                sum += pathFinder.costCalculator(from[i], to[i]);
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * ShortestRoute.findShortestTour from the knight over the first 'count' coins.
+     */
+    public static class ShortestTour implements Workload {
+        private PathFinder pathFinder;
+        private Tile start;
+        private List<Tile> objectives;
+
+        public void setup(String map, int size, int count) throws IOException {
+            BenchMaps.Loaded loaded = BenchMaps.load(BenchMaps.prepare(map, size));
+            pathFinder = loaded.pathFinder;
+            start = loaded.map.knightIsOn(loaded.map.getKnight());
+            objectives = new ArrayList<>();
+            for(Coin coin : loaded.map.getCoins()){
+                if(objectives.size() < count){
+                    objectives.add(loaded.map.coinIsOn(coin));
+                }
+            }
+        }
+
+        public Object run(){
+            return new ShortestRoute().findShortestTour(start, objectives, pathFinder);
+        }
+    }
+
+    /**
+     * Parses mapData.txt and objectives.txt with Reader and fills a Map.
+     */
+    public static class ReaderParsing implements Workload {
+        private File directory;
+
+        public void setup(String map, int size, int count) throws IOException {
+            directory = BenchMaps.prepare(map, size);
+        }
+
+        public Object run() throws IOException {
+            Reader reader = new Reader(new File(directory, "mapData.txt"), new File(directory, "objectives.txt"));
+            Map map = new Map(reader.readMap(), reader.readMap());
+            while(reader.isMapInfoFinished()){
+                int colNum = reader.readMap();
+                int rowNum = reader.readMap();
+                map.fillTiles(colNum, rowNum, new Tile(colNum, rowNum, reader.readMap()));
+            }
+            map.adjacentFinder();
+            while(reader.isObjectiveInfoFinished()){
+                map.addCoin(new Coin(reader.readObjectives(), reader.readObjectives()));
+            }
+            reader.closeScanners();
+            return map;
+        }
+    }
+
+    /**
+     * Parses travelCosts.txt with the PathFinder constructor.
+     */
+    public static class TravelCostsParsing implements Workload {
+        private File travelCosts;
+
+        public void setup(String map, int size, int count) throws IOException {
+            travelCosts = new File(BenchMaps.prepare(map, size), "travelCosts.txt");
+        }
+
+        public Object run() throws IOException {
+            return new PathFinder(travelCosts);
+        }
+    }
+
+    /**
+     * Writes 'count' step lines with Writer in the format of AlgorithmRunner.
+     */
+    public static class WriterOutput implements Workload {
+        private File output;
+        private int steps;
+
+        public void setup(String map, int size, int count) throws IOException {
+            output = File.createTempFile("goldtrail-output", ".txt");
+            output.deleteOnExit();
+            steps = count;
+        }
+
+        public Object run() throws IOException {
+            Writer writer = new Writer(output.getPath());
+            double totalCost = 0;
+            for(int step = 1; step <= steps; step++){
+                totalCost += 1.25;
+                writer.write(String.format("Step Count: %d, move to (%d, %d). Total Cost: %.2f.\n",
+                        step, step % 97, step % 89, totalCost));
+            }
+            writer.closeBuffer();
+            return output.length();
+        }
+    }
+
+    /**
+     * Fills the bitmask DP table of 'count' objectives with the kernel returned by DpKernel.create
+     * (or the scalar kernel if the map name is "scalar").
+     */
+    public static class DpFill implements Workload {
+        private DpKernel kernel;
+        private double[][] costTransposed;
+        private double[] dp;
+        private int[] parent;
+
+        public void setup(String map, int size, int count){
+            kernel = map.equals("scalar") ? new ScalarDpKernel() : DpKernel.create();
+            int n = count + 1;
+            java.util.Random random = new java.util.Random(count);
+            costTransposed = new double[n][n];
+            for(int i = 0; i < n; i++){
+                for(int j = 0; j < n; j++){
+                    costTransposed[j][i] = i == j ? Double.POSITIVE_INFINITY : 1 + random.nextInt(50000) / 100.0;
+                }
+            }
+            dp = new double[n << n];
+            parent = new int[n << n];
+        }
+
+        public Object run(){
+            kernel.fill(costTransposed, dp, parent);
+            return parent;
+        }
+    }
+
+    /**
+     * The queries of GridDijkstraSearch on the same map with tile ids in column-major order, and the
+     * base of the curve layouts below ('count' is the block side of the curve layouts).
+     */
+    public static class ColumnLayoutSearch implements Workload {
+        private GridDijkstra dijkstra;
+        private int[] objectives;
+        private int next;
+
+        public void setup(String map, int size, int count){
+            GridGraph generated = SyntheticGrids.generate(map, size, size, size);
+            GridGraph graph = layout(generated, Integer.numberOfTrailingZeros(Math.max(1, count)));
+            dijkstra = new GridDijkstra(graph);
+            objectives = SyntheticGrids.randomPassable(generated, BenchMaps.GENERATED_COINS + 1, 7);
+            for(int i = 0; i < objectives.length; i++){
+                objectives[i] = graph.id(generated.col(objectives[i]), generated.row(objectives[i]));
+            }
+        }
+
+        GridGraph layout(GridGraph graph, int blockShift){
+            return graph;
+        }
+
+        public Object run(){
+            int from = objectives[next];
+            int to = objectives[(next + 1) % objectives.length];
+            next = (next + 1) % objectives.length;
+            return dijkstra.search(from, to);
+        }
+    }
+
+    /**
+     * ColumnLayoutSearch with the blocks of the map numbered along a Morton curve.
+     */
+    public static class MortonLayoutSearch extends ColumnLayoutSearch {
+        GridGraph layout(GridGraph graph, int blockShift){
+            return CurveGridGraph.of(graph, false, blockShift);
+        }
+    }
+
+    /**
+     * ColumnLayoutSearch with the blocks of the map numbered along a Hilbert curve.
+     */
+    public static class HilbertLayoutSearch extends ColumnLayoutSearch {
+        GridGraph layout(GridGraph graph, int blockShift){
+            return CurveGridGraph.of(graph, true, blockShift);
+        }
+    }
+
+    // Knight-to-coin and coin-to-coin tile pairs of a loaded map.
+    private static List<Tile[]> objectivePairs(Map map){
+        List<Tile> objectives = new ArrayList<>();
+        objectives.add(map.knightIsOn(map.getKnight()));
+        for(Coin coin : map.getCoins()){
+            objectives.add(map.coinIsOn(coin));
+        }
+        List<Tile[]> pairs = new ArrayList<>();
+        for(int i = 0; i < objectives.size() - 1; i++){
+            pairs.add(new Tile[]{objectives.get(i), objectives.get(i + 1)});
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,36 @@
+// Mehmet Arda Kutlu
+
+package goldtrail.jmh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The scalar DP kernel against DpKernel.create (the Vector API kernel, the forks add the module).
+ * DpKernelBenchmark checks that both fill identical tables. 21 and 22 objectives need -p objectives=21,22
+ * and about 3 GB of heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules=jdk.incubator.vector"})
+public class DpKernelComparison {
+    @Param({"scalar", "auto"})
+    public String kernel;
+    @Param({"16", "18", "20"})
+    public int objectives;
+    private Workload fill;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        fill = Workload.create("DpFill", kernel, 0, objectives);
+    }
+
+    @Benchmark
+    public Object dpFill() throws Exception {
+        return fill.run();
+    }
+}
@@ -0,0 +1,49 @@
+// Mehmet Arda Kutlu
+
+package goldtrail.jmh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reader parsing of mapData.txt and objectives.txt, parsing of travelCosts.txt and Writer output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class InputOutputBenchmark {
+    @Param({"mixed"})
+    public String map;
+    @Param({"15", "100", "500"})
+    public int size;
+    private Workload reader;
+    private Workload travelCosts;
+    private Workload writer;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        reader = Workload.create("ReaderParsing", map, size, 0);
+        travelCosts = Workload.create("TravelCostsParsing", map, size, 0);
+        // As many output lines as there are tiles.
+        writer = Workload.create("WriterOutput", map, size, size * size);
+    }
+
+    @Benchmark
+    public Object readerParsing() throws Exception {
+        return reader.run();
+    }
+
+    @Benchmark
+    public Object travelCostsParsing() throws Exception {
+        return travelCosts.run();
+    }
+
+    @Benchmark
+    public Object writerOutput() throws Exception {
+        return writer.run();
+    }
+}
@@ -0,0 +1,34 @@
+// Mehmet Arda Kutlu
+
+package goldtrail.jmh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dijkstra on the flat GridGraph between the objectives of large generated maps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LargeGridBenchmark {
+    @Param({"open", "maze", "mixed", "dense"})
+    public String map;
+    @Param({"1000", "2000", "4000"})
+    public int size;
+    private Workload search;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        search = Workload.create("GridDijkstraSearch", map, size, 0);
+    }
+
+    @Benchmark
+    public Object gridDijkstra() throws Exception {
+        return search.run();
+    }
+}
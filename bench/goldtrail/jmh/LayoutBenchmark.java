@@ -0,0 +1,41 @@
+// Mehmet Arda Kutlu
+
+package goldtrail.jmh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GridDijkstra between the objectives of large generated maps with the tile ids in column-major order
+ * and along the blocked Morton and Hilbert curves of CurveGridGraph. Run it with -prof perfnorm (Linux
+ * perf) to compare the cache misses per search, for example:
+ * java -jar benchmarks/target/benchmarks.jar LayoutBenchmark -prof perfnorm
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LayoutBenchmark {
+    @Param({"Column", "Morton", "Hilbert"})
+    public String layout;
+    @Param({"mixed"})
+    public String map;
+    @Param({"2000", "4000"})
+    public int size;
+    @Param({"16"})
+    public int block;
+    private Workload search;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        search = Workload.create(layout + "LayoutSearch", map, size, block);
+    }
+
+    @Benchmark
+    public Object gridDijkstra() throws Exception {
+        return search.run();
+    }
+}
@@ -0,0 +1,28 @@
+// Mehmet Arda Kutlu
+
+package goldtrail.jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks matching the given pattern (all of them by default) with the GC profiler,
+ * so every result also reports the allocation rate (gc.alloc.rate.norm is bytes per operation),
+ * and writes the results to jmh-result.json.
+ * Usage: java -cp benchmarks/target/benchmarks.jar goldtrail.jmh.RunBenchmarks [pattern]
+ */
+public class RunBenchmarks {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "goldtrail.jmh.*")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result.json")
+                .build();
+        new Runner(options).run();
+    }
+}
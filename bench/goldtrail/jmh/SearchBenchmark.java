@@ -0,0 +1,47 @@
+// Mehmet Arda Kutlu
+
+package goldtrail.jmh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PathFinder.algorithm and PathFinder.costCalculator on generated maps loaded from text files.
+ * Larger sizes can be added with -p size=1000,2000 (the Tile and HashMap representation needs a
+ * big heap there, see LargeGridBenchmark for the flat graph up to 4000x4000).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmark {
+    @Param({"open", "maze", "mixed", "dense"})
+    public String map;
+    @Param({"15", "100", "500"})
+    public int size;
+    private Workload algorithm;
+    private Workload costCalculator;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        algorithm = Workload.create("PathFinderAlgorithm", map, size, 0);
+        costCalculator = Workload.create("CostCalculator", map, size, 1024);
+    }
+
+    @Benchmark
+    public Object pathFinderAlgorithm() throws Exception {
+        return algorithm.run();
+    }
+
+    /**
+     * Looks up the costs of 1024 moves.
+     */
+    @Benchmark
+    @OperationsPerInvocation(1024)
+    public Object costCalculator() throws Exception {
+        return costCalculator.run();
+    }
+}
@@ -0,0 +1,53 @@
+// Mehmet Arda Kutlu
+
+package goldtrail.jmh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hot paths on the inputs of testCases.zip (run from the repository root, or set goldtrail.testCases).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestCaseBenchmark {
+    @Param({"tc-5-5", "tc-15-15", "tc-20-20", "tc-Bonus"})
+    public String testCase;
+    private Workload algorithm;
+    private Workload tour;
+    private Workload reader;
+    private Workload travelCosts;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        algorithm = Workload.create("PathFinderAlgorithm", testCase, 0, 0);
+        tour = Workload.create("ShortestTour", testCase, 0, Integer.MAX_VALUE);
+        reader = Workload.create("ReaderParsing", testCase, 0, 0);
+        travelCosts = Workload.create("TravelCostsParsing", testCase, 0, 0);
+    }
+
+    @Benchmark
+    public Object pathFinderAlgorithm() throws Exception {
+        return algorithm.run();
+    }
+
+    @Benchmark
+    public Object findShortestTour() throws Exception {
+        return tour.run();
+    }
+
+    @Benchmark
+    public Object readerParsing() throws Exception {
+        return reader.run();
+    }
+
+    @Benchmark
+    public Object travelCostsParsing() throws Exception {
+        return travelCosts.run();
+    }
+}
@@ -0,0 +1,36 @@
+// Mehmet Arda Kutlu
+
+package goldtrail.jmh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShortestRoute.findShortestTour (distance matrix, DP and reconstruction) on generated maps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TourBenchmark {
+    @Param({"open", "maze", "mixed", "dense"})
+    public String map;
+    @Param({"15", "100"})
+    public int size;
+    @Param({"6", "12"})
+    public int objectives;
+    private Workload tour;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        tour = Workload.create("ShortestTour", map, size, objectives);
+    }
+
+    @Benchmark
+    public Object findShortestTour() throws Exception {
+        return tour.run();
+    }
+}
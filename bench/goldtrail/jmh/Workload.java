@@ -0,0 +1,42 @@
+// Mehmet Arda Kutlu
+
+package goldtrail.jmh;
+
+/**
+ * One benchmarked operation. JMH only runs benchmarks from named packages and named packages
+ * cannot refer to the classes of the project (they are in the default package), so the operations
+ * are implemented in the default package (see Workloads) and created by name through this interface.
+ */
+public interface Workload {
+    /**
+     * Prepares the inputs of the operation.
+     * @param map the map kind or test case name (see BenchMaps)
+     * @param size width and height of generated maps
+     * @param count operation specific count (objectives, steps, ...)
+     * @throws Exception if the inputs cannot be prepared
+     */
+    void setup(String map, int size, int count) throws Exception;
+
+    /**
+     * Runs the operation once.
+     * @return a result that is handed to the JMH blackhole
+     * @throws Exception if the operation fails
+     */
+    Object run() throws Exception;
+
+    /**
+     * Creates a workload of the default package by its nested class name and prepares it.
+     * @param name the simple name of the class nested in Workloads
+     * @param map the map kind or test case name
+     * @param size width and height of generated maps
+     * @param count operation specific count
+     * @return the prepared workload
+     * @throws Exception if the class cannot be created or the setup fails
+     */
+    static Workload create(String name, String map, int size, int count) throws Exception {
+        Workload workload = Class.forName("Workloads$" + name).asSubclass(Workload.class)
+                .getDeclaredConstructor().newInstance();
+        workload.setup(map, size, count);
+        return workload;
+    }
+}
@@ -1,31 +1,45 @@
 // Mehmet Arda Kutlu
 
-import java.awt.*;
 import java.io.IOException;
 import java.util.*;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 /**
  * Manages the execution of both the standard and bonus
- * pathfinding algorithms. Provides methods that track total cost and steps, handle
- * drawing and writing output to the output file.
+ * pathfinding algorithms. Provides methods that track total cost and steps, emit the steps
+ * for the animation and write output to the output file.
  */
 public class AlgorithmRunner {
     // Total number of steps the knight has taken.
     private int totalStep;
     // Total cost of all movements.
     private double totalCost;
+    // Total cost of all movements in centi-units, added up instead of totalCost with fixed-point costs.
+    private long totalFixedCost;
     // Map that stores the main elements (tiles, objectives, knight)
     private Map map;
     // PathFinder object to find the paths and calculate the costs.
     private PathFinder pathFinder;
     // Writer object that is used for writing output to the output file.
     private Writer writer;
+    // Binary trace that replaces the text output (null if the text output is written).
+    private TraceEncoder trace;
+    // Receives the steps of the knight for the animation (null if nothing is drawn).
+    private Consumer<StepEvent> stepListener;
+    // Number of threads that compute the legs of the standard run.
+    private int legThreads = 1;
+    // Component labels of the map that were loaded from a snapshot (null if they are computed).
+    private Reachability reachability;
 
     /**
      * Constructor of the class.
      * @param map the Map object that stores the environment
      * @param pathFinder the PathFinder to find paths and calculate movement costs
-     * @param writer the Writer to write the output to the output file
+     * @param writer the Writer to write the output to the output file (null if only a trace is written)
      */
     AlgorithmRunner(Map map, PathFinder pathFinder, Writer writer){
         this.map = map;
@@ -40,153 +54,334 @@ public class AlgorithmRunner {
      * @return true if all objectives are unreachable, false otherwise
      */
     public boolean isAllUnreachable(){
+        long phaseStart = Metrics.startPhase();
         for(Coin objective : map.getCoins()){
-            ArrayList<Tile> checkPath = pathFinder.algorithm(map.knightIsOn(map.getKnight()),
-                    map.coinIsOn(objective));
-            if(!checkPath.isEmpty()){
+            if(pathFinder.hasPath(map.knightIsOn(map.getKnight()), map.coinIsOn(objective))){
+                Metrics.endPhase("reachability", phaseStart);
                 return false;
             }
         }
+        Metrics.endPhase("reachability", phaseStart);
         return true;
     }
 
     /**
      * Runs the standard algorithm, which visits each objective one-by-one.
-     * @param willDraw whether the -draw flag is used
-     * @param isAllUnreachable whether all objectives are unreachable (used to skip drawing)
+     * The animation is not drawn here; the steps are sent to the step listener, if there is one.
      * @throws IOException if writing to output fails
      */
-    public void run(boolean willDraw, boolean isAllUnreachable) throws IOException {
+    public void run() throws IOException {
+        // The tile the knight is on. The knight of the map is left to the animation.
+        Tile knightTile = map.knightIsOn(map.getKnight());
+        // Start tiles and paths of the legs when they are computed in parallel.
+        Tile[] legStarts = null;
+        ArrayList<Future<ArrayList<Tile>>> legPaths = null;
+        ExecutorService legExecutor = null;
+        if(legThreads > 1){
+            boolean[] legReachable = new boolean[map.getCoins().size()];
+            long phaseStart = Metrics.startPhase();
+            legStarts = planLegStarts(knightTile, legReachable);
+            Metrics.endPhase("reachability", phaseStart);
+            legExecutor = Executors.newFixedThreadPool(legThreads);
+            legPaths = submitLegs(legStarts, legReachable, legExecutor);
+        }
+        long phaseStart = Metrics.startPhase();
+        long searchNanos;
+        try{
+            searchNanos = runLegs(knightTile, legStarts, legPaths);
+        }
+        finally{
+            if(legExecutor != null){
+                legExecutor.shutdownNow();
+            }
+        }
+        // The searches of the legs (or the waits for them) are a phase of their own.
+        if(Metrics.ENABLED){
+            Metrics.addPhase("legSearch", searchNanos);
+            Metrics.addPhase("output", System.nanoTime() - phaseStart - searchNanos);
+        }
+    }
+
+    // Walks the legs in order and writes their steps. Uses the paths computed in parallel if there are any.
+    // Returns the time spent getting the paths of the legs, 0 if metrics are disabled.
+    private long runLegs(Tile knightTile, Tile[] legStarts, ArrayList<Future<ArrayList<Tile>>> legPaths)
+            throws IOException {
+        long searchNanos = 0;
         for(int i = 0; i < map.getCoins().size(); i++){
             // Store cost of every individual path.
             double pathCost = 0;
-            // Find the shortest path for the current objective.
-            ArrayList<Tile> objectivePath = pathFinder.algorithm(map.knightIsOn(map.getKnight()),
-                    map.coinIsOn(map.getCoins().get(i)));
+            long pathFixedCost = 0;
+            // Find the shortest path for the current objective. A planned leg is only used if it starts
+            // where the knight really is, so the output is the same as the sequential run.
+            long searchStart = Metrics.startPhase();
+            ArrayList<Tile> objectivePath;
+            if(legPaths != null && legStarts[i] == knightTile){
+                objectivePath = awaitLeg(legPaths.get(i));
+            }
+            else{
+                objectivePath = pathFinder.algorithm(knightTile, map.coinIsOn(map.getCoins().get(i)));
+            }
+            if(Metrics.ENABLED){
+                searchNanos += System.nanoTime() - searchStart;
+            }
             // Skip the unreachable objectives.
             if(objectivePath.isEmpty()){
-                writer.write(String.format("Objective %d cannot be reached!\n", i + 1));
+                writeUnreachable(i + 1);
                 continue;
             }
             for(int j = 0; j < objectivePath.size() - 1; j++){
                 // Process every step in the path.
                 if(j == 0){
-                    writer.write(String.format("Starting position: (%d, %d)\n",objectivePath.get(j).getColumn(), objectivePath.get(j).getRow()));
+                    writeStart(objectivePath.get(j));
                 }
-                // Mark the current tile in the path.
-                objectivePath.get(j).setMarked(true);
-                // Move the knight.
-                map.getKnight().setColNum(objectivePath.get(j+1).getColumn());
-                map.getKnight().setRowNum(objectivePath.get(j+1).getRow());
+                // Move the knight and mark the tile it left.
+                knightTile = objectivePath.get(j+1);
+                emit(StepEvent.move(knightTile));
+                emit(StepEvent.mark(objectivePath.get(j), i));
                 // Increment the total step number.
                 totalStep += 1;
-                // Collect the coin as collected when the knight reaches it.
+                // Collect the coin when the knight reaches it.
                 if(j == objectivePath.size() - 2){
-                    map.getCoins().get(i).setCollected(true);
-                }
-                // Remove the marks of every tile in the path before the knight starts a new path.
-                if(j == objectivePath.size() - 2){
-                    for(Tile tile : objectivePath){
-                        tile.setMarked(false);
-                    }
+                    emit(StepEvent.coinCollected(i));
+                    emit(StepEvent.legFinished(i));
                 }
                 // Update the moving cost for the path.
-                pathCost += pathFinder.costCalculator(objectivePath.get(j),objectivePath.get(j+1));
-                writer.write(String.format("Step Count: %d, move to (%d, %d). Total Cost: %.2f.\n",
-                             j+1,objectivePath.get(j+1).getColumn(),objectivePath.get(j+1).getRow(), pathCost));
-                if(i == map.getCoins().size() - 1 && j == objectivePath.size() - 2){
+                if(pathFinder.isFixed()){
+                    pathFixedCost += pathFinder.fixedCost(objectivePath.get(j),objectivePath.get(j+1));
+                    writeStep(j+1, objectivePath.get(j+1), pathFixedCost);
                     continue;
                 }
-                // Draw the map if -draw flag is used and there are at least one reachable objective.
-                if(willDraw && !isAllUnreachable){
-                    map.draw();
-                    StdDraw.pause(200);
-                }
+                pathCost += pathFinder.costCalculator(objectivePath.get(j),objectivePath.get(j+1));
+                writeStep(j+1, objectivePath.get(j+1), pathCost);
             }
             // Update the total movement cost of every path.
             totalCost += pathCost;
-            writer.write(String.format("Objective %s reached!\n",i + 1));
-            if(!(i == map.getCoins().size() - 1)){
-                if(willDraw && !isAllUnreachable){
-                    StdDraw.pause(300); // Pause longer when the knight reaches an objective (coin).
-                }
+            totalFixedCost += pathFixedCost;
+            writeReached(i + 1);
+        }
+        return searchNanos;
+    }
+
+    /**
+     * Finds the start tile of every leg of the standard run without searching paths. A leg starts where
+     * the previous reachable coin was; unreachable coins leave the knight where it was.
+     * @param knightTile the tile the knight starts on
+     * @param legReachable filled with whether the coin of each leg can be reached from its start
+     * @return the start tile of each leg, indexed like the coins
+     */
+    public Tile[] planLegStarts(Tile knightTile, boolean[] legReachable){
+        Reachability reachability = this.reachability != null ? this.reachability
+                : new Reachability(GridGraph.fromMap(map, pathFinder));
+        Tile[] legStarts = new Tile[map.getCoins().size()];
+        for(int i = 0; i < legStarts.length; i++){
+            legStarts[i] = knightTile;
+            Tile coinTile = map.coinIsOn(map.getCoins().get(i));
+            legReachable[i] = reachability.canReach(knightTile, coinTile);
+            if(legReachable[i]){
+                knightTile = coinTile;
             }
         }
+        return legStarts;
+    }
+
+    // Starts the path searches of the reachable legs on the executor, the other legs get empty paths.
+    private ArrayList<Future<ArrayList<Tile>>> submitLegs(Tile[] legStarts, boolean[] legReachable,
+                                                          ExecutorService executor){
+        ArrayList<Future<ArrayList<Tile>>> legPaths = new ArrayList<>();
+        for(int i = 0; i < legStarts.length; i++){
+            if(!legReachable[i]){
+                legPaths.add(CompletableFuture.completedFuture(new ArrayList<>()));
+                continue;
+            }
+            Tile start = legStarts[i];
+            Tile objective = map.coinIsOn(map.getCoins().get(i));
+            legPaths.add(executor.submit(() -> pathFinder.algorithm(start, objective)));
+        }
+        return legPaths;
+    }
+
+    // Waits for the path of a leg.
+    private static ArrayList<Tile> awaitLeg(Future<ArrayList<Tile>> legPath){
+        try{
+            return legPath.get();
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a leg", e);
+        }
+        catch(ExecutionException e){
+            throw new IllegalStateException("Leg search failed", e.getCause());
+        }
     }
 
     /**
-     * Generates a random color used for different paths in bonus part.
-     * @return a randomly generated color
+     * Sets how many threads compute the legs of the standard run. With more than one thread every leg
+     * is searched up front in parallel and the output is still written in order.
+     * @param legThreads the number of threads, 1 for the sequential run
      */
-    public Color randomMarkColor(){
-        Random random = new Random();
-        return new Color(random.nextInt(256),random.nextInt(256),random.nextInt(256));
+    public void setLegThreads(int legThreads) {
+        this.legThreads = legThreads;
+    }
+
+    /**
+     * Sets the component labels that planLegStarts uses instead of labeling the map again.
+     * @param reachability the labels of the map of the run, or null to compute them
+     */
+    public void setReachability(Reachability reachability) {
+        this.reachability = reachability;
     }
 
     /**
      * Runs the bonus part, which there is a complete shortest path that includes all the objectives.
+     * The animation is not drawn here; the steps are sent to the step listener, if there is one.
+     * The path is only iterated once, so a streaming Tour is never materialized.
      * @param shortestPath the full path covering all objectives and return to the initial position
-     * @param willDraw whether the -draw flag is used
-     * @param isAllUnreachable whether all objectives are unreachable (used to skip drawing)
      * @throws IOException if writing to output fails
      */
-    public void runBonus(List<Tile> shortestPath, boolean willDraw, boolean isAllUnreachable) throws IOException {
-        Color tileMarkColor = null;
-        // Set an initial mark color.
-        if(willDraw && !isAllUnreachable){
-            tileMarkColor = randomMarkColor();
-        }
-        // ArrayList that stores remaining uncollected coins.
-        ArrayList<Integer> coinNums = new ArrayList<>();
-        for(int i = 0; i < map.getCoins().size(); i++){
-            coinNums.add(i);
+    public void runBonus(Iterable<Tile> shortestPath) throws IOException {
+        long phaseStart = Metrics.startPhase();
+        // Finds the uncollected coin on a tile in constant time.
+        CoinIndex coinIndex = new CoinIndex(map);
+        // Index of the current leg, increased whenever a coin is collected.
+        int leg = 0;
+        // A streaming tour searches its legs in hasNext, that time is a phase of its own.
+        long searchStart = Metrics.startPhase();
+        Iterator<Tile> steps = shortestPath.iterator();
+        Tile nextTile = steps.hasNext() ? steps.next() : null;
+        long searchNanos = Metrics.ENABLED ? System.nanoTime() - searchStart : 0;
+        // The trace needs the start tile to decode the moves, the text output does not show it.
+        if(trace != null && nextTile != null){
+            trace.start(nextTile);
         }
         // Iterate through the shortest path.
-        for(int i = 0; i < shortestPath.size() - 1; i++){
+        while(true){
+            searchStart = Metrics.startPhase();
+            boolean hasNext = steps.hasNext();
+            if(Metrics.ENABLED){
+                searchNanos += System.nanoTime() - searchStart;
+            }
+            if(!hasNext){
+                break;
+            }
             // Increment the total step number.
             totalStep += 1;
-            Tile currentTile = shortestPath.get(i);
-            Tile nextTile = shortestPath.get(i+1);
-            // Mark the tile that the knight passed.
-            map.getTiles()[currentTile.getColumn()][currentTile.getRow()].setMarked(true);
-            // Update the coordinates of the knight.
-            map.getKnight().setColNum(nextTile.getColumn());
-            map.getKnight().setRowNum(nextTile.getRow());
+            Tile currentTile = nextTile;
+            nextTile = steps.next();
+            // Move the knight and mark the tile it passed.
+            emit(StepEvent.move(nextTile));
+            emit(StepEvent.mark(currentTile, leg));
             // Update the total movement cost.
-            totalCost += pathFinder.costCalculator(currentTile, nextTile);
-            writer.write(String.format("Step Count: %d, move to (%d, %d). Total Cost: %.2f.\n",totalStep,
-                    nextTile.getColumn(),nextTile.getRow(),totalCost));
-            // Stores the index of the collected coin.
-            // Remains as -1 if the knight didn't collect a coin in the current step.
-            int remove = -1;
-            boolean isCoinCollected = false;
-            // Check whether a coin is collected.
-            for(int j : coinNums){
-                if(map.isKnightOnCoin(j)){
-                    writer.write(String.format("Objective %d reached!\n", j + 1));
-                    remove = j;
-                    if(willDraw && !isAllUnreachable){
-                        map.getCoins().get(j).setCollected(true);
-                        isCoinCollected = true;
-                    }
-                    break;
-                }
+            if(pathFinder.isFixed()){
+                totalFixedCost += pathFinder.fixedCost(currentTile, nextTile);
+                writeStep(totalStep, nextTile, totalFixedCost);
             }
-            // Remove the index of the collected coin.
-            if(remove >= 0){
-                coinNums.remove(Integer.valueOf(remove));
+            else{
+                totalCost += pathFinder.costCalculator(currentTile, nextTile);
+                writeStep(totalStep, nextTile, totalCost);
             }
-            // Draw the map if the -draw flag is used and there is a valid path.
-            if(willDraw && !isAllUnreachable){
-                currentTile.setMarked(true);
-                currentTile.setMarkColor(tileMarkColor);
-                map.drawBonus();
-                StdDraw.pause(200);
-                if(isCoinCollected){
-                    tileMarkColor = randomMarkColor(); // Change the mark color for every coin collection.
-                    StdDraw.pause(300); // Pause longer if a coin is collected.
-                }
+            // Check whether a coin is collected.
+            // Remains as -1 if the knight didn't collect a coin in the current step.
+            int collected = coinIndex.collect(nextTile);
+            if(collected >= 0){
+                writeReached(collected + 1);
+                emit(StepEvent.coinCollected(collected));
+                emit(StepEvent.legFinished(leg));
+                leg++;
+            }
+        }
+        if(Metrics.ENABLED){
+            Metrics.addPhase("legSearch", searchNanos);
+            Metrics.addPhase("output", System.nanoTime() - phaseStart - searchNanos);
+        }
+    }
+
+    /**
+     * Writes the last line of the output with the total step count and cost.
+     * @throws IOException if writing fails
+     */
+    public void writeTotal() throws IOException {
+        if(pathFinder.isFixed()){
+            if(trace != null){
+                trace.total(totalStep, totalFixedCost);
+                return;
             }
+            writer.write("Total Step: " + totalStep + ", Total Cost: " + FixedCost.format(totalFixedCost) + "\n");
+            return;
+        }
+        if(trace != null){
+            trace.total(totalStep, totalCost);
+            return;
+        }
+        writer.write(String.format("Total Step: %d, Total Cost: %.2f\n", totalStep, totalCost));
+    }
+
+    // Writes the start tile of a leg of the standard run.
+    private void writeStart(Tile tile) throws IOException {
+        if(trace != null){
+            trace.start(tile);
+            return;
+        }
+        writer.write(String.format("Starting position: (%d, %d)\n", tile.getColumn(), tile.getRow()));
+    }
+
+    // Writes a step with the step count and the cost shown in the output.
+    private void writeStep(int stepCount, Tile tile, double cost) throws IOException {
+        if(trace != null){
+            trace.step(tile, cost);
+            return;
+        }
+        writer.write(String.format("Step Count: %d, move to (%d, %d). Total Cost: %.2f.\n", stepCount,
+                tile.getColumn(), tile.getRow(), cost));
+    }
+
+    // Writes a step with a fixed-point cost, formatted without going through a double.
+    private void writeStep(int stepCount, Tile tile, long fixedCost) throws IOException {
+        if(trace != null){
+            trace.step(tile, fixedCost);
+            return;
+        }
+        writer.write("Step Count: " + stepCount + ", move to (" + tile.getColumn() + ", " + tile.getRow()
+                + "). Total Cost: " + FixedCost.format(fixedCost) + ".\n");
+    }
+
+    // Writes that an objective is reached.
+    private void writeReached(int objective) throws IOException {
+        if(trace != null){
+            trace.reached(objective);
+            return;
+        }
+        writer.write(String.format("Objective %d reached!\n", objective));
+    }
+
+    // Writes that an objective cannot be reached.
+    private void writeUnreachable(int objective) throws IOException {
+        if(trace != null){
+            trace.unreachable(objective);
+            return;
+        }
+        writer.write(String.format("Objective %d cannot be reached!\n", objective));
+    }
+
+    /**
+     * Sets the binary trace that is written instead of the text output.
+     * @param trace the trace encoder, or null to write the text output
+     */
+    public void setTrace(TraceEncoder trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Sets the listener that receives the steps of the knight, for example the animation player.
+     * @param stepListener the listener, or null to not emit steps
+     */
+    public void setStepListener(Consumer<StepEvent> stepListener) {
+        this.stepListener = stepListener;
+    }
+
+    // Sends an event to the step listener if there is one.
+    private void emit(StepEvent event){
+        if(stepListener != null){
+            stepListener.accept(event);
         }
     }
 
@@ -203,15 +398,20 @@ public class AlgorithmRunner {
      * @return the total cost value
      */
     public double getTotalCost() {
-        return totalCost;
+        return pathFinder.isFixed() ? FixedCost.toDouble(totalFixedCost) : totalCost;
     }
 
     /**
-     * closes the BufferedWriter of the Writer object to avoid unexpected behavior.
+     * closes the BufferedWriter of the Writer object (and the trace, if there is one) to avoid unexpected behavior.
      * @throws IOException if closing fails
      */
     public void closeBuffer() throws IOException {
-        writer.closeBuffer();
+        if(trace != null){
+            trace.close();
+        }
+        if(writer != null){
+            writer.closeBuffer();
+        }
     }
 
     /**
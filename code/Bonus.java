@@ -1,5 +1,6 @@
 // Mehmet Arda Kutlu
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -26,36 +27,71 @@ public class Bonus {
         argsIndex += 1;
         objectivesName = args[argsIndex];
 
-        // Create the Reader object.
-        Reader reader = new Reader(mapDataName, objectivesName);
-
-        // Create the Map object.
-        Map map = new Map(reader.readMap(), reader.readMap());
-
-        // Fill the tile array of the map with Tile objects using the information from the map data file.
-        while(reader.isMapInfoFinished()){
-            int colNum = reader.readMap();
-            int rowNum = reader.readMap();
-            map.fillTiles(colNum, rowNum ,new Tile(colNum, rowNum, reader.readMap()));
+        // Time the loading of the input files when metrics are enabled.
+        long phaseStart = Metrics.startPhase();
+
+        // With goldtrail.snapshot=file, the map, the travel costs, the reachability and the costs between the
+        // stops come from the snapshot an earlier run saved for the same input files, without parsing them.
+        SessionSnapshot snapshot = SessionSnapshot.fromProperties(mapDataName, travelCostsName, objectivesName);
+        Map map;
+        Knight knight;
+        PathFinder pathFinder;
+        if(snapshot != null && snapshot.isLoaded()){
+            map = snapshot.restoreMap();
+            knight = map.getKnight();
+            pathFinder = snapshot.restorePathFinder();
         }
-        map.adjacentFinder(); // Find adjacent tiles for every tile in the map.
-
-        // Create the Knight object.
-        Knight knight = new Knight(reader.readObjectives(), reader.readObjectives());
-        map.setKnight(knight);
-
-        // Crate the PathFinder object.
-        PathFinder pathFinder = new PathFinder(travelCostsName);
-
-        // Fill the coin array of the map with Coin objects using the information from the objectives file.
-        while(reader.isObjectiveInfoFinished()){
-            int objectiveCol = reader.readObjectives();
-            int objectiveRow = reader.readObjectives();
-            map.addCoin(new Coin(objectiveCol, objectiveRow));
+        else{
+            // Create the Reader object.
+            Reader reader = new Reader(mapDataName, objectivesName);
+
+            // Create the Map object.
+            map = new Map(reader.readMap(), reader.readMap());
+
+            // Fill the tile array of the map with Tile objects using the information from the map data file.
+            while(reader.isMapInfoFinished()){
+                int colNum = reader.readMap();
+                int rowNum = reader.readMap();
+                map.fillTiles(colNum, rowNum ,new Tile(colNum, rowNum, reader.readMap()));
+            }
+            map.adjacentFinder(); // Find adjacent tiles for every tile in the map.
+
+            // Create the Knight object.
+            knight = new Knight(reader.readObjectives(), reader.readObjectives());
+            map.setKnight(knight);
+
+            // Crate the PathFinder object.
+            // With goldtrail.loadThreads, travelCosts.txt is parsed on that many threads into flat cost arrays.
+            Integer loadThreads = Integer.getInteger("goldtrail.loadThreads");
+            pathFinder = loadThreads == null ? new PathFinder(travelCostsName)
+                    : new PathFinder(new File("misc/" + travelCostsName), map.getTiles().length, map.getTiles()[0].length, loadThreads);
+
+            // Fill the coin array of the map with Coin objects using the information from the objectives file.
+            while(reader.isObjectiveInfoFinished()){
+                int objectiveCol = reader.readObjectives();
+                int objectiveRow = reader.readObjectives();
+                map.addCoin(new Coin(objectiveCol, objectiveRow));
+            }
+
+            // Close the Scanner objects to avoid unexpected behavior.
+            reader.closeScanners();
+        }
+        Metrics.endPhase("mapLoad", phaseStart);
+        // A snapshot that was not loaded takes the loaded input, to be saved at the end.
+        if(snapshot != null){
+            if(!snapshot.isLoaded()){
+                snapshot.capture(map, pathFinder);
+            }
+            snapshot.explain(System.err);
+            pathFinder.setSnapshot(snapshot);
         }
 
-        // Close the Scanner objects to avoid unexpected behavior.
-        reader.closeScanners();
+        // Choose how the paths and the tour are found from the size of the input and the machine, and
+        // explain it on stderr. On small maps every tile-to-tile path can be computed up front, so the
+        // distance matrix is filled with lookups.
+        QueryPlanner planner = new QueryPlanner(map, pathFinder, true, snapshot);
+        planner.explain(System.err);
+        pathFinder.setDistanceTable(planner.buildDistanceTable());
 
         // Convert the 2D tile array to a list format that ShortestRoute can process.
         List<Tile> tileList = new ArrayList<>();
@@ -63,35 +99,112 @@ public class Bonus {
             tileList.add(map.coinIsOn(coin));
         }
 
-        // Create the ShotestRoute object.
-        ShortestRoute shortestRoute = new ShortestRoute();
         // Compute the shortest path that the knight can follow.
-        List<Tile> shortestPath = shortestRoute.findShortestTour(map.knightIsOn(knight),tileList,pathFinder);
+        // The tour yields its path leg by leg, so the full path is never stored.
+        // The DP table grows with 2^n, so with more coins than goldtrail.tsp.exactLimit (default 18) the
+        // coins are split into clusters that are solved exactly and stitched into one tour. Up to
+        // goldtrail.tsp.layeredLimit coins (off by default) the exact DP is solved layer by layer on disk
+        // instead, in goldtrail.tsp.layeredDir, and a killed run resumes from its last finished layer.
+        // With goldtrail.tsp.deadline (milliseconds), the exact and heuristic solvers race instead and the
+        // best tour found by the deadline is used if none of them proves its tour optimal in time.
+        // Between goldtrail.tsp.exactLimit and goldtrail.tsp.prunedLimit (default 24) coins, or when the
+        // table does not fit the heap, the DP only keeps the states that can beat a quick heuristic tour;
+        // if even those do not fit, the clustered planner is used.
+        Tour shortestPath = null;
+        int threads = Integer.getInteger("goldtrail.tsp.threads", Runtime.getRuntime().availableProcessors());
+        QueryPlanner.TourStrategy tourStrategy = planner.getTourStrategy();
+        if(tourStrategy == QueryPlanner.TourStrategy.PORTFOLIO){
+            SolverPortfolio solverPortfolio = new SolverPortfolio(Long.getLong("goldtrail.tsp.deadline"));
+            shortestPath = solverPortfolio.planShortestTour(map.knightIsOn(knight),tileList,pathFinder);
+            if(!solverPortfolio.isOptimal() && !shortestPath.isEmpty()){
+                System.err.printf("Deadline reached: tour from %s, at most %.2f%% above the optimum%n",
+                        solverPortfolio.getWinner(), solverPortfolio.getGap() * 100);
+            }
+        }
+        else if(tourStrategy == QueryPlanner.TourStrategy.LAYERED){
+            LayeredHeldKarp layeredHeldKarp = new LayeredHeldKarp(
+                    new File(System.getProperty("goldtrail.tsp.layeredDir", "out/heldkarp")), threads);
+            shortestPath = layeredHeldKarp.planShortestTour(map.knightIsOn(knight),tileList,pathFinder);
+        }
+        else if(tourStrategy == QueryPlanner.TourStrategy.PRUNED){
+            try{
+                PrunedHeldKarp prunedHeldKarp = new PrunedHeldKarp(planner.getMemoryBudget());
+                shortestPath = prunedHeldKarp.planShortestTour(map.knightIsOn(knight),tileList,pathFinder);
+            }
+            catch(IllegalStateException e){
+                System.err.println(e.getMessage() + ", using the clustered planner");
+            }
+        }
+        else if(tourStrategy == QueryPlanner.TourStrategy.EXACT){
+            // Create the ShotestRoute object.
+            ShortestRoute shortestRoute = new ShortestRoute();
+            shortestPath = shortestRoute.planShortestTour(map.knightIsOn(knight),tileList,pathFinder);
+        }
+        if(shortestPath == null){
+            ClusteredRoute clusteredRoute = new ClusteredRoute(GridGraph.fromMap(map, pathFinder), DpKernel.create(),
+                    Integer.getInteger("goldtrail.tsp.clusterSize", 12), threads);
+            shortestPath = clusteredRoute.planTour(map.knightIsOn(knight),tileList,pathFinder);
+        }
 
         // Store whether all the coins are unreachable.
         boolean isAllUnreachable = shortestPath.isEmpty();
 
         // Create AlgorithmRunner objective.
-        AlgorithmRunner algorithmRunner = new AlgorithmRunner(map,pathFinder,new Writer("out/bonus.txt"));
+        // With goldtrail.trace=binary or deflate, a binary trace is written to out/bonus.trace instead of bonus.txt.
+        TraceEncoder trace = TraceEncoder.fromProperties("out/bonus.trace", true);
+        AlgorithmRunner algorithmRunner = new AlgorithmRunner(map,pathFinder,trace == null ? new Writer("out/bonus.txt") : null);
+        algorithmRunner.setTrace(trace);
+        if(snapshot != null){
+            algorithmRunner.setReachability(snapshot.getReachability());
+        }
 
-        // Set the canvas if the -draw flag is used and there is at least one reachable objective (coin).
-        if(willDraw && !isAllUnreachable){
+        // Set the canvas and start the animation if the -draw flag is used and there is at least one
+        // reachable objective (coin). The animation plays on its own thread, so the output is not slowed down.
+        // With goldtrail.export, the frames are written as images instead of being drawn on the screen.
+        FrameExporter frameExporter = isAllUnreachable ? null : FrameExporter.fromProperties(map, true);
+        ReplayPlayer replayPlayer = null;
+        if(frameExporter != null){
+            algorithmRunner.setStepListener(frameExporter.getStepListener());
+            frameExporter.start();
+        }
+        else if(willDraw && !isAllUnreachable){
             int canvasWidth = map.getCanvasWidth();
             int canvasHeight = map.getCanvasHeight();
             StdDraw.setCanvasSize(canvasWidth, canvasHeight);
             StdDraw.setXscale(0.0, canvasWidth);
             StdDraw.setYscale(0.0, canvasHeight);
             StdDraw.enableDoubleBuffering();
-            map.draw();
-            StdDraw.pause(500);
+            replayPlayer = new ReplayPlayer(map, true);
+            algorithmRunner.setStepListener(replayPlayer);
+            replayPlayer.start();
         }
 
         // Run the algorithm (the bonus part instead of the regular one).
-        algorithmRunner.runBonus(shortestPath, willDraw, isAllUnreachable);
-        algorithmRunner.write(String.format("Total Step: %d, Total Cost: %.2f\n",
-                algorithmRunner.getTotalStep(), algorithmRunner.getTotalCost()));
+        algorithmRunner.runBonus(shortestPath);
+        algorithmRunner.writeTotal();
 
         // Close BufferedWriter object to avoid unexpected behavior.
         algorithmRunner.closeBuffer();
+        // Save the snapshot for the next run, with the costs this run computed.
+        if(snapshot != null){
+            snapshot.save(true);
+        }
+        // Write the metrics summary if metrics are enabled.
+        Metrics.writeSummary();
+
+        // Write the remaining frames if they are exported.
+        if(frameExporter != null){
+            frameExporter.finish();
+        }
+        // Let the animation play the remaining steps.
+        if(replayPlayer != null){
+            replayPlayer.finish();
+            try{
+                replayPlayer.await();
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
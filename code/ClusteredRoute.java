@@ -0,0 +1,661 @@
+// Mehmet Arda Kutlu
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plans the bonus tour when there are too many objectives for the bitmask DP of ShortestRoute. The
+ * objectives are split into clusters of at most maxClusterSize tiles with k-medoids on the path costs,
+ * the clusters are ordered into a tour from the start, and every cluster is then solved exactly with
+ * the DP as a path from the tile where the tour enters it to the tile where it leaves it. The cluster
+ * paths are solved in parallel and stitched in the cluster order. The stitching loses the most around
+ * the boundaries between the clusters, so the tiles around every boundary are reordered exactly with
+ * the DP, followed by a local search (2-opt and moving short segments) and DP windows over the whole
+ * tour, until none of them improves it. The result is a good tour but not necessarily the shortest one. planHeuristicTour gives the
+ * nearest-neighbor tour improved by the same local search, to compare the two.
+ */
+public class ClusteredRoute {
+    // Cost improvements smaller than this are ignored by the local search.
+    private static final double EPSILON = 1e-9;
+    // Largest number of iterations of k-medoids.
+    private static final int MAX_ITERATIONS = 20;
+    // The flat graph of the map, used to compute the path costs between the tiles.
+    private final GridGraph graph;
+    // Fills the DP tables of the clusters.
+    private final DpKernel dpKernel;
+    // Largest number of objectives in a cluster.
+    private final int maxClusterSize;
+    // Number of threads that compute the costs and solve the clusters.
+    private final int threads;
+    // Cost and cluster count of the last planned tour.
+    private double lastCost;
+    private int lastClusterCount;
+
+    /**
+     * Constructor of the class.
+     * @param graph the flat graph of the map
+     * @param dpKernel the kernel that fills the DP tables of the clusters
+     * @param maxClusterSize largest number of objectives in a cluster (the DP runs on one more tile)
+     * @param threads number of threads that compute the costs and solve the clusters
+     */
+    ClusteredRoute(GridGraph graph, DpKernel dpKernel, int maxClusterSize, int threads){
+        this.graph = graph;
+        this.dpKernel = dpKernel;
+        this.maxClusterSize = Math.max(1, maxClusterSize);
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Plans a tour that starts at the knight's position, visits all reachable objectives with the
+     * clusters solved exactly, and returns to the start.
+     * @param start the starting Tile (Knight's initial position)
+     * @param objectives list of objective tiles (coin positions)
+     * @param pathFinder the PathFinder that finds the path of each leg when the tour is iterated
+     * @return the tour, empty if there is no valid tour
+     */
+    public Tour planTour(Tile start, List<Tile> objectives, PathFinder pathFinder){
+        ArrayList<Tile> tiles = reachableTiles(start, objectives);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try{
+            double[][] cost = costMatrix(tiles, executor);
+            int[][] clusters = cluster(cost);
+            lastClusterCount = clusters.length;
+            int[] order = tiles.size() == 1 ? new int[]{0} : stitch(cost, clusters, executor);
+            // Stitching can fail when some tiles cannot reach each other (for example duplicate coins
+            // on one tile), the heuristic tour is used then.
+            if(cycleCost(cost, order) == Double.POSITIVE_INFINITY){
+                order = heuristicOrder(cost);
+            }
+            return toTour(tiles, cost, order, pathFinder);
+        }
+        finally{
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Plans a tour with the nearest-neighbor heuristic improved by 2-opt and segment moves on the whole
+     * tour, the baseline for planTour.
+     * @param start the starting Tile (Knight's initial position)
+     * @param objectives list of objective tiles (coin positions)
+     * @param pathFinder the PathFinder that finds the path of each leg when the tour is iterated
+     * @return the tour, empty if there is no valid tour
+     */
+    public Tour planHeuristicTour(Tile start, List<Tile> objectives, PathFinder pathFinder){
+        ArrayList<Tile> tiles = reachableTiles(start, objectives);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try{
+            double[][] cost = costMatrix(tiles, executor);
+            lastClusterCount = 0;
+            return toTour(tiles, cost, heuristicOrder(cost), pathFinder);
+        }
+        finally{
+            executor.shutdownNow();
+        }
+    }
+
+    // Returns the start followed by the objectives that can be reached from it, like ShortestRoute.
+    private ArrayList<Tile> reachableTiles(Tile start, List<Tile> objectives){
+        long phaseStart = Metrics.startPhase();
+        Reachability reachability = new Reachability(graph);
+        ArrayList<Tile> tiles = new ArrayList<>();
+        tiles.add(start);
+        for(Tile objective : objectives){
+            if(reachability.canReach(graph.id(start), graph.id(objective))){
+                tiles.add(objective);
+            }
+        }
+        Metrics.endPhase("reachability", phaseStart);
+        return tiles;
+    }
+
+    // Computes the path costs between every pair of tiles with one search per tile. Like in
+    // ShortestRoute, a tile cannot be reached from itself or from another tile at the same position.
+    private double[][] costMatrix(ArrayList<Tile> tiles, ExecutorService executor){
+        long phaseStart = Metrics.startPhase();
+        int n = tiles.size();
+        double[][] cost = new double[n][n];
+        int[] ids = new int[n];
+        for(int i = 0; i < n; i++){
+            ids[i] = graph.id(tiles.get(i));
+        }
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for(int worker = 0; worker < threads; worker++){
+            int first = worker;
+            tasks.add(() -> {
+                GridDijkstra dijkstra = new GridDijkstra(graph);
+                for(int i = first; i < n; i += threads){
+                    dijkstra.search(ids[i], -1);
+                    for(int j = 0; j < n; j++){
+                        cost[i][j] = ids[i] == ids[j] ? Double.POSITIVE_INFINITY : dijkstra.cost(ids[j]);
+                    }
+                }
+                return null;
+            });
+        }
+        await(executor, tasks);
+        Metrics.endPhase("distanceMatrix", phaseStart);
+        return cost;
+    }
+
+    // Splits the objectives (tiles 1 to n - 1) into clusters with capacitated k-medoids.
+    private int[][] cluster(double[][] cost){
+        long phaseStart = Metrics.startPhase();
+        int m = cost.length - 1;
+        int k = (m + maxClusterSize - 1) / maxClusterSize;
+        if(m == 0){
+            return new int[0][];
+        }
+        // Symmetric distance between two objectives (the cost there and back).
+        double[][] distance = new double[m + 1][m + 1];
+        for(int i = 1; i <= m; i++){
+            for(int j = 1; j <= m; j++){
+                distance[i][j] = i == j ? 0 : Math.min(cost[i][j] + cost[j][i], Double.MAX_VALUE);
+            }
+        }
+        // The first medoid is the objective farthest from the start, every next one is the objective
+        // farthest from the medoids chosen so far.
+        int[] medoids = new int[k];
+        double[] nearest = new double[m + 1];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        int farthest = 1;
+        for(int i = 2; i <= m; i++){
+            if(cost[0][i] > cost[0][farthest]){
+                farthest = i;
+            }
+        }
+        for(int c = 0; c < k; c++){
+            medoids[c] = farthest;
+            int next = 1;
+            for(int i = 1; i <= m; i++){
+                nearest[i] = Math.min(nearest[i], distance[farthest][i]);
+                if(nearest[i] > nearest[next]){
+                    next = i;
+                }
+            }
+            farthest = next;
+        }
+        int[] assignment = new int[m + 1];
+        for(int iteration = 0; iteration < MAX_ITERATIONS; iteration++){
+            assign(distance, medoids, assignment);
+            // Move every medoid to the member with the smallest distance sum to the other members.
+            boolean changed = false;
+            for(int c = 0; c < k; c++){
+                int best = medoids[c];
+                double bestSum = Double.POSITIVE_INFINITY;
+                for(int i = 1; i <= m; i++){
+                    if(assignment[i] != c){
+                        continue;
+                    }
+                    double sum = 0;
+                    for(int j = 1; j <= m; j++){
+                        if(assignment[j] == c){
+                            sum += distance[i][j];
+                        }
+                    }
+                    if(sum < bestSum){
+                        bestSum = sum;
+                        best = i;
+                    }
+                }
+                changed |= best != medoids[c];
+                medoids[c] = best;
+            }
+            if(!changed){
+                break;
+            }
+        }
+        assign(distance, medoids, assignment);
+        int[] sizes = new int[k];
+        for(int i = 1; i <= m; i++){
+            sizes[assignment[i]]++;
+        }
+        int[][] clusters = new int[k][];
+        for(int c = 0; c < k; c++){
+            clusters[c] = new int[sizes[c]];
+            sizes[c] = 0;
+        }
+        for(int i = 1; i <= m; i++){
+            clusters[assignment[i]][sizes[assignment[i]]++] = i;
+        }
+        Metrics.endPhase("clustering", phaseStart);
+        return clusters;
+    }
+
+    // Assigns every objective to a medoid without putting more than maxClusterSize objectives in a
+    // cluster: the (objective, medoid) pairs are taken from the closest one.
+    private void assign(double[][] distance, int[] medoids, int[] assignment){
+        int m = distance.length - 1;
+        int k = medoids.length;
+        double[] keys = new double[m * k];
+        Integer[] sorted = new Integer[m * k];
+        for(int i = 1; i <= m; i++){
+            for(int c = 0; c < k; c++){
+                int pair = (i - 1) * k + c;
+                keys[pair] = distance[medoids[c]][i];
+                sorted[pair] = pair;
+            }
+        }
+        Arrays.sort(sorted, (a, b) -> Double.compare(keys[a], keys[b]));
+        int[] sizes = new int[k];
+        Arrays.fill(assignment, -1);
+        // Medoids stay in their own cluster.
+        for(int c = 0; c < k; c++){
+            assignment[medoids[c]] = c;
+            sizes[c]++;
+        }
+        for(int pair : sorted){
+            int i = pair / k + 1;
+            int c = pair % k;
+            if(assignment[i] < 0 && sizes[c] < maxClusterSize){
+                assignment[i] = c;
+                sizes[c]++;
+            }
+        }
+    }
+
+    // Orders the clusters, picks where the tour enters and leaves each of them, solves the cluster
+    // paths in parallel and improves the tour around the cluster boundaries.
+    private int[] stitch(double[][] cost, int[][] clusters, ExecutorService executor){
+        long phaseStart = Metrics.startPhase();
+        int k = clusters.length;
+        // Cost between the start (0) and the clusters (1 to k): the cheapest move between their tiles.
+        double[][] clusterCost = new double[k + 1][k + 1];
+        for(int a = 0; a <= k; a++){
+            for(int b = 0; b <= k; b++){
+                clusterCost[a][b] = Double.POSITIVE_INFINITY;
+                if(a == b){
+                    continue;
+                }
+                for(int x : a == 0 ? new int[]{0} : clusters[a - 1]){
+                    for(int y : b == 0 ? new int[]{0} : clusters[b - 1]){
+                        clusterCost[a][b] = Math.min(clusterCost[a][b], cost[x][y]);
+                    }
+                }
+            }
+        }
+        int[] clusterOrder = k + 1 <= maxClusterSize + 1 ? exactOrder(clusterCost) : heuristicOrder(clusterCost);
+
+        // Entry and exit tile of each cluster in tour order; a cluster with more than one tile leaves
+        // from another tile than the one it is entered from.
+        int[] entry = new int[k];
+        int[] exit = new int[k];
+        for(int position = 0; position < k; position++){
+            int[] members = clusters[clusterOrder[position + 1] - 1];
+            if(position == 0){
+                entry[0] = cheapest(cost, new int[]{0}, members, -1)[1];
+            }
+            int[] next = position + 1 < k ? clusters[clusterOrder[position + 2] - 1] : new int[]{0};
+            int[] link = cheapest(cost, members, next, members.length > 1 ? entry[position] : -1);
+            exit[position] = link[0];
+            if(position + 1 < k){
+                entry[position + 1] = link[1];
+            }
+        }
+
+        // Solve the path of every cluster from its entry to its exit.
+        int[][] paths = new int[k][];
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for(int position = 0; position < k; position++){
+            int index = position;
+            int[] members = clusters[clusterOrder[position + 1] - 1];
+            tasks.add(() -> {
+                paths[index] = exactPath(cost, members, entry[index], exit[index]);
+                return null;
+            });
+        }
+        await(executor, tasks);
+
+        int[] order = new int[cost.length];
+        int length = 1;
+        int[] boundaries = new int[k];
+        for(int position = 0; position < k; position++){
+            boundaries[position] = length;
+            for(int tile : paths[position]){
+                order[length++] = tile;
+            }
+        }
+        Metrics.endPhase("clusterPaths", phaseStart);
+
+        phaseStart = Metrics.startPhase();
+        // Solve a window of tiles around every boundary exactly, then improve the whole tour with the
+        // cheaper moves and half-overlapping windows, until none of them changes the tour.
+        boolean improved = true;
+        while(improved){
+            improved = false;
+            for(int boundary : boundaries){
+                improved |= reoptimizeWindow(cost, order, boundary - maxClusterSize / 2);
+            }
+            // The closing move back to the start is a boundary as well.
+            improved |= reoptimizeWindow(cost, order, order.length - maxClusterSize / 2);
+            improved |= improve(cost, order, 1, order.length - 1);
+            for(int from = 1; from < order.length; from += maxClusterSize / 2){
+                improved |= reoptimizeWindow(cost, order, from);
+            }
+        }
+        Metrics.endPhase("localSearch", phaseStart);
+        return order;
+    }
+
+    // Replaces the order of the maxClusterSize tiles starting at the given position with the cheapest
+    // path between the tiles before and after them, found with the DP. Returns whether the tour changed.
+    private boolean reoptimizeWindow(double[][] cost, int[] order, int from){
+        int n = order.length;
+        int length = Math.min(maxClusterSize, n - 1);
+        from = Math.max(1, Math.min(from, n - length));
+        if(length < 2){
+            return false;
+        }
+        int before = order[from - 1];
+        int after = order[(from + length) % n];
+        double oldCost = cost[before][order[from]] + cost[order[from + length - 1]][after];
+        for(int t = from; t < from + length - 1; t++){
+            oldCost += cost[order[t]][order[t + 1]];
+        }
+        // Local index 0 is the tile before the window, the last one the tile after it. When the window
+        // covers every tile but the start, both are the start.
+        int[] local = new int[length + 2];
+        local[0] = before;
+        System.arraycopy(order, from, local, 1, length);
+        local[length + 1] = after;
+        int size = before == after ? length + 1 : length + 2;
+        double[][] costTransposed = new double[size][size];
+        for(int i = 0; i < size; i++){
+            for(int j = 0; j < size; j++){
+                costTransposed[j][i] = i == j ? Double.POSITIVE_INFINITY : cost[local[i]][local[j]];
+            }
+        }
+        double[] dp = new double[size << size];
+        int[] parent = new int[size << size];
+        dpKernel.fill(costTransposed, dp, parent);
+        int endState = (1 << size) - 1;
+        int last = size - 1;
+        double newCost = dp[endState * size + last];
+        if(before == after){
+            // Close the cycle back to the start from the best last tile.
+            newCost = Double.POSITIVE_INFINITY;
+            for(int i = 1; i < size; i++){
+                if(dp[endState * size + i] + cost[local[i]][before] < newCost){
+                    newCost = dp[endState * size + i] + cost[local[i]][before];
+                    last = i;
+                }
+            }
+        }
+        if(!(newCost < oldCost - EPSILON)){
+            return false;
+        }
+        int[] path = reconstruct(parent, size, last);
+        for(int t = 0; t < length; t++){
+            order[from + t] = local[path[t + 1]];
+        }
+        return true;
+    }
+
+    // Returns the cheapest move {from, to} from one group of tiles to another, skipping the excluded tile.
+    private static int[] cheapest(double[][] cost, int[] from, int[] to, int excluded){
+        int[] best = {from[0], to[0]};
+        double bestCost = Double.POSITIVE_INFINITY;
+        for(int x : from){
+            if(x == excluded){
+                continue;
+            }
+            for(int y : to){
+                if(cost[x][y] < bestCost){
+                    bestCost = cost[x][y];
+                    best = new int[]{x, y};
+                }
+            }
+        }
+        if(bestCost == Double.POSITIVE_INFINITY){
+            // Nothing can be reached, take any allowed tile; the tour cost shows the failure.
+            for(int x : from){
+                if(x != excluded){
+                    best[0] = x;
+                }
+            }
+        }
+        return best;
+    }
+
+    // Finds the cheapest path that starts at entry, visits all members and ends at exit with the DP.
+    private int[] exactPath(double[][] cost, int[] members, int entry, int exit){
+        int n = members.length;
+        if(n == 1){
+            return new int[]{entry};
+        }
+        // Local index 0 is the entry tile, the others follow in member order.
+        int[] local = new int[n];
+        local[0] = entry;
+        int count = 1;
+        int exitIndex = 0;
+        for(int member : members){
+            if(member != entry){
+                if(member == exit){
+                    exitIndex = count;
+                }
+                local[count++] = member;
+            }
+        }
+        double[][] costTransposed = new double[n][n];
+        for(int i = 0; i < n; i++){
+            for(int j = 0; j < n; j++){
+                costTransposed[j][i] = i == j ? Double.POSITIVE_INFINITY : cost[local[i]][local[j]];
+            }
+        }
+        double[] dp = new double[n << n];
+        int[] parent = new int[n << n];
+        dpKernel.fill(costTransposed, dp, parent);
+        int[] path = reconstruct(parent, n, exitIndex);
+        for(int i = 0; i < n; i++){
+            path[i] = local[path[i]];
+        }
+        return path;
+    }
+
+    // Finds the shortest tour over a small cost matrix with the DP, starting and ending at 0.
+    private int[] exactOrder(double[][] cost){
+        int n = cost.length;
+        if(n == 1){
+            return new int[]{0};
+        }
+        double[][] costTransposed = new double[n][n];
+        for(int i = 0; i < n; i++){
+            for(int j = 0; j < n; j++){
+                costTransposed[j][i] = i == j ? Double.POSITIVE_INFINITY : cost[i][j];
+            }
+        }
+        double[] dp = new double[n << n];
+        int[] parent = new int[n << n];
+        dpKernel.fill(costTransposed, dp, parent);
+        int endState = (1 << n) - 1;
+        int lastIndex = 1;
+        double minCost = Double.POSITIVE_INFINITY;
+        for(int i = 1; i < n; i++){
+            double tourCost = dp[endState * n + i] + cost[i][0];
+            if(tourCost < minCost){
+                minCost = tourCost;
+                lastIndex = i;
+            }
+        }
+        return reconstruct(parent, n, lastIndex);
+    }
+
+    // Rebuilds the order of the tiles from the parent table of the full state, from tile 0 to last.
+    private static int[] reconstruct(int[] parent, int n, int last){
+        int[] order = new int[n];
+        int state = (1 << n) - 1;
+        int current = last;
+        for(int position = n - 1; position > 0; position--){
+            order[position] = current;
+            int previous = parent[state * n + current];
+            state ^= 1 << current;
+            current = previous;
+        }
+        order[0] = 0;
+        return order;
+    }
+
+    // Builds the nearest-neighbor tour from the start and improves it with the local search.
+    private int[] heuristicOrder(double[][] cost){
+        int n = cost.length;
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        visited[0] = true;
+        for(int position = 1; position < n; position++){
+            int current = order[position - 1];
+            int next = -1;
+            for(int candidate = 1; candidate < n; candidate++){
+                if(!visited[candidate] && (next < 0 || cost[current][candidate] < cost[current][next])){
+                    next = candidate;
+                }
+            }
+            order[position] = next;
+            visited[next] = true;
+        }
+        improve(cost, order, 1, n - 1);
+        return order;
+    }
+
+    // Improves the tour with 2-opt (reversing a part) and or-opt (moving a part of 1 to 3 tiles) moves
+    // that only change positions lo to hi, until no move makes the tour cheaper. The start stays first.
+    // Returns whether the tour changed.
+    static boolean improve(double[][] cost, int[] order, int lo, int hi){
+        int n = order.length;
+        boolean changed = false;
+        if(hi - lo < 1){
+            return false;
+        }
+        // forward[t] and backward[t]: cost of walking order[0..t] forwards and backwards.
+        double[] forward = new double[n];
+        double[] backward = new double[n];
+        boolean improved = true;
+        while(improved){
+            improved = false;
+            for(int t = 1; t < n; t++){
+                forward[t] = forward[t - 1] + cost[order[t - 1]][order[t]];
+                backward[t] = backward[t - 1] + cost[order[t]][order[t - 1]];
+            }
+            // 2-opt: reverse order[i..j].
+            for(int i = lo; i < hi && !improved; i++){
+                for(int j = i + 1; j <= hi; j++){
+                    int before = order[i - 1];
+                    int after = order[(j + 1) % n];
+                    double oldCost = cost[before][order[i]] + (forward[j] - forward[i]) + cost[order[j]][after];
+                    double newCost = cost[before][order[j]] + (backward[j] - backward[i]) + cost[order[i]][after];
+                    if(newCost < oldCost - EPSILON){
+                        for(int a = i, b = j; a < b; a++, b--){
+                            int swap = order[a];
+                            order[a] = order[b];
+                            order[b] = swap;
+                        }
+                        improved = true;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+            // Or-opt: move order[i..i + length - 1] between order[p] and order[p + 1].
+            for(int length = 1; length <= 3 && !improved; length++){
+                for(int i = lo; i + length - 1 <= hi && !improved; i++){
+                    int first = order[i];
+                    int last = order[i + length - 1];
+                    int before = order[i - 1];
+                    int after = order[(i + length) % n];
+                    double removed = cost[before][after] - cost[before][first] - cost[last][after];
+                    for(int p = lo - 1; p <= hi; p++){
+                        if(p >= i - 1 && p <= i + length - 1){
+                            continue;
+                        }
+                        int x = order[p];
+                        int y = order[(p + 1) % n];
+                        double inserted = cost[x][first] + cost[last][y] - cost[x][y];
+                        if(removed + inserted < -EPSILON){
+                            moveSegment(order, i, length, p);
+                            improved = true;
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    // Moves order[i..i + length - 1] so that it follows the tile that is at position p now.
+    private static void moveSegment(int[] order, int i, int length, int p){
+        int[] segment = Arrays.copyOfRange(order, i, i + length);
+        if(p < i){
+            System.arraycopy(order, p + 1, order, p + 1 + length, i - p - 1);
+            System.arraycopy(segment, 0, order, p + 1, length);
+        }
+        else{
+            System.arraycopy(order, i + length, order, i, p - i - length + 1);
+            System.arraycopy(segment, 0, order, p - length + 1, length);
+        }
+    }
+
+    // Returns the cost of the tour in the given order, returning to the start.
+    static double cycleCost(double[][] cost, int[] order){
+        if(order.length == 1){
+            return 0;
+        }
+        double total = 0;
+        for(int t = 0; t < order.length; t++){
+            total += cost[order[t]][order[(t + 1) % order.length]];
+        }
+        return total;
+    }
+
+    // Turns an order of the tiles into a tour, or an empty tour if it is not valid.
+    private Tour toTour(ArrayList<Tile> tiles, double[][] cost, int[] order, PathFinder pathFinder){
+        lastCost = order.length == 1 ? Double.POSITIVE_INFINITY : cycleCost(cost, order);
+        if(lastCost == Double.POSITIVE_INFINITY){
+            return new Tour(new ArrayList<>(), pathFinder);
+        }
+        ArrayList<Tile> stops = new ArrayList<>();
+        for(int tile : order){
+            stops.add(tiles.get(tile));
+        }
+        stops.add(tiles.get(0));
+        return new Tour(stops, pathFinder);
+    }
+
+    // Runs the tasks on the executor and waits for all of them.
+    private static void await(ExecutorService executor, List<Callable<Void>> tasks){
+        try{
+            for(Future<Void> future : executor.invokeAll(tasks)){
+                future.get();
+            }
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while planning the tour", e);
+        }
+        catch(ExecutionException e){
+            throw new IllegalStateException("Planning the tour failed", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the cost of the last planned tour, computed from the path costs between its stops.
+     * @return the tour cost, or infinity if there was no valid tour
+     */
+    public double getLastCost() {
+        return lastCost;
+    }
+
+    /**
+     * Returns the number of clusters of the last planned tour.
+     * @return the cluster count, 0 for the heuristic tour
+     */
+    public int getLastClusterCount() {
+        return lastClusterCount;
+    }
+}
@@ -0,0 +1,50 @@
+// Mehmet Arda Kutlu
+
+import java.util.Arrays;
+
+/**
+ * Finds the uncollected coin on a tile in constant time. The coins of each tile are kept in a linked
+ * list ordered by coin index, so the coin with the smallest index is collected first, like the scan
+ * over the remaining coins did.
+ */
+public class CoinIndex {
+    // Number of tile rows, used to compute tile ids.
+    private final int rows;
+    // First uncollected coin on each tile (indexed by col * rows + row), -1 if there is none.
+    private final int[] firstCoin;
+    // Next coin on the same tile for each coin, -1 at the end of the list.
+    private final int[] nextCoin;
+
+    /**
+     * Constructor of the class. Indexes every coin of the map.
+     * @param map the map with the coins
+     */
+    CoinIndex(Map map){
+        Tile[][] tiles = map.getTiles();
+        this.rows = tiles[0].length;
+        this.firstCoin = new int[tiles.length * rows];
+        this.nextCoin = new int[map.getCoins().size()];
+        Arrays.fill(firstCoin, -1);
+        // Insert from the last coin so every list ends up in increasing order.
+        for(int i = map.getCoins().size() - 1; i >= 0; i--){
+            Coin coin = map.getCoins().get(i);
+            int id = coin.getColNum() * rows + coin.getRowNum();
+            nextCoin[i] = firstCoin[id];
+            firstCoin[id] = i;
+        }
+    }
+
+    /**
+     * Collects the uncollected coin with the smallest index on a tile.
+     * @param tile the tile the knight moved to
+     * @return the index of the collected coin, or -1 if there is no uncollected coin on the tile
+     */
+    public int collect(Tile tile){
+        int id = tile.getColumn() * rows + tile.getRow();
+        int coin = firstCoin[id];
+        if(coin >= 0){
+            firstCoin[id] = nextCoin[coin];
+        }
+        return coin;
+    }
+}
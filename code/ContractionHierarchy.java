@@ -0,0 +1,724 @@
+// Mehmet Arda Kutlu
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Contraction hierarchy over a GridGraph. Tiles are contracted one by one in the order of their edge
+ * difference (shortcuts added minus edges removed); whenever a shortest path runs through a contracted
+ * tile, a shortcut edge that remembers the tile in its middle is added between its neighbors. A query
+ * runs two Dijkstra searches that only go upwards in the contraction order (from the start and,
+ * backwards, from the objective) and unpacks the shortcuts of the best meeting point to tiles.
+ * Tiles that have no common neighbors are contracted together in parallel batches. The finished
+ * hierarchy can be saved to disk and loaded again, so it is built once per map.
+ */
+public class ContractionHierarchy implements PathEngine {
+    // Identifies the file format of saved hierarchies.
+    private static final int FILE_MAGIC = 0x43484B31;
+    // Number of settled tiles after which a witness search gives up (it then adds a shortcut to be safe).
+    private static final int WITNESS_SETTLE_LIMIT = 200;
+    // The flat graph of the map.
+    private final GridGraph graph;
+    // Contraction order of every tile, higher ranks were contracted later.
+    private int[] rank;
+    // Edges to tiles with a higher rank: upStart[v] .. upStart[v+1] - 1.
+    private int[] upStart;
+    private int[] upTarget;
+    private double[] upCost;
+    // The contracted tile in the middle of a shortcut, -1 for an original move.
+    private int[] upMiddle;
+    // Edges from tiles with a higher rank, stored at their lower end: downStart[v] .. downStart[v+1] - 1.
+    private int[] downStart;
+    private int[] downSource;
+    private double[] downCost;
+    private int[] downMiddle;
+    // Time spent contracting the graph (0 if it was loaded from a file).
+    private long preprocessingNanos;
+    // Reused state of the forward and the backward search.
+    private final SearchState forward;
+    private final SearchState backward;
+    // Meeting tile of the last search.
+    private int meeting;
+
+    /**
+     * Constructor of the class. Contracts every tile of the graph.
+     * @param graph the flat graph of the map
+     */
+    ContractionHierarchy(GridGraph graph){
+        this.graph = graph;
+        long startTime = System.nanoTime();
+        new Builder(graph).contract();
+        preprocessingNanos = System.nanoTime() - startTime;
+        forward = new SearchState(graph.size());
+        backward = new SearchState(graph.size());
+    }
+
+    // Constructor used by load, the arrays are filled from the file.
+    private ContractionHierarchy(GridGraph graph, DataInputStream input) throws IOException {
+        this.graph = graph;
+        rank = readInts(input);
+        upStart = readInts(input);
+        upTarget = readInts(input);
+        upCost = readDoubles(input);
+        upMiddle = readInts(input);
+        downStart = readInts(input);
+        downSource = readInts(input);
+        downCost = readDoubles(input);
+        downMiddle = readInts(input);
+        forward = new SearchState(graph.size());
+        backward = new SearchState(graph.size());
+    }
+
+    /**
+     * Computes the shortest path between two tiles.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @return an ArrayList of tiles representing the shortest path (from start to end),
+     *         or an empty list if the objective is unreachable
+     */
+    public ArrayList<Tile> algorithm(Tile start, Tile objective){
+        // Same as PathFinder.algorithm, a tile is not considered reachable from itself.
+        if(start.isEqual(objective)){
+            return new ArrayList<>();
+        }
+        return graph.toTiles(findPath(graph.id(start), graph.id(objective)));
+    }
+
+    /**
+     * Computes the cost of the shortest path between two tiles.
+     * @param start the id of the starting tile
+     * @param goal the id of the target tile
+     * @return the path cost, or infinity if the goal is unreachable
+     */
+    public double distance(int start, int goal){
+        return search(start, goal) < 0 ? Double.POSITIVE_INFINITY : forward.cost(meeting) + backward.cost(meeting);
+    }
+
+    /**
+     * Computes the shortest path between two tiles and unpacks its shortcuts.
+     * @param start the id of the starting tile
+     * @param goal the id of the target tile
+     * @return the tile ids of the path from start to goal, or null if the goal is unreachable
+     */
+    public int[] findPath(int start, int goal){
+        if(search(start, goal) < 0){
+            return null;
+        }
+        IntList path = new IntList();
+        path.add(start);
+        // Upward edges of the forward search, collected from the meeting tile back to the start.
+        IntList upward = new IntList();
+        for(int tile = meeting; tile != start; tile = forward.previous[tile]){
+            upward.add(tile);
+        }
+        int from = start;
+        for(int k = upward.size() - 1; k >= 0; k--){
+            int to = upward.get(k);
+            unpack(from, to, forward.middle[to], path);
+            from = to;
+        }
+        // Downward edges of the backward search, from the meeting tile to the goal.
+        for(int tile = meeting; tile != goal; tile = backward.previous[tile]){
+            unpack(tile, backward.previous[tile], backward.middle[tile], path);
+        }
+        return path.toArray();
+    }
+
+    // Runs the bidirectional upward search. Returns the meeting tile, or -1 if the goal is unreachable.
+    private int search(int start, int goal){
+        forward.reset(start);
+        backward.reset(goal);
+        double best = Double.POSITIVE_INFINITY;
+        meeting = -1;
+        if(start == goal){
+            meeting = start;
+            return start;
+        }
+        while(!forward.queue.isEmpty() || !backward.queue.isEmpty()){
+            double forwardKey = forward.queue.isEmpty() ? Double.POSITIVE_INFINITY : forward.queue.peekKey();
+            double backwardKey = backward.queue.isEmpty() ? Double.POSITIVE_INFINITY : backward.queue.peekKey();
+            // Neither search can find a cheaper meeting point anymore.
+            if(Math.min(forwardKey, backwardKey) >= best){
+                break;
+            }
+            boolean isForward = forwardKey <= backwardKey;
+            SearchState state = isForward ? forward : backward;
+            SearchState other = isForward ? backward : forward;
+            int tile = state.queue.peekValue();
+            double cost = state.queue.peekKey();
+            state.queue.pop();
+            if(cost > state.cost(tile)){
+                continue;
+            }
+            double total = cost + other.cost(tile);
+            if(total < best){
+                best = total;
+                meeting = tile;
+            }
+            if(isForward){
+                for(int e = upStart[tile]; e < upStart[tile + 1]; e++){
+                    state.relax(tile, upTarget[e], cost + upCost[e], upMiddle[e]);
+                }
+            }
+            else{
+                for(int e = downStart[tile]; e < downStart[tile + 1]; e++){
+                    state.relax(tile, downSource[e], cost + downCost[e], downMiddle[e]);
+                }
+            }
+        }
+        return meeting;
+    }
+
+    // Appends the tiles of the edge from -> to (without from) to the path, expanding shortcuts.
+    private void unpack(int from, int to, int middle, IntList path){
+        // Explicit stack of pending edges, the top is the next edge to emit.
+        IntList stack = new IntList();
+        stack.add(from);
+        stack.add(to);
+        stack.add(middle);
+        while(stack.size() > 0){
+            int edgeMiddle = stack.pop();
+            int edgeTo = stack.pop();
+            int edgeFrom = stack.pop();
+            if(edgeMiddle < 0){
+                path.add(edgeTo);
+                continue;
+            }
+            // The second half is pushed first, so the first half is emitted first.
+            stack.add(edgeMiddle);
+            stack.add(edgeTo);
+            stack.add(middleOf(edgeMiddle, edgeTo));
+            stack.add(edgeFrom);
+            stack.add(edgeMiddle);
+            stack.add(middleOf(edgeFrom, edgeMiddle));
+        }
+    }
+
+    // Finds the middle tile of the edge from -> to in the hierarchy.
+    private int middleOf(int from, int to){
+        if(rank[from] < rank[to]){
+            for(int e = upStart[from]; e < upStart[from + 1]; e++){
+                if(upTarget[e] == to){
+                    return upMiddle[e];
+                }
+            }
+        }
+        else{
+            for(int e = downStart[to]; e < downStart[to + 1]; e++){
+                if(downSource[e] == from){
+                    return downMiddle[e];
+                }
+            }
+        }
+        throw new IllegalStateException("Missing hierarchy edge " + from + " -> " + to);
+    }
+
+    /**
+     * Returns the time spent contracting the graph.
+     * @return the preprocessing time in milliseconds, 0 if the hierarchy was loaded from a file
+     */
+    public double getPreprocessingMillis() {
+        return preprocessingNanos / 1e6;
+    }
+
+    /**
+     * Returns the number of edges (original moves and shortcuts) in the hierarchy.
+     * @return the edge count
+     */
+    public int getEdgeCount() {
+        return upTarget.length + downSource.length;
+    }
+
+    /**
+     * Saves the hierarchy to a file so that it does not have to be rebuilt for the same map.
+     * @param file the file to write
+     * @throws IOException if writing fails
+     */
+    public void save(File file) throws IOException {
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+            output.writeInt(FILE_MAGIC);
+            output.writeInt(graph.getCols());
+            output.writeInt(graph.getRows());
+            output.writeLong(costHash(graph));
+            writeInts(output, rank);
+            writeInts(output, upStart);
+            writeInts(output, upTarget);
+            writeDoubles(output, upCost);
+            writeInts(output, upMiddle);
+            writeInts(output, downStart);
+            writeInts(output, downSource);
+            writeDoubles(output, downCost);
+            writeInts(output, downMiddle);
+        }
+    }
+
+    /**
+     * Loads a hierarchy saved by save.
+     * @param file the file to read
+     * @param graph the flat graph of the same map
+     * @return the loaded hierarchy
+     * @throws IOException if reading fails or the file was saved for a different map
+     */
+    public static ContractionHierarchy load(File file, GridGraph graph) throws IOException {
+        try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            if(input.readInt() != FILE_MAGIC){
+                throw new IOException(file + " is not a contraction hierarchy file");
+            }
+            if(input.readInt() != graph.getCols() || input.readInt() != graph.getRows()
+                    || input.readLong() != costHash(graph)){
+                throw new IOException(file + " was built for a different map");
+            }
+            return new ContractionHierarchy(graph, input);
+        }
+    }
+
+    // Hash of the terrain and every edge cost, used to match saved hierarchies to their map.
+    private static long costHash(GridGraph graph){
+        long hash = 17;
+        for(int id = 0; id < graph.size(); id++){
+            hash = hash * 31 + graph.type(id);
+            for(int direction = 0; direction < 4; direction++){
+                hash = hash * 31 + Double.doubleToLongBits(graph.cost(id, direction));
+            }
+        }
+        return hash;
+    }
+
+    private static void writeInts(DataOutputStream output, int[] values) throws IOException {
+        output.writeInt(values.length);
+        for(int value : values){
+            output.writeInt(value);
+        }
+    }
+
+    private static void writeDoubles(DataOutputStream output, double[] values) throws IOException {
+        output.writeInt(values.length);
+        for(double value : values){
+            output.writeDouble(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream input) throws IOException {
+        int[] values = new int[input.readInt()];
+        for(int i = 0; i < values.length; i++){
+            values[i] = input.readInt();
+        }
+        return values;
+    }
+
+    private static double[] readDoubles(DataInputStream input) throws IOException {
+        double[] values = new double[input.readInt()];
+        for(int i = 0; i < values.length; i++){
+            values[i] = input.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * State of one direction of the bidirectional query.
+     */
+    private static class SearchState {
+        private final double[] currentCost;
+        // The tile this tile was reached from, and the middle tile of the edge that was used.
+        private final int[] previous;
+        private final int[] middle;
+        private final int[] stamp;
+        private int currentStamp;
+        private final MinHeap queue = new MinHeap(64);
+
+        SearchState(int size){
+            currentCost = new double[size];
+            previous = new int[size];
+            middle = new int[size];
+            stamp = new int[size];
+        }
+
+        void reset(int source){
+            currentStamp++;
+            queue.clear();
+            stamp[source] = currentStamp;
+            currentCost[source] = 0;
+            previous[source] = -1;
+            queue.push(0, source);
+        }
+
+        double cost(int tile){
+            return stamp[tile] == currentStamp ? currentCost[tile] : Double.POSITIVE_INFINITY;
+        }
+
+        void relax(int from, int to, double newCost, int edgeMiddle){
+            if(stamp[to] != currentStamp || newCost < currentCost[to]){
+                stamp[to] = currentStamp;
+                currentCost[to] = newCost;
+                previous[to] = from;
+                middle[to] = edgeMiddle;
+                queue.push(newCost, to);
+            }
+        }
+    }
+
+    /**
+     * Growable list of ints.
+     */
+    private static class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value){
+            if(size == values.length){
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index){
+            return values[index];
+        }
+
+        int pop(){
+            return values[--size];
+        }
+
+        int size(){
+            return size;
+        }
+
+        int[] toArray(){
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Contracts the graph and fills the arrays of the hierarchy.
+     */
+    private class Builder {
+        private final int size;
+        // Remaining edges of every tile while contracting: out-edges and in-edges with their middles.
+        private final int[][] outTarget;
+        private final double[][] outCost;
+        private final int[][] outMiddle;
+        private final int[] outSize;
+        private final int[][] inSource;
+        private final double[][] inCost;
+        private final int[][] inMiddle;
+        private final int[] inSize;
+        private final boolean[] contracted;
+        // Priority (edge difference plus contracted neighbors) and contracted neighbor count of each tile.
+        private final int[] priority;
+        private final int[] deletedNeighbors;
+        // Each worker thread keeps its own witness search arrays.
+        private final ThreadLocal<WitnessSearch> witness;
+
+        Builder(GridGraph graph){
+            size = graph.size();
+            outTarget = new int[size][];
+            outCost = new double[size][];
+            outMiddle = new int[size][];
+            outSize = new int[size];
+            inSource = new int[size][];
+            inCost = new double[size][];
+            inMiddle = new int[size][];
+            inSize = new int[size];
+            contracted = new boolean[size];
+            priority = new int[size];
+            deletedNeighbors = new int[size];
+            witness = ThreadLocal.withInitial(() -> new WitnessSearch(size));
+            for(int id = 0; id < size; id++){
+                outTarget[id] = new int[4];
+                outCost[id] = new double[4];
+                outMiddle[id] = new int[4];
+                inSource[id] = new int[4];
+                inCost[id] = new double[4];
+                inMiddle[id] = new int[4];
+            }
+            for(int id = 0; id < size; id++){
+                for(int direction = 0; direction < 4; direction++){
+                    if(graph.cost(id, direction) >= 0){
+                        addEdge(id, graph.neighbor(id, direction), graph.cost(id, direction), -1);
+                    }
+                }
+            }
+        }
+
+        // Adds the edge from -> to, or lowers the cost of an existing one.
+        private void addEdge(int from, int to, double cost, int middle){
+            for(int e = 0; e < outSize[from]; e++){
+                if(outTarget[from][e] == to){
+                    if(cost < outCost[from][e]){
+                        outCost[from][e] = cost;
+                        outMiddle[from][e] = middle;
+                        for(int f = 0; f < inSize[to]; f++){
+                            if(inSource[to][f] == from){
+                                inCost[to][f] = cost;
+                                inMiddle[to][f] = middle;
+                            }
+                        }
+                    }
+                    return;
+                }
+            }
+            if(outSize[from] == outTarget[from].length){
+                outTarget[from] = Arrays.copyOf(outTarget[from], outSize[from] * 2);
+                outCost[from] = Arrays.copyOf(outCost[from], outSize[from] * 2);
+                outMiddle[from] = Arrays.copyOf(outMiddle[from], outSize[from] * 2);
+            }
+            outTarget[from][outSize[from]] = to;
+            outCost[from][outSize[from]] = cost;
+            outMiddle[from][outSize[from]++] = middle;
+            if(inSize[to] == inSource[to].length){
+                inSource[to] = Arrays.copyOf(inSource[to], inSize[to] * 2);
+                inCost[to] = Arrays.copyOf(inCost[to], inSize[to] * 2);
+                inMiddle[to] = Arrays.copyOf(inMiddle[to], inSize[to] * 2);
+            }
+            inSource[to][inSize[to]] = from;
+            inCost[to][inSize[to]] = cost;
+            inMiddle[to][inSize[to]++] = middle;
+        }
+
+        void contract(){
+            IntStream.range(0, size).parallel().forEach(v -> priority[v] = computePriority(v));
+            rank = new int[size];
+            // Upward edges in the order the tiles are contracted, copied to the final arrays at the end.
+            int[][] upEdges = new int[size][];
+            double[][] upCosts = new double[size][];
+            int[][] downEdges = new int[size][];
+            double[][] downCosts = new double[size][];
+            int[] remaining = IntStream.range(0, size).toArray();
+            int remainingCount = size;
+            int nextRank = 0;
+            while(remainingCount > 0){
+                // Tiles whose priority is smaller than every remaining neighbor's can be contracted together.
+                final int[] candidates = remaining;
+                int[] batch = IntStream.range(0, remainingCount).parallel().map(k -> candidates[k])
+                        .filter(this::isLocalMinimum).toArray();
+                for(int v : batch){
+                    contracted[v] = true;
+                }
+                // Shortcuts of every tile in the batch, computed in parallel on the unchanged graph.
+                double[][] shortcuts = new double[batch.length][];
+                IntStream.range(0, batch.length).parallel().forEach(k -> shortcuts[k] = findShortcuts(batch[k]));
+                IntList neighbors = new IntList();
+                for(int k = 0; k < batch.length; k++){
+                    int v = batch[k];
+                    rank[v] = nextRank++;
+                    // The remaining neighbors are contracted later, so these edges go upwards.
+                    upEdges[v] = packEdges(outTarget[v], outMiddle[v], outSize[v]);
+                    upCosts[v] = Arrays.copyOf(outCost[v], outSize[v]);
+                    downEdges[v] = packEdges(inSource[v], inMiddle[v], inSize[v]);
+                    downCosts[v] = Arrays.copyOf(inCost[v], inSize[v]);
+                    double[] found = shortcuts[k];
+                    for(int s = 0; s < found.length; s += 3){
+                        addEdge((int) found[s], (int) found[s + 1], found[s + 2], v);
+                    }
+                    // Remove the tile from the edge lists of its neighbors.
+                    for(int e = 0; e < outSize[v]; e++){
+                        removeInEdge(outTarget[v][e], v);
+                        neighbors.add(outTarget[v][e]);
+                    }
+                    for(int e = 0; e < inSize[v]; e++){
+                        removeOutEdge(inSource[v][e], v);
+                        neighbors.add(inSource[v][e]);
+                    }
+                    outTarget[v] = null;
+                    outCost[v] = null;
+                    outMiddle[v] = null;
+                    inSource[v] = null;
+                    inCost[v] = null;
+                    inMiddle[v] = null;
+                }
+                // Update the priorities of the neighbors of the contracted tiles.
+                int[] neighborArray = Arrays.stream(neighbors.toArray()).distinct().toArray();
+                for(int w : neighborArray){
+                    deletedNeighbors[w]++;
+                }
+                Arrays.stream(neighborArray).parallel().forEach(w -> priority[w] = computePriority(w));
+                int kept = 0;
+                for(int k = 0; k < remainingCount; k++){
+                    if(!contracted[remaining[k]]){
+                        remaining[kept++] = remaining[k];
+                    }
+                }
+                remainingCount = kept;
+            }
+            buildArrays(upEdges, upCosts, downEdges, downCosts);
+        }
+
+        // Stores the remaining edges of a list as (other tile, middle) pairs.
+        private int[] packEdges(int[] others, int[] middles, int count){
+            int[] packed = new int[count * 2];
+            for(int e = 0; e < count; e++){
+                packed[2 * e] = others[e];
+                packed[2 * e + 1] = middles[e];
+            }
+            return packed;
+        }
+
+        // Removes the in-edge from -> to by moving the last in-edge of the tile into its place.
+        private void removeInEdge(int to, int from){
+            for(int e = 0; e < inSize[to]; e++){
+                if(inSource[to][e] == from){
+                    int last = --inSize[to];
+                    inSource[to][e] = inSource[to][last];
+                    inCost[to][e] = inCost[to][last];
+                    inMiddle[to][e] = inMiddle[to][last];
+                    return;
+                }
+            }
+        }
+
+        // Removes the out-edge from -> to by moving the last out-edge of the tile into its place.
+        private void removeOutEdge(int from, int to){
+            for(int e = 0; e < outSize[from]; e++){
+                if(outTarget[from][e] == to){
+                    int last = --outSize[from];
+                    outTarget[from][e] = outTarget[from][last];
+                    outCost[from][e] = outCost[from][last];
+                    outMiddle[from][e] = outMiddle[from][last];
+                    return;
+                }
+            }
+        }
+
+        // Checks whether the tile has a smaller priority than all its remaining neighbors (ties by id).
+        private boolean isLocalMinimum(int v){
+            for(int e = 0; e < outSize[v]; e++){
+                if(isBefore(outTarget[v][e], v)){
+                    return false;
+                }
+            }
+            for(int e = 0; e < inSize[v]; e++){
+                if(isBefore(inSource[v][e], v)){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isBefore(int a, int b){
+            return priority[a] < priority[b] || (priority[a] == priority[b] && a < b);
+        }
+
+        // Edge difference of contracting the tile plus its contracted neighbor count.
+        private int computePriority(int v){
+            int shortcuts = findShortcuts(v).length / 3;
+            return shortcuts - outSize[v] - inSize[v] + deletedNeighbors[v];
+        }
+
+        // Finds the shortcuts needed when the tile is contracted, as (from, to, cost) triples.
+        private double[] findShortcuts(int v){
+            WitnessSearch search = witness.get();
+            double[] found = new double[0];
+            int count = 0;
+            for(int i = 0; i < inSize[v]; i++){
+                int u = inSource[v][i];
+                if(contracted[u]){
+                    continue;
+                }
+                double maxCost = 0;
+                for(int o = 0; o < outSize[v]; o++){
+                    maxCost = Math.max(maxCost, inCost[v][i] + outCost[v][o]);
+                }
+                search.run(u, v, maxCost);
+                for(int o = 0; o < outSize[v]; o++){
+                    int w = outTarget[v][o];
+                    if(w == u || contracted[w]){
+                        continue;
+                    }
+                    double viaCost = inCost[v][i] + outCost[v][o];
+                    if(search.cost(w) > viaCost){
+                        if(count + 3 > found.length){
+                            found = Arrays.copyOf(found, Math.max(12, found.length * 2));
+                        }
+                        found[count++] = u;
+                        found[count++] = w;
+                        found[count++] = viaCost;
+                    }
+                }
+            }
+            return Arrays.copyOf(found, count);
+        }
+
+        // Copies the upward and downward edges of every tile to the compressed arrays.
+        private void buildArrays(int[][] upEdges, double[][] upCosts, int[][] downEdges, double[][] downCosts){
+            upStart = new int[size + 1];
+            downStart = new int[size + 1];
+            for(int v = 0; v < size; v++){
+                upStart[v + 1] = upStart[v] + upCosts[v].length;
+                downStart[v + 1] = downStart[v] + downCosts[v].length;
+            }
+            upTarget = new int[upStart[size]];
+            upCost = new double[upStart[size]];
+            upMiddle = new int[upStart[size]];
+            downSource = new int[downStart[size]];
+            downCost = new double[downStart[size]];
+            downMiddle = new int[downStart[size]];
+            for(int v = 0; v < size; v++){
+                for(int e = 0; e < upCosts[v].length; e++){
+                    upTarget[upStart[v] + e] = upEdges[v][2 * e];
+                    upMiddle[upStart[v] + e] = upEdges[v][2 * e + 1];
+                    upCost[upStart[v] + e] = upCosts[v][e];
+                }
+                for(int e = 0; e < downCosts[v].length; e++){
+                    downSource[downStart[v] + e] = downEdges[v][2 * e];
+                    downMiddle[downStart[v] + e] = downEdges[v][2 * e + 1];
+                    downCost[downStart[v] + e] = downCosts[v][e];
+                }
+            }
+        }
+
+        /**
+         * Bounded Dijkstra that looks for a path avoiding the tile being contracted.
+         */
+        private class WitnessSearch {
+            private final double[] currentCost;
+            private final int[] stamp;
+            private int currentStamp;
+            private final MinHeap queue = new MinHeap(64);
+
+            WitnessSearch(int size){
+                currentCost = new double[size];
+                stamp = new int[size];
+            }
+
+            void run(int source, int avoided, double maxCost){
+                currentStamp++;
+                queue.clear();
+                stamp[source] = currentStamp;
+                currentCost[source] = 0;
+                queue.push(0, source);
+                int settled = 0;
+                while(!queue.isEmpty() && settled < WITNESS_SETTLE_LIMIT){
+                    double cost = queue.peekKey();
+                    int tile = queue.peekValue();
+                    queue.pop();
+                    if(cost > currentCost[tile]){
+                        continue;
+                    }
+                    settled++;
+                    for(int e = 0; e < outSize[tile]; e++){
+                        int next = outTarget[tile][e];
+                        if(next == avoided || contracted[next]){
+                            continue;
+                        }
+                        double newCost = cost + outCost[tile][e];
+                        // Paths more expensive than the shortcut can never be witnesses.
+                        if(newCost > maxCost){
+                            continue;
+                        }
+                        if(stamp[next] != currentStamp || newCost < currentCost[next]){
+                            stamp[next] = currentStamp;
+                            currentCost[next] = newCost;
+                            queue.push(newCost, next);
+                        }
+                    }
+                }
+            }
+
+            double cost(int tile){
+                return stamp[tile] == currentStamp ? currentCost[tile] : Double.POSITIVE_INFINITY;
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+// Mehmet Arda Kutlu
+
+import java.util.Arrays;
+
+/**
+ * GridGraph whose tile ids follow a blocked space-filling curve instead of going column by column.
+ * The map is cut into square blocks of 2^blockShift tiles per side, the blocks are numbered along a
+ * Morton (Z) or Hilbert curve and the tiles of a block get consecutive ids, column by column inside the
+ * block. The tile types, the edge costs and every array a search indexes by tile id (costs, previous
+ * tiles, stamps) then keep the tiles that are close on the map close in memory, so the wavefront of a
+ * search on a large map touches fewer cache lines than with column-major ids, where the left and right
+ * neighbors are a whole column apart. Blocks at the right and bottom edges can be smaller, so the ids
+ * have no gaps. Neighbors inside a block are a fixed offset away; across a block border the id is
+ * looked up in a small table with the first id of every block.
+ */
+public class CurveGridGraph extends GridGraph {
+    // Largest map side: positions are packed into an int with 16 bits per coordinate.
+    private static final int MAX_SIDE = 1 << 15;
+    // Number of tiles per block side is 1 << blockShift.
+    private final int blockShift;
+    private final int blockMask;
+    // Number of block rows, and the first row of the last block row (whose blocks can be shorter).
+    private final int blockRows;
+    private final int lastBlockRow;
+    // blockStart[blockCol * blockRows + blockRow] = id of the first tile of the block.
+    private final int[] blockStart;
+    // position[id] = col << 16 | row of the tile.
+    private final int[] position;
+
+    // Constructor of the class, the arrays are already in curve order.
+    private CurveGridGraph(GridGraph graph, byte[] types, double[] costs, int blockShift, int[] blockStart, int[] position){
+        super(graph.getCols(), graph.getRows(), types, costs, graph.getTiles());
+        this.blockShift = blockShift;
+        this.blockMask = (1 << blockShift) - 1;
+        this.blockRows = (graph.getRows() + blockMask) >> blockShift;
+        this.lastBlockRow = (blockRows - 1) << blockShift;
+        this.blockStart = blockStart;
+        this.position = position;
+    }
+
+    /**
+     * Renumbers a graph along a blocked space-filling curve.
+     * @param graph the graph with column-major ids
+     * @param hilbert whether the blocks follow a Hilbert curve (a Morton curve otherwise)
+     * @param blockShift log2 of the number of tiles per block side
+     * @return the same graph with curve ids
+     */
+    public static CurveGridGraph of(GridGraph graph, boolean hilbert, int blockShift){
+        int cols = graph.getCols();
+        int rows = graph.getRows();
+        if(cols >= MAX_SIDE || rows >= MAX_SIDE){
+            throw new IllegalArgumentException("Curve layouts support maps up to " + (MAX_SIDE - 1) + " tiles per side");
+        }
+        int side = 1 << blockShift;
+        int blockCols = (cols + side - 1) >> blockShift;
+        int blockRows = (rows + side - 1) >> blockShift;
+        // Sort the blocks by their curve index; the block index is kept in the low 32 bits.
+        int order = 32 - Integer.numberOfLeadingZeros(Math.max(blockCols, blockRows) - 1);
+        long[] keys = new long[blockCols * blockRows];
+        for(int blockCol = 0; blockCol < blockCols; blockCol++){
+            for(int blockRow = 0; blockRow < blockRows; blockRow++){
+                long curve = hilbert ? hilbertIndex(order, blockCol, blockRow) : mortonIndex(blockCol, blockRow);
+                keys[blockCol * blockRows + blockRow] = curve << 32 | (blockCol * blockRows + blockRow);
+            }
+        }
+        Arrays.sort(keys);
+        int[] blockStart = new int[keys.length];
+        int next = 0;
+        for(long key : keys){
+            int block = (int) key;
+            int width = Math.min(side, cols - (block / blockRows << blockShift));
+            int height = Math.min(side, rows - (block % blockRows << blockShift));
+            blockStart[block] = next;
+            next += width * height;
+        }
+
+        byte[] types = new byte[graph.size()];
+        double[] costs = new double[graph.size() * 4];
+        int[] position = new int[graph.size()];
+        for(int col = 0; col < cols; col++){
+            for(int row = 0; row < rows; row++){
+                int oldId = graph.id(col, row);
+                int newId = curveId(blockStart, blockShift, blockRows, rows, col, row);
+                types[newId] = (byte) graph.type(oldId);
+                for(int direction = 0; direction < 4; direction++){
+                    costs[newId * 4 + direction] = graph.cost(oldId, direction);
+                }
+                position[newId] = col << 16 | row;
+            }
+        }
+        return new CurveGridGraph(graph, types, costs, blockShift, blockStart, position);
+    }
+
+    /**
+     * Renumbers a graph as goldtrail.layout says: column (the default, the graph is returned as it is),
+     * morton or hilbert, with blocks of goldtrail.layout.block tiles per side (default 16, a power of 2).
+     * @param graph the graph with column-major ids
+     * @return the graph with the configured layout
+     */
+    public static GridGraph fromProperties(GridGraph graph){
+        String layout = System.getProperty("goldtrail.layout", "column");
+        if(layout.equals("column")){
+            return graph;
+        }
+        if(!layout.equals("morton") && !layout.equals("hilbert")){
+            throw new IllegalArgumentException("Unknown goldtrail.layout: " + layout);
+        }
+        int block = Integer.getInteger("goldtrail.layout.block", 16);
+        if(block < 1 || Integer.bitCount(block) != 1){
+            throw new IllegalArgumentException("goldtrail.layout.block must be a power of 2, got " + block);
+        }
+        return of(graph, layout.equals("hilbert"), Integer.numberOfTrailingZeros(block));
+    }
+
+    // Interleaves the bits of x and y (x in the even bits).
+    private static long mortonIndex(int x, int y){
+        long index = 0;
+        for(int bit = 0; bit < 16; bit++){
+            index |= (long) (x >> bit & 1) << (2 * bit) | (long) (y >> bit & 1) << (2 * bit + 1);
+        }
+        return index;
+    }
+
+    // Index of (x, y) on the Hilbert curve that fills a square of 2^order cells per side.
+    private static long hilbertIndex(int order, int x, int y){
+        int n = 1 << order;
+        long index = 0;
+        for(int s = n >> 1; s > 0; s >>= 1){
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            // Rotate the quadrant so that the curve inside it starts and ends at the right corners.
+            if(ry == 0){
+                if(rx == 1){
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int swap = x;
+                x = y;
+                y = swap;
+            }
+        }
+        return index;
+    }
+
+    // Id of a tile: the first id of its block plus its column-major index inside the block.
+    private static int curveId(int[] blockStart, int blockShift, int blockRows, int rows, int col, int row){
+        int blockMask = (1 << blockShift) - 1;
+        int height = Math.min(blockMask + 1, rows - (row & ~blockMask));
+        return blockStart[(col >> blockShift) * blockRows + (row >> blockShift)] + (col & blockMask) * height + (row & blockMask);
+    }
+
+    // Number of rows of the blocks in the block row of the given row.
+    private int blockHeight(int row){
+        return row < lastBlockRow ? blockMask + 1 : getRows() - lastBlockRow;
+    }
+
+    /**
+     * Returns the id of the tile at the given position.
+     * @param col the x position
+     * @param row the y position
+     * @return the curve id of the tile
+     */
+    @Override
+    public int id(int col, int row){
+        return blockStart[(col >> blockShift) * blockRows + (row >> blockShift)]
+                + (col & blockMask) * blockHeight(row) + (row & blockMask);
+    }
+
+    /**
+     * Returns the x position of the tile with the given id.
+     * @param id the curve id of the tile
+     * @return the column index
+     */
+    @Override
+    public int col(int id){
+        return position[id] >>> 16;
+    }
+
+    /**
+     * Returns the y position of the tile with the given id.
+     * @param id the curve id of the tile
+     * @return the row index
+     */
+    @Override
+    public int row(int id){
+        return position[id] & 0xffff;
+    }
+
+    /**
+     * Returns the id of the neighbor in the given direction: a fixed offset inside a block, a block
+     * table lookup across a block border.
+     * @param id the curve id of the tile
+     * @param direction one of LEFT, RIGHT, UP, DOWN
+     * @return the id of the neighbor, or -1 if it is outside the map
+     */
+    @Override
+    public int neighbor(int id, int direction){
+        int col = position[id] >>> 16;
+        int row = position[id] & 0xffff;
+        switch(direction){
+            case LEFT:
+                if(col == 0) return -1;
+                return (col & blockMask) != 0 ? id - blockHeight(row) : id(col - 1, row);
+            case RIGHT:
+                if(col == getCols() - 1) return -1;
+                return (col & blockMask) != blockMask ? id + blockHeight(row) : id(col + 1, row);
+            case UP:
+                if(row == 0) return -1;
+                return (row & blockMask) != 0 ? id - 1 : id(col, row - 1);
+            default:
+                if(row == getRows() - 1) return -1;
+                return (row & blockMask) != blockMask ? id + 1 : id(col, row + 1);
+        }
+    }
+
+    /**
+     * Returns the Tile object with the given id. Only available for graphs built from a Map.
+     * @param id the curve id of the tile
+     * @return the Tile object
+     */
+    @Override
+    public Tile tile(int id){
+        // The tiles of the map are looked up by their column-major id.
+        return super.tile(col(id) * getRows() + row(id));
+    }
+}
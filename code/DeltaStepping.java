@@ -0,0 +1,413 @@
+// Mehmet Arda Kutlu
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel single-source shortest paths on a GridGraph with delta-stepping, for the full shortest path
+ * tree of one source on a large map (for example the costs of every coin from the knight). The tiles
+ * are kept in buckets of width delta by their cost. The tiles of the cheapest bucket relax their light
+ * moves (cost at most delta) on a ForkJoinPool until the bucket stays empty, then the tiles that went
+ * through the bucket relax their heavy moves once. Costs are lowered with a compare-and-set, so the
+ * threads share one cost array. The costs are the same as those of Dijkstra's algorithm (GridDijkstra):
+ * both are the cheapest sum of the move costs along a path, added up in the same order. The previous
+ * tile of every tile is chosen after the search among the neighbors whose cost plus the move gives its
+ * cost, so on ties the path can differ from the one Dijkstra's algorithm finds.
+ */
+public class DeltaStepping implements AutoCloseable {
+    // Atomic access to the elements of the cost array.
+    private static final VarHandle COST = MethodHandles.arrayElementVarHandle(double[].class);
+    // Number of tiles relaxed by one task.
+    private static final int CHUNK = 2048;
+    // Largest number of edge slots looked at to tune delta.
+    private static final int SAMPLE = 1 << 20;
+
+    // The graph that is searched.
+    private final GridGraph graph;
+    // Runs the relaxations.
+    private final ForkJoinPool pool;
+    // Width of a bucket, moves up to this cost are light.
+    private final double delta;
+    // Cost to reach each tile in the last search.
+    private final double[] currentCost;
+    // The tile that came before each tile on a shortest path (-1 for the source and unreached tiles).
+    private final int[] previousTile;
+    // bucketOf[id] = bucket the tile was last put in; entries of other buckets are outdated.
+    private final int[] bucketOf;
+    // Marks of the tiles already taken in the current round and settled in the current bucket.
+    private final int[] roundMark;
+    private final int[] bucketMark;
+    private int currentRound;
+    private int currentBucket;
+    // Buckets of tiles, indexed by cost / delta.
+    private final ArrayList<IntList> buckets = new ArrayList<>();
+    // The source of the last search and the number of light rounds it took.
+    private int source;
+    private int rounds;
+
+    /**
+     * Growable list of tile ids.
+     */
+    private static class IntList {
+        private int[] items = new int[16];
+        private int size;
+
+        void add(int value){
+            if(size == items.length){
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+    }
+
+    /**
+     * Relaxes the light or heavy moves of a range of chunks of tiles, splitting it between the threads.
+     * Chunk k writes the tiles whose cost it lowered to changed[k].
+     */
+    private class Relaxation extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final IntList tiles;
+        private final boolean light;
+        private final IntList[] changed;
+        private final int[] relaxations;
+        private final int from;
+        private final int to;
+
+        Relaxation(IntList tiles, boolean light, IntList[] changed, int[] relaxations, int from, int to){
+            this.tiles = tiles;
+            this.light = light;
+            this.changed = changed;
+            this.relaxations = relaxations;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from > 1){
+                int middle = (from + to) >>> 1;
+                invokeAll(new Relaxation(tiles, light, changed, relaxations, from, middle),
+                        new Relaxation(tiles, light, changed, relaxations, middle, to));
+                return;
+            }
+            changed[from] = new IntList();
+            relaxations[from] = relaxChunk(tiles, light, from * CHUNK, Math.min(tiles.size, (from + 1) * CHUNK), changed[from]);
+        }
+    }
+
+    /**
+     * Constructor of the class.
+     * @param graph the graph that will be searched
+     * @param threads number of threads that relax the moves
+     * @param delta width of a bucket, or 0 to tune it from the move costs of the graph (see tuneDelta)
+     */
+    DeltaStepping(GridGraph graph, int threads, double delta){
+        this.graph = graph;
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+        this.delta = delta > 0 ? delta : tuneDelta(graph);
+        this.currentCost = new double[graph.size()];
+        this.previousTile = new int[graph.size()];
+        this.bucketOf = new int[graph.size()];
+        this.roundMark = new int[graph.size()];
+        this.bucketMark = new int[graph.size()];
+    }
+
+    /**
+     * Chooses the bucket width from the move costs. Maps with two kinds of terrain have two groups of
+     * costs (grass moves are cheap, moves that touch sand are expensive): if the sorted costs have a
+     * clear gap, delta is the largest cost below it, so the cheap moves are light and the expensive
+     * moves are relaxed once per bucket. Otherwise delta is the median cost.
+     * @param graph the graph whose move costs are used
+     * @return the bucket width, greater than 0
+     */
+    public static double tuneDelta(GridGraph graph){
+        long slots = (long) graph.size() * 4;
+        int step = (int) Math.max(1, slots / SAMPLE);
+        double[] sample = new double[(int) Math.min(slots, SAMPLE + 1)];
+        int count = 0;
+        for(long slot = 0; slot < slots && count < sample.length; slot += step){
+            double cost = graph.cost((int) (slot >> 2), (int) (slot & 3));
+            if(cost > 0){
+                sample[count++] = cost;
+            }
+        }
+        if(count == 0){
+            return 1;
+        }
+        Arrays.sort(sample, 0, count);
+        // The largest gap between the 10th and the 90th percentile.
+        int low = count / 10;
+        int high = Math.max(low, count * 9 / 10 - 1);
+        double gap = 0;
+        double belowGap = sample[count / 2];
+        for(int i = low; i < high; i++){
+            if(sample[i + 1] - sample[i] > gap){
+                gap = sample[i + 1] - sample[i];
+                belowGap = sample[i];
+            }
+        }
+        return gap > (sample[high] - sample[low]) / 4 ? belowGap : sample[count / 2];
+    }
+
+    /**
+     * Computes the costs of every tile from the source.
+     * @param source the id of the starting tile
+     */
+    public void search(int source){
+        this.source = source;
+        long queryStart = Metrics.ENABLED ? System.nanoTime() : 0;
+        Arrays.fill(currentCost, Double.POSITIVE_INFINITY);
+        buckets.clear();
+        int settled = 0;
+        int relaxations = 0;
+        int peakBucket = 1;
+        rounds = 0;
+        currentCost[source] = 0;
+        insert(source, 0);
+
+        IntList frontier = new IntList();
+        for(int i = 0; i < buckets.size(); i++){
+            IntList bucket = buckets.get(i);
+            if(bucket.size == 0){
+                continue;
+            }
+            nextBucket();
+            IntList settledTiles = new IntList();
+            // Light rounds: the bucket can be filled again by its own tiles.
+            while(bucket.size > 0){
+                peakBucket = Math.max(peakBucket, bucket.size);
+                nextRound();
+                frontier.size = 0;
+                for(int k = 0; k < bucket.size; k++){
+                    int tile = bucket.items[k];
+                    if(bucketOf[tile] != i || roundMark[tile] == currentRound){
+                        continue; // Moved to another bucket, or already taken.
+                    }
+                    roundMark[tile] = currentRound;
+                    frontier.add(tile);
+                    if(bucketMark[tile] != currentBucket){
+                        bucketMark[tile] = currentBucket;
+                        settledTiles.add(tile);
+                    }
+                }
+                bucket.size = 0;
+                rounds++;
+                relaxations += relax(frontier, true, i);
+            }
+            settled += settledTiles.size;
+            // Heavy moves always leave the bucket, they are relaxed once.
+            relaxations += relax(settledTiles, false, i + 1);
+            buckets.set(i, new IntList());
+        }
+        findPreviousTiles();
+        if(Metrics.ENABLED){
+            Metrics.recordQuery("DeltaStepping", settled, relaxations, 0, peakBucket, System.nanoTime() - queryStart);
+        }
+    }
+
+    // Relaxes the light or heavy moves of the tiles and puts the tiles whose cost was lowered in their
+    // buckets, at least minBucket. Returns the number of relaxed moves.
+    private int relax(IntList tiles, boolean light, int minBucket){
+        if(tiles.size == 0){
+            return 0;
+        }
+        int chunks = (tiles.size + CHUNK - 1) / CHUNK;
+        IntList[] changed = new IntList[chunks];
+        int[] relaxations = new int[chunks];
+        if(chunks == 1){
+            changed[0] = new IntList();
+            relaxations[0] = relaxChunk(tiles, light, 0, tiles.size, changed[0]);
+        }
+        else{
+            pool.invoke(new Relaxation(tiles, light, changed, relaxations, 0, chunks));
+        }
+        int total = 0;
+        for(int k = 0; k < chunks; k++){
+            for(int j = 0; j < changed[k].size; j++){
+                int tile = changed[k].items[j];
+                insert(tile, Math.max(minBucket, bucketIndex(currentCost[tile])));
+            }
+            total += relaxations[k];
+        }
+        return total;
+    }
+
+    // Relaxes the light or heavy moves of tiles[from..to - 1] and adds the tiles whose cost it lowered
+    // to changed. Returns the number of relaxed moves.
+    private int relaxChunk(IntList tiles, boolean light, int from, int to, IntList changed){
+        int relaxations = 0;
+        for(int k = from; k < to; k++){
+            int tile = tiles.items[k];
+            double cost = (double) COST.getAcquire(currentCost, tile);
+            for(int direction = 0; direction < 4; direction++){
+                double movingCost = graph.cost(tile, direction);
+                // Skip impossible moves and the moves of the other kind.
+                if(movingCost < 0 || (movingCost <= delta) != light){
+                    continue;
+                }
+                int neighbor = graph.neighbor(tile, direction);
+                relaxations++;
+                if(lower(neighbor, cost + movingCost)){
+                    changed.add(neighbor);
+                }
+            }
+        }
+        return relaxations;
+    }
+
+    // Lowers the cost of a tile if the new cost is cheaper, returns whether it did.
+    private boolean lower(int tile, double newCost){
+        double cost = (double) COST.getAcquire(currentCost, tile);
+        while(newCost < cost){
+            if(COST.compareAndSet(currentCost, tile, cost, newCost)){
+                return true;
+            }
+            cost = (double) COST.getAcquire(currentCost, tile);
+        }
+        return false;
+    }
+
+    // Puts a tile in a bucket, creating the buckets up to it.
+    private void insert(int tile, int bucket){
+        while(buckets.size() <= bucket){
+            buckets.add(new IntList());
+        }
+        buckets.get(bucket).add(tile);
+        bucketOf[tile] = bucket;
+    }
+
+    // Returns the bucket of a cost.
+    private int bucketIndex(double cost){
+        return (int) (cost / delta);
+    }
+
+    // Picks the previous tile of every reached tile: the first neighbor (in direction order) whose cost
+    // plus the move into the tile is the cost of the tile. The neighbors are read only, so the tiles
+    // are split between the threads.
+    // Only cheaper neighbors are taken in parallel; tiles that are only reached over free moves from a
+    // neighbor with the same cost are linked afterwards from tiles that already have a path, so the previous
+    // tiles never form a cycle.
+    private void findPreviousTiles(){
+        pool.submit(() -> IntStream.range(0, graph.size()).parallel().forEach(tile -> {
+            previousTile[tile] = -1;
+            double cost = currentCost[tile];
+            if(tile == source || cost == Double.POSITIVE_INFINITY){
+                return;
+            }
+            for(int direction = 0; direction < 4; direction++){
+                int neighbor = graph.neighbor(tile, direction);
+                if(neighbor < 0){
+                    continue;
+                }
+                double movingCost = graph.cost(neighbor, GridGraph.opposite(direction));
+                if(movingCost >= 0 && currentCost[neighbor] < cost && currentCost[neighbor] + movingCost == cost){
+                    previousTile[tile] = neighbor;
+                    return;
+                }
+            }
+        })).join();
+
+        IntList unlinked = new IntList();
+        for(int tile = 0; tile < graph.size(); tile++){
+            if(tile != source && previousTile[tile] < 0 && currentCost[tile] != Double.POSITIVE_INFINITY){
+                unlinked.add(tile);
+            }
+        }
+        // Every pass links the tiles next to a linked tile with the same cost.
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            for(int k = 0; k < unlinked.size; k++){
+                int tile = unlinked.items[k];
+                for(int direction = 0; direction < 4 && previousTile[tile] < 0; direction++){
+                    int neighbor = graph.neighbor(tile, direction);
+                    if(neighbor < 0 || (neighbor != source && previousTile[neighbor] < 0)){
+                        continue;
+                    }
+                    double movingCost = graph.cost(neighbor, GridGraph.opposite(direction));
+                    if(movingCost >= 0 && currentCost[neighbor] + movingCost == currentCost[tile]){
+                        previousTile[tile] = neighbor;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    // Starts a new round number, clearing the marks when the counter wraps around.
+    private void nextRound(){
+        currentRound++;
+        if(currentRound == Integer.MAX_VALUE){
+            Arrays.fill(roundMark, 0);
+            currentRound = 1;
+        }
+    }
+
+    // Starts a new bucket number, clearing the marks when the counter wraps around.
+    private void nextBucket(){
+        currentBucket++;
+        if(currentBucket == Integer.MAX_VALUE){
+            Arrays.fill(bucketMark, 0);
+            currentBucket = 1;
+        }
+    }
+
+    /**
+     * Returns the cost of the given tile found by the last search.
+     * @param id the id of the tile
+     * @return the cost, or infinity if the last search did not reach the tile
+     */
+    public double cost(int id){
+        return currentCost[id];
+    }
+
+    /**
+     * Reconstructs a shortest path of the last search from its source to the given tile.
+     * @param id the id of the tile
+     * @return the tile ids of the path, or null if the last search did not reach the tile
+     */
+    public int[] path(int id){
+        if(currentCost[id] == Double.POSITIVE_INFINITY){
+            return null;
+        }
+        int length = 0;
+        for(int currentTile = id; currentTile >= 0; currentTile = previousTile[currentTile]){
+            length++;
+        }
+        int[] path = new int[length];
+        int index = length - 1;
+        for(int currentTile = id; currentTile >= 0; currentTile = previousTile[currentTile]){
+            path[index--] = currentTile;
+        }
+        return path;
+    }
+
+    /**
+     * Returns the bucket width.
+     * @return delta
+     */
+    public double getDelta() {
+        return delta;
+    }
+
+    /**
+     * Returns the number of light rounds of the last search; each round is one parallel step.
+     * @return the round count
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Stops the threads of the relaxations. The engine cannot search after it is closed.
+     */
+    @Override
+    public void close(){
+        pool.shutdown();
+    }
+}
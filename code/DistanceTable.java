@@ -0,0 +1,282 @@
+// Mehmet Arda Kutlu
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Dense all-pairs table of the shortest paths of a small map. One search runs from every tile (in
+ * parallel) and the table keeps the cost of every tile pair and the tile before every tile on the path
+ * from the source, so PathFinder queries and the distance matrices of the tour solvers become lookups
+ * and a path is unrolled backwards through the previous tiles of its source.
+ * The searches are the search of PathFinder.algorithm without its early exit: the same queue, the same
+ * neighbor order and the same costs, so every path and cost is the one PathFinder would return. Ties are
+ * broken the same way because a query stops when its objective is polled, and what the search has found
+ * by then does not change afterwards, as long as no tile gets cheaper after it was polled (which the
+ * queue of PathFinder allows when it reorders equal costs). A source where that happens is marked inexact
+ * and its queries go to PathFinder.
+ * Costs are stored as doubles (the sums PathFinder adds up, bit for bit) or as centi-units with
+ * fixed-point costs; the previous tiles are stored as shorts, so a table covers up to 65535 tiles.
+ */
+public class DistanceTable {
+    // Default largest number of tiles QueryPlanner builds a table for (8MB of costs and 2MB of previous tiles).
+    public static final int DEFAULT_MAX_TILES = 1024;
+    // Largest number of tiles whose ids fit the short previous tiles (0xffff means none).
+    public static final int MAX_TILES = 0xffff;
+    private static final short NONE = (short) 0xffff;
+
+    // The tiles of the map, a tile has the id col * rows + row.
+    private final Tile[][] tiles;
+    private final int rows;
+    private final int size;
+    // Whether the costs are fixed-point centi-units.
+    private final boolean fixed;
+    // neighbors[id * 4 + k] = the k-th neighbor PathFinder relaxes from the tile, -1 after the last one.
+    private final int[] neighbors;
+    // Cost of the move to that neighbor (PathFinder.costCalculator or PathFinder.fixedCost).
+    private final double[] moveCosts;
+    private final int[] fixedMoveCosts;
+    // cost[source * size + id] = cost of the path, POSITIVE_INFINITY or FixedCost.INFINITY if there is none.
+    private final double[] cost;
+    private final int[] fixedCost;
+    // previous[source * size + id] = the tile before id on the path from source, NONE if there is none.
+    private final short[] previous;
+    // Whether the row of a source gives the paths of PathFinder.
+    private final boolean[] exact;
+
+    /**
+     * Constructor of the class. Runs a search from every tile of the map.
+     * @param map the Map object whose tiles and adjacent tiles are already filled
+     * @param pathFinder the PathFinder that stores the travel costs
+     * @param threads number of threads that run the searches
+     * @throws IllegalArgumentException if the map has more tiles than the short previous tiles can hold
+     */
+    DistanceTable(Map map, PathFinder pathFinder, int threads){
+        this.tiles = map.getTiles();
+        this.rows = tiles[0].length;
+        this.size = tiles.length * rows;
+        if(size > MAX_TILES){
+            throw new IllegalArgumentException("A distance table holds up to " + MAX_TILES + " tiles, the map has " + size);
+        }
+        this.fixed = pathFinder.isFixed();
+        this.neighbors = new int[size * 4];
+        this.moveCosts = fixed ? null : new double[size * 4];
+        this.fixedMoveCosts = fixed ? new int[size * 4] : null;
+        for(int col = 0; col < tiles.length; col++){
+            for(int row = 0; row < rows; row++){
+                int slot = id(tiles[col][row]) * 4;
+                int end = slot + 4;
+                // The moves PathFinder skips are left out.
+                for(Tile neighbor : tiles[col][row].getAdjacentTiles()){
+                    if(neighbor.getType() == 2){
+                        continue;
+                    }
+                    if(fixed){
+                        int moveCost = pathFinder.fixedCost(tiles[col][row], neighbor);
+                        if(moveCost < 0) continue;
+                        fixedMoveCosts[slot] = moveCost;
+                    }
+                    else{
+                        double moveCost = pathFinder.costCalculator(tiles[col][row], neighbor);
+                        if(moveCost < 0) continue;
+                        moveCosts[slot] = moveCost;
+                    }
+                    neighbors[slot++] = id(neighbor);
+                }
+                while(slot < end){
+                    neighbors[slot++] = -1;
+                }
+            }
+        }
+        this.cost = fixed ? null : new double[size * size];
+        this.fixedCost = fixed ? new int[size * size] : null;
+        this.previous = new short[size * size];
+        this.exact = new boolean[size];
+
+        long phaseStart = Metrics.startPhase();
+        if(threads <= 1){
+            for(int source = 0; source < size; source++){
+                fillRow(source);
+            }
+        }
+        else{
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try{
+                pool.submit(() -> IntStream.range(0, size).parallel().forEach(this::fillRow)).join();
+            }
+            finally{
+                pool.shutdown();
+            }
+        }
+        Metrics.endPhase("distanceTable", phaseStart);
+    }
+
+    // Runs the search of PathFinder from a source to every tile and fills its row.
+    private void fillRow(int source){
+        int base = source * size;
+        double[] currentCost = fixed ? null : new double[size];
+        long[] currentFixedCost = fixed ? new long[size] : null;
+        boolean[] polled = new boolean[size];
+        boolean rowExact = true;
+        // The queue of PathFinder: the costs are read when the entries are compared.
+        PriorityQueue<Integer> queue = fixed ? new PriorityQueue<>((a, b) -> Long.compare(currentFixedCost[a], currentFixedCost[b]))
+                : new PriorityQueue<>((a, b) -> Double.compare(currentCost[a], currentCost[b]));
+        for(int id = 0; id < size; id++){
+            previous[base + id] = NONE;
+            if(fixed){
+                currentFixedCost[id] = Long.MAX_VALUE;
+            }
+            else{
+                currentCost[id] = Double.POSITIVE_INFINITY;
+            }
+        }
+        if(fixed){
+            currentFixedCost[source] = 0;
+        }
+        else{
+            currentCost[source] = 0;
+        }
+        queue.add(source);
+        long queryStart = Metrics.ENABLED ? System.nanoTime() : 0;
+        int settled = 0;
+        int relaxations = 0;
+        int stalePops = 0;
+        int peakQueue = 1;
+
+        while(!queue.isEmpty()){
+            int current = queue.poll();
+            if(polled[current]){
+                stalePops++;
+            }
+            else{
+                polled[current] = true;
+                settled++;
+            }
+            for(int slot = current * 4; slot < current * 4 + 4 && neighbors[slot] >= 0; slot++){
+                int neighbor = neighbors[slot];
+                relaxations++;
+                boolean cheaper;
+                if(fixed){
+                    long newCost = currentFixedCost[current] + fixedMoveCosts[slot];
+                    cheaper = newCost < currentFixedCost[neighbor];
+                    if(cheaper){
+                        currentFixedCost[neighbor] = newCost;
+                    }
+                }
+                else{
+                    double newCost = currentCost[current] + moveCosts[slot];
+                    cheaper = newCost < currentCost[neighbor];
+                    if(cheaper){
+                        currentCost[neighbor] = newCost;
+                    }
+                }
+                if(cheaper){
+                    // A query to a tile that was already polled would have stopped with the older path.
+                    rowExact &= !polled[neighbor];
+                    previous[base + neighbor] = (short) current;
+                    queue.add(neighbor);
+                    peakQueue = Math.max(peakQueue, queue.size());
+                }
+            }
+        }
+        for(int id = 0; id < size; id++){
+            if(fixed){
+                // Costs that do not fit an int are left to PathFinder.
+                rowExact &= currentFixedCost[id] == Long.MAX_VALUE || currentFixedCost[id] < FixedCost.INFINITY;
+                fixedCost[base + id] = currentFixedCost[id] == Long.MAX_VALUE ? FixedCost.INFINITY
+                        : (int) Math.min(currentFixedCost[id], FixedCost.INFINITY);
+            }
+            else{
+                cost[base + id] = currentCost[id];
+            }
+        }
+        exact[source] = rowExact;
+        if(Metrics.ENABLED){
+            Metrics.recordQuery("DistanceTable", settled, relaxations, stalePops, peakQueue, System.nanoTime() - queryStart);
+        }
+    }
+
+    // Id of a tile of the map.
+    private int id(Tile tile){
+        return tile.getColumn() * rows + tile.getRow();
+    }
+
+    /**
+     * Returns whether the queries from a tile can be answered by the table.
+     * @param start the starting tile
+     * @return true if the row of the tile gives the paths of PathFinder
+     */
+    public boolean covers(Tile start){
+        return exact[id(start)];
+    }
+
+    /**
+     * Returns the shortest path between two tiles, unrolled through the previous tiles of the start.
+     * Only valid if the table covers the start.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @return an ArrayList of tiles from start to objective, or an empty list if the objective is
+     *         unreachable (or is the start, like PathFinder.algorithm)
+     */
+    public ArrayList<Tile> path(Tile start, Tile objective){
+        int base = id(start) * size;
+        ArrayList<Tile> path = new ArrayList<>();
+        if(previous[base + id(objective)] == NONE){
+            return path;
+        }
+        path.add(objective);
+        for(int id = previous[base + id(objective)] & 0xffff; id != id(start); id = previous[base + id] & 0xffff){
+            path.add(tiles[id / rows][id % rows]);
+        }
+        path.add(start);
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Returns whether PathFinder.algorithm finds a path between two tiles. Only valid if the table
+     * covers the start.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @return true if there is a path with at least one move
+     */
+    public boolean hasPath(Tile start, Tile objective){
+        return previous[id(start) * size + id(objective)] != NONE;
+    }
+
+    /**
+     * Returns the cost of the shortest path between two tiles, the same double as PathFinder.findTotalCost
+     * of its path. Only valid if the table covers the start and the costs are not fixed-point.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @return the cost, or POSITIVE_INFINITY if there is no path
+     */
+    public double cost(Tile start, Tile objective){
+        return hasPath(start, objective) ? cost[id(start) * size + id(objective)] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the cost of the shortest path between two tiles in centi-units. Only valid if the table
+     * covers the start and the costs are fixed-point.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @return the cost, or FixedCost.INFINITY if there is no path
+     */
+    public long fixedCost(Tile start, Tile objective){
+        return hasPath(start, objective) ? fixedCost[id(start) * size + id(objective)] : FixedCost.INFINITY;
+    }
+
+    /**
+     * Returns the number of sources whose queries are left to PathFinder.
+     * @return the number of inexact rows
+     */
+    public int getInexactSources(){
+        int count = 0;
+        for(boolean rowExact : exact){
+            if(!rowExact) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,46 @@
+// Mehmet Arda Kutlu
+
+/**
+ * Fills the bitmask DP table of ShortestRoute. The table is stored state by state:
+ * dp[state * n + i] is the minimum cost to reach tile i having visited 'state', and parent holds
+ * the tile visited before i on that path. For a state and its last tile the table is filled by
+ * pulling from the previous state, so the inner loop runs over a contiguous row of dp and a row of
+ * the transposed cost matrix.
+ */
+public interface DpKernel {
+    /**
+     * Fills the DP and parent tables. Tile 0 is the start, dp[1 * n + 0] is 0 and every other
+     * unreachable entry is infinity. Ties are resolved towards the smallest previous tile.
+     * @param costTransposed costTransposed[next][last] = travel cost from last to next (infinity if unreachable)
+     * @param dp the DP table with n << n entries
+     * @param parent the parent table with n << n entries
+     */
+    void fill(double[][] costTransposed, double[] dp, int[] parent);
+
+    /**
+     * Fills the DP and parent tables with fixed-point costs in centi-units; the DP table takes half the
+     * memory of the double one, the two tables together a third less. Unreachable entries are
+     * FixedCost.INFINITY; the caller makes sure that no finite tour reaches it. Exact ties are resolved
+     * towards the smallest previous tile.
+     * @param costTransposed costTransposed[next][last] = travel cost from last to next (FixedCost.INFINITY if unreachable)
+     * @param dp the DP table with n << n entries
+     * @param parent the parent table with n << n entries
+     */
+    void fill(int[][] costTransposed, int[] dp, int[] parent);
+
+    /**
+     * Returns the Vector API kernel if it was compiled and the jdk.incubator.vector module is available,
+     * otherwise the scalar kernel. Setting the system property goldtrail.dp to scalar forces the scalar kernel.
+     * @return the kernel to use
+     */
+    static DpKernel create(){
+        if(!"scalar".equals(System.getProperty("goldtrail.dp"))){
+            try{
+                return (DpKernel) Class.forName("VectorDpKernel").getDeclaredConstructor().newInstance();
+            } catch(ReflectiveOperationException | LinkageError e){
+                // The vector kernel is not compiled or the module is missing, use the scalar one.
+            }
+        }
+        return new ScalarDpKernel();
+    }
+}
@@ -0,0 +1,99 @@
+// Mehmet Arda Kutlu
+
+/**
+ * Fixed-point travel costs. With the system property goldtrail.costs set to fixed, the costs are stored
+ * as whole centi-units (1.23 is 123) when they are loaded, searched, added up and compared as integers,
+ * and only turned into text when they are written. The output shows two decimals, so a cost with more
+ * decimals than that is rejected instead of rounded. Unreachable costs are INFINITY, which is small
+ * enough that adding two of them does not overflow an int.
+ */
+public final class FixedCost {
+    // Number of centi-units in one unit of cost.
+    public static final int SCALE = 100;
+    // Number of decimals of a cost.
+    public static final int DECIMALS = 2;
+    // Cost of an unreachable tile in the int tables.
+    public static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    private FixedCost(){
+    }
+
+    /**
+     * Returns whether the costs are stored as fixed-point integers (goldtrail.costs=fixed).
+     * @return true if the fixed-point mode is on
+     */
+    public static boolean isEnabled(){
+        String mode = System.getProperty("goldtrail.costs", "double");
+        if(!mode.equals("fixed") && !mode.equals("double")){
+            throw new IllegalArgumentException("Unknown goldtrail.costs mode: " + mode);
+        }
+        return mode.equals("fixed");
+    }
+
+    /**
+     * Parses a cost written in decimal notation into centi-units without going through a double.
+     * @param text the cost as it is written in the input, for example 8.5 or 12.34
+     * @return the cost in centi-units
+     * @throws NumberFormatException if the text is not a non-negative decimal number with at most two
+     *         decimals, or if the cost does not fit the int tables
+     */
+    public static int parse(String text){
+        int point = text.indexOf('.');
+        String whole = point < 0 ? text : text.substring(0, point);
+        String fraction = point < 0 ? "" : text.substring(point + 1);
+        // Trailing zeros do not change the value, 1.500 is 1.50.
+        int end = fraction.length();
+        while(end > DECIMALS && fraction.charAt(end - 1) == '0'){
+            end--;
+        }
+        fraction = fraction.substring(0, end);
+        if(whole.isEmpty() && fraction.isEmpty() || fraction.length() > DECIMALS
+                || !isDigits(whole) || !isDigits(fraction)){
+            throw new NumberFormatException("Cost " + text + " is not a non-negative number with at most "
+                    + DECIMALS + " decimals");
+        }
+        long value = 0;
+        for(int i = 0; i < whole.length(); i++){
+            value = value * 10 + (whole.charAt(i) - '0');
+            if(value >= INFINITY){
+                throw new NumberFormatException("Cost " + text + " is too large for the fixed-point mode");
+            }
+        }
+        for(int i = 0; i < DECIMALS; i++){
+            value = value * 10 + (i < fraction.length() ? fraction.charAt(i) - '0' : 0);
+        }
+        if(value >= INFINITY){
+            throw new NumberFormatException("Cost " + text + " is too large for the fixed-point mode");
+        }
+        return (int) value;
+    }
+
+    // Returns whether every character is a decimal digit.
+    private static boolean isDigits(String text){
+        for(int i = 0; i < text.length(); i++){
+            if(text.charAt(i) < '0' || text.charAt(i) > '9'){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Formats a cost in centi-units the same way as String.format("%.2f") formats the cost in units.
+     * @param value the cost in centi-units, not negative
+     * @return the cost with two decimals
+     */
+    public static String format(long value){
+        long fraction = value % SCALE;
+        return (value / SCALE) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    /**
+     * Returns a cost in centi-units as a cost in units.
+     * @param value the cost in centi-units
+     * @return the cost in units
+     */
+    public static double toDouble(long value){
+        return (double) value / SCALE;
+    }
+}
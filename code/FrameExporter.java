@@ -0,0 +1,208 @@
+// Mehmet Arda Kutlu
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Exports the animation of a run as a sequence of PNG images without a display. The step events are
+ * played as fast as possible on an off-screen MapRenderer with the same visuals as Map.draw and
+ * drawBonus; every stride-th frame (and always the last one) is copied and encoded by a pool of
+ * worker threads. Only a few frame copies are in flight at a time, so long tours do not keep their
+ * frames in memory. It is enabled with the system property goldtrail.export=directory, together with
+ * goldtrail.export.stride (default 1), goldtrail.export.threads (default: available processors) and
+ * goldtrail.export.scale (pixels per canvas unit, default 1).
+ */
+public class FrameExporter {
+    // The directory the frames are written to.
+    private final File directory;
+    // Whether the bonus visuals are used.
+    private final boolean bonus;
+    // Only every stride-th frame is exported.
+    private final int stride;
+    // Draws the frames off-screen.
+    private final MapRenderer renderer;
+    private final ImageTarget target;
+    // Plays the step events.
+    private final ReplayPlayer player;
+    // Encodes and writes the frames.
+    private final ExecutorService encoders;
+    // Frame copies that are free to use; the pool size bounds the frames in flight.
+    private final ArrayBlockingQueue<BufferedImage> freeImages;
+    private final Semaphore inFlight;
+    // Number of frames drawn by the player and number of exported frames.
+    private int frameCount;
+    private int exportedFrames;
+    // Whether the latest frame was exported.
+    private boolean latestExported;
+    // First error of the encoders.
+    private volatile IOException error;
+
+    /**
+     * Constructor of the class. Sets an off-screen renderer on the map.
+     * @param map the map to animate
+     * @param bonus whether the bonus visuals are used
+     * @param directory the directory of the frames
+     * @param stride only every stride-th frame is exported
+     * @param threads number of encoder threads
+     * @param pixelScale pixels per canvas unit
+     * @throws IOException if the directory cannot be created or an image in misc/ cannot be read
+     */
+    FrameExporter(Map map, boolean bonus, File directory, int stride, int threads, int pixelScale) throws IOException {
+        if(!directory.isDirectory() && !directory.mkdirs()){
+            throw new IOException("Cannot create the frame directory: " + directory);
+        }
+        this.directory = directory;
+        this.bonus = bonus;
+        this.stride = Math.max(1, stride);
+        this.target = new ImageTarget(map.getCanvasWidth(), map.getCanvasHeight(), pixelScale);
+        this.renderer = new MapRenderer(map, target);
+        map.setRenderer(renderer);
+        this.player = new ReplayPlayer(map, bonus, 0, 0, 0, false, this::onFrame);
+        int encoderCount = Math.max(1, threads);
+        this.encoders = Executors.newFixedThreadPool(encoderCount);
+        this.freeImages = new ArrayBlockingQueue<>(2 * encoderCount);
+        this.inFlight = new Semaphore(2 * encoderCount);
+    }
+
+    /**
+     * Creates an exporter from the goldtrail.export system properties.
+     * @param map the map to animate
+     * @param bonus whether the bonus visuals are used
+     * @return the exporter, or null if goldtrail.export is not set
+     * @throws IOException if the exporter cannot be created
+     */
+    public static FrameExporter fromProperties(Map map, boolean bonus) throws IOException {
+        String directory = System.getProperty("goldtrail.export");
+        if(directory == null){
+            return null;
+        }
+        return new FrameExporter(map, bonus, new File(directory), Integer.getInteger("goldtrail.export.stride", 1),
+                Integer.getInteger("goldtrail.export.threads", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("goldtrail.export.scale", 1));
+    }
+
+    /**
+     * Returns the listener that receives the step events of the runner.
+     * @return the step listener
+     */
+    public Consumer<StepEvent> getStepListener(){
+        return player;
+    }
+
+    /**
+     * Starts playing the step events.
+     */
+    public void start(){
+        player.start();
+    }
+
+    /**
+     * Plays the remaining events, exports the last frame and waits until every frame is written.
+     * @throws IOException if a frame could not be written
+     */
+    public void finish() throws IOException {
+        player.finish();
+        try{
+            player.await();
+            if(!latestExported){
+                export();
+            }
+            encoders.shutdown();
+            encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            encoders.shutdownNow();
+            throw new IOException("Interrupted while exporting frames", e);
+        }
+        if(error != null){
+            throw error;
+        }
+    }
+
+    /**
+     * Returns the number of frames that were exported.
+     * @return the exported frame count
+     */
+    public int getExportedFrames() {
+        return exportedFrames;
+    }
+
+    // Called by the player for every frame; only every stride-th frame is drawn and exported.
+    private void onFrame(){
+        latestExported = frameCount % stride == 0;
+        frameCount++;
+        if(latestExported){
+            export();
+        }
+    }
+
+    // Writes a PNG file with a fast compression level, which makes the files a few percent larger
+    // but encodes about twice as fast as the default level.
+    private static void writePng(BufferedImage image, File file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ImageWriteParam parameters = writer.getDefaultWriteParam();
+        parameters.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        parameters.setCompressionQuality(0.75f);
+        // A buffered stream avoids the many small unbuffered writes of a file image stream.
+        try(ImageOutputStream output = new MemoryCacheImageOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), parameters);
+        }
+        finally{
+            writer.dispose();
+        }
+    }
+
+    // Draws the current state and hands a copy of it to an encoder.
+    private void export(){
+        renderer.drawFrame(bonus);
+        latestExported = true;
+        try{
+            inFlight.acquire();
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return;
+        }
+        BufferedImage frame = target.getImage();
+        BufferedImage copy = freeImages.poll();
+        if(copy == null){
+            copy = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+        }
+        int[] pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        System.arraycopy(pixels, 0, ((DataBufferInt) copy.getRaster().getDataBuffer()).getData(), 0, pixels.length);
+        File file = new File(directory, String.format("frame-%06d.png", exportedFrames++));
+        BufferedImage image = copy;
+        encoders.execute(() -> {
+            try{
+                if(error == null){
+                    writePng(image, file);
+                }
+            }
+            catch(IOException e){
+                error = e;
+            }
+            finally{
+                freeImages.offer(image);
+                inFlight.release();
+            }
+        });
+    }
+}
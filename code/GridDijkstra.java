@@ -0,0 +1,191 @@
+// Mehmet Arda Kutlu
+
+import java.util.Arrays;
+
+/**
+ * Dijkstra's algorithm on a GridGraph using primitive arrays. The arrays are allocated once and
+ * reused by every search; a search stamp marks which entries belong to the current search, so small
+ * searches do not pay for clearing the whole grid. A search can be limited to a rectangle of tiles
+ * and can run on the reversed edges (to find the costs of reaching a target instead of leaving a source).
+ */
+public class GridDijkstra {
+    // The graph that is searched.
+    private final GridGraph graph;
+    // Cost to reach each tile in the current search.
+    private final double[] currentCost;
+    // The tile that came before each tile on the shortest path (-1 for the source).
+    private final int[] previousTile;
+    // Search number that last wrote each tile, entries of other searches are treated as unreached.
+    private final int[] stamp;
+    // Number of the current search.
+    private int currentStamp;
+    // Priority queue to process tiles by lowest cost.
+    private final MinHeap queue;
+    // The source of the current search.
+    private int source;
+    // Whether the current search follows the edges backwards.
+    private boolean reverse;
+
+    /**
+     * Constructor of the class.
+     * @param graph the graph that will be searched
+     */
+    GridDijkstra(GridGraph graph){
+        this.graph = graph;
+        this.currentCost = new double[graph.size()];
+        this.previousTile = new int[graph.size()];
+        this.stamp = new int[graph.size()];
+        this.queue = new MinHeap(64);
+    }
+
+    /**
+     * Computes the shortest path cost between two tiles on the whole map.
+     * @param source the id of the starting tile
+     * @param target the id of the target tile, or -1 to compute the costs of every tile
+     * @return the cost of reaching the target, or infinity if it is unreachable
+     */
+    public double search(int source, int target){
+        return search(source, target, 0, graph.getCols() - 1, 0, graph.getRows() - 1, false);
+    }
+
+    /**
+     * Computes the shortest path costs from a source, only visiting the tiles inside the given bounds.
+     * @param source the id of the starting tile
+     * @param target the id of the tile where the search can stop, or -1 to settle every tile in the bounds
+     * @param minCol smallest column that can be visited
+     * @param maxCol largest column that can be visited
+     * @param minRow smallest row that can be visited
+     * @param maxRow largest row that can be visited
+     * @param reverse whether the costs of reaching the source (instead of leaving it) are computed
+     * @return the cost between the source and the target, or infinity if the target is not reached
+     */
+    public double search(int source, int target, int minCol, int maxCol, int minRow, int maxRow, boolean reverse){
+        nextStamp();
+        this.source = source;
+        this.reverse = reverse;
+        queue.clear();
+        stamp[source] = currentStamp;
+        currentCost[source] = 0;
+        previousTile[source] = -1;
+        queue.push(0, source);
+        // The position of a neighbor is only looked up when the bounds leave out a part of the map.
+        boolean bounded = minCol > 0 || maxCol < graph.getCols() - 1 || minRow > 0 || maxRow < graph.getRows() - 1;
+        // Search counters, only updated when metrics are enabled.
+        long queryStart = Metrics.ENABLED ? System.nanoTime() : 0;
+        int settled = 0;
+        int relaxations = 0;
+        int stalePops = 0;
+        int peakQueue = 1;
+
+        while(!queue.isEmpty()){
+            double cost = queue.peekKey();
+            int currentTile = queue.peekValue();
+            queue.pop();
+            // Skip the entries that were replaced by a cheaper one.
+            if(cost > currentCost[currentTile]){
+                if(Metrics.ENABLED){
+                    stalePops++;
+                }
+                continue;
+            }
+            if(Metrics.ENABLED){
+                settled++;
+            }
+            // Exits the loop if the target is reached.
+            if(currentTile == target){
+                if(Metrics.ENABLED){
+                    Metrics.recordQuery("GridDijkstra", settled, relaxations, stalePops, peakQueue,
+                            System.nanoTime() - queryStart);
+                }
+                return cost;
+            }
+            for(int direction = 0; direction < 4; direction++){
+                int neighbor = graph.neighbor(currentTile, direction);
+                if(neighbor < 0){
+                    continue;
+                }
+                if(bounded){
+                    int col = graph.col(neighbor);
+                    int row = graph.row(neighbor);
+                    if(col < minCol || col > maxCol || row < minRow || row > maxRow){
+                        continue;
+                    }
+                }
+                double movingCost = reverse ? graph.cost(neighbor, GridGraph.opposite(direction))
+                        : graph.cost(currentTile, direction);
+                // Skip impossible moves.
+                if(movingCost < 0){
+                    continue;
+                }
+                double newCost = cost + movingCost;
+                if(Metrics.ENABLED){
+                    relaxations++;
+                }
+                // Update path and queue if a cheaper path is found.
+                if(stamp[neighbor] != currentStamp || newCost < currentCost[neighbor]){
+                    stamp[neighbor] = currentStamp;
+                    currentCost[neighbor] = newCost;
+                    previousTile[neighbor] = currentTile;
+                    queue.push(newCost, neighbor);
+                    if(Metrics.ENABLED){
+                        peakQueue = Math.max(peakQueue, queue.size());
+                    }
+                }
+            }
+        }
+        if(Metrics.ENABLED){
+            Metrics.recordQuery("GridDijkstra", settled, relaxations, stalePops, peakQueue, System.nanoTime() - queryStart);
+        }
+        return target >= 0 ? cost(target) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the cost of the given tile found by the last search.
+     * @param id the id of the tile
+     * @return the cost, or infinity if the last search did not reach the tile
+     */
+    public double cost(int id){
+        return stamp[id] == currentStamp ? currentCost[id] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Reconstructs the path of the last search between its source and the given tile.
+     * For a forward search the path goes from the source to the tile, for a reverse search
+     * it goes from the tile to the source.
+     * @param id the id of the tile
+     * @return the tile ids of the path, or null if the last search did not reach the tile
+     */
+    public int[] path(int id){
+        if(stamp[id] != currentStamp){
+            return null;
+        }
+        int length = 0;
+        for(int currentTile = id; currentTile >= 0; currentTile = previousTile[currentTile]){
+            length++;
+        }
+        int[] path = new int[length];
+        int index = reverse ? 0 : length - 1;
+        for(int currentTile = id; currentTile >= 0; currentTile = previousTile[currentTile]){
+            path[index] = currentTile;
+            index += reverse ? 1 : -1;
+        }
+        return path;
+    }
+
+    /**
+     * Returns the source of the last search.
+     * @return the id of the source tile
+     */
+    public int getSource() {
+        return source;
+    }
+
+    // Starts a new search number, clearing the stamps when the counter wraps around.
+    private void nextStamp(){
+        currentStamp++;
+        if(currentStamp == Integer.MAX_VALUE){
+            Arrays.fill(stamp, 0);
+            currentStamp = 1;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+// Mehmet Arda Kutlu
+
+import java.util.ArrayList;
+
+/**
+ * Flat, array based view of the tile graph. Every tile gets an integer id and every tile has four
+ * outgoing edge slots (left, right, up, down) that store the travel cost of the move, or -1 if the
+ * move is impossible (outside the map, into an impassable tile or missing from travelCosts.txt).
+ * The faster engines search this graph instead of the Tile objects built by Map.adjacentFinder.
+ */
+public class GridGraph {
+    // Direction indices of the edge slots (same order that Map.adjacentFinder uses).
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+    public static final int UP = 2;
+    public static final int DOWN = 3;
+    // Map size is x,y (col,row)
+    private final int cols;
+    private final int rows;
+    // Type of every tile (0 -> grass, 1 -> sand, 2 -> impassable).
+    private final byte[] types;
+    // costs[id * 4 + direction] = cost of leaving tile id in that direction, -1 if not possible.
+    private final double[] costs;
+    // The tiles of the map, used to convert id paths back to Tile paths (null for synthetic graphs).
+    private final Tile[][] tiles;
+    // Smallest non-negative edge cost, used as an admissible heuristic factor.
+    private final double minimumCost;
+
+    /**
+     * Constructor of the class. Wraps already filled type and cost arrays.
+     * @param cols number of tile columns
+     * @param rows number of tile rows
+     * @param types type of every tile indexed by id
+     * @param costs edge costs indexed by id * 4 + direction
+     * @param tiles the tiles of the map, or null if the graph does not belong to a Map
+     */
+    GridGraph(int cols, int rows, byte[] types, double[] costs, Tile[][] tiles){
+        this.cols = cols;
+        this.rows = rows;
+        this.types = types;
+        this.costs = costs;
+        this.tiles = tiles;
+        double minimum = Double.POSITIVE_INFINITY;
+        for(double cost : costs){
+            if(cost >= 0 && cost < minimum){
+                minimum = cost;
+            }
+        }
+        this.minimumCost = minimum == Double.POSITIVE_INFINITY ? 0 : minimum;
+    }
+
+    /**
+     * Builds the flat graph of a loaded map using the costs of the given PathFinder.
+     * Moves that PathFinder.algorithm would skip get the cost -1.
+     * @param map the Map object whose tiles are already filled
+     * @param pathFinder the PathFinder that stores the travel costs
+     * @return the flat graph of the map
+     */
+    public static GridGraph fromMap(Map map, PathFinder pathFinder){
+        // With goldtrail.layout, the ids follow a blocked space-filling curve instead of the columns.
+        return CurveGridGraph.fromProperties(columnMajor(map, pathFinder));
+    }
+
+    /**
+     * Builds the flat graph of a loaded map with column-major ids, whatever goldtrail.layout says, for
+     * arrays that are stored and read back by tile id.
+     * @param map the Map object whose tiles are already filled
+     * @param pathFinder the PathFinder that stores the travel costs
+     * @return the flat graph of the map, a tile has the id col * rows + row
+     */
+    public static GridGraph columnMajor(Map map, PathFinder pathFinder){
+        Tile[][] tiles = map.getTiles();
+        int cols = tiles.length;
+        int rows = tiles[0].length;
+        byte[] types = new byte[cols * rows];
+        double[] costs = new double[cols * rows * 4];
+        for(int i = 0; i < cols; i++){
+            for(int j = 0; j < rows; j++){
+                types[i * rows + j] = (byte) tiles[i][j].getType();
+            }
+        }
+        for(int i = 0; i < cols; i++){
+            for(int j = 0; j < rows; j++){
+                int id = i * rows + j;
+                costs[id * 4 + LEFT] = i > 0 ? edgeCost(pathFinder, tiles[i][j], tiles[i-1][j]) : -1;
+                costs[id * 4 + RIGHT] = i < cols - 1 ? edgeCost(pathFinder, tiles[i][j], tiles[i+1][j]) : -1;
+                costs[id * 4 + UP] = j > 0 ? edgeCost(pathFinder, tiles[i][j], tiles[i][j-1]) : -1;
+                costs[id * 4 + DOWN] = j < rows - 1 ? edgeCost(pathFinder, tiles[i][j], tiles[i][j+1]) : -1;
+            }
+        }
+        return new GridGraph(cols, rows, types, costs, tiles);
+    }
+
+    // Returns the cost of moving between two tiles, or -1 if PathFinder.algorithm would not take the move.
+    private static double edgeCost(PathFinder pathFinder, Tile from, Tile to){
+        if(to.getType() == 2){
+            return -1;
+        }
+        return pathFinder.costCalculator(from, to);
+    }
+
+    /**
+     * Returns the number of tile columns.
+     * @return the column count
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Returns the number of tile rows.
+     * @return the row count
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the tiles of the map, indexed [col][row].
+     * @return the tiles, or null if the graph does not belong to a Map
+     */
+    Tile[][] getTiles(){
+        return tiles;
+    }
+
+    /**
+     * Returns the number of tiles in the graph.
+     * @return the tile count
+     */
+    public int size(){
+        return cols * rows;
+    }
+
+    /**
+     * Returns the id of the tile at the given position.
+     * @param col the x position
+     * @param row the y position
+     * @return the id of the tile
+     */
+    public int id(int col, int row){
+        return col * rows + row;
+    }
+
+    /**
+     * Returns the id of the given tile.
+     * @param tile the tile
+     * @return the id of the tile
+     */
+    public int id(Tile tile){
+        return id(tile.getColumn(), tile.getRow());
+    }
+
+    /**
+     * Returns the x position of the tile with the given id.
+     * @param id the id of the tile
+     * @return the column index
+     */
+    public int col(int id){
+        return id / rows;
+    }
+
+    /**
+     * Returns the y position of the tile with the given id.
+     * @param id the id of the tile
+     * @return the row index
+     */
+    public int row(int id){
+        return id % rows;
+    }
+
+    /**
+     * Returns the type of the tile with the given id.
+     * @param id the id of the tile
+     * @return 0 if the tile is grass, 1 if it is sand, 2 if it is impassable
+     */
+    public int type(int id){
+        return types[id];
+    }
+
+    /**
+     * Returns the id of the neighbor in the given direction.
+     * @param id the id of the tile
+     * @param direction one of LEFT, RIGHT, UP, DOWN
+     * @return the id of the neighbor, or -1 if it is outside the map
+     */
+    public int neighbor(int id, int direction){
+        switch(direction){
+            case LEFT: return id >= rows ? id - rows : -1;
+            case RIGHT: return id < (cols - 1) * rows ? id + rows : -1;
+            case UP: return id % rows > 0 ? id - 1 : -1;
+            default: return id % rows < rows - 1 ? id + 1 : -1;
+        }
+    }
+
+    /**
+     * Returns the cost of leaving a tile in the given direction.
+     * @param id the id of the tile
+     * @param direction one of LEFT, RIGHT, UP, DOWN
+     * @return the cost of the move, or -1 if the move is not possible
+     */
+    public double cost(int id, int direction){
+        return costs[id * 4 + direction];
+    }
+
+    /**
+     * Returns the direction that leads back along the given direction.
+     * @param direction one of LEFT, RIGHT, UP, DOWN
+     * @return the opposite direction
+     */
+    public static int opposite(int direction){
+        return direction ^ 1;
+    }
+
+    /**
+     * Returns the smallest non-negative edge cost of the graph.
+     * @return the minimum edge cost, 0 if there are no edges
+     */
+    public double getMinimumCost() {
+        return minimumCost;
+    }
+
+    /**
+     * Returns the Tile object with the given id. Only available for graphs built from a Map.
+     * @param id the id of the tile
+     * @return the Tile object
+     */
+    public Tile tile(int id){
+        return tiles[id / rows][id % rows];
+    }
+
+    /**
+     * Converts a path of tile ids to the ArrayList shape that PathFinder.algorithm returns.
+     * @param path the tile ids from start to end, or null if there is no path
+     * @return the tiles of the path, or an empty list if there is no path
+     */
+    public ArrayList<Tile> toTiles(int[] path){
+        ArrayList<Tile> tilePath = new ArrayList<>();
+        if(path == null){
+            return tilePath;
+        }
+        for(int id : path){
+            tilePath.add(tile(id));
+        }
+        return tilePath;
+    }
+
+    /**
+     * Calculates the total cost of moving along a path of tile ids.
+     * @param path the tile ids from start to end
+     * @return the sum of the movement costs, or -1 if a step is not a valid move
+     */
+    public double pathCost(int[] path){
+        double totalCost = 0;
+        for(int i = 0; i < path.length - 1; i++){
+            double cost = -1;
+            for(int direction = 0; direction < 4; direction++){
+                if(neighbor(path[i], direction) == path[i+1]){
+                    cost = cost(path[i], direction);
+                }
+            }
+            if(cost < 0){
+                return -1;
+            }
+            totalCost += cost;
+        }
+        return totalCost;
+    }
+}
@@ -0,0 +1,497 @@
+// Mehmet Arda Kutlu
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Hierarchical pathfinding (HPA*) on a GridGraph. The map is split into square clusters, the tiles on
+ * both sides of the cluster borders become entrance nodes of an abstract graph, and the abstract graph
+ * stores the moves across the borders and the shortest path costs between the entrances of the same
+ * cluster. A query connects the start and the objective to the entrances of their clusters, searches
+ * the abstract graph with A* and refines every abstract edge to tiles with a search inside one cluster.
+ * In exact mode every border tile is an entrance, so the returned costs are optimal. Otherwise only a few
+ * evenly spaced entrances are kept for each open border segment, which is faster but can miss the best path.
+ * In both modes a cluster only links two entrances whose shortest path does not pass a third one, which
+ * leaves about a quarter of the edges of exact mode.
+ */
+public class HierarchicalPathFinder implements PathEngine {
+    // The flat graph of the map.
+    private final GridGraph graph;
+    // Width and height of a cluster in tiles.
+    private final int clusterSize;
+    // Whether every border tile is an entrance (optimal costs) or only a few per border segment.
+    private final boolean exact;
+    // Number of clusters in x and y directions.
+    private final int clusterCols;
+    private final int clusterRows;
+    // Abstract node of every tile, -1 for tiles that are not entrances.
+    private final int[] nodeOfTile;
+    // Tile id of every abstract node. The nodes of a cluster are numbered consecutively.
+    private int[] tileOfNode;
+    // The nodes of cluster c are clusterFirst[c] .. clusterFirst[c+1] - 1.
+    private int[] clusterFirst;
+    // Abstract edges in compressed rows: the edges of node u are edgeStart[u] .. edgeStart[u+1] - 1.
+    private int[] edgeStart;
+    private int[] edgeTarget;
+    private double[] edgeCost;
+    // Time spent building the abstract graph.
+    private final long preprocessingNanos;
+    // Reused search inside one cluster (and for the costs between entrances during preprocessing).
+    private final GridDijkstra localSearch;
+    // Reused state of the abstract search, two extra slots for the start and the objective.
+    private double[] abstractCost;
+    private int[] abstractPrevious;
+    private int[] abstractStamp;
+    private int[] settledStamp;
+    private int currentStamp;
+    private final MinHeap abstractQueue = new MinHeap(64);
+
+    /**
+     * Constructor of the class. Builds the abstract graph of the given map.
+     * @param graph the flat graph of the map
+     * @param clusterSize width and height of a cluster in tiles
+     * @param exact whether every border tile becomes an entrance, which keeps the costs optimal
+     */
+    HierarchicalPathFinder(GridGraph graph, int clusterSize, boolean exact){
+        long startTime = System.nanoTime();
+        this.graph = graph;
+        this.clusterSize = clusterSize;
+        this.exact = exact;
+        this.clusterCols = (graph.getCols() + clusterSize - 1) / clusterSize;
+        this.clusterRows = (graph.getRows() + clusterSize - 1) / clusterSize;
+        this.nodeOfTile = new int[graph.size()];
+        this.localSearch = new GridDijkstra(graph);
+        findEntrances();
+        numberNodes();
+        buildEdges();
+        this.preprocessingNanos = System.nanoTime() - startTime;
+    }
+
+    // Marks the entrance tiles on every border between two neighboring clusters.
+    private void findEntrances(){
+        Arrays.fill(nodeOfTile, -1);
+        // Vertical borders: the tile on the left side is (border - 1, r), on the right side (border, r).
+        for(int border = clusterSize; border < graph.getCols(); border += clusterSize){
+            for(int first = 0; first < graph.getRows(); first += clusterSize){
+                int last = Math.min(graph.getRows(), first + clusterSize) - 1;
+                markSegment(graph.id(border - 1, first), graph.id(border, first), GridGraph.DOWN, last - first + 1,
+                        GridGraph.RIGHT);
+            }
+        }
+        // Horizontal borders: the tile above is (c, border - 1), below (c, border).
+        for(int border = clusterSize; border < graph.getRows(); border += clusterSize){
+            for(int first = 0; first < graph.getCols(); first += clusterSize){
+                int last = Math.min(graph.getCols(), first + clusterSize) - 1;
+                markSegment(graph.id(first, border - 1), graph.id(first, border), GridGraph.RIGHT,
+                        last - first + 1, GridGraph.DOWN);
+            }
+        }
+    }
+
+    // Marks the entrances of one cluster border. The pairs are the k-th tiles from inside and outside
+    // in the along direction; they are found by walking the border, so any tile numbering works.
+    private void markSegment(int inside, int outside, int along, int length, int direction){
+        int[] insideTiles = new int[length];
+        int[] outsideTiles = new int[length];
+        for(int k = 0; k < length; k++){
+            insideTiles[k] = k == 0 ? inside : graph.neighbor(insideTiles[k - 1], along);
+            outsideTiles[k] = k == 0 ? outside : graph.neighbor(outsideTiles[k - 1], along);
+        }
+        int runStart = -1;
+        for(int k = 0; k <= length; k++){
+            boolean open = k < length && isCrossing(insideTiles[k], outsideTiles[k], direction);
+            if(open && exact){
+                nodeOfTile[insideTiles[k]] = 0;
+                nodeOfTile[outsideTiles[k]] = 0;
+            }
+            if(exact){
+                continue;
+            }
+            if(open && runStart < 0){
+                runStart = k;
+            }
+            else if(!open && runStart >= 0){
+                // Keep the middle of a short open run, the two ends and evenly spaced tiles of a long one.
+                int runEnd = k - 1;
+                if(runEnd - runStart < 5){
+                    int middle = (runStart + runEnd) / 2;
+                    nodeOfTile[insideTiles[middle]] = 0;
+                    nodeOfTile[outsideTiles[middle]] = 0;
+                }
+                else{
+                    int spacing = Math.max(2, clusterSize / 4);
+                    for(int m = runStart; m < runEnd; m += spacing){
+                        nodeOfTile[insideTiles[m]] = 0;
+                        nodeOfTile[outsideTiles[m]] = 0;
+                    }
+                    nodeOfTile[insideTiles[runEnd]] = 0;
+                    nodeOfTile[outsideTiles[runEnd]] = 0;
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    // Checks whether the knight can move between the two tiles in at least one direction.
+    private boolean isCrossing(int inside, int outside, int direction){
+        return graph.cost(inside, direction) >= 0 || graph.cost(outside, GridGraph.opposite(direction)) >= 0;
+    }
+
+    // Gives the marked tiles node numbers so that the nodes of each cluster are consecutive.
+    private void numberNodes(){
+        int clusterCount = clusterCols * clusterRows;
+        clusterFirst = new int[clusterCount + 1];
+        int nodeCount = 0;
+        for(int cluster = 0; cluster < clusterCount; cluster++){
+            clusterFirst[cluster] = nodeCount;
+            int minCol = minCol(cluster);
+            int maxCol = maxCol(cluster);
+            int minRow = minRow(cluster);
+            int maxRow = maxRow(cluster);
+            for(int i = minCol; i <= maxCol; i++){
+                for(int j = minRow; j <= maxRow; j++){
+                    int id = graph.id(i, j);
+                    if(nodeOfTile[id] == 0){
+                        nodeOfTile[id] = -2 - nodeCount; // Temporarily negative to separate from unmarked 0s.
+                        nodeCount++;
+                    }
+                }
+            }
+        }
+        clusterFirst[clusterCount] = nodeCount;
+        tileOfNode = new int[nodeCount];
+        for(int id = 0; id < nodeOfTile.length; id++){
+            if(nodeOfTile[id] <= -2){
+                nodeOfTile[id] = -2 - nodeOfTile[id];
+                tileOfNode[nodeOfTile[id]] = id;
+            }
+        }
+        abstractCost = new double[nodeCount + 2];
+        abstractPrevious = new int[nodeCount + 2];
+        abstractStamp = new int[nodeCount + 2];
+        settledStamp = new int[nodeCount + 2];
+    }
+
+    // Adds the moves across the borders and the costs between the entrances of each cluster. An edge between
+    // two entrances of a cluster is left out if the path through a third entrance of the cluster costs no
+    // more, so every abstract path keeps its cost with far fewer edges (most of them run along a border).
+    private void buildEdges(){
+        int nodeCount = tileOfNode.length;
+        int[] from = new int[16];
+        int[] to = new int[16];
+        double[] cost = new double[16];
+        int edgeCount = 0;
+        for(int cluster = 0; cluster < clusterCols * clusterRows; cluster++){
+            // Shortest paths between the entrances of the cluster, inside[k * count + m] from its k-th to its m-th.
+            int first = clusterFirst[cluster];
+            int count = clusterFirst[cluster + 1] - first;
+            double[] inside = new double[count * count];
+            for(int k = 0; k < count; k++){
+                localSearch.search(tileOfNode[first + k], -1, minCol(cluster), maxCol(cluster), minRow(cluster),
+                        maxRow(cluster), false);
+                for(int m = 0; m < count; m++){
+                    inside[k * count + m] = localSearch.cost(tileOfNode[first + m]);
+                }
+            }
+            for(int k = 0; k < count; k++){
+                int node = first + k;
+                int tile = tileOfNode[node];
+                // Moves to an entrance of a neighboring cluster.
+                for(int direction = 0; direction < 4; direction++){
+                    int neighbor = graph.neighbor(tile, direction);
+                    if(neighbor < 0 || nodeOfTile[neighbor] < 0 || clusterOf(neighbor) == cluster
+                            || graph.cost(tile, direction) < 0){
+                        continue;
+                    }
+                    if(edgeCount == from.length){
+                        from = Arrays.copyOf(from, edgeCount * 2);
+                        to = Arrays.copyOf(to, edgeCount * 2);
+                        cost = Arrays.copyOf(cost, edgeCount * 2);
+                    }
+                    from[edgeCount] = node;
+                    to[edgeCount] = nodeOfTile[neighbor];
+                    cost[edgeCount] = graph.cost(tile, direction);
+                    edgeCount++;
+                }
+                // Shortest paths to the other entrances of the same cluster that do not pass a third one.
+                for(int m = 0; m < count; m++){
+                    double otherCost = inside[k * count + m];
+                    if(m == k || otherCost == Double.POSITIVE_INFINITY || passesEntrance(inside, count, k, m)){
+                        continue;
+                    }
+                    if(edgeCount == from.length){
+                        from = Arrays.copyOf(from, edgeCount * 2);
+                        to = Arrays.copyOf(to, edgeCount * 2);
+                        cost = Arrays.copyOf(cost, edgeCount * 2);
+                    }
+                    from[edgeCount] = node;
+                    to[edgeCount] = first + m;
+                    cost[edgeCount] = otherCost;
+                    edgeCount++;
+                }
+            }
+        }
+        // The edges were added node by node, so they are already grouped by their source.
+        edgeStart = new int[nodeCount + 1];
+        for(int e = 0; e < edgeCount; e++){
+            edgeStart[from[e] + 1]++;
+        }
+        for(int node = 0; node < nodeCount; node++){
+            edgeStart[node + 1] += edgeStart[node];
+        }
+        edgeTarget = Arrays.copyOf(to, edgeCount);
+        edgeCost = Arrays.copyOf(cost, edgeCount);
+    }
+
+    // Checks whether the k-th and the m-th entrance of a cluster are joined at no extra cost through a third
+    // entrance. Both parts are strictly cheaper, so the edges that replace a left-out one are kept or are
+    // replaced in turn by cheaper ones.
+    private static boolean passesEntrance(double[] inside, int count, int k, int m){
+        double direct = inside[k * count + m];
+        for(int v = 0; v < count; v++){
+            double first = inside[k * count + v];
+            double second = inside[v * count + m];
+            if(v != k && v != m && first < direct && second < direct && first + second <= direct){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the shortest path between two tiles.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @return an ArrayList of tiles representing the shortest path (from start to end),
+     *         or an empty list if the objective is unreachable
+     */
+    public ArrayList<Tile> algorithm(Tile start, Tile objective){
+        // Same as PathFinder.algorithm, a tile is not considered reachable from itself.
+        if(start.isEqual(objective)){
+            return new ArrayList<>();
+        }
+        return graph.toTiles(findPath(graph.id(start), graph.id(objective)));
+    }
+
+    /**
+     * Computes the cost of the shortest path on the abstract graph without refining it to tiles.
+     * @param start the id of the starting tile
+     * @param goal the id of the target tile
+     * @return the path cost, or infinity if the goal is unreachable
+     */
+    public double distance(int start, int goal){
+        if(start == goal){
+            return 0;
+        }
+        double cost = abstractSearch(start, goal);
+        if(cost == Double.POSITIVE_INFINITY && !exact){
+            return localSearch.search(start, goal);
+        }
+        return cost;
+    }
+
+    // In approximate mode an entrance can be cut off inside its cluster, so a missing abstract path
+    // is confirmed with a search on the whole map before the goal is reported as unreachable.
+    private int[] fallbackPath(int start, int goal){
+        if(exact || localSearch.search(start, goal) == Double.POSITIVE_INFINITY){
+            return null;
+        }
+        return localSearch.path(goal);
+    }
+
+    /**
+     * Computes the shortest path between two tiles and refines it to tile level.
+     * @param start the id of the starting tile
+     * @param goal the id of the target tile
+     * @return the tile ids of the path from start to goal, or null if the goal is unreachable
+     */
+    public int[] findPath(int start, int goal){
+        if(start == goal){
+            return new int[]{start};
+        }
+        if(abstractSearch(start, goal) == Double.POSITIVE_INFINITY){
+            return fallbackPath(start, goal);
+        }
+        int startNode = tileOfNode.length;
+        int goalNode = startNode + 1;
+        // Collect the abstract path backwards.
+        int length = 0;
+        for(int node = goalNode; node >= 0; node = abstractPrevious[node]){
+            length++;
+        }
+        int[] abstractPath = new int[length];
+        int index = length - 1;
+        for(int node = goalNode; node >= 0; node = abstractPrevious[node]){
+            abstractPath[index--] = node;
+        }
+        // Refine every abstract edge and glue the pieces together.
+        int[] path = new int[16];
+        path[0] = start;
+        int pathLength = 1;
+        for(int k = 0; k < abstractPath.length - 1; k++){
+            int fromTile = abstractPath[k] == startNode ? start : tileOfNode[abstractPath[k]];
+            int toTile = abstractPath[k + 1] == goalNode ? goal : tileOfNode[abstractPath[k + 1]];
+            int fromCluster = clusterOf(fromTile);
+            int[] piece;
+            if(fromCluster != clusterOf(toTile)){
+                piece = new int[]{fromTile, toTile}; // A move across a border.
+            }
+            else{
+                localSearch.search(fromTile, toTile, minCol(fromCluster), maxCol(fromCluster),
+                        minRow(fromCluster), maxRow(fromCluster), false);
+                piece = localSearch.path(toTile);
+            }
+            if(pathLength + piece.length > path.length){
+                path = Arrays.copyOf(path, Math.max(path.length * 2, pathLength + piece.length));
+            }
+            System.arraycopy(piece, 1, path, pathLength, piece.length - 1); // Avoid repeating tiles.
+            pathLength += piece.length - 1;
+        }
+        return Arrays.copyOf(path, pathLength);
+    }
+
+    // Connects the start and the goal to the entrances of their clusters and runs A* on the abstract graph.
+    private double abstractSearch(int start, int goal){
+        int startNode = tileOfNode.length;
+        int goalNode = startNode + 1;
+        int startCluster = clusterOf(start);
+        int goalCluster = clusterOf(goal);
+        // Costs from the start to the entrances of its cluster.
+        localSearch.search(start, -1, minCol(startCluster), maxCol(startCluster),
+                minRow(startCluster), maxRow(startCluster), false);
+        double[] startCosts = new double[clusterFirst[startCluster + 1] - clusterFirst[startCluster]];
+        for(int k = 0; k < startCosts.length; k++){
+            startCosts[k] = localSearch.cost(tileOfNode[clusterFirst[startCluster] + k]);
+        }
+        double directCost = startCluster == goalCluster ? localSearch.cost(goal) : Double.POSITIVE_INFINITY;
+        // Costs from the entrances of the goal's cluster to the goal.
+        localSearch.search(goal, -1, minCol(goalCluster), maxCol(goalCluster),
+                minRow(goalCluster), maxRow(goalCluster), true);
+        double[] goalCosts = new double[clusterFirst[goalCluster + 1] - clusterFirst[goalCluster]];
+        for(int k = 0; k < goalCosts.length; k++){
+            goalCosts[k] = localSearch.cost(tileOfNode[clusterFirst[goalCluster] + k]);
+        }
+
+        currentStamp++;
+        abstractQueue.clear();
+        abstractStamp[startNode] = currentStamp;
+        abstractCost[startNode] = 0;
+        abstractPrevious[startNode] = -1;
+        abstractQueue.push(heuristic(start, goal), startNode);
+        while(!abstractQueue.isEmpty()){
+            int node = abstractQueue.peekValue();
+            abstractQueue.pop();
+            if(settledStamp[node] == currentStamp){
+                continue;
+            }
+            settledStamp[node] = currentStamp;
+            if(node == goalNode){
+                return abstractCost[goalNode];
+            }
+            double cost = abstractCost[node];
+            if(node == startNode){
+                for(int k = 0; k < startCosts.length; k++){
+                    relax(node, clusterFirst[startCluster] + k, cost + startCosts[k], goal);
+                }
+                relax(node, goalNode, cost + directCost, goal);
+                continue;
+            }
+            for(int e = edgeStart[node]; e < edgeStart[node + 1]; e++){
+                relax(node, edgeTarget[e], cost + edgeCost[e], goal);
+            }
+            if(node >= clusterFirst[goalCluster] && node < clusterFirst[goalCluster + 1]){
+                relax(node, goalNode, cost + goalCosts[node - clusterFirst[goalCluster]], goal);
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    // Updates the cost of an abstract node and queues it if a cheaper path is found.
+    private void relax(int from, int to, double newCost, int goal){
+        if(newCost == Double.POSITIVE_INFINITY || settledStamp[to] == currentStamp){
+            return;
+        }
+        if(abstractStamp[to] != currentStamp || newCost < abstractCost[to]){
+            abstractStamp[to] = currentStamp;
+            abstractCost[to] = newCost;
+            abstractPrevious[to] = from;
+            int tile = to == tileOfNode.length + 1 ? goal : tileOfNode[to];
+            abstractQueue.push(newCost + heuristic(tile, goal), to);
+        }
+    }
+
+    // Lower bound of the cost between two tiles: every step costs at least the cheapest edge.
+    private double heuristic(int tile, int goal){
+        int distance = Math.abs(graph.col(tile) - graph.col(goal)) + Math.abs(graph.row(tile) - graph.row(goal));
+        return distance * graph.getMinimumCost();
+    }
+
+    // Returns the index of the cluster that keeps the tile.
+    private int clusterOf(int tile){
+        return (graph.col(tile) / clusterSize) * clusterRows + graph.row(tile) / clusterSize;
+    }
+
+    private int minCol(int cluster){
+        return (cluster / clusterRows) * clusterSize;
+    }
+
+    private int maxCol(int cluster){
+        return Math.min(graph.getCols(), minCol(cluster) + clusterSize) - 1;
+    }
+
+    private int minRow(int cluster){
+        return (cluster % clusterRows) * clusterSize;
+    }
+
+    private int maxRow(int cluster){
+        return Math.min(graph.getRows(), minRow(cluster) + clusterSize) - 1;
+    }
+
+    /**
+     * Returns whether the abstract graph keeps every border tile, which makes the costs optimal.
+     * @return true in exact mode, false otherwise
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Returns the number of entrance nodes in the abstract graph.
+     * @return the node count
+     */
+    public int getNodeCount() {
+        return tileOfNode.length;
+    }
+
+    /**
+     * Returns the number of edges in the abstract graph.
+     * @return the edge count
+     */
+    public int getEdgeCount() {
+        return edgeTarget.length;
+    }
+
+    /**
+     * Returns the time spent building the abstract graph.
+     * @return the preprocessing time in milliseconds
+     */
+    public double getPreprocessingMillis() {
+        return preprocessingNanos / 1e6;
+    }
+
+    /**
+     * Estimates the memory used by the abstract graph and the reused search state.
+     * @return the estimated size in bytes
+     */
+    public long estimateMemoryBytes(){
+        long tiles = graph.size();
+        long nodes = tileOfNode.length;
+        long edges = edgeTarget.length;
+        return tiles * 4 // nodeOfTile
+                + tiles * 16 // localSearch arrays
+                + nodes * 8 // tileOfNode, edgeStart
+                + edges * 12 // edgeTarget, edgeCost
+                + (nodes + 2) * 20 // abstract search arrays
+                + clusterFirst.length * 4L;
+    }
+}
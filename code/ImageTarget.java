@@ -0,0 +1,102 @@
+// Mehmet Arda Kutlu
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * RenderTarget that draws into an off-screen BufferedImage, so frames can be rendered without a
+ * display (for example in the frame-time benchmark).
+ */
+public class ImageTarget implements RenderTarget {
+    // The image that holds the current frame.
+    private final BufferedImage image;
+    // Graphics of the image, flipped so that y grows upwards like in StdDraw.
+    private final Graphics2D graphics;
+    // Height of the canvas in canvas units.
+    private final int canvasHeight;
+    // Pixels per canvas unit.
+    private final int pixelScale;
+    // Number of frames shown so far.
+    private int frameCount;
+
+    /**
+     * Constructor of the class.
+     * @param canvasWidth width of the canvas in canvas units
+     * @param canvasHeight height of the canvas in canvas units
+     * @param pixelScale pixels per canvas unit
+     */
+    ImageTarget(int canvasWidth, int canvasHeight, int pixelScale){
+        this.canvasHeight = canvasHeight;
+        this.pixelScale = pixelScale;
+        this.image = new BufferedImage(canvasWidth * pixelScale, canvasHeight * pixelScale, BufferedImage.TYPE_INT_RGB);
+        this.graphics = image.createGraphics();
+        graphics.scale(pixelScale, pixelScale);
+        graphics.setBackground(Color.WHITE);
+        graphics.clearRect(0, 0, canvasWidth, canvasHeight);
+        // Use the same hints as StdDraw.
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+    }
+
+    /**
+     * Returns the pixels per canvas unit.
+     * @return the pixel scale
+     */
+    @Override
+    public int getPixelScale(){
+        return pixelScale;
+    }
+
+    /**
+     * Draws a sprite centered at the given position.
+     * @param sprite the sprite to draw
+     * @param xCenter x center in canvas units
+     * @param yCenter y center in canvas units
+     * @param width width in canvas units
+     * @param height height in canvas units
+     */
+    @Override
+    public void picture(Sprite sprite, double xCenter, double yCenter, double width, double height){
+        graphics.drawImage(sprite.getImage(), (int) Math.round(xCenter - width / 2),
+                (int) Math.round(canvasHeight - yCenter - height / 2), (int) Math.round(width),
+                (int) Math.round(height), null);
+    }
+
+    /**
+     * Draws a filled circle.
+     * @param color color of the circle
+     * @param xCenter x center in canvas units
+     * @param yCenter y center in canvas units
+     * @param radius radius in canvas units
+     */
+    @Override
+    public void filledCircle(Color color, double xCenter, double yCenter, double radius){
+        graphics.setColor(color);
+        graphics.fill(new Ellipse2D.Double(xCenter - radius, canvasHeight - yCenter - radius, 2 * radius, 2 * radius));
+    }
+
+    /**
+     * Counts the frame; the image always holds the latest frame.
+     */
+    @Override
+    public void show(){
+        frameCount++;
+    }
+
+    /**
+     * Returns the image that holds the current frame.
+     * @return the frame image
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Returns the number of frames shown so far.
+     * @return the frame count
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+}
@@ -0,0 +1,475 @@
+// Mehmet Arda Kutlu
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The bitmask DP of ShortestRoute solved layer by layer, for more objectives than its table fits in
+ * memory. Layer k holds the states that visited k objectives; it is computed only from layer k - 1, so
+ * only these two layers are in use at a time. The states of a layer are numbered by the combinatorial
+ * number system, which packs them without gaps, and both the costs and the parent tiles are written to
+ * memory-mapped files in a directory. After every finished layer a small checkpoint file is replaced
+ * atomically, so a solve that is killed resumes from the last finished layer when it is started again
+ * with the same directory and the same objectives. The tour is rebuilt by reading the parent files
+ * backwards from the last layer. The tour is the same shortest tour that ShortestRoute finds, ties are
+ * broken the same way.
+ */
+public class LayeredHeldKarp {
+    // Checkpoint file header.
+    private static final int MAGIC = 0x47544b48;
+    private static final int VERSION = 1;
+    // Largest number of objectives: the parent tile is stored in a byte and the states in an int mask.
+    public static final int MAX_OBJECTIVES = 30;
+
+    // Directory of the layer files and the checkpoint.
+    private final File directory;
+    // Number of threads that compute a layer.
+    private final int threads;
+    // binomial[a][b] = a choose b.
+    private long[][] binomial;
+    // Layer the last solve resumed after (0 if it started from the beginning) and the bytes it wrote.
+    private int resumedLayer;
+    private long spilledBytes;
+    // Cost of the last tour.
+    private double lastCost;
+
+    /**
+     * A file of doubles or bytes mapped in segments of at most 1 GB, so layers larger than a single
+     * mapping fit. Distinct elements can be read and written from different threads.
+     */
+    private static class MappedArray {
+        private static final int SEGMENT_SHIFT = 30;
+        private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+        private final MappedByteBuffer[] segments;
+
+        MappedArray(File file, long bytes, boolean create) throws IOException {
+            try(RandomAccessFile randomAccess = new RandomAccessFile(file, "rw")){
+                if(create){
+                    randomAccess.setLength(bytes);
+                }
+                else if(randomAccess.length() != bytes){
+                    throw new IOException(file + " has " + randomAccess.length() + " bytes, expected " + bytes);
+                }
+                FileChannel channel = randomAccess.getChannel();
+                segments = new MappedByteBuffer[(int) ((bytes + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+                for(int segment = 0; segment < segments.length; segment++){
+                    long start = (long) segment << SEGMENT_SHIFT;
+                    segments[segment] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(bytes - start, 1L << SEGMENT_SHIFT));
+                }
+            }
+        }
+
+        double getDouble(long index){
+            long offset = index << 3;
+            return segments[(int) (offset >>> SEGMENT_SHIFT)].getDouble((int) (offset & SEGMENT_MASK));
+        }
+
+        void putDouble(long index, double value){
+            long offset = index << 3;
+            segments[(int) (offset >>> SEGMENT_SHIFT)].putDouble((int) (offset & SEGMENT_MASK), value);
+        }
+
+        byte getByte(long index){
+            return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+        }
+
+        void putByte(long index, byte value){
+            segments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK), value);
+        }
+
+        // Writes the pages back to the file and releases the mappings.
+        void close(){
+            for(MappedByteBuffer segment : segments){
+                segment.force();
+                PagedGrid.unmap(segment);
+            }
+        }
+    }
+
+    /**
+     * Constructor of the class.
+     * @param directory the directory of the layer files and the checkpoint, created if needed
+     * @param threads number of threads that compute a layer
+     */
+    LayeredHeldKarp(File directory, int threads){
+        this.directory = directory;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Finds the shortest tour that starts at the knight's position, visits all reachable objectives and
+     * returns to the start, resuming from the checkpoint in the directory if it belongs to the same
+     * objectives. The files (and the directory, if it is empty) are deleted when the tour is found.
+     * @param start the starting Tile (Knight's initial position)
+     * @param objectives list of objective tiles (coin positions)
+     * @param pathFinder the PathFinder object used for shortest path calculations
+     * @return the tour, empty if there is no valid tour
+     * @throws IOException if the layer files cannot be written
+     */
+    public Tour planShortestTour(Tile start, List<Tile> objectives, PathFinder pathFinder) throws IOException {
+        long phaseStart = Metrics.startPhase();
+        ArrayList<Tile> allTiles = new ArrayList<>();
+        allTiles.add(start);
+        for(Tile objective : objectives){
+            if(pathFinder.hasPath(start, objective)){
+                allTiles.add(objective);
+            }
+        }
+        Metrics.endPhase("reachability", phaseStart);
+        int m = allTiles.size() - 1;
+        if(m == 0){
+            return new Tour(new ArrayList<>(), pathFinder);
+        }
+        if(m > MAX_OBJECTIVES){
+            throw new IllegalArgumentException("The layered DP supports up to " + MAX_OBJECTIVES + " objectives, got " + m);
+        }
+
+        phaseStart = Metrics.startPhase();
+        double[][] cost = new double[m + 1][m + 1];
+        for(int i = 0; i <= m; i++){
+            for(int j = 0; j <= m; j++){
+                if(i == j){
+                    cost[i][j] = Double.POSITIVE_INFINITY;
+                    continue;
+                }
+                cost[i][j] = pathFinder.pathCost(allTiles.get(i), allTiles.get(j));
+            }
+        }
+        Metrics.endPhase("distanceMatrix", phaseStart);
+
+        int[] order = solve(cost);
+        if(order == null){
+            return new Tour(new ArrayList<>(), pathFinder);
+        }
+        ArrayList<Tile> stops = new ArrayList<>();
+        for(int node : order){
+            stops.add(allTiles.get(node));
+        }
+        return new Tour(stops, pathFinder);
+    }
+
+    /**
+     * Solves the DP for a cost matrix whose first tile is the start.
+     * @param cost cost[i][j] = travel cost from tile i to tile j (infinity if unreachable)
+     * @return the tiles of the shortest tour from the start back to it, or null if there is no tour
+     * @throws IOException if the layer files cannot be written
+     */
+    public int[] solve(double[][] cost) throws IOException {
+        int m = cost.length - 1;
+        directory.mkdirs();
+        binomial = new long[m + 1][m + 1];
+        for(int a = 0; a <= m; a++){
+            binomial[a][0] = 1;
+            for(int b = 1; b <= a; b++){
+                binomial[a][b] = binomial[a - 1][b - 1] + (b <= a - 1 ? binomial[a - 1][b] : 0);
+            }
+        }
+        long hash = hash(cost);
+        resumedLayer = readCheckpoint(m, hash);
+        spilledBytes = 0;
+
+        long phaseStart = Metrics.startPhase();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try{
+            MappedArray previous = resumedLayer == 0 || resumedLayer == m ? null : openLayer(resumedLayer, false);
+            for(int k = resumedLayer + 1; k <= m; k++){
+                MappedArray current = openLayer(k, true);
+                MappedArray parent = openParents(k, true);
+                fillLayer(cost, k, previous, current, parent, executor);
+                parent.close();
+                if(previous != null){
+                    previous.close();
+                }
+                // The layer is on disk before the checkpoint says so; the layer before it is not needed anymore.
+                current.close();
+                writeCheckpoint(m, hash, k);
+                new File(directory, "layer-" + (k - 1) + ".dp").delete();
+                previous = k < m ? openLayer(k, false) : null;
+            }
+        }
+        finally{
+            executor.shutdownNow();
+        }
+        Metrics.endPhase("dpFill", phaseStart);
+
+        phaseStart = Metrics.startPhase();
+        int[] order = reconstruct(cost);
+        Metrics.endPhase("reconstruction", phaseStart);
+        deleteFiles(m);
+        return order;
+    }
+
+    // Computes layer k from layer k - 1, the ranks of the layer are split between the threads.
+    private void fillLayer(double[][] cost, int k, MappedArray previous, MappedArray current, MappedArray parent,
+                           ExecutorService executor) throws IOException {
+        int m = cost.length - 1;
+        long states = binomial[m][k];
+        int parts = (int) Math.min(states, threads * 4L);
+        List<Future<Void>> tasks = new ArrayList<>();
+        for(int part = 0; part < parts; part++){
+            long from = states * part / parts;
+            long to = states * (part + 1) / parts;
+            tasks.add(executor.submit((Callable<Void>) () -> {
+                fillRanks(cost, k, from, to, previous, current, parent);
+                return null;
+            }));
+        }
+        for(Future<Void> task : tasks){
+            try{
+                task.get();
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while filling layer " + k, e);
+            }
+            catch(ExecutionException e){
+                throw new IOException("Cannot fill layer " + k, e.getCause());
+            }
+        }
+        spilledBytes += states * k * 9;
+    }
+
+    // Fills the states with ranks from to to - 1 of layer k. Objective e is tile e + 1 of the cost matrix.
+    private void fillRanks(double[][] cost, int k, long from, long to, MappedArray previous, MappedArray current,
+                           MappedArray parent){
+        int[] elements = new int[k];
+        long[] rankWithout = new long[k];
+        int subset = unrank(from, k);
+        for(long rank = from; rank < to; rank++){
+            // The objectives of the state in increasing order.
+            int bits = subset;
+            for(int t = 0; t < k; t++){
+                elements[t] = Integer.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+            // Rank of the state without its p-th objective: the objectives after it move one place down.
+            long suffix = 0;
+            for(int p = k - 1; p >= 0; p--){
+                rankWithout[p] = suffix;
+                suffix += p == 0 ? 0 : binomial[elements[p]][p];
+            }
+            long prefix = 0;
+            for(int p = 0; p < k; p++){
+                rankWithout[p] += prefix;
+                prefix += binomial[elements[p]][p + 1];
+            }
+            for(int p = 0; p < k; p++){
+                int next = elements[p] + 1;
+                double minCost = Double.POSITIVE_INFINITY;
+                int minLast = 0;
+                if(k == 1){
+                    minCost = cost[0][next];
+                }
+                else{
+                    long base = rankWithout[p] * (k - 1);
+                    // The objectives are tried in increasing order, like the kernel tries the tiles.
+                    for(int q = 0; q < k; q++){
+                        if(q == p){
+                            continue;
+                        }
+                        int last = elements[q] + 1;
+                        double newCost = previous.getDouble(base + (q < p ? q : q - 1)) + cost[last][next];
+                        if(newCost < minCost){
+                            minCost = newCost;
+                            minLast = last;
+                        }
+                    }
+                }
+                current.putDouble(rank * k + p, minCost);
+                parent.putByte(rank * k + p, (byte) minLast);
+            }
+            // The next subset with k objectives in colex order (Gosper's hack).
+            if(rank + 1 < to){
+                int lowest = subset & -subset;
+                int ripple = subset + lowest;
+                subset = (((ripple ^ subset) >>> 2) / lowest) | ripple;
+            }
+        }
+    }
+
+    // Returns the subset of k objectives with the given rank in colex order.
+    private int unrank(long rank, int k){
+        int subset = 0;
+        int element = binomial.length - 1;
+        for(int t = k; t >= 1; t--){
+            while(binomial[element][t] > rank){
+                element--;
+            }
+            subset |= 1 << element;
+            rank -= binomial[element][t];
+            element--;
+        }
+        return subset;
+    }
+
+    // Returns the rank of a subset in colex order.
+    private long rank(int subset){
+        long rank = 0;
+        int t = 1;
+        for(int bits = subset; bits != 0; bits &= bits - 1){
+            rank += binomial[Integer.numberOfTrailingZeros(bits)][t++];
+        }
+        return rank;
+    }
+
+    // Rebuilds the tour by walking the parent files from the last layer back to the first.
+    private int[] reconstruct(double[][] cost) throws IOException {
+        int m = cost.length - 1;
+        MappedArray last = openLayer(m, false);
+        double minCost = Double.POSITIVE_INFINITY;
+        int lastPosition = -1;
+        for(int p = 0; p < m; p++){
+            if(cost[p + 1][0] == Double.POSITIVE_INFINITY) continue; // Can't return to start.
+            double tourCost = last.getDouble(p) + cost[p + 1][0];
+            if(tourCost < minCost){
+                minCost = tourCost;
+                lastPosition = p;
+            }
+        }
+        last.close();
+        lastCost = minCost;
+        if(lastPosition < 0){
+            return null;
+        }
+        int[] order = new int[m + 2];
+        int subset = (int) ((1L << m) - 1);
+        int tile = lastPosition + 1;
+        for(int k = m; k >= 1; k--){
+            order[k] = tile;
+            if(k == 1){
+                break;
+            }
+            MappedArray parent = openParents(k, false);
+            int position = Integer.bitCount(subset & ((1 << (tile - 1)) - 1));
+            int previousTile = parent.getByte(rank(subset) * k + position);
+            parent.close();
+            subset &= ~(1 << (tile - 1));
+            tile = previousTile;
+        }
+        return order;
+    }
+
+    // Maps the cost file of a layer.
+    private MappedArray openLayer(int k, boolean create) throws IOException {
+        int m = binomial.length - 1;
+        return new MappedArray(new File(directory, "layer-" + k + ".dp"), binomial[m][k] * k * 8, create);
+    }
+
+    // Maps the parent file of a layer.
+    private MappedArray openParents(int k, boolean create) throws IOException {
+        int m = binomial.length - 1;
+        return new MappedArray(new File(directory, "layer-" + k + ".parent"), binomial[m][k] * k, create);
+    }
+
+    // Returns the last finished layer of the checkpoint if it belongs to the same problem and its files
+    // are there, otherwise 0.
+    private int readCheckpoint(int m, long hash){
+        File checkpoint = new File(directory, "checkpoint");
+        if(!checkpoint.exists()){
+            return 0;
+        }
+        try(DataInputStream input = new DataInputStream(new FileInputStream(checkpoint))){
+            if(input.readInt() != MAGIC || input.readInt() != VERSION || input.readInt() != m || input.readLong() != hash){
+                return 0;
+            }
+            int layer = input.readInt();
+            if(layer < 1 || layer > m || !new File(directory, "layer-" + layer + ".dp").exists()){
+                return 0;
+            }
+            for(int k = 1; k <= layer; k++){
+                if(!new File(directory, "layer-" + k + ".parent").exists()){
+                    return 0;
+                }
+            }
+            return layer;
+        }
+        catch(IOException e){
+            // A broken checkpoint is ignored, the solve starts over.
+            return 0;
+        }
+    }
+
+    // Records that layer k is finished: the checkpoint is written to a temporary file and renamed over
+    // the old one, so a killed run leaves either the old or the new checkpoint.
+    private void writeCheckpoint(int m, long hash, int k) throws IOException {
+        File temporary = new File(directory, "checkpoint.tmp");
+        try(FileOutputStream file = new FileOutputStream(temporary);
+            DataOutputStream output = new DataOutputStream(file)){
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(m);
+            output.writeLong(hash);
+            output.writeInt(k);
+            output.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary.toPath(), new File(directory, "checkpoint").toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Deletes the layer files and the checkpoint of a finished solve.
+    private void deleteFiles(int m){
+        for(int k = 1; k <= m; k++){
+            new File(directory, "layer-" + k + ".dp").delete();
+            new File(directory, "layer-" + k + ".parent").delete();
+        }
+        new File(directory, "checkpoint").delete();
+        // Only removed if nothing else is in it.
+        directory.delete();
+    }
+
+    // FNV-1a hash of the cost matrix, identifies the problem a checkpoint belongs to.
+    private static long hash(double[][] cost){
+        long hash = 0xcbf29ce484222325L;
+        for(double[] row : cost){
+            for(double value : row){
+                long bits = Double.doubleToLongBits(value);
+                for(int shift = 0; shift < 64; shift += 8){
+                    hash ^= (bits >>> shift) & 0xFF;
+                    hash *= 0x100000001b3L;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the layer the last solve resumed after.
+     * @return the last finished layer of the checkpoint, 0 if the solve started from the beginning
+     */
+    public int getResumedLayer() {
+        return resumedLayer;
+    }
+
+    /**
+     * Returns the number of bytes the last solve wrote to the layer files.
+     * @return the spilled byte count
+     */
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * Returns the cost of the last tour.
+     * @return the tour cost, infinity if there was no tour
+     */
+    public double getLastCost() {
+        return lastCost;
+    }
+}
@@ -24,68 +24,132 @@ public class Main {
         argsIndex += 1;
         objectivesName = args[argsIndex];
 
-        // Create the Reader object.
-        Reader reader = new Reader(mapDataName, objectivesName);
-
-        // Create the Map object.
-        Map map = new Map(reader.readMap(), reader.readMap());
-
-        // Fill the tile array of the map with Tile objects using the information from the map data file.
-        while(reader.isMapInfoFinished()){
-            int colNum = reader.readMap();
-            int rowNum = reader.readMap();
-            map.fillTiles(colNum, rowNum ,new Tile(colNum, rowNum, reader.readMap()));
+        // Time the loading of the input files when metrics are enabled.
+        long phaseStart = Metrics.startPhase();
+
+        // With goldtrail.snapshot=file, the map, the travel costs, the reachability and the costs between the
+        // stops come from the snapshot an earlier run saved for the same input files, without parsing them.
+        SessionSnapshot snapshot = SessionSnapshot.fromProperties(mapDataName, travelCostsName, objectivesName);
+        Map map;
+        Knight knight;
+        PathFinder pathFinder;
+        if(snapshot != null && snapshot.isLoaded()){
+            map = snapshot.restoreMap();
+            knight = map.getKnight();
+            pathFinder = snapshot.restorePathFinder();
         }
-        map.adjacentFinder(); // Find adjacent tiles for every tile in the map.
-
-        // Create the Knight object.
-        Knight knight = new Knight(reader.readObjectives(), reader.readObjectives());
-        map.setKnight(knight);
-
-        // Crate the PathFinder object.
-        PathFinder pathFinder = new PathFinder(travelCostsName);
-
-        // Fill the coin array of the map with Coin objects using the information from the objectives file.
-        while(reader.isObjectiveInfoFinished()){
-            int objectiveCol = reader.readObjectives();
-            int objectiveRow = reader.readObjectives();
-            map.addCoin(new Coin(objectiveCol, objectiveRow));
+        else{
+            // Create the Reader object.
+            Reader reader = new Reader(mapDataName, objectivesName);
+
+            // Create the Map object.
+            map = new Map(reader.readMap(), reader.readMap());
+
+            // Fill the tile array of the map with Tile objects using the information from the map data file.
+            while(reader.isMapInfoFinished()){
+                int colNum = reader.readMap();
+                int rowNum = reader.readMap();
+                map.fillTiles(colNum, rowNum ,new Tile(colNum, rowNum, reader.readMap()));
+            }
+            map.adjacentFinder(); // Find adjacent tiles for every tile in the map.
+
+            // Create the Knight object.
+            knight = new Knight(reader.readObjectives(), reader.readObjectives());
+            map.setKnight(knight);
+
+            // Crate the PathFinder object.
+            // With goldtrail.loadThreads, travelCosts.txt is parsed on that many threads into flat cost arrays.
+            Integer loadThreads = Integer.getInteger("goldtrail.loadThreads");
+            pathFinder = loadThreads == null ? new PathFinder(travelCostsName)
+                    : new PathFinder(new File("misc/" + travelCostsName), map.getTiles().length, map.getTiles()[0].length, loadThreads);
+
+            // Fill the coin array of the map with Coin objects using the information from the objectives file.
+            while(reader.isObjectiveInfoFinished()){
+                int objectiveCol = reader.readObjectives();
+                int objectiveRow = reader.readObjectives();
+                map.addCoin(new Coin(objectiveCol, objectiveRow));
+            }
+
+            // Close the Scanner objects to avoid unexpected behavior.
+            reader.closeScanners();
+        }
+        Metrics.endPhase("mapLoad", phaseStart);
+        // A snapshot that was not loaded takes the loaded input, to be saved at the end.
+        if(snapshot != null){
+            if(!snapshot.isLoaded()){
+                snapshot.capture(map, pathFinder);
+            }
+            snapshot.explain(System.err);
+            pathFinder.setSnapshot(snapshot);
         }
 
-        // Close the Scanner objects to avoid unexpected behavior.
-        reader.closeScanners();
+        // Choose how the paths are found from the size of the input and the machine, and explain it on stderr.
+        // On small maps every tile-to-tile path can be computed up front, so the path queries are lookups.
+        QueryPlanner planner = new QueryPlanner(map, pathFinder, false, snapshot);
+        planner.explain(System.err);
+        pathFinder.setDistanceTable(planner.buildDistanceTable());
 
         // Create new AlgorithmRunner object.
-        AlgorithmRunner algorithmRunner = new AlgorithmRunner(map, pathFinder, new Writer("out/output.txt"));
+        // With goldtrail.trace=binary or deflate, a binary trace is written to out/output.trace instead of output.txt.
+        TraceEncoder trace = TraceEncoder.fromProperties("out/output.trace", false);
+        AlgorithmRunner algorithmRunner = new AlgorithmRunner(map, pathFinder, trace == null ? new Writer("out/output.txt") : null);
+        algorithmRunner.setTrace(trace);
+        if(snapshot != null){
+            algorithmRunner.setReachability(snapshot.getReachability());
+        }
+        // With more than one leg thread (goldtrail.legThreads, or chosen by the planner), the legs are
+        // computed in parallel before they are written in order.
+        algorithmRunner.setLegThreads(planner.getLegThreads());
         boolean isAllUnreachable = algorithmRunner.isAllUnreachable();
 
-        // Prepare the canvas if -draw flag is used and there is at least one reachable objective.
-        if(!isAllUnreachable && willDraw){
+        // Prepare the canvas and start the animation if -draw flag is used and there is at least one
+        // reachable objective. The animation plays on its own thread, so the output is not slowed down.
+        // With goldtrail.export, the frames are written as images instead of being drawn on the screen.
+        FrameExporter frameExporter = isAllUnreachable ? null : FrameExporter.fromProperties(map, false);
+        ReplayPlayer replayPlayer = null;
+        if(frameExporter != null){
+            algorithmRunner.setStepListener(frameExporter.getStepListener());
+            frameExporter.start();
+        }
+        else if(!isAllUnreachable && willDraw){
             int canvasWidth = map.getCanvasWidth();
             int canvasHeight = map.getCanvasHeight();
             StdDraw.setCanvasSize(canvasWidth, canvasHeight);
             StdDraw.setXscale(0.0, canvasWidth);
             StdDraw.setYscale(0.0, canvasHeight);
             StdDraw.enableDoubleBuffering();
-        }
-
-        // Draw the map for the first time and wait for a while before the animation begins.
-        if(!isAllUnreachable && willDraw){
-            map.draw();
-            StdDraw.pause(500);
+            replayPlayer = new ReplayPlayer(map, false);
+            algorithmRunner.setStepListener(replayPlayer);
+            replayPlayer.start();
         }
 
         // Run the algorithm, write the output to output.txt
-        algorithmRunner.run(willDraw, isAllUnreachable);
-        algorithmRunner.write(String.format("Total Step: %d, Total Cost: %.2f\n",
-                              algorithmRunner.getTotalStep(), algorithmRunner.getTotalCost()));
+        algorithmRunner.run();
+        algorithmRunner.writeTotal();
 
         // Close BufferedWriter object to avoid unexpected behavior.
         algorithmRunner.closeBuffer();
+        // Save the snapshot for the next run, with the costs this run computed.
+        if(snapshot != null){
+            snapshot.save(false);
+        }
+        // Write the metrics summary if metrics are enabled.
+        Metrics.writeSummary();
 
-        // Draw the final state of the map (where all the reachable coins are collected).
-        if(!isAllUnreachable && willDraw){
-            map.draw();
+        // Write the remaining frames if they are exported.
+        if(frameExporter != null){
+            frameExporter.finish();
+        }
+        // Let the animation play the remaining steps and draw the final state of the map
+        // (where all the reachable coins are collected).
+        if(replayPlayer != null){
+            replayPlayer.finish();
+            try{
+                replayPlayer.await();
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
         }
     }
 }
@@ -1,6 +1,7 @@
 // Mehmet Arda Kutlu
 
-import java.awt.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 
 /**
@@ -20,6 +21,8 @@ public class Map {
     // Width and height of the canvas, which are dynamic values adjusted with respect to the map size.
     private int canvasHeight;
     private int canvasWidth;
+    // Draws the frames of the animation, created on the first draw.
+    private MapRenderer renderer;
 
     /**
      * Constructor of the class. Defines the length of the tiles array and sets the canvas dimensions.
@@ -148,48 +151,11 @@ public class Map {
     }
 
     /**
-     * Draws the components of the map to the canvas.
+     * Draws the components of the map to the canvas. Only the tiles that changed since the last
+     * frame are redrawn on top of the pre-composed terrain.
      */
     public void draw(){
-        int xInterval = canvasWidth / col;
-        int yInterval = canvasHeight / row;
-        double xCenter;
-        double yCenter;
-        // Draw the tiles.
-        for(Tile[] tileList : tiles){
-            for(Tile tile : tileList){
-                xCenter = xInterval / 2.0 + tile.getColumn() * xInterval;
-                yCenter = canvasHeight - yInterval / 2.0 - tile.getRow() * yInterval;
-                // Draw considering types using enhanced switch.
-                switch(tile.getType()){
-                    case 0 -> StdDraw.picture(xCenter,yCenter,"misc/grassTile.jpeg",xInterval,yInterval);
-                    case 1 -> StdDraw.picture(xCenter,yCenter,"misc/sandTile.png",xInterval,yInterval);
-                    case 2 -> StdDraw.picture(xCenter,yCenter,"misc/impassableTile.jpeg",xInterval,yInterval);
-                }
-                // If the algorithm marked the tile as on the path, it will be drawn
-                // with a red circle at its center.
-                if(tile.isMarked()){
-                    StdDraw.setPenColor(StdDraw.RED);
-                    StdDraw.filledCircle(xCenter,yCenter,5);
-                }
-            }
-        }
-        xCenter = xCenterFinder(knight.getColNum());
-        yCenter = yCenterFinder(knight.getRowNum());
-
-        // Draw the knight.
-        StdDraw.picture(xCenter,yCenter,"misc/knight.png",xInterval,yInterval);
-
-        // Draw the coins that are not marked as collected by the algorithm.
-        for(Coin coin : coins){
-            if(!coin.isCollected()){
-                xCenter = xCenterFinder(coin.getColNum());
-                yCenter = yCenterFinder(coin.getRowNum());
-                StdDraw.picture(xCenter,yCenter,"misc/coin.png",xInterval,yInterval);
-            }
-        }
-        // Show the contents.
-        StdDraw.show();
+        getRenderer().drawFrame(false);
     }
 
     /**
@@ -226,43 +192,32 @@ public class Map {
      * Key difference with the regular draw is showing the path that the knight follows.
      */
     public void drawBonus(){
-        int xInterval = canvasWidth / col;
-        int yInterval = canvasHeight / row;
-        double xCenter;
-        double yCenter;
-        // Draw the tiles with respect to their types.
-        for(Tile[] tileList : tiles){
-            for(Tile tile : tileList){
-                xCenter = xInterval / 2.0 + tile.getColumn() * xInterval;
-                yCenter = canvasHeight - yInterval / 2.0 - tile.getRow() * yInterval;
-                switch(tile.getType()){
-                    case 0 -> StdDraw.picture(xCenter,yCenter,"misc/grassTile.jpeg",xInterval,yInterval);
-                    case 1 -> StdDraw.picture(xCenter,yCenter,"misc/sandTile.png",xInterval,yInterval);
-                    case 2 -> StdDraw.picture(xCenter,yCenter,"misc/impassableTile.jpeg",xInterval,yInterval);
-                }
-                // Unlike the regular draw,
-                // every path between two objectives (coins) is drawn with a different color.
-                if(tile.isMarked()){
-                    StdDraw.setPenColor(tile.getMarkColor());
-                    StdDraw.filledCircle(xCenter,yCenter,5);
-                }
-            }
-        }
-        xCenter = xCenterFinder(knight.getColNum());
-        yCenter = yCenterFinder(knight.getRowNum());
+        // Unlike the regular draw,
+        // every path between two objectives (coins) is drawn with a different color.
+        getRenderer().drawFrame(true);
+    }
 
-        // Draw the knight.
-        StdDraw.picture(xCenter,yCenter,"misc/knight.png",xInterval,yInterval);
+    /**
+     * Sets the renderer that draws the frames, for example one that draws off-screen.
+     * @param renderer the new renderer
+     */
+    public void setRenderer(MapRenderer renderer) {
+        this.renderer = renderer;
+    }
 
-        // Draw the coins which are not collected by the knight.
-        for(Coin coin : coins){
-            if(!coin.isCollected()){
-                xCenter = xCenterFinder(coin.getColNum());
-                yCenter = yCenterFinder(coin.getRowNum());
-                StdDraw.picture(xCenter,yCenter,"misc/coin.png",xInterval,yInterval);
+    /**
+     * Returns the renderer of the map, creating one that draws on the StdDraw window on the first call.
+     * @return the renderer of the map
+     */
+    public MapRenderer getRenderer(){
+        if(renderer == null){
+            try{
+                renderer = new MapRenderer(this, new StdDrawTarget());
+            }
+            catch(IOException e){
+                throw new UncheckedIOException(e);
             }
         }
-        // Show the contents.
-        StdDraw.show();
+        return renderer;
     }
 }
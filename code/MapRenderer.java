@@ -0,0 +1,222 @@
+// Mehmet Arda Kutlu
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Draws the frames of the map animation. The terrain images are decoded and scaled once, and the
+ * static terrain of the whole map is composed into one image when the renderer is created. The first
+ * frame draws that image and the dynamic elements on top of it; every later frame only redraws the
+ * tiles whose mark, coin or knight state changed, so the cost of a frame depends on what changed
+ * instead of on the map size.
+ */
+public class MapRenderer {
+    // Size of a tile in canvas units.
+    private static final int TILE_SIZE = 30;
+    // Radius of the path marks in canvas units.
+    private static final double MARK_RADIUS = 5;
+    // The map that is drawn.
+    private final Map map;
+    // The surface the frames are drawn on.
+    private final RenderTarget target;
+    // Number of tile columns and rows.
+    private final int cols;
+    private final int rows;
+    // Terrain sprites indexed by tile type (grass, sand, impassable).
+    private final Sprite[] terrainSprites = new Sprite[3];
+    // Sprites of the knight and the coins.
+    private final Sprite knightSprite;
+    private final Sprite coinSprite;
+    // The static terrain of the whole map in one image.
+    private final Sprite terrain;
+    // Coins indexed by the id (col * rows + row) of the tile they are on.
+    private final HashMap<Integer, ArrayList<Coin>> coinsByTile = new HashMap<>();
+    // Whether each tile must be redrawn in the next frame, and the list of those tiles.
+    private final boolean[] dirty;
+    private final int[] dirtyTiles;
+    private int dirtyCount;
+    // Knight position and coin states of the last frame.
+    private int lastKnightCol = -1;
+    private int lastKnightRow = -1;
+    private final boolean[] lastCollected;
+    // Whether the first (full) frame was drawn.
+    private boolean started;
+
+    /**
+     * Constructor of the class. Decodes the images and composes the terrain layer.
+     * The knight and the coins must already be added to the map.
+     * @param map the map to draw
+     * @param target the surface to draw on
+     * @throws IOException if an image in misc/ cannot be read
+     */
+    MapRenderer(Map map, RenderTarget target) throws IOException {
+        this.map = map;
+        this.target = target;
+        Tile[][] tiles = map.getTiles();
+        this.cols = tiles.length;
+        this.rows = tiles[0].length;
+        int pixels = TILE_SIZE * target.getPixelScale();
+        terrainSprites[0] = Sprite.load("misc/grassTile.jpeg", pixels, pixels);
+        terrainSprites[1] = Sprite.load("misc/sandTile.png", pixels, pixels);
+        terrainSprites[2] = Sprite.load("misc/impassableTile.jpeg", pixels, pixels);
+        knightSprite = Sprite.load("misc/knight.png", pixels, pixels);
+        coinSprite = Sprite.load("misc/coin.png", pixels, pixels);
+
+        // Compose the terrain of every tile into one image.
+        BufferedImage terrainImage = new BufferedImage(cols * pixels, rows * pixels, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = terrainImage.createGraphics();
+        for(Tile[] tileList : tiles){
+            for(Tile tile : tileList){
+                graphics.drawImage(terrainSprites[tile.getType()].getImage(), tile.getColumn() * pixels,
+                        tile.getRow() * pixels, null);
+            }
+        }
+        graphics.dispose();
+        terrain = new Sprite(terrainImage);
+
+        for(Coin coin : map.getCoins()){
+            coinsByTile.computeIfAbsent(id(coin.getColNum(), coin.getRowNum()), key -> new ArrayList<>()).add(coin);
+        }
+        lastCollected = new boolean[map.getCoins().size()];
+        dirty = new boolean[cols * rows];
+        dirtyTiles = new int[cols * rows];
+        // Collect the tiles whose marks change between frames.
+        for(Tile[] tileList : tiles){
+            for(Tile tile : tileList){
+                tile.setChangeListener(changed -> markDirty(changed.getColumn(), changed.getRow()));
+            }
+        }
+    }
+
+    /**
+     * Draws a frame. The first frame draws the whole map; later frames only redraw the changed tiles.
+     * @param bonus whether the marks are drawn with their own colors (bonus part) instead of red
+     */
+    public void drawFrame(boolean bonus){
+        if(!started){
+            drawFull(bonus);
+            return;
+        }
+        Knight knight = map.getKnight();
+        if(knight.getColNum() != lastKnightCol || knight.getRowNum() != lastKnightRow){
+            markDirty(lastKnightCol, lastKnightRow);
+            markDirty(knight.getColNum(), knight.getRowNum());
+        }
+        ArrayList<Coin> coins = map.getCoins();
+        for(int i = 0; i < coins.size(); i++){
+            if(coins.get(i).isCollected() != lastCollected[i]){
+                markDirty(coins.get(i).getColNum(), coins.get(i).getRowNum());
+            }
+        }
+        for(int k = 0; k < dirtyCount; k++){
+            int id = dirtyTiles[k];
+            dirty[id] = false;
+            drawTile(map.getTiles()[id / rows][id % rows], bonus);
+        }
+        dirtyCount = 0;
+        rememberState();
+        target.show();
+    }
+
+    /**
+     * Draws the whole map: the terrain layer, every mark, the knight and the coins.
+     * @param bonus whether the marks are drawn with their own colors (bonus part) instead of red
+     */
+    public void drawFull(boolean bonus){
+        double canvasWidth = cols * TILE_SIZE;
+        double canvasHeight = rows * TILE_SIZE;
+        target.picture(terrain, canvasWidth / 2, canvasHeight / 2, canvasWidth, canvasHeight);
+        for(Tile[] tileList : map.getTiles()){
+            for(Tile tile : tileList){
+                if(tile.isMarked()){
+                    target.filledCircle(bonus ? tile.getMarkColor() : Color.RED, xCenter(tile.getColumn()),
+                            yCenter(tile.getRow()), MARK_RADIUS);
+                }
+            }
+        }
+        Knight knight = map.getKnight();
+        target.picture(knightSprite, xCenter(knight.getColNum()), yCenter(knight.getRowNum()), TILE_SIZE, TILE_SIZE);
+        for(Coin coin : map.getCoins()){
+            if(!coin.isCollected()){
+                target.picture(coinSprite, xCenter(coin.getColNum()), yCenter(coin.getRowNum()), TILE_SIZE, TILE_SIZE);
+            }
+        }
+        for(int k = 0; k < dirtyCount; k++){
+            dirty[dirtyTiles[k]] = false;
+        }
+        dirtyCount = 0;
+        started = true;
+        rememberState();
+        target.show();
+    }
+
+    /**
+     * Returns the surface the frames are drawn on.
+     * @return the render target
+     */
+    public RenderTarget getTarget() {
+        return target;
+    }
+
+    // Redraws one tile with everything on it, in the same order as a full frame.
+    private void drawTile(Tile tile, boolean bonus){
+        double xCenter = xCenter(tile.getColumn());
+        double yCenter = yCenter(tile.getRow());
+        target.picture(terrainSprites[tile.getType()], xCenter, yCenter, TILE_SIZE, TILE_SIZE);
+        if(tile.isMarked()){
+            target.filledCircle(bonus ? tile.getMarkColor() : Color.RED, xCenter, yCenter, MARK_RADIUS);
+        }
+        Knight knight = map.getKnight();
+        if(knight.getColNum() == tile.getColumn() && knight.getRowNum() == tile.getRow()){
+            target.picture(knightSprite, xCenter, yCenter, TILE_SIZE, TILE_SIZE);
+        }
+        ArrayList<Coin> coins = coinsByTile.get(id(tile.getColumn(), tile.getRow()));
+        if(coins != null){
+            for(Coin coin : coins){
+                if(!coin.isCollected()){
+                    target.picture(coinSprite, xCenter, yCenter, TILE_SIZE, TILE_SIZE);
+                }
+            }
+        }
+    }
+
+    // Adds a tile to the tiles that are redrawn in the next frame.
+    private void markDirty(int col, int row){
+        if(col < 0 || row < 0){
+            return;
+        }
+        int id = id(col, row);
+        if(!dirty[id]){
+            dirty[id] = true;
+            dirtyTiles[dirtyCount++] = id;
+        }
+    }
+
+    // Stores the knight position and the coin states that were drawn.
+    private void rememberState(){
+        lastKnightCol = map.getKnight().getColNum();
+        lastKnightRow = map.getKnight().getRowNum();
+        ArrayList<Coin> coins = map.getCoins();
+        for(int i = 0; i < coins.size(); i++){
+            lastCollected[i] = coins.get(i).isCollected();
+        }
+    }
+
+    // Returns the id of a tile.
+    private int id(int col, int row){
+        return col * rows + row;
+    }
+
+    // Returns the x center of a column in canvas units.
+    private double xCenter(int col){
+        return TILE_SIZE / 2.0 + col * TILE_SIZE;
+    }
+
+    // Returns the y center of a row in canvas units.
+    private double yCenter(int row){
+        return rows * TILE_SIZE - TILE_SIZE / 2.0 - row * TILE_SIZE;
+    }
+}
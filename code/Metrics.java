@@ -0,0 +1,184 @@
+// Mehmet Arda Kutlu
+
+import jdk.jfr.*;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+
+/**
+ * Collects search and phase metrics of a run. Every shortest path query reports its settled tiles,
+ * edge relaxations, stale queue pops (tiles polled again after they were settled) and its peak queue
+ * size; the main steps of a run report their durations as phases. Collection is enabled with the
+ * system property goldtrail.metrics=true. The flag is a static final constant, so when it is off the
+ * JIT removes the guarded counting code from the searches. With goldtrail.metrics.jfr=true the
+ * queries and phases are also emitted as JFR events (goldtrail.Query and goldtrail.Phase).
+ */
+public class Metrics {
+    // Whether metrics are collected.
+    public static final boolean ENABLED = Boolean.getBoolean("goldtrail.metrics");
+    // Whether the metrics are also emitted as JFR events.
+    private static final boolean JFR = ENABLED && Boolean.getBoolean("goldtrail.metrics.jfr");
+    // Totals of the queries of each engine, in the order the engines were first used.
+    private static final LinkedHashMap<String, long[]> queries = new LinkedHashMap<>();
+    // Total duration of each phase in nanoseconds.
+    private static final LinkedHashMap<String, Long> phases = new LinkedHashMap<>();
+    // Indices of the query totals.
+    private static final int COUNT = 0;
+    private static final int SETTLED = 1;
+    private static final int RELAXATIONS = 2;
+    private static final int STALE_POPS = 3;
+    private static final int PEAK_QUEUE = 4;
+    private static final int MAX_SETTLED = 5;
+    private static final int NANOS = 6;
+
+    /**
+     * Returns the start time of a phase. Pass the result to endPhase.
+     * @return the current time in nanoseconds, or 0 if metrics are disabled
+     */
+    public static long startPhase(){
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the time since the start of a phase to its total. Does nothing if metrics are disabled.
+     * @param name the name of the phase
+     * @param startNanos the value returned by startPhase
+     */
+    public static void endPhase(String name, long startNanos){
+        if(!ENABLED){
+            return;
+        }
+        addPhase(name, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Adds a duration to the total of a phase, for a phase that is measured in several pieces. Does
+     * nothing if metrics are disabled.
+     * @param name the name of the phase
+     * @param nanos the duration in nanoseconds
+     */
+    public static void addPhase(String name, long nanos){
+        if(!ENABLED){
+            return;
+        }
+        synchronized(Metrics.class){
+            phases.merge(name, nanos, Long::sum);
+        }
+        if(JFR){
+            PhaseEvent event = new PhaseEvent();
+            event.phase = name;
+            event.durationNanos = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records the counters of one shortest path query. Callers check ENABLED before counting.
+     * @param engine the name of the engine that ran the query
+     * @param settled number of tiles that were settled
+     * @param relaxations number of edges that were relaxed
+     * @param stalePops number of queue entries polled for tiles that were already settled
+     * @param peakQueue largest size of the priority queue
+     * @param nanos duration of the query
+     */
+    public static void recordQuery(String engine, int settled, int relaxations, int stalePops, int peakQueue,
+                                   long nanos){
+        synchronized(Metrics.class){
+            long[] totals = queries.computeIfAbsent(engine, key -> new long[7]);
+            totals[COUNT]++;
+            totals[SETTLED] += settled;
+            totals[RELAXATIONS] += relaxations;
+            totals[STALE_POPS] += stalePops;
+            totals[PEAK_QUEUE] = Math.max(totals[PEAK_QUEUE], peakQueue);
+            totals[MAX_SETTLED] = Math.max(totals[MAX_SETTLED], settled);
+            totals[NANOS] += nanos;
+        }
+        if(JFR){
+            QueryEvent event = new QueryEvent();
+            event.engine = engine;
+            event.settled = settled;
+            event.relaxations = relaxations;
+            event.stalePops = stalePops;
+            event.peakQueue = peakQueue;
+            event.durationNanos = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Builds the JSON summary of everything that was recorded.
+     * @return the summary as a JSON object
+     */
+    public static synchronized String toJson(){
+        StringBuilder json = new StringBuilder("{\n  \"phasesMillis\": {");
+        String separator = "\n";
+        for(java.util.Map.Entry<String, Long> phase : phases.entrySet()){
+            json.append(separator).append(String.format("    \"%s\": %.3f", phase.getKey(), phase.getValue() / 1e6));
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"queries\": {");
+        separator = "\n";
+        for(java.util.Map.Entry<String, long[]> engine : queries.entrySet()){
+            long[] totals = engine.getValue();
+            json.append(separator).append(String.format("    \"%s\": {\"count\": %d, \"settled\": %d, "
+                    + "\"relaxations\": %d, \"stalePops\": %d, \"peakQueue\": %d, \"maxSettled\": %d, "
+                    + "\"totalMillis\": %.3f}", engine.getKey(), totals[COUNT], totals[SETTLED],
+                    totals[RELAXATIONS], totals[STALE_POPS], totals[PEAK_QUEUE], totals[MAX_SETTLED],
+                    totals[NANOS] / 1e6));
+            separator = ",\n";
+        }
+        json.append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * Writes the JSON summary to the file named by goldtrail.metrics.file (default out/metrics.json).
+     * Does nothing if metrics are disabled.
+     * @throws IOException if writing fails
+     */
+    public static void writeSummary() throws IOException {
+        if(!ENABLED){
+            return;
+        }
+        try(FileWriter writer = new FileWriter(System.getProperty("goldtrail.metrics.file", "out/metrics.json"))){
+            writer.write(toJson());
+        }
+    }
+
+    /**
+     * JFR event of one shortest path query.
+     */
+    @Name("goldtrail.Query")
+    @Label("Shortest Path Query")
+    @Category("Gold Trail")
+    public static class QueryEvent extends Event {
+        @Label("Engine")
+        String engine;
+        @Label("Settled Tiles")
+        int settled;
+        @Label("Edge Relaxations")
+        int relaxations;
+        @Label("Stale Queue Pops")
+        int stalePops;
+        @Label("Peak Queue Size")
+        int peakQueue;
+        @Label("Duration")
+        @Timespan
+        long durationNanos;
+    }
+
+    /**
+     * JFR event of one phase of a run.
+     */
+    @Name("goldtrail.Phase")
+    @Label("Run Phase")
+    @Category("Gold Trail")
+    public static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Duration")
+        @Timespan
+        long durationNanos;
+    }
+}
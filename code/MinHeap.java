@@ -0,0 +1,120 @@
+// Mehmet Arda Kutlu
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of (cost, id) pairs stored in primitive arrays. Entries are never updated;
+ * a cheaper entry is pushed instead and the outdated one is skipped when it is polled.
+ */
+public class MinHeap {
+    // Costs of the entries in heap order.
+    private double[] keys;
+    // Ids of the entries in heap order.
+    private int[] values;
+    // Number of entries in the heap.
+    private int size;
+
+    /**
+     * Constructor of the class.
+     * @param capacity initial number of entries that fit without growing
+     */
+    MinHeap(int capacity){
+        keys = new double[Math.max(capacity, 16)];
+        values = new int[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Checks whether the heap is empty.
+     * @return true if there are no entries, false otherwise
+     */
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of entries in the heap.
+     * @return the entry count
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear(){
+        size = 0;
+    }
+
+    /**
+     * Adds an entry to the heap.
+     * @param key the cost of the entry
+     * @param value the id of the entry
+     */
+    public void push(double key, int value){
+        if(size == keys.length){
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        int index = size++;
+        // Move the new entry up until its parent is not more expensive.
+        while(index > 0){
+            int parent = (index - 1) >>> 1;
+            if(keys[parent] <= key){
+                break;
+            }
+            keys[index] = keys[parent];
+            values[index] = values[parent];
+            index = parent;
+        }
+        keys[index] = key;
+        values[index] = value;
+    }
+
+    /**
+     * Returns the cost of the cheapest entry without removing it.
+     * @return the smallest key
+     */
+    public double peekKey(){
+        return keys[0];
+    }
+
+    /**
+     * Returns the id of the cheapest entry without removing it.
+     * @return the id with the smallest key
+     */
+    public int peekValue(){
+        return values[0];
+    }
+
+    /**
+     * Removes the cheapest entry. Read it with peekKey and peekValue before calling this.
+     */
+    public void pop(){
+        size--;
+        if(size == 0){
+            return;
+        }
+        double key = keys[size];
+        int value = values[size];
+        int index = 0;
+        // Move the last entry down until both children are not cheaper.
+        while(true){
+            int child = 2 * index + 1;
+            if(child >= size){
+                break;
+            }
+            if(child + 1 < size && keys[child + 1] < keys[child]){
+                child++;
+            }
+            if(keys[child] >= key){
+                break;
+            }
+            keys[index] = keys[child];
+            values[index] = values[child];
+            index = child;
+        }
+        keys[index] = key;
+        values[index] = value;
+    }
+}
@@ -0,0 +1,454 @@
+// Mehmet Arda Kutlu
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Out-of-core version of GridGraph for maps that do not fit in the heap. The tile types and the edge
+ * costs are split into square chunks stored in one file; a chunk is memory-mapped when it is first
+ * used and at most a fixed number of chunks stay mapped, the least recently used one is dropped when
+ * another one is needed. Each chunk stores the types of its tiles followed by the four edge slots of
+ * every tile (left, right, up, down, -1 if the move is impossible), so a tile and its moves are always
+ * read from a single chunk. Tile ids are the same as in GridGraph (col * rows + row).
+ * Not thread-safe, every thread needs its own PagedGrid.
+ */
+public class PagedGrid implements Closeable {
+    // File layout: header, then the chunks in (chunk column, chunk row) order.
+    private static final int MAGIC = 0x47545047;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    // sun.misc.Unsafe and its invokeCleaner method, used to unmap evicted chunks (null if not available).
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    static {
+        Object[] cleaner = findCleaner();
+        UNSAFE = cleaner[0];
+        INVOKE_CLEANER = (Method) cleaner[1];
+    }
+    // Number of tile columns and rows of the map.
+    private final int cols;
+    private final int rows;
+    // Width and height of a chunk in tiles.
+    private final int chunkSize;
+    // Number of chunk rows, chunk index = chunk column * chunkRows + chunk row.
+    private final int chunkRows;
+    // Bytes of the type section (rounded up to whole doubles) and of a whole chunk.
+    private final int typeBytes;
+    private final long chunkBytes;
+    // The file of the chunks and whether the chunks can be written.
+    private final FileChannel channel;
+    private final boolean writable;
+    // Mapped chunks in least recently used order.
+    private final LinkedHashMap<Integer, MappedByteBuffer> residentChunks;
+    private final int maxResidentChunks;
+    // Last used chunk, checked before the LRU map since most accesses stay in the same chunk.
+    private int lastChunk = -1;
+    private ByteBuffer lastBuffer;
+    // Chunk accesses served by a mapped chunk and accesses that had to map one.
+    private long chunkHits;
+    private long chunkMisses;
+
+    // Opens a paged file with the given layout.
+    private PagedGrid(FileChannel channel, boolean writable, int cols, int rows, int chunkSize, int maxResidentChunks){
+        if((long) cols * rows > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Map of " + cols + "x" + rows + " tiles has too many tiles for int ids");
+        }
+        this.channel = channel;
+        this.writable = writable;
+        this.cols = cols;
+        this.rows = rows;
+        this.chunkSize = chunkSize;
+        this.chunkRows = (rows + chunkSize - 1) / chunkSize;
+        this.typeBytes = (chunkSize * chunkSize + 7) / 8 * 8;
+        this.chunkBytes = typeBytes + (long) chunkSize * chunkSize * 4 * Double.BYTES;
+        this.maxResidentChunks = Math.max(1, maxResidentChunks);
+        this.residentChunks = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Creates an empty paged file: every tile is grass and every move is impossible until it is set.
+     * @param file the file of the chunks, overwritten if it exists
+     * @param cols number of tile columns
+     * @param rows number of tile rows
+     * @param chunkSize width and height of a chunk in tiles
+     * @param maxResidentChunks number of chunks that can be mapped at the same time
+     * @return the writable grid
+     * @throws IOException if the file cannot be written
+     */
+    public static PagedGrid create(File file, int cols, int rows, int chunkSize, int maxResidentChunks) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(0);
+        PagedGrid grid = new PagedGrid(randomAccessFile.getChannel(), true, cols, rows, chunkSize, maxResidentChunks);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(cols).putInt(rows).putInt(chunkSize);
+        header.flip();
+        grid.channel.write(header, 0);
+        // Fill the cost slots of every chunk with -1, one chunk at a time.
+        for(int chunk = 0; chunk < grid.getChunkCount(); chunk++){
+            ByteBuffer buffer = grid.chunk(chunk);
+            for(int offset = grid.typeBytes; offset < grid.chunkBytes; offset += Double.BYTES){
+                buffer.putDouble(offset, -1);
+            }
+        }
+        grid.chunkHits = 0;
+        grid.chunkMisses = 0;
+        return grid;
+    }
+
+    /**
+     * Opens an existing paged file for reading.
+     * @param file the file of the chunks
+     * @param maxResidentChunks number of chunks that can be mapped at the same time
+     * @return the read-only grid
+     * @throws IOException if the file cannot be read or is not a paged grid file
+     */
+    public static PagedGrid open(File file, int maxResidentChunks) throws IOException {
+        FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        header.flip();
+        if(header.getInt() != MAGIC || header.getInt() != VERSION){
+            channel.close();
+            throw new IOException(file + " is not a paged grid file of version " + VERSION);
+        }
+        return new PagedGrid(channel, false, header.getInt(), header.getInt(), header.getInt(), maxResidentChunks);
+    }
+
+    /**
+     * Converts mapData.txt and travelCosts.txt into a paged file without building a Map or a PathFinder.
+     * The files are streamed line by line, so the heap usage does not depend on the map size. Costs get
+     * the same meaning as in PathFinder: both directions of a listed move get its cost (later lines
+     * replace earlier ones) and moves into impassable tiles are impossible.
+     * @param mapData the mapData.txt file
+     * @param travelCosts the travelCosts.txt file
+     * @param file the file of the chunks, overwritten if it exists
+     * @param chunkSize width and height of a chunk in tiles
+     * @param maxResidentChunks number of chunks that can be mapped at the same time
+     * @return the writable grid with the map
+     * @throws IOException if a file cannot be read or written
+     */
+    public static PagedGrid build(File mapData, File travelCosts, File file, int chunkSize, int maxResidentChunks) throws IOException {
+        PagedGrid grid;
+        try(BufferedReader reader = new BufferedReader(new FileReader(mapData))){
+            String[] size = reader.readLine().trim().split("\\s+");
+            grid = create(file, Integer.parseInt(size[0]), Integer.parseInt(size[1]), chunkSize, maxResidentChunks);
+            // Each line: col row type
+            for(String line = reader.readLine(); line != null; line = reader.readLine()){
+                String[] fields = line.trim().split("\\s+");
+                if(fields.length == 3){
+                    grid.setType(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2]));
+                }
+            }
+        }
+        try(BufferedReader reader = new BufferedReader(new FileReader(travelCosts))){
+            // Each line: x1 y1 x2 y2 cost
+            for(String line = reader.readLine(); line != null; line = reader.readLine()){
+                String[] fields = line.trim().split("\\s+");
+                if(fields.length == 5){
+                    grid.setMoveCost(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                            Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), Double.parseDouble(fields[4]));
+                }
+            }
+        }
+        grid.chunkHits = 0;
+        grid.chunkMisses = 0;
+        return grid;
+    }
+
+    /**
+     * Copies an in-memory graph into a paged file, used to compare the paged search with the others.
+     * @param graph the graph to copy
+     * @param file the file of the chunks, overwritten if it exists
+     * @param chunkSize width and height of a chunk in tiles
+     * @param maxResidentChunks number of chunks that can be mapped at the same time
+     * @return the writable grid with the graph
+     * @throws IOException if the file cannot be written
+     */
+    public static PagedGrid fromGraph(GridGraph graph, File file, int chunkSize, int maxResidentChunks) throws IOException {
+        PagedGrid grid = create(file, graph.getCols(), graph.getRows(), chunkSize, maxResidentChunks);
+        for(int id = 0; id < graph.size(); id++){
+            grid.setType(graph.col(id), graph.row(id), graph.type(id));
+            // The graph may number its tiles along a curve, the grid numbers them column by column.
+            int gridId = grid.id(graph.col(id), graph.row(id));
+            for(int direction = 0; direction < 4; direction++){
+                grid.setCost(gridId, direction, graph.cost(id, direction));
+            }
+        }
+        grid.chunkHits = 0;
+        grid.chunkMisses = 0;
+        return grid;
+    }
+
+    /**
+     * Sets the type of a tile.
+     * @param col column of the tile
+     * @param row row of the tile
+     * @param type the tile type (0 -> grass, 1 -> sand, 2 -> impassable)
+     */
+    public void setType(int col, int row, int type){
+        chunk(chunkOf(col, row)).put(localIndex(col, row), (byte) type);
+    }
+
+    /**
+     * Sets the cost of one edge slot of a tile.
+     * @param id the id of the tile
+     * @param direction the direction of the move
+     * @param cost the cost of the move, -1 if it is impossible
+     */
+    public void setCost(int id, int direction, double cost){
+        int col = id / rows;
+        int row = id % rows;
+        chunk(chunkOf(col, row)).putDouble(costOffset(localIndex(col, row), direction), cost);
+    }
+
+    // Sets the cost of a move between two neighboring tiles in both directions, like PathFinder stores it.
+    private void setMoveCost(int col1, int row1, int col2, int row2, double cost){
+        int direction = col2 == col1 - 1 && row2 == row1 ? GridGraph.LEFT : col2 == col1 + 1 && row2 == row1 ? GridGraph.RIGHT
+                : col2 == col1 && row2 == row1 - 1 ? GridGraph.UP : col2 == col1 && row2 == row1 + 1 ? GridGraph.DOWN : -1;
+        // PathFinder only looks up the costs of neighboring tiles, other lines are never used.
+        if(direction < 0 || col1 < 0 || col1 >= cols || row1 < 0 || row1 >= rows || col2 < 0 || col2 >= cols
+                || row2 < 0 || row2 >= rows){
+            return;
+        }
+        setCost(id(col1, row1), direction, type(id(col2, row2)) == 2 ? -1 : cost);
+        setCost(id(col2, row2), GridGraph.opposite(direction), type(id(col1, row1)) == 2 ? -1 : cost);
+    }
+
+    /**
+     * Returns the mapped buffer of a chunk, mapping it (and unmapping the least recently used chunk if
+     * too many are mapped) if it is not mapped yet. The buffer can only be used until the next chunk
+     * is accessed, since that access may unmap it.
+     * @param chunk the index of the chunk
+     * @return the buffer of the chunk
+     */
+    public ByteBuffer chunk(int chunk){
+        if(chunk == lastChunk){
+            chunkHits++;
+            return lastBuffer;
+        }
+        MappedByteBuffer buffer = residentChunks.get(chunk);
+        if(buffer != null){
+            chunkHits++;
+        }
+        else{
+            chunkMisses++;
+            if(residentChunks.size() >= maxResidentChunks){
+                Iterator<MappedByteBuffer> eldest = residentChunks.values().iterator();
+                MappedByteBuffer evicted = eldest.next();
+                if(writable){
+                    evicted.force();
+                }
+                eldest.remove();
+                unmap(evicted);
+            }
+            try{
+                buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + chunk * chunkBytes, chunkBytes);
+            }
+            catch(IOException e){
+                throw new UncheckedIOException("Cannot map chunk " + chunk, e);
+            }
+            residentChunks.put(chunk, buffer);
+        }
+        lastChunk = chunk;
+        lastBuffer = buffer;
+        return buffer;
+    }
+
+    // Releases the mapping of a chunk right away; the garbage collector would only release it when the
+    // buffer object is collected, and small heaps could run out of mappings before that happens.
+    // LayeredHeldKarp releases its layer files with it too.
+    static void unmap(MappedByteBuffer buffer){
+        if(INVOKE_CLEANER == null){
+            return;
+        }
+        try{
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        }
+        catch(ReflectiveOperationException e){
+            throw new IllegalStateException("Cannot unmap a chunk", e);
+        }
+    }
+
+    // Looks up sun.misc.Unsafe.invokeCleaner, returns null if this JVM does not have it.
+    private static Object[] findCleaner(){
+        try{
+            Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return new Object[]{unsafe, unsafe.getClass().getMethod("invokeCleaner", ByteBuffer.class)};
+        }
+        catch(ReflectiveOperationException | RuntimeException e){
+            // Leave the mappings to the garbage collector.
+            return new Object[]{null, null};
+        }
+    }
+
+    /**
+     * Returns the index of the chunk that holds a tile.
+     * @param col column of the tile
+     * @param row row of the tile
+     * @return the chunk index
+     */
+    public int chunkOf(int col, int row){
+        return col / chunkSize * chunkRows + row / chunkSize;
+    }
+
+    /**
+     * Returns the position of a tile inside its chunk.
+     * @param col column of the tile
+     * @param row row of the tile
+     * @return the local index of the tile
+     */
+    public int localIndex(int col, int row){
+        return col % chunkSize * chunkSize + row % chunkSize;
+    }
+
+    /**
+     * Returns the byte offset of an edge slot inside a chunk buffer.
+     * @param localIndex the local index of the tile
+     * @param direction the direction of the move
+     * @return the offset of the cost
+     */
+    public int costOffset(int localIndex, int direction){
+        return typeBytes + (localIndex * 4 + direction) * Double.BYTES;
+    }
+
+    /**
+     * Returns the id of the tile at the given column and row.
+     * @param col column of the tile
+     * @param row row of the tile
+     * @return the tile id
+     */
+    public int id(int col, int row){
+        return col * rows + row;
+    }
+
+    /**
+     * Returns the type of a tile.
+     * @param id the id of the tile
+     * @return the tile type (0 -> grass, 1 -> sand, 2 -> impassable)
+     */
+    public int type(int id){
+        int col = id / rows;
+        int row = id % rows;
+        return chunk(chunkOf(col, row)).get(localIndex(col, row));
+    }
+
+    /**
+     * Returns the cost of leaving a tile in the given direction.
+     * @param id the id of the tile
+     * @param direction one of LEFT, RIGHT, UP or DOWN of GridGraph
+     * @return the cost of the move, or -1 if the move is impossible
+     */
+    public double cost(int id, int direction){
+        int col = id / rows;
+        int row = id % rows;
+        return chunk(chunkOf(col, row)).getDouble(costOffset(localIndex(col, row), direction));
+    }
+
+    /**
+     * Returns the number of tile columns.
+     * @return the column count
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Returns the number of tile rows.
+     * @return the row count
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the width and height of a chunk in tiles.
+     * @return the chunk size
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Returns the number of chunks of the map.
+     * @return the chunk count
+     */
+    public int getChunkCount(){
+        return (cols + chunkSize - 1) / chunkSize * chunkRows;
+    }
+
+    /**
+     * Returns the number of chunks that are mapped right now.
+     * @return the resident chunk count
+     */
+    public int getResidentChunks(){
+        return residentChunks.size();
+    }
+
+    /**
+     * Returns the number of chunk accesses that found the chunk already mapped.
+     * @return the hit count
+     */
+    public long getChunkHits() {
+        return chunkHits;
+    }
+
+    /**
+     * Returns the number of chunk accesses that had to map the chunk.
+     * @return the miss count
+     */
+    public long getChunkMisses() {
+        return chunkMisses;
+    }
+
+    /**
+     * Returns the share of chunk accesses that found the chunk already mapped.
+     * @return the hit rate between 0 and 1
+     */
+    public double getHitRate(){
+        long accesses = chunkHits + chunkMisses;
+        return accesses == 0 ? 1 : (double) chunkHits / accesses;
+    }
+
+    /**
+     * Resets the chunk hit and miss counters.
+     */
+    public void resetCounters(){
+        chunkHits = 0;
+        chunkMisses = 0;
+    }
+
+    /**
+     * Writes the mapped chunks back (if the grid is writable) and closes the file.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if(writable){
+            for(MappedByteBuffer buffer : residentChunks.values()){
+                buffer.force();
+            }
+        }
+        for(MappedByteBuffer buffer : residentChunks.values()){
+            unmap(buffer);
+        }
+        residentChunks.clear();
+        lastChunk = -1;
+        lastBuffer = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,216 @@
+// Mehmet Arda Kutlu
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Dijkstra's algorithm on a PagedGrid that only allocates search state for the chunks it visits. The
+ * cost and the previous tile of every visited tile are kept in per-chunk arrays found through a hash
+ * of the touched chunks, so a query that stays in a small area uses little heap and only maps the
+ * chunks it visits, however large the map is. Each expanded tile reads its four edge slots from its
+ * own chunk; the chunk of a neighbor is only mapped once that neighbor is expanded.
+ */
+public class PagedSearch {
+    // The paged map.
+    private final PagedGrid grid;
+    // Search state of the touched chunks of the last query, keyed by chunk index.
+    private HashMap<Integer, ChunkState> states = new HashMap<>();
+    // Last looked up state, most lookups hit the chunk of the previous one.
+    private int lastChunk = -1;
+    private ChunkState lastState;
+    private final MinHeap queue = new MinHeap(64);
+    // Source of the last query and the number of tiles it settled.
+    private int source = -1;
+    private int settledCount;
+
+    /**
+     * Search state of one chunk indexed by the local index of the tile: the cost and the direction of
+     * the move that reached the tile (-1 for the source), which takes less space than the previous tile.
+     */
+    private static class ChunkState {
+        private final double[] cost;
+        private final byte[] direction;
+
+        ChunkState(int tiles){
+            cost = new double[tiles];
+            direction = new byte[tiles];
+            Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        }
+    }
+
+    /**
+     * Constructor of the class.
+     * @param grid the paged map to search
+     */
+    PagedSearch(PagedGrid grid){
+        this.grid = grid;
+    }
+
+    /**
+     * Computes the shortest path cost between two tiles.
+     * @param source the id of the starting tile
+     * @param target the id of the target tile
+     * @return the cost of reaching the target, or infinity if it is unreachable
+     */
+    public double search(int source, int target){
+        this.source = source;
+        states = new HashMap<>();
+        lastChunk = -1;
+        lastState = null;
+        queue.clear();
+        settledCount = 0;
+        int rows = grid.getRows();
+        setCost(source, 0, -1);
+        queue.push(0, source);
+        // Impassable tiles cannot be entered, there is no need to search the whole component.
+        if(target != source && grid.type(target) == 2){
+            return Double.POSITIVE_INFINITY;
+        }
+        // Search counters, reported when metrics are enabled.
+        long queryStart = Metrics.ENABLED ? System.nanoTime() : 0;
+        int relaxations = 0;
+        int stalePops = 0;
+        int peakQueue = 1;
+
+        while(!queue.isEmpty()){
+            double cost = queue.peekKey();
+            int currentTile = queue.peekValue();
+            queue.pop();
+            // Skip the entries that were replaced by a cheaper one.
+            if(cost > cost(currentTile)){
+                stalePops++;
+                continue;
+            }
+            settledCount++;
+            // Exits the loop if the target is reached.
+            if(currentTile == target){
+                break;
+            }
+            int col = currentTile / rows;
+            int row = currentTile % rows;
+            ByteBuffer chunk = grid.chunk(grid.chunkOf(col, row));
+            int localIndex = grid.localIndex(col, row);
+            for(int direction = 0; direction < 4; direction++){
+                double movingCost = chunk.getDouble(grid.costOffset(localIndex, direction));
+                // Skip impossible moves (including the ones leaving the map).
+                if(movingCost < 0){
+                    continue;
+                }
+                int neighbor = direction == GridGraph.LEFT ? currentTile - rows : direction == GridGraph.RIGHT ? currentTile + rows
+                        : direction == GridGraph.UP ? currentTile - 1 : currentTile + 1;
+                double newCost = cost + movingCost;
+                relaxations++;
+                // Update path and queue if a cheaper path is found.
+                if(newCost < cost(neighbor)){
+                    setCost(neighbor, newCost, direction);
+                    queue.push(newCost, neighbor);
+                    peakQueue = Math.max(peakQueue, queue.size());
+                }
+            }
+        }
+        if(Metrics.ENABLED){
+            Metrics.recordQuery("PagedSearch", settledCount, relaxations, stalePops, peakQueue, System.nanoTime() - queryStart);
+        }
+        return cost(target);
+    }
+
+    /**
+     * Returns the cost of the given tile found by the last search.
+     * @param id the id of the tile
+     * @return the cost, or infinity if the last search did not reach the tile
+     */
+    public double cost(int id){
+        ChunkState state = state(id, false);
+        return state == null ? Double.POSITIVE_INFINITY : state.cost[localIndex(id)];
+    }
+
+    /**
+     * Reconstructs the path of the last search between its source and the given tile.
+     * @param id the id of the tile
+     * @return the tile ids of the path from the source, or null if the last search did not reach the tile
+     */
+    public int[] path(int id){
+        if(cost(id) == Double.POSITIVE_INFINITY){
+            return null;
+        }
+        int length = 0;
+        for(int currentTile = id; currentTile >= 0; currentTile = previousTile(currentTile)){
+            length++;
+        }
+        int[] path = new int[length];
+        int index = length - 1;
+        for(int currentTile = id; currentTile >= 0; currentTile = previousTile(currentTile)){
+            path[index--] = currentTile;
+        }
+        return path;
+    }
+
+    // Returns the tile the last search came from to reach a tile, -1 for the source.
+    private int previousTile(int id){
+        int direction = state(id, false).direction[localIndex(id)];
+        int rows = grid.getRows();
+        // Step back against the direction of the move.
+        return direction < 0 ? -1 : direction == GridGraph.LEFT ? id + rows : direction == GridGraph.RIGHT ? id - rows
+                : direction == GridGraph.UP ? id + 1 : id - 1;
+    }
+
+    // Stores the cost of a tile and the direction of the move that reached it, allocating the state of
+    // its chunk if needed.
+    private void setCost(int id, double cost, int direction){
+        ChunkState state = state(id, true);
+        int localIndex = localIndex(id);
+        state.cost[localIndex] = cost;
+        state.direction[localIndex] = (byte) direction;
+    }
+
+    // Returns the search state of the chunk of a tile, or null if the chunk was not touched.
+    private ChunkState state(int id, boolean create){
+        int rows = grid.getRows();
+        int chunk = grid.chunkOf(id / rows, id % rows);
+        if(chunk == lastChunk){
+            return lastState;
+        }
+        ChunkState state = states.get(chunk);
+        if(state == null){
+            if(!create){
+                return null;
+            }
+            state = new ChunkState(grid.getChunkSize() * grid.getChunkSize());
+            states.put(chunk, state);
+        }
+        lastChunk = chunk;
+        lastState = state;
+        return state;
+    }
+
+    // Returns the position of a tile inside its chunk.
+    private int localIndex(int id){
+        int rows = grid.getRows();
+        return grid.localIndex(id / rows, id % rows);
+    }
+
+    /**
+     * Returns the number of chunks the last search touched (allocated search state for).
+     * @return the touched chunk count
+     */
+    public int getTouchedChunks(){
+        return states.size();
+    }
+
+    /**
+     * Returns the number of tiles settled by the last search.
+     * @return the settled tile count
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Returns the source of the last search.
+     * @return the id of the source tile
+     */
+    public int getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,18 @@
+// Mehmet Arda Kutlu
+
+import java.util.ArrayList;
+
+/**
+ * Common shape of the shortest path engines. AlgorithmRunner and ShortestRoute consume the paths
+ * as an ArrayList of tiles from the start to the objective.
+ */
+public interface PathEngine {
+    /**
+     * Computes the shortest path between two tiles.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @return an ArrayList of tiles representing the shortest path (from start to end),
+     *         or an empty list if the objective is unreachable
+     */
+    ArrayList<Tile> algorithm(Tile start, Tile objective);
+}
@@ -2,15 +2,28 @@
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.*;
 
 /**
  * Implements the pathfinder algorithm. Provides methods that find the shortest path and the
  * cost of this path between two objectives.
  */
-public class PathFinder {
+public class PathFinder implements PathEngine {
     // Stores the travel cost between any two adjacent tiles using a string key.
     private HashMap<String, Double> travelCosts = new HashMap<>();
+    // Stores the travel costs in centi-units instead, when the costs are fixed-point (null otherwise).
+    private HashMap<String, Integer> fixedCosts;
+    // Costs loaded by TravelCostLoader instead of the maps, indexed by tile id * 4 + direction (null otherwise).
+    private double[] costSlots;
+    private int[] fixedCostSlots;
+    // Map size of the cost slots.
+    private int cols;
+    private int rows;
+    // All-pairs table that answers the queries of small maps (null if the paths are searched).
+    private DistanceTable distanceTable;
+    // Snapshot that saves and answers the queries between the knight and the coins (null if there is none).
+    private SessionSnapshot snapshot;
 
     /**
      * Constructs a PathFinder by loading movement costs from a file.
@@ -18,29 +31,244 @@ public class PathFinder {
      * @throws FileNotFoundException if the file is not found
      */
     PathFinder(String travelCostsName) throws FileNotFoundException {
+        this(new File("misc/" + travelCostsName));
+    }
+
+    /**
+     * Constructs a PathFinder by loading movement costs from the given file. The costs are fixed-point
+     * if the goldtrail.costs system property is fixed.
+     * @param travelCostFile the travelCosts.txt file
+     * @throws FileNotFoundException if the file is not found
+     */
+    PathFinder(File travelCostFile) throws FileNotFoundException {
+        this(travelCostFile, FixedCost.isEnabled());
+    }
+
+    /**
+     * Constructs a PathFinder by loading movement costs from the given file.
+     * @param travelCostFile the travelCosts.txt file
+     * @param fixed whether the costs are stored, searched and added up as fixed-point centi-units
+     * @throws FileNotFoundException if the file is not found
+     * @throws NumberFormatException if fixed is true and a cost has more decimals than FixedCost allows
+     */
+    PathFinder(File travelCostFile, boolean fixed) throws FileNotFoundException {
         Locale.setDefault(Locale.US); // Setting the locale to US, otherwise I get an error on my Windows PC.
-        File travelCostFile = new File("misc/" + travelCostsName);
         Scanner inputFile = new Scanner(travelCostFile);
+        if(fixed){
+            travelCosts = null;
+            fixedCosts = new HashMap<>();
+        }
         // Each line: x1 y1 x2 y2 cost
         while(inputFile.hasNextDouble()){
             int x1 = inputFile.nextInt();
             int y1 = inputFile.nextInt();
             int x2 = inputFile.nextInt();
             int y2 = inputFile.nextInt();
-            double cost = inputFile.nextDouble();
             // Saving the costs in both directions.
+            if(fixed){
+                // The cost is read as text, so it is exact and its precision can be checked.
+                String text = inputFile.next();
+                int cost;
+                try{
+                    cost = FixedCost.parse(text);
+                }
+                catch(NumberFormatException e){
+                    inputFile.close();
+                    throw new NumberFormatException(travelCostFile + ": move " + x1 + " " + y1 + " " + x2 + " " + y2
+                            + ": " + e.getMessage());
+                }
+                fixedCosts.put(String.format("%d,%d,%d,%d",x1,y1,x2,y2),cost);
+                fixedCosts.put(String.format("%d,%d,%d,%d",x2,y2,x1,y1),cost);
+                continue;
+            }
+            double cost = inputFile.nextDouble();
             travelCosts.put(String.format("%d,%d,%d,%d",x1,y1,x2,y2),cost);
             travelCosts.put(String.format("%d,%d,%d,%d",x2,y2,x1,y1),cost);
         }
         inputFile.close();
     }
 
+    /**
+     * Constructs a PathFinder by loading movement costs from the given file on several threads into flat
+     * arrays with TravelCostLoader. The costs are fixed-point if the goldtrail.costs system property is fixed.
+     * @param travelCostFile the travelCosts.txt file
+     * @param cols number of tile columns of the map
+     * @param rows number of tile rows of the map
+     * @param threads number of threads that parse the file
+     * @throws IOException if the file cannot be read or has a malformed line
+     */
+    PathFinder(File travelCostFile, int cols, int rows, int threads) throws IOException {
+        TravelCostLoader loader = new TravelCostLoader(travelCostFile, cols, rows, FixedCost.isEnabled());
+        loader.load(threads);
+        travelCosts = null;
+        costSlots = loader.getCosts();
+        fixedCostSlots = loader.getFixedCosts();
+        this.cols = cols;
+        this.rows = rows;
+    }
+
+    /**
+     * Constructs a PathFinder from cost slots that were loaded before (from a SessionSnapshot).
+     * @param costSlots the costs indexed by tile id * 4 + direction, -1 for impossible moves, or null
+     *                  with fixed-point costs
+     * @param fixedCostSlots the costs in centi-units indexed the same way, or null with double costs
+     * @param cols number of tile columns of the map
+     * @param rows number of tile rows of the map
+     */
+    PathFinder(double[] costSlots, int[] fixedCostSlots, int cols, int rows){
+        travelCosts = null;
+        this.costSlots = costSlots;
+        this.fixedCostSlots = fixedCostSlots;
+        this.cols = cols;
+        this.rows = rows;
+    }
+
+    // Returns the cost slot of the move between two tiles, or -1 if they are not neighboring tiles of the map.
+    private int slot(Tile tile1, Tile tile2){
+        int col1 = tile1.getColumn();
+        int row1 = tile1.getRow();
+        int col2 = tile2.getColumn();
+        int row2 = tile2.getRow();
+        if(col1 < 0 || col1 >= cols || row1 < 0 || row1 >= rows){
+            return -1;
+        }
+        int direction = col2 == col1 - 1 && row2 == row1 ? GridGraph.LEFT : col2 == col1 + 1 && row2 == row1 ? GridGraph.RIGHT
+                : col2 == col1 && row2 == row1 - 1 ? GridGraph.UP : col2 == col1 && row2 == row1 + 1 ? GridGraph.DOWN : -1;
+        if(direction < 0 || col2 < 0 || col2 >= cols || row2 < 0 || row2 >= rows){
+            return -1;
+        }
+        return (col1 * rows + row1) * 4 + direction;
+    }
+
     // Returns the movement cost between two tiles, or -1 if one of the tile is impassable.
+    // With fixed-point costs the cost is the centi-units divided by the scale, the same double as the
+    // one parsed from the text.
     public double costCalculator(Tile tile1, Tile tile2){
+        if(costSlots != null){
+            int slot = slot(tile1, tile2);
+            return slot < 0 ? -1.0 : costSlots[slot];
+        }
+        if(fixedCosts != null || fixedCostSlots != null){
+            int cost = fixedCost(tile1, tile2);
+            return cost < 0 ? -1.0 : FixedCost.toDouble(cost);
+        }
         String key = String.format("%d,%d,%d,%d",tile1.getColumn(),tile1.getRow(),tile2.getColumn(),tile2.getRow());
         return travelCosts.getOrDefault(key,-1.0);
     }
 
+    /**
+     * Returns the movement cost between two tiles in centi-units. Only available with fixed-point costs.
+     * @param tile1 the tile the move starts from
+     * @param tile2 the tile the move ends on
+     * @return the cost in centi-units, or -1 if the move is impossible
+     */
+    public int fixedCost(Tile tile1, Tile tile2){
+        if(fixedCostSlots != null){
+            int slot = slot(tile1, tile2);
+            return slot < 0 ? -1 : fixedCostSlots[slot];
+        }
+        String key = String.format("%d,%d,%d,%d",tile1.getColumn(),tile1.getRow(),tile2.getColumn(),tile2.getRow());
+        return fixedCosts.getOrDefault(key,-1);
+    }
+
+    /**
+     * Returns whether the costs are stored and added up as fixed-point centi-units.
+     * @return true if the costs are fixed-point
+     */
+    public boolean isFixed(){
+        return fixedCosts != null || fixedCostSlots != null;
+    }
+
+    /**
+     * Sets the all-pairs table that answers the queries instead of a search, for the sources it covers.
+     * @param distanceTable the table built for the map of the queries, or null to always search
+     */
+    public void setDistanceTable(DistanceTable distanceTable){
+        this.distanceTable = distanceTable;
+    }
+
+    /**
+     * Sets the snapshot whose saved costs and component labels answer the queries between the knight and
+     * the coins, and that saves the costs computed by the searches.
+     * @param snapshot the snapshot of the input of the queries, or null
+     */
+    public void setSnapshot(SessionSnapshot snapshot){
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Returns whether algorithm finds a path between two tiles.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @return true if the path has at least one move
+     */
+    public boolean hasPath(Tile start, Tile objective){
+        if(snapshot != null){
+            return snapshot.hasPath(start, objective);
+        }
+        if(distanceTable != null && distanceTable.covers(start)){
+            return distanceTable.hasPath(start, objective);
+        }
+        return !algorithm(start, objective).isEmpty();
+    }
+
+    /**
+     * Returns the cost of the path algorithm finds between two tiles, the same as findTotalCost of the path.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @return the cost, or POSITIVE_INFINITY if there is no path
+     */
+    public double pathCost(Tile start, Tile objective){
+        // The snapshot saves the fixed-point costs instead when they are fixed-point.
+        if(snapshot != null && !isFixed()){
+            long saved = snapshot.cost(start, objective);
+            if(SessionSnapshot.isKnown(saved)){
+                return Double.longBitsToDouble(saved);
+            }
+        }
+        double cost;
+        // With fixed-point costs the table only holds centi-units, the double is added up along its path.
+        if(distanceTable != null && distanceTable.covers(start) && !isFixed()){
+            cost = distanceTable.cost(start, objective);
+        }
+        else{
+            ArrayList<Tile> path = algorithm(start, objective);
+            cost = path.isEmpty() ? Double.POSITIVE_INFINITY : findTotalCost(path);
+        }
+        if(snapshot != null && !isFixed()){
+            snapshot.record(start, objective, Double.doubleToRawLongBits(cost));
+        }
+        return cost;
+    }
+
+    /**
+     * Returns the cost of the path algorithm finds between two tiles in centi-units, the same as
+     * findTotalFixedCost of the path. Only available with fixed-point costs.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @return the cost, or FixedCost.INFINITY if there is no path
+     */
+    public long fixedPathCost(Tile start, Tile objective){
+        if(snapshot != null){
+            long saved = snapshot.cost(start, objective);
+            if(SessionSnapshot.isKnown(saved)){
+                return saved;
+            }
+        }
+        long cost;
+        if(distanceTable != null && distanceTable.covers(start)){
+            cost = distanceTable.fixedCost(start, objective);
+        }
+        else{
+            ArrayList<Tile> path = algorithm(start, objective);
+            cost = path.isEmpty() ? FixedCost.INFINITY : findTotalFixedCost(path);
+        }
+        if(snapshot != null){
+            snapshot.record(start, objective, cost);
+        }
+        return cost;
+    }
+
     /**
      * Uses Dijkstra's algorithm to compute the shortest path between two tiles.
      * @param start the starting tile
@@ -49,6 +277,12 @@ public class PathFinder {
      *         or an empty list if the objective is unreachable
      */
     public ArrayList<Tile> algorithm(Tile start, Tile objective){
+        if(distanceTable != null && distanceTable.covers(start)){
+            return distanceTable.path(start, objective);
+        }
+        if(isFixed()){
+            return fixedAlgorithm(start, objective);
+        }
         // Stores the cost to reach each tile.
         HashMap<Tile, Double> currentCost = new HashMap<>();
         // Stores the tile that came before each tile on the shortest path.
@@ -57,9 +291,24 @@ public class PathFinder {
         PriorityQueue<Tile> path = new PriorityQueue<>(Comparator.comparingDouble(currentCost::get));
         currentCost.put(start,0.0); // Cost to reach start is 0.
         path.add(start);
+        // Search counters, only updated when metrics are enabled.
+        long queryStart = Metrics.ENABLED ? System.nanoTime() : 0;
+        HashSet<Tile> settledTiles = Metrics.ENABLED ? new HashSet<>() : null;
+        int settled = 0;
+        int relaxations = 0;
+        int stalePops = 0;
+        int peakQueue = 1;
 
         while(!path.isEmpty()){
             Tile currentTile = path.poll();
+            if(Metrics.ENABLED){
+                if(settledTiles.add(currentTile)){
+                    settled++;
+                }
+                else{
+                    stalePops++; // The tile was polled again after a cheaper path was found.
+                }
+            }
             // Exits the loop if the objective is reached.
             if(currentTile.isEqual(objective)){
                 break;
@@ -79,15 +328,88 @@ public class PathFinder {
                 }
 
                 double newCost = currentCost.get(currentTile) + movingCost;
+                if(Metrics.ENABLED){
+                    relaxations++;
+                }
 
                 // Update path and queue if a cheaper path is found.
                 if(newCost < currentCost.getOrDefault(neighbor, Double.POSITIVE_INFINITY)){
                     currentCost.put(neighbor, newCost);
                     previousTile.put(neighbor, currentTile);
                     path.add(neighbor);
+                    if(Metrics.ENABLED){
+                        peakQueue = Math.max(peakQueue, path.size());
+                    }
+                }
+            }
+        }
+        if(Metrics.ENABLED){
+            Metrics.recordQuery("PathFinder", settled, relaxations, stalePops, peakQueue, System.nanoTime() - queryStart);
+        }
+        return reconstructPath(previousTile, start, objective);
+    }
+
+    // Dijkstra's algorithm with the costs added up and compared as centi-units. Of two paths with the same
+    // cost the one found first is kept, so it can differ from the path of the double search.
+    private ArrayList<Tile> fixedAlgorithm(Tile start, Tile objective){
+        // Stores the cost to reach each tile in centi-units.
+        HashMap<Tile, Long> currentCost = new HashMap<>();
+        HashMap<Tile, Tile> previousTile = new HashMap<>();
+        PriorityQueue<Tile> path = new PriorityQueue<>(Comparator.comparingLong(currentCost::get));
+        currentCost.put(start,0L);
+        path.add(start);
+        long queryStart = Metrics.ENABLED ? System.nanoTime() : 0;
+        HashSet<Tile> settledTiles = Metrics.ENABLED ? new HashSet<>() : null;
+        int settled = 0;
+        int relaxations = 0;
+        int stalePops = 0;
+        int peakQueue = 1;
+
+        while(!path.isEmpty()){
+            Tile currentTile = path.poll();
+            if(Metrics.ENABLED){
+                if(settledTiles.add(currentTile)){
+                    settled++;
+                }
+                else{
+                    stalePops++;
+                }
+            }
+            if(currentTile.isEqual(objective)){
+                break;
+            }
+
+            for(Tile neighbor : currentTile.getAdjacentTiles()){
+                if(neighbor.getType() == 2){
+                    continue;
+                }
+                int movingCost = fixedCost(currentTile, neighbor);
+                if(movingCost < 0){
+                    continue;
+                }
+                long newCost = currentCost.get(currentTile) + movingCost;
+                if(Metrics.ENABLED){
+                    relaxations++;
+                }
+                Long oldCost = currentCost.get(neighbor);
+                if(oldCost == null || newCost < oldCost){
+                    currentCost.put(neighbor, newCost);
+                    previousTile.put(neighbor, currentTile);
+                    path.add(neighbor);
+                    if(Metrics.ENABLED){
+                        peakQueue = Math.max(peakQueue, path.size());
+                    }
                 }
             }
         }
+        if(Metrics.ENABLED){
+            Metrics.recordQuery("PathFinder", settled, relaxations, stalePops, peakQueue, System.nanoTime() - queryStart);
+        }
+        return reconstructPath(previousTile, start, objective);
+    }
+
+    // Reconstructs the path found by a search from the tiles that came before each tile.
+    private static ArrayList<Tile> reconstructPath(HashMap<Tile, Tile> previousTile, Tile start, Tile objective){
         // If the objective is unreachable, return an empty path.
         if(!previousTile.containsKey(objective)){
             return new ArrayList<>();
@@ -118,4 +440,17 @@ public class PathFinder {
         }
         return totalCost;
     }
+
+    /**
+     * Calculates the total cost of moving along a path in centi-units. Only available with fixed-point costs.
+     * @param path the list of tiles to traverse
+     * @return the sum of movement costs between successive tiles in centi-units
+     */
+    public long findTotalFixedCost(ArrayList<Tile> path){
+        long totalCost = 0;
+        for(int i = 0; i < path.size() - 1; i++){
+            totalCost += fixedCost(path.get(i), path.get(i+1));
+        }
+        return totalCost;
+    }
 }
@@ -0,0 +1,442 @@
+// Mehmet Arda Kutlu
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The bitmask DP of ShortestRoute that only keeps the states that can still be part of a shortest tour.
+ * A quick heuristic tour (nearest neighbor, improved by the local search of ClusteredRoute) gives an
+ * upper bound on the optimal cost. The cost of a state plus a lower bound on the rest of the tour (the
+ * cheapest move from its last tile into the unvisited objectives, then the larger of the cheapest moves
+ * out of every unvisited objective and the minimum spanning tree of the unvisited objectives and the
+ * start) is compared with it, and a state above it is dropped: no tour through it can beat
+ * the heuristic one. The states are built visited count by visited count; a layer only stores the
+ * visited sets that have a live state, sorted so that the previous set of a state is found by a binary
+ * search, with one cost and one parent tile per last tile. Only the costs of two layers are in memory at
+ * a time, the parent tiles of every layer are kept to rebuild the tour. When the coins are clustered the
+ * heuristic tour is close to the optimum and most of the 2^n sets are never stored.
+ * The bound never grows by more than the move to a new tile, so a dropped state cannot be the cheapest
+ * way into a kept one: the kept states have the costs and parent tiles of the full table and the tour is
+ * the same shortest tour that ShortestRoute finds, ties are broken the same way.
+ */
+public class PrunedHeldKarp {
+    // Largest number of objectives: the parent tile is stored in a byte and the visited sets in an int mask.
+    public static final int MAX_OBJECTIVES = 30;
+    // Relative slack of the comparison with the upper bound, for the rounding of the bound sums.
+    private static final double EPSILON = 1e-9;
+
+    // Largest number of bytes the layers may use.
+    private final long memoryLimit;
+    // Statistics of the last solve.
+    private double upperBound;
+    private long keptStates;
+    private long prunedStates;
+    private long peakBytes;
+    private double lastCost;
+
+    /**
+     * Constructor of the class.
+     * @param memoryLimit largest number of bytes the stored states may use
+     */
+    PrunedHeldKarp(long memoryLimit){
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * Finds the shortest tour that starts at the knight's position, visits all reachable objectives and
+     * returns to the start.
+     * @param start the starting Tile (Knight's initial position)
+     * @param objectives list of objective tiles (coin positions)
+     * @param pathFinder the PathFinder object used for shortest path calculations
+     * @return the tour, empty if there is no valid tour
+     * @throws IllegalStateException if the states that cannot be dropped need more than the memory limit
+     */
+    public Tour planShortestTour(Tile start, List<Tile> objectives, PathFinder pathFinder){
+        long phaseStart = Metrics.startPhase();
+        ArrayList<Tile> allTiles = new ArrayList<>();
+        allTiles.add(start);
+        for(Tile objective : objectives){
+            if(pathFinder.hasPath(start, objective)){
+                allTiles.add(objective);
+            }
+        }
+        Metrics.endPhase("reachability", phaseStart);
+        int m = allTiles.size() - 1;
+        if(m == 0){
+            return new Tour(new ArrayList<>(), pathFinder);
+        }
+        if(m > MAX_OBJECTIVES){
+            throw new IllegalArgumentException("The pruned DP supports up to " + MAX_OBJECTIVES + " objectives, got " + m);
+        }
+
+        // With fixed-point costs the centi-units are used as they are: their sums are exact in a double,
+        // so the ties are the ties of the int table of ShortestRoute.
+        phaseStart = Metrics.startPhase();
+        double[][] cost = new double[m + 1][m + 1];
+        for(int i = 0; i <= m; i++){
+            for(int j = 0; j <= m; j++){
+                if(i == j){
+                    cost[i][j] = Double.POSITIVE_INFINITY;
+                }
+                else if(pathFinder.isFixed()){
+                    long fixedCost = pathFinder.fixedPathCost(allTiles.get(i), allTiles.get(j));
+                    cost[i][j] = fixedCost >= FixedCost.INFINITY ? Double.POSITIVE_INFINITY : fixedCost;
+                }
+                else{
+                    cost[i][j] = pathFinder.pathCost(allTiles.get(i), allTiles.get(j));
+                }
+            }
+        }
+        Metrics.endPhase("distanceMatrix", phaseStart);
+
+        int[] order = solve(cost);
+        if(order == null){
+            return new Tour(new ArrayList<>(), pathFinder);
+        }
+        ArrayList<Tile> stops = new ArrayList<>();
+        for(int node : order){
+            stops.add(allTiles.get(node));
+        }
+        return new Tour(stops, pathFinder);
+    }
+
+    /**
+     * Solves the DP for a cost matrix whose first tile is the start.
+     * @param cost cost[i][j] = travel cost from tile i to tile j (infinity if unreachable)
+     * @return the tiles of the shortest tour from the start back to it, or null if there is no tour
+     * @throws IllegalStateException if the states that cannot be dropped need more than the memory limit
+     */
+    public int[] solve(double[][] cost){
+        int m = cost.length - 1;
+        keptStates = 0;
+        prunedStates = 0;
+        peakBytes = 0;
+        if(m == 0){
+            upperBound = 0;
+            lastCost = 0;
+            return new int[]{0, 0};
+        }
+        long phaseStart = Metrics.startPhase();
+        upperBound = heuristicCost(cost);
+        double limit = upperBound + EPSILON * Math.max(1, upperBound);
+        // nearest[v] = the other tiles by the cost of the move from v, cheapest first.
+        int[][] nearest = new int[m + 1][];
+        for(int v = 0; v <= m; v++){
+            nearest[v] = nearest(cost, v);
+        }
+        // The spanning tree ignores the direction of the moves.
+        double[][] undirected = new double[m + 1][m + 1];
+        for(int i = 0; i <= m; i++){
+            for(int j = 0; j <= m; j++){
+                undirected[i][j] = Math.min(cost[i][j], cost[j][i]);
+            }
+        }
+        Metrics.endPhase("upperBound", phaseStart);
+
+        phaseStart = Metrics.startPhase();
+        int full = (1 << m) - 1;
+        // masks[k] = the sorted visited sets of layer k, bit j - 1 for objective j.
+        int[][] masks = new int[m + 1][];
+        // parents[k][index * m + i - 1] = the tile before objective i in the state of the set at index.
+        byte[][] parents = new byte[m + 1][];
+        long parentBytes = 0;
+        // previousCost[index * m + i - 1] = cost of the state of layer k - 1, infinity if it is dropped.
+        double[] previousCost = new double[0];
+        int[] previousMasks = {0};
+        double[] leaving = new double[m];
+        for(int k = 1; k <= m; k++){
+            // The sets of the layer: a live set of the previous layer with one more objective.
+            long candidateCount = (long) previousMasks.length * (m - k + 1);
+            checkMemory(parentBytes + 8L * previousCost.length + 4L * candidateCount, k);
+            int[] candidates = new int[(int) candidateCount];
+            int next = 0;
+            for(int previousMask : previousMasks){
+                for(int i = 1; i <= m; i++){
+                    if((previousMask & 1 << (i - 1)) == 0){
+                        candidates[next++] = previousMask | 1 << (i - 1);
+                    }
+                }
+            }
+            Arrays.sort(candidates);
+
+            int[] layerMasks = new int[Math.max(16, candidates.length / 4)];
+            double[] layerCost = new double[layerMasks.length * m];
+            byte[] layerParents = new byte[layerMasks.length * m];
+            int count = 0;
+            for(int c = 0; c < candidates.length; c++){
+                int mask = candidates[c];
+                if(c > 0 && mask == candidates[c - 1]){
+                    continue;
+                }
+                if(count == layerMasks.length){
+                    checkMemory(parentBytes + (4L + 9L * m) * count * 2 + 8L * previousCost.length + 4L * candidates.length, k);
+                    layerMasks = Arrays.copyOf(layerMasks, count * 2);
+                    layerCost = Arrays.copyOf(layerCost, count * 2 * m);
+                    layerParents = Arrays.copyOf(layerParents, count * 2 * m);
+                }
+                int unvisited = full & ~mask;
+                int slot = count * m;
+                // leaving[i - 1] = cost of the state plus its move out of objective i, the smallest in cheapest.
+                double cheapest = Double.POSITIVE_INFINITY;
+                for(int i = 1; i <= m; i++){
+                    layerCost[slot + i - 1] = Double.POSITIVE_INFINITY;
+                    if((mask & 1 << (i - 1)) == 0){
+                        continue;
+                    }
+                    // Pull from the state without objective i, ties go to the smallest previous tile.
+                    double best = Double.POSITIVE_INFINITY;
+                    int bestPrevious = -1;
+                    int previousMask = mask ^ 1 << (i - 1);
+                    if(k == 1){
+                        best = cost[0][i];
+                        bestPrevious = 0;
+                    }
+                    else{
+                        int index = Arrays.binarySearch(previousMasks, previousMask);
+                        if(index < 0){
+                            continue;
+                        }
+                        for(int remaining = previousMask; remaining != 0; remaining &= remaining - 1){
+                            int j = Integer.numberOfTrailingZeros(remaining) + 1;
+                            double candidate = previousCost[index * m + j - 1] + cost[j][i];
+                            if(candidate < best){
+                                best = candidate;
+                                bestPrevious = j;
+                            }
+                        }
+                    }
+                    if(best == Double.POSITIVE_INFINITY){
+                        continue;
+                    }
+                    layerCost[slot + i - 1] = best;
+                    layerParents[slot + i - 1] = (byte) bestPrevious;
+                    leaving[i - 1] = best + leaveBound(cost, nearest, i, unvisited);
+                    cheapest = Math.min(cheapest, leaving[i - 1]);
+                }
+                if(cheapest == Double.POSITIVE_INFINITY){
+                    continue;
+                }
+                // The spanning tree is only computed if the cheaper bound keeps a state of the set.
+                double restBound = restBound(cost, nearest, unvisited);
+                if(cheapest + restBound <= limit){
+                    restBound = Math.max(restBound, spanningTree(undirected, m, unvisited));
+                }
+                boolean live = false;
+                for(int i = 1; i <= m; i++){
+                    if(layerCost[slot + i - 1] == Double.POSITIVE_INFINITY){
+                        continue;
+                    }
+                    if(leaving[i - 1] + restBound > limit){
+                        layerCost[slot + i - 1] = Double.POSITIVE_INFINITY;
+                        prunedStates++;
+                    }
+                    else{
+                        keptStates++;
+                        live = true;
+                    }
+                }
+                // A set without a live state is not stored.
+                if(live){
+                    layerMasks[count++] = mask;
+                }
+            }
+            peakBytes = Math.max(peakBytes, parentBytes + 4L * candidates.length + (4L + 9L * m) * layerMasks.length
+                    + 8L * previousCost.length);
+            previousMasks = Arrays.copyOf(layerMasks, count);
+            previousCost = Arrays.copyOf(layerCost, count * m);
+            masks[k] = previousMasks;
+            parents[k] = Arrays.copyOf(layerParents, count * m);
+            parentBytes += 4L * count + (long) count * m;
+            if(count == 0){
+                Metrics.endPhase("dpFill", phaseStart);
+                lastCost = Double.POSITIVE_INFINITY;
+                return null;
+            }
+        }
+        Metrics.endPhase("dpFill", phaseStart);
+
+        // Find the best path that ends at any tile and returns to initial position.
+        phaseStart = Metrics.startPhase();
+        double minCost = Double.POSITIVE_INFINITY;
+        int lastIndex = -1;
+        for(int i = 1; i <= m; i++){
+            if(cost[i][0] == Double.POSITIVE_INFINITY) continue; // Can't return to start.
+            double tourCost = previousCost[i - 1] + cost[i][0];
+            if(tourCost < minCost){
+                minCost = tourCost;
+                lastIndex = i;
+            }
+        }
+        lastCost = minCost;
+        if(lastIndex == -1){
+            return null;
+        }
+        ArrayList<Integer> nodeOrder = new ArrayList<>();
+        int current = lastIndex;
+        int state = full;
+        for(int k = m; current != 0; k--){
+            nodeOrder.add(current);
+            int index = Arrays.binarySearch(masks[k], state);
+            int previous = parents[k][index * m + current - 1];
+            state ^= 1 << (current - 1);
+            current = previous;
+        }
+        nodeOrder.add(0);
+        Collections.reverse(nodeOrder);
+        nodeOrder.add(0);
+        int[] order = new int[nodeOrder.size()];
+        for(int t = 0; t < order.length; t++){
+            order[t] = nodeOrder.get(t);
+        }
+        Metrics.endPhase("reconstruction", phaseStart);
+        return order;
+    }
+
+    // Throws if the stored states of the layers up to k would need more bytes than the limit.
+    private void checkMemory(long bytes, int k){
+        if(bytes > memoryLimit){
+            throw new IllegalStateException(String.format(
+                    "The pruned DP needs more than %d bytes for the states of %d visited objectives", memoryLimit, k));
+        }
+    }
+
+    // Cost of the nearest-neighbor tour improved by the local search of ClusteredRoute, infinity if it
+    // uses a missing move.
+    private static double heuristicCost(double[][] cost){
+        int n = cost.length;
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        visited[0] = true;
+        for(int position = 1; position < n; position++){
+            int current = order[position - 1];
+            int next = -1;
+            for(int candidate = 1; candidate < n; candidate++){
+                if(!visited[candidate] && (next < 0 || cost[current][candidate] < cost[current][next])){
+                    next = candidate;
+                }
+            }
+            order[position] = next;
+            visited[next] = true;
+        }
+        ClusteredRoute.improve(cost, order, 1, n - 1);
+        return ClusteredRoute.cycleCost(cost, order);
+    }
+
+    // The tiles other than v, sorted by the cost of the move from v.
+    private static int[] nearest(double[][] cost, int v){
+        Integer[] tiles = new Integer[cost.length - 1];
+        for(int w = 0, t = 0; w < cost.length; w++){
+            if(w != v){
+                tiles[t++] = w;
+            }
+        }
+        Arrays.sort(tiles, (a, b) -> Double.compare(cost[v][a], cost[v][b]));
+        int[] sorted = new int[tiles.length];
+        for(int t = 0; t < tiles.length; t++){
+            sorted[t] = tiles[t];
+        }
+        return sorted;
+    }
+
+    // Lower bound on the moves out of the unvisited objectives: each of them is left once, towards another
+    // unvisited objective or the start.
+    private static double restBound(double[][] cost, int[][] nearest, int unvisited){
+        double bound = 0;
+        for(int remaining = unvisited; remaining != 0; remaining &= remaining - 1){
+            int v = Integer.numberOfTrailingZeros(remaining) + 1;
+            for(int w : nearest[v]){
+                if(w == 0 || (unvisited & 1 << (w - 1)) != 0){
+                    bound += cost[v][w];
+                    break;
+                }
+            }
+        }
+        return bound;
+    }
+
+    // Weight of the minimum spanning tree of the unvisited objectives and the start (Prim). The rest of
+    // the tour after its first move is a path through them, which is a spanning tree.
+    private static double spanningTree(double[][] undirected, int m, int unvisited){
+        if(unvisited == 0){
+            return 0;
+        }
+        double[] distance = new double[m + 1];
+        int outside = unvisited;
+        for(int v = 1; v <= m; v++){
+            distance[v] = undirected[0][v];
+        }
+        double weight = 0;
+        while(outside != 0){
+            int closest = -1;
+            for(int remaining = outside; remaining != 0; remaining &= remaining - 1){
+                int v = Integer.numberOfTrailingZeros(remaining) + 1;
+                if(closest < 0 || distance[v] < distance[closest]){
+                    closest = v;
+                }
+            }
+            weight += distance[closest];
+            outside &= ~(1 << (closest - 1));
+            for(int remaining = outside; remaining != 0; remaining &= remaining - 1){
+                int v = Integer.numberOfTrailingZeros(remaining) + 1;
+                distance[v] = Math.min(distance[v], undirected[closest][v]);
+            }
+        }
+        return weight;
+    }
+
+    // Lower bound on the move out of the last tile: into an unvisited objective, or back to the start
+    // if every objective is visited.
+    private static double leaveBound(double[][] cost, int[][] nearest, int last, int unvisited){
+        if(unvisited == 0){
+            return cost[last][0];
+        }
+        for(int w : nearest[last]){
+            if(w != 0 && (unvisited & 1 << (w - 1)) != 0){
+                return cost[last][w];
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the cost of the heuristic tour of the last solve, the bound the states were compared with.
+     * @return the upper bound, infinity if the heuristic tour uses a missing move
+     */
+    public double getUpperBound(){
+        return upperBound;
+    }
+
+    /**
+     * Returns the number of states the last solve stored.
+     * @return the kept state count
+     */
+    public long getKeptStates(){
+        return keptStates;
+    }
+
+    /**
+     * Returns the number of reachable states the last solve dropped because of the bound.
+     * @return the pruned state count
+     */
+    public long getPrunedStates(){
+        return prunedStates;
+    }
+
+    /**
+     * Returns the most bytes the layers of the last solve used at a time.
+     * @return the peak size of the stored states
+     */
+    public long getPeakBytes(){
+        return peakBytes;
+    }
+
+    /**
+     * Returns the cost of the last tour.
+     * @return the cost, infinity if there was no tour
+     */
+    public double getLastCost(){
+        return lastCost;
+    }
+}
@@ -0,0 +1,325 @@
+// Mehmet Arda Kutlu
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/**
+ * Chooses how a loaded input is solved from its size and the machine: whether the path queries are
+ * searched on the tiles or looked up in a dense DistanceTable, how many threads compute the legs of
+ * the standard run and which solver plans the tour of the bonus run. The time of each choice is
+ * estimated from the tile count, the number of queries and the cores, and its memory from the arrays
+ * it allocates; a choice whose memory is over the budget (a share of the free heap) is never taken.
+ * The explicit goldtrail.* settings are kept, the planner only fills in the ones that are not set.
+ * Every choice gives the same output, except that a tour DP that does not fit the budget is replaced
+ * by the pruned DP (or the layered DP if goldtrail.tsp.layeredLimit allows it), and by the clustered
+ * planner if the states the pruned DP cannot drop do not fit either.
+ */
+public class QueryPlanner {
+    /**
+     * The solvers Bonus can plan the tour with.
+     */
+    public enum TourStrategy {
+        EXACT, LAYERED, PORTFOLIO, PRUNED, CLUSTERED
+    }
+
+    // Share of the free heap a plan may use.
+    private static final double HEAP_SHARE = 0.8;
+    // Largest number of moves whose costs are sampled.
+    private static final int COST_SAMPLE = 4096;
+    // Estimated time per settled tile of a PathFinder search (hash maps and boxed costs) and of a
+    // DistanceTable search (flat arrays), in nanoseconds, measured on the 20x20 test case.
+    private static final double SEARCH_NANOS = 10000;
+    private static final double TABLE_NANOS = 1500;
+    // Estimated bytes per tile of the flat graph (types and four costs) with the reachability labels.
+    private static final int GRAPH_BYTES_PER_TILE = 1 + 4 * 8 + 4;
+
+    // The loaded input.
+    private final Map map;
+    private final PathFinder pathFinder;
+    private final boolean bonus;
+    // Snapshot of an earlier run that answers queries (null if there is none).
+    private final SessionSnapshot snapshot;
+    private final int tiles;
+    private final int coins;
+    // The machine.
+    private final int cores;
+    private final long memoryBudget;
+    // Sampled move costs.
+    private int sampledMoves;
+    private double minCost = Double.POSITIVE_INFINITY;
+    private double maxCost;
+    private boolean integral = true;
+    private boolean twoDecimals = true;
+    // The plan.
+    private boolean distanceTable;
+    private int legThreads = 1;
+    private TourStrategy tourStrategy;
+    // Lines of the explanation.
+    private final ArrayList<String> reasons = new ArrayList<>();
+
+    /**
+     * Constructor of the class. Looks at the input and the machine and makes the plan.
+     * @param map the Map object whose tiles and coins are loaded
+     * @param pathFinder the PathFinder that stores the travel costs
+     * @param bonus whether the plan is for the bonus run (a tour) instead of the standard run (legs)
+     */
+    QueryPlanner(Map map, PathFinder pathFinder, boolean bonus){
+        this(map, pathFinder, bonus, null);
+    }
+
+    /**
+     * Constructor of the class for a run with a SessionSnapshot, whose saved costs are not searched again.
+     * @param map the Map object whose tiles and coins are loaded
+     * @param pathFinder the PathFinder that stores the travel costs
+     * @param bonus whether the plan is for the bonus run (a tour) instead of the standard run (legs)
+     * @param snapshot the snapshot of the run, or null
+     */
+    QueryPlanner(Map map, PathFinder pathFinder, boolean bonus, SessionSnapshot snapshot){
+        this.map = map;
+        this.pathFinder = pathFinder;
+        this.bonus = bonus;
+        this.snapshot = snapshot;
+        this.tiles = map.getTiles().length * map.getTiles()[0].length;
+        this.coins = map.getCoins().size();
+        this.cores = Runtime.getRuntime().availableProcessors();
+        this.memoryBudget = memoryBudget();
+        sampleCosts();
+        reasons.add(String.format("%dx%d map (%d tiles), %d coins, %d core%s, %s heap budget", map.getTiles().length,
+                map.getTiles()[0].length, tiles, coins, cores, cores == 1 ? "" : "s", megabytes(memoryBudget)));
+        reasons.add(describeCosts());
+        planPaths();
+        if(bonus){
+            planTour();
+        }
+    }
+
+    /**
+     * Returns the memory a plan may use: goldtrail.plan.memory bytes if it is set, otherwise a share of
+     * the heap that is not used yet.
+     * @return the budget in bytes
+     */
+    public static long memoryBudget(){
+        Long configured = Long.getLong("goldtrail.plan.memory");
+        if(configured != null){
+            return configured;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return (long) ((runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory())) * HEAP_SHARE);
+    }
+
+    // Samples the costs of the moves to the right and lower neighbors, spread evenly over the map.
+    private void sampleCosts(){
+        Tile[][] mapTiles = map.getTiles();
+        int rows = mapTiles[0].length;
+        int step = Math.max(1, tiles * 2 / COST_SAMPLE);
+        for(int id = 0; id < tiles; id += step){
+            Tile tile = mapTiles[id / rows][id % rows];
+            for(Tile neighbor : tile.getAdjacentTiles()){
+                if(neighbor.getColumn() < tile.getColumn() || neighbor.getRow() < tile.getRow()){
+                    continue;
+                }
+                double cost = pathFinder.costCalculator(tile, neighbor);
+                if(cost < 0){
+                    continue;
+                }
+                sampledMoves++;
+                minCost = Math.min(minCost, cost);
+                maxCost = Math.max(maxCost, cost);
+                integral &= cost == Math.rint(cost);
+                twoDecimals &= Math.abs(cost * FixedCost.SCALE - Math.rint(cost * FixedCost.SCALE)) < 1e-6;
+            }
+        }
+    }
+
+    // Line of the explanation about the sampled costs.
+    private String describeCosts(){
+        if(sampledMoves == 0){
+            return "no travel costs sampled";
+        }
+        String kind = integral ? "whole costs" : twoDecimals ? "costs with at most " + FixedCost.DECIMALS + " decimals"
+                : "costs with more than " + FixedCost.DECIMALS + " decimals";
+        String fixedNote = pathFinder.isFixed() ? ", searched as fixed-point"
+                : twoDecimals && bonus ? " (-Dgoldtrail.costs=fixed would make the tour DP table a third smaller)" : "";
+        return String.format("%s from %.2f to %.2f over %d sampled moves%s", kind, minCost, maxCost, sampledMoves, fixedNote);
+    }
+
+    // Chooses between searching every path query and looking it up in a DistanceTable, and the leg threads.
+    private void planPaths(){
+        String mode = System.getProperty("goldtrail.apsp", "auto");
+        if(!mode.equals("auto") && !mode.equals("on") && !mode.equals("off")){
+            throw new IllegalArgumentException("Unknown goldtrail.apsp: " + mode);
+        }
+        // A query settles about half of the map before it reaches its objective.
+        double searchMillis = queries() * (tiles / 2.0) * SEARCH_NANOS / 1e6;
+        double tableMillis = (double) tiles * tiles * TABLE_NANOS / Math.max(1, tableThreads()) / 1e6;
+        long tableBytes = (long) tiles * tiles * ((pathFinder.isFixed() ? 4 : 8) + 2);
+        int maxTiles = Integer.getInteger("goldtrail.apsp.maxTiles", DistanceTable.DEFAULT_MAX_TILES);
+        if(mode.equals("off")){
+            reasons.add("paths: searched on the tiles (goldtrail.apsp=off)");
+        }
+        else if(tiles > Math.min(maxTiles, DistanceTable.MAX_TILES)){
+            reasons.add(String.format("paths: searched on the tiles, a distance table is only built up to %d tiles",
+                    Math.min(maxTiles, DistanceTable.MAX_TILES)));
+        }
+        else if(tableBytes > memoryBudget){
+            reasons.add(String.format("paths: searched on the tiles, a distance table needs %s", megabytes(tableBytes)));
+        }
+        else if(mode.equals("on") || tableMillis < searchMillis){
+            distanceTable = true;
+            reasons.add(String.format("paths: dense distance table (%s, ~%.0fms to build vs ~%.0fms for %d searches)%s",
+                    megabytes(tableBytes), tableMillis, searchMillis, queries(), mode.equals("on") ? " (goldtrail.apsp=on)" : ""));
+        }
+        else{
+            reasons.add(String.format("paths: searched on the tiles (~%.0fms for %d searches, a distance table takes ~%.0fms)",
+                    searchMillis, queries(), tableMillis));
+        }
+
+        if(bonus){
+            return;
+        }
+        Integer configured = Integer.getInteger("goldtrail.legThreads");
+        long graphBytes = (long) tiles * GRAPH_BYTES_PER_TILE;
+        if(configured != null){
+            legThreads = configured;
+            reasons.add("legs: " + legThreads + " thread" + (legThreads == 1 ? "" : "s") + " (goldtrail.legThreads)");
+        }
+        else if(!distanceTable && cores > 1 && coins > 1 && graphBytes <= memoryBudget){
+            // The legs are searched up front, every core takes some of them.
+            legThreads = Math.min(cores, coins);
+            reasons.add(String.format("legs: searched in parallel on %d threads (%s for the reachability graph)",
+                    legThreads, megabytes(graphBytes)));
+        }
+        else{
+            reasons.add("legs: searched one after the other");
+        }
+    }
+
+    // Chooses the tour solver of the bonus run.
+    private void planTour(){
+        int exactLimit = Integer.getInteger("goldtrail.tsp.exactLimit", 18);
+        // A DP is never picked for more objectives than it supports.
+        int layeredLimit = Math.min(Integer.getInteger("goldtrail.tsp.layeredLimit", 0), LayeredHeldKarp.MAX_OBJECTIVES);
+        int prunedLimit = Math.min(Integer.getInteger("goldtrail.tsp.prunedLimit", 24), PrunedHeldKarp.MAX_OBJECTIVES);
+        Long deadline = Long.getLong("goldtrail.tsp.deadline");
+        int n = coins + 1;
+        // The DP table and the parent table of ShortestRoute, n << n entries each.
+        long dpBytes = n > 40 ? Long.MAX_VALUE : ((pathFinder.isFixed() ? 4L : 8L) + 4) * n << n;
+        if(deadline != null && coins <= SolverPortfolio.MAX_OBJECTIVES){
+            tourStrategy = TourStrategy.PORTFOLIO;
+            reasons.add(String.format("tour: solver portfolio with a %dms deadline (goldtrail.tsp.deadline)", deadline));
+        }
+        else if(coins > exactLimit && coins <= layeredLimit){
+            tourStrategy = TourStrategy.LAYERED;
+            reasons.add(String.format("tour: layered DP on disk, more than %d coins (goldtrail.tsp.exactLimit)", exactLimit));
+        }
+        else if(coins > exactLimit && coins <= prunedLimit){
+            tourStrategy = TourStrategy.PRUNED;
+            reasons.add(String.format("tour: pruned DP, more than %d coins (goldtrail.tsp.exactLimit); clustered planner"
+                    + " if its states need more than the budget", exactLimit));
+        }
+        else if(coins > exactLimit){
+            tourStrategy = TourStrategy.CLUSTERED;
+            reasons.add(String.format("tour: clustered planner, more than %d coins (goldtrail.tsp.exactLimit)%s", exactLimit,
+                    clusteredMemoryNote()));
+        }
+        else if(dpBytes > memoryBudget){
+            // The full table does not fit, the layered DP keeps only two layers in memory and the pruned DP
+            // only the states that can beat a heuristic tour.
+            tourStrategy = coins <= layeredLimit ? TourStrategy.LAYERED : coins <= prunedLimit ? TourStrategy.PRUNED
+                    : TourStrategy.CLUSTERED;
+            reasons.add(String.format("tour: %s, the exact DP table needs %s", tourStrategy == TourStrategy.LAYERED
+                    ? "layered DP on disk" : tourStrategy == TourStrategy.PRUNED ? "pruned DP (clustered planner if its states do not fit)"
+                    : "clustered planner (-Dgoldtrail.tsp.layeredLimit enables the exact DP on disk)",
+                    megabytes(dpBytes)) + (tourStrategy == TourStrategy.CLUSTERED ? clusteredMemoryNote() : ""));
+        }
+        else{
+            tourStrategy = TourStrategy.EXACT;
+            reasons.add(String.format("tour: exact bitmask DP (%s table)", megabytes(dpBytes)));
+        }
+    }
+
+    // Warning added when even the flat graph of the clustered planner is over the budget.
+    private String clusteredMemoryNote(){
+        long graphBytes = (long) tiles * GRAPH_BYTES_PER_TILE;
+        return graphBytes > memoryBudget ? String.format("; its flat graph needs %s, more than the budget, no plan fits",
+                megabytes(graphBytes)) : "";
+    }
+
+    // Estimated number of path queries of the run.
+    private long queries(){
+        long n = coins + 1;
+        if(bonus && snapshot != null && snapshot.hasTourCosts()){
+            // The reachability and the distance matrix are in the snapshot, one leg per stop.
+            return n;
+        }
+        if(bonus){
+            // The reachability of every coin, the distance matrix and one leg per stop.
+            return coins + n * (n - 1) + n;
+        }
+        // The reachability check and one leg per coin (the snapshot labels answer the checks).
+        return snapshot != null ? coins : 2L * coins;
+    }
+
+    // Threads that build the distance table.
+    private int tableThreads(){
+        return Integer.getInteger("goldtrail.apsp.threads", cores);
+    }
+
+    // Formats a byte count.
+    private static String megabytes(long bytes){
+        return String.format("%.1fMB", bytes / 1e6);
+    }
+
+    /**
+     * Writes the plan and the reasons for it, one line per choice, unless goldtrail.plan.explain is false.
+     * @param output the stream the lines are written to
+     */
+    public void explain(PrintStream output){
+        if("false".equals(System.getProperty("goldtrail.plan.explain"))){
+            return;
+        }
+        for(String reason : reasons){
+            output.println("plan: " + reason);
+        }
+    }
+
+    /**
+     * Builds the DistanceTable of the plan.
+     * @return the table, or null if the paths are searched
+     */
+    public DistanceTable buildDistanceTable(){
+        return distanceTable ? new DistanceTable(map, pathFinder, tableThreads()) : null;
+    }
+
+    /**
+     * Returns whether the path queries are looked up in a DistanceTable.
+     * @return true if the plan builds a distance table
+     */
+    public boolean isDistanceTable() {
+        return distanceTable;
+    }
+
+    /**
+     * Returns the number of threads that compute the legs of the standard run.
+     * @return the leg thread count, 1 for the sequential run
+     */
+    public int getLegThreads() {
+        return legThreads;
+    }
+
+    /**
+     * Returns the memory a plan may use, measured when the plan was made.
+     * @return the budget in bytes
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Returns the tour solver of the bonus run.
+     * @return the strategy, null for the standard run
+     */
+    public TourStrategy getTourStrategy() {
+        return tourStrategy;
+    }
+}
@@ -0,0 +1,103 @@
+// Mehmet Arda Kutlu
+
+import java.util.Arrays;
+
+/**
+ * Answers whether a tile can reach another one without running a shortest path search. Moves are only
+ * possible into passable tiles and travel costs are stored for both directions, so the moves between
+ * passable tiles are symmetric and the passable tiles split into components that can reach each other.
+ * The components are labeled once with a breadth-first search; an impassable start tile can still
+ * leave through its neighbors, so its reachable components are the ones of those neighbors.
+ */
+public class Reachability {
+    // The graph of the map.
+    private final GridGraph graph;
+    // Component label of each passable tile, -1 for impassable tiles.
+    private final int[] component;
+
+    /**
+     * Constructor of the class. Labels the components of the passable tiles.
+     * @param graph the graph of the map
+     */
+    Reachability(GridGraph graph){
+        this.graph = graph;
+        this.component = new int[graph.size()];
+        Arrays.fill(component, -1);
+        int[] queue = new int[graph.size()];
+        int label = 0;
+        for(int id = 0; id < graph.size(); id++){
+            if(component[id] >= 0 || graph.type(id) == 2){
+                continue;
+            }
+            // Label every tile that can be reached from this one.
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = id;
+            component[id] = label;
+            while(head < tail){
+                int currentTile = queue[head++];
+                for(int direction = 0; direction < 4; direction++){
+                    int neighbor = graph.neighbor(currentTile, direction);
+                    if(neighbor >= 0 && component[neighbor] < 0 && graph.cost(currentTile, direction) >= 0){
+                        component[neighbor] = label;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+            label++;
+        }
+    }
+
+    /**
+     * Constructor of the class with component labels that were computed before (by a run that saved a
+     * SessionSnapshot).
+     * @param graph the graph of the map
+     * @param component the component label of each tile id of the graph, -1 for impassable tiles
+     */
+    Reachability(GridGraph graph, int[] component){
+        this.graph = graph;
+        this.component = component;
+    }
+
+    /**
+     * Returns the component labels.
+     * @return the component label of each tile id, -1 for impassable tiles
+     */
+    public int[] getComponents(){
+        return component;
+    }
+
+    /**
+     * Checks whether there is a path between two different tiles of the map the graph was built from.
+     * @param source the starting tile
+     * @param target the target tile
+     * @return true if the target can be reached, false if it cannot or the tiles are the same
+     */
+    public boolean canReach(Tile source, Tile target){
+        return canReach(graph.id(source), graph.id(target));
+    }
+
+    /**
+     * Checks whether there is a path between two different tiles, with the same result as
+     * PathFinder.algorithm returning a non-empty path.
+     * @param source the id of the starting tile
+     * @param target the id of the target tile
+     * @return true if the target can be reached, false if it cannot or the tiles are the same
+     */
+    public boolean canReach(int source, int target){
+        if(source == target || component[target] < 0){
+            return false;
+        }
+        if(component[source] >= 0){
+            return component[source] == component[target];
+        }
+        // An impassable start tile can only be left, check the components of its neighbors.
+        for(int direction = 0; direction < 4; direction++){
+            int neighbor = graph.neighbor(source, direction);
+            if(neighbor >= 0 && graph.cost(source, direction) >= 0 && component[neighbor] == component[target]){
+                return true;
+            }
+        }
+        return false;
+    }
+}
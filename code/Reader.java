@@ -20,8 +20,18 @@ public class Reader {
      * @throws FileNotFoundException if any of the files cannot be found
      */
     Reader(String mapDataName, String objectivesName) throws FileNotFoundException {
-        mapData = new File("misc/" + mapDataName);
-        objectives = new File("misc/" + objectivesName);
+        this(new File("misc/" + mapDataName), new File("misc/" + objectivesName));
+    }
+
+    /**
+     * Constructor of the class for files outside the "misc" directory.
+     * @param mapData the map data file
+     * @param objectives the objectives file
+     * @throws FileNotFoundException if any of the files cannot be found
+     */
+    Reader(File mapData, File objectives) throws FileNotFoundException {
+        this.mapData = mapData;
+        this.objectives = objectives;
         mapReader = new Scanner(mapData);
         objectiveReader = new Scanner(objectives);
     }
@@ -0,0 +1,357 @@
+// Mehmet Arda Kutlu
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Rectangular symmetry reduction for maps with uniform-cost regions. Preprocessing splits the
+ * passable tiles into maximal rectangles in which every move between two tiles of the rectangle
+ * costs the same. Inside such a rectangle every monotone path between two tiles has the same cost,
+ * so the search only expands the perimeter tiles: from a perimeter tile it moves along the perimeter,
+ * jumps straight across the rectangle to the opposite side and takes the original moves into
+ * neighboring rectangles. A path segment inside a rectangle costs at least (cost * Manhattan distance)
+ * between its entry and exit tiles, and the perimeter moves plus the jumps always reach that bound,
+ * so the search stays exact with respect to the travel costs.
+ */
+public class RectangleSymmetryReduction implements PathEngine {
+    // The flat graph of the map.
+    private final GridGraph graph;
+    // Rectangle of every tile, -1 for impassable tiles.
+    private final int[] rectangleOf;
+    // Bounds and the move cost of every rectangle.
+    private int[] minCol;
+    private int[] maxCol;
+    private int[] minRow;
+    private int[] maxRow;
+    private double[] moveCost;
+    // Number of rectangles and of tiles on their perimeters.
+    private int rectangleCount;
+    private int perimeterTiles;
+    // Time spent on the decomposition.
+    private final long preprocessingNanos;
+    // Reused search state, entries of other searches are treated as unreached.
+    private final double[] currentCost;
+    private final int[] previousTile;
+    private final int[] stamp;
+    private int currentStamp;
+    private final MinHeap queue = new MinHeap(64);
+    // Number of tiles settled by the last search.
+    private int settledCount;
+
+    /**
+     * Constructor of the class. Decomposes the map into uniform-cost rectangles.
+     * @param graph the flat graph of the map
+     */
+    RectangleSymmetryReduction(GridGraph graph){
+        long start = System.nanoTime();
+        this.graph = graph;
+        this.rectangleOf = new int[graph.size()];
+        this.currentCost = new double[graph.size()];
+        this.previousTile = new int[graph.size()];
+        this.stamp = new int[graph.size()];
+        decompose();
+        this.preprocessingNanos = System.nanoTime() - start;
+    }
+
+    // Grows a maximal rectangle from every tile that is not covered yet, scanning row by row.
+    private void decompose(){
+        Arrays.fill(rectangleOf, -1);
+        minCol = new int[16];
+        maxCol = new int[16];
+        minRow = new int[16];
+        maxRow = new int[16];
+        moveCost = new double[16];
+        int cols = graph.getCols();
+        int rows = graph.getRows();
+        for(int row = 0; row < rows; row++){
+            for(int col = 0; col < cols; col++){
+                int id = graph.id(col, row);
+                if(rectangleOf[id] >= 0 || graph.type(id) == 2){
+                    continue;
+                }
+                // The cost of the rectangle is the cost of its first move to the right or down.
+                double cost = -1;
+                if(col + 1 < cols && isFree(graph.id(col + 1, row))){
+                    cost = uniformCost(id, GridGraph.RIGHT, -1);
+                }
+                if(cost < 0 && row + 1 < rows && isFree(graph.id(col, row + 1))){
+                    cost = uniformCost(id, GridGraph.DOWN, -1);
+                }
+                int right = col;
+                int bottom = row;
+                if(cost >= 0){
+                    // Grow to the right, then add whole rows below while every move costs the same.
+                    while(right + 1 < cols && isFree(graph.id(right + 1, row))
+                            && uniformCost(graph.id(right, row), GridGraph.RIGHT, cost) >= 0){
+                        right++;
+                    }
+                    while(bottom + 1 < rows && canAddRow(col, right, bottom + 1, cost)){
+                        bottom++;
+                    }
+                }
+                addRectangle(col, right, row, bottom, Math.max(cost, 0));
+            }
+        }
+    }
+
+    // Checks whether the tile is passable and not in a rectangle yet.
+    private boolean isFree(int id){
+        return rectangleOf[id] < 0 && graph.type(id) != 2;
+    }
+
+    // Returns the cost of the move in both directions if they are equal (and equal to the expected
+    // cost when it is not negative), -1 otherwise.
+    private double uniformCost(int id, int direction, double expected){
+        int neighbor = graph.neighbor(id, direction);
+        double cost = graph.cost(id, direction);
+        if(neighbor < 0 || cost < 0 || cost != graph.cost(neighbor, GridGraph.opposite(direction))){
+            return -1;
+        }
+        return expected < 0 || cost == expected ? cost : -1;
+    }
+
+    // Checks whether the row can be added below a rectangle without breaking the uniform cost.
+    private boolean canAddRow(int left, int right, int row, double cost){
+        for(int col = left; col <= right; col++){
+            int id = graph.id(col, row);
+            if(!isFree(id) || uniformCost(graph.id(col, row - 1), GridGraph.DOWN, cost) < 0){
+                return false;
+            }
+            if(col < right && uniformCost(id, GridGraph.RIGHT, cost) < 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Stores a rectangle and assigns its tiles.
+    private void addRectangle(int left, int right, int top, int bottom, double cost){
+        if(rectangleCount == minCol.length){
+            int capacity = rectangleCount * 2;
+            minCol = Arrays.copyOf(minCol, capacity);
+            maxCol = Arrays.copyOf(maxCol, capacity);
+            minRow = Arrays.copyOf(minRow, capacity);
+            maxRow = Arrays.copyOf(maxRow, capacity);
+            moveCost = Arrays.copyOf(moveCost, capacity);
+        }
+        minCol[rectangleCount] = left;
+        maxCol[rectangleCount] = right;
+        minRow[rectangleCount] = top;
+        maxRow[rectangleCount] = bottom;
+        moveCost[rectangleCount] = cost;
+        for(int col = left; col <= right; col++){
+            for(int row = top; row <= bottom; row++){
+                rectangleOf[graph.id(col, row)] = rectangleCount;
+            }
+        }
+        int width = right - left + 1;
+        int height = bottom - top + 1;
+        perimeterTiles += width <= 2 || height <= 2 ? width * height : 2 * (width + height) - 4;
+        rectangleCount++;
+    }
+
+    /**
+     * Computes the shortest path between two tiles.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @return an ArrayList of tiles representing the shortest path (from start to end),
+     *         or an empty list if the objective is unreachable
+     */
+    public ArrayList<Tile> algorithm(Tile start, Tile objective){
+        // Same as PathFinder.algorithm, a tile is not considered reachable from itself.
+        if(start.isEqual(objective)){
+            return new ArrayList<>();
+        }
+        return graph.toTiles(findPath(graph.id(start), graph.id(objective)));
+    }
+
+    /**
+     * Computes the cost of the shortest path between two tiles.
+     * @param start the id of the starting tile
+     * @param goal the id of the target tile
+     * @return the path cost, or infinity if the goal is unreachable
+     */
+    public double distance(int start, int goal){
+        return start == goal ? 0 : search(start, goal);
+    }
+
+    /**
+     * Computes the shortest path between two tiles and expands the jumps to single steps.
+     * @param start the id of the starting tile
+     * @param goal the id of the target tile
+     * @return the tile ids of the path from start to goal, or null if the goal is unreachable
+     */
+    public int[] findPath(int start, int goal){
+        if(start == goal){
+            return new int[]{start};
+        }
+        if(search(start, goal) == Double.POSITIVE_INFINITY){
+            return null;
+        }
+        // Collect the expanded nodes backwards, then fill in the tiles between them.
+        ArrayList<Integer> nodes = new ArrayList<>();
+        for(int node = goal; node >= 0; node = previousTile[node]){
+            nodes.add(node);
+        }
+        int[] path = new int[16];
+        path[0] = start;
+        int length = 1;
+        for(int k = nodes.size() - 1; k > 0; k--){
+            int from = nodes.get(k);
+            int to = nodes.get(k - 1);
+            int steps = Math.abs(graph.col(to) - graph.col(from)) + Math.abs(graph.row(to) - graph.row(from));
+            if(length + steps > path.length){
+                path = Arrays.copyOf(path, Math.max(path.length * 2, length + steps));
+            }
+            // Move along the columns first, then along the rows; both stay inside the rectangle.
+            int col = graph.col(from);
+            int row = graph.row(from);
+            while(col != graph.col(to)){
+                col += col < graph.col(to) ? 1 : -1;
+                path[length++] = graph.id(col, row);
+            }
+            while(row != graph.row(to)){
+                row += row < graph.row(to) ? 1 : -1;
+                path[length++] = graph.id(col, row);
+            }
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    // Runs Dijkstra's algorithm on the perimeter tiles and returns the cost of the goal.
+    private double search(int start, int goal){
+        nextStamp();
+        queue.clear();
+        settledCount = 0;
+        stamp[start] = currentStamp;
+        currentCost[start] = 0;
+        previousTile[start] = -1;
+        queue.push(0, start);
+        int goalRectangle = rectangleOf[goal];
+        if(goalRectangle < 0){
+            return Double.POSITIVE_INFINITY;
+        }
+        while(!queue.isEmpty()){
+            double cost = queue.peekKey();
+            int tile = queue.peekValue();
+            queue.pop();
+            // Skip the entries that were replaced by a cheaper one.
+            if(cost > currentCost[tile]){
+                continue;
+            }
+            settledCount++;
+            if(tile == goal){
+                return cost;
+            }
+            int rectangle = rectangleOf[tile];
+            // Original moves out of the rectangle, and along its perimeter inside it.
+            for(int direction = 0; direction < 4; direction++){
+                int neighbor = graph.neighbor(tile, direction);
+                double movingCost = graph.cost(tile, direction);
+                if(neighbor < 0 || movingCost < 0){
+                    continue;
+                }
+                if(rectangleOf[neighbor] != rectangle || isPerimeter(neighbor, rectangle) || neighbor == goal){
+                    relax(tile, neighbor, cost + movingCost);
+                }
+            }
+            // An impassable start tile is not in a rectangle and can only take the original moves.
+            if(rectangle < 0){
+                continue;
+            }
+            double rectangleCost = moveCost[rectangle];
+            int col = graph.col(tile);
+            int row = graph.row(tile);
+            int left = minCol[rectangle];
+            int right = maxCol[rectangle];
+            int top = minRow[rectangle];
+            int bottom = maxRow[rectangle];
+            if(isPerimeter(tile, rectangle)){
+                // Jump straight across the rectangle to the opposite side.
+                if(col == left && right > left){
+                    relax(tile, graph.id(right, row), cost + rectangleCost * (right - left));
+                }
+                if(col == right && right > left){
+                    relax(tile, graph.id(left, row), cost + rectangleCost * (right - left));
+                }
+                if(row == top && bottom > top){
+                    relax(tile, graph.id(col, bottom), cost + rectangleCost * (bottom - top));
+                }
+                if(row == bottom && bottom > top){
+                    relax(tile, graph.id(col, top), cost + rectangleCost * (bottom - top));
+                }
+            }
+            else{
+                // A start tile inside the rectangle moves straight to the four sides.
+                relax(tile, graph.id(left, row), cost + rectangleCost * (col - left));
+                relax(tile, graph.id(right, row), cost + rectangleCost * (right - col));
+                relax(tile, graph.id(col, top), cost + rectangleCost * (row - top));
+                relax(tile, graph.id(col, bottom), cost + rectangleCost * (bottom - row));
+            }
+            // The goal can be reached with a monotone path from every tile of its rectangle.
+            if(rectangle == goalRectangle){
+                relax(tile, goal, cost + rectangleCost * (Math.abs(graph.col(goal) - col) + Math.abs(graph.row(goal) - row)));
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    // Updates the cost of a tile and queues it if a cheaper path is found.
+    private void relax(int from, int to, double newCost){
+        if(stamp[to] != currentStamp || newCost < currentCost[to]){
+            stamp[to] = currentStamp;
+            currentCost[to] = newCost;
+            previousTile[to] = from;
+            queue.push(newCost, to);
+        }
+    }
+
+    // Checks whether a tile is on the perimeter of its rectangle.
+    private boolean isPerimeter(int tile, int rectangle){
+        int col = graph.col(tile);
+        int row = graph.row(tile);
+        return col == minCol[rectangle] || col == maxCol[rectangle] || row == minRow[rectangle] || row == maxRow[rectangle];
+    }
+
+    // Starts a new search number, clearing the stamps when the counter wraps around.
+    private void nextStamp(){
+        currentStamp++;
+        if(currentStamp == Integer.MAX_VALUE){
+            Arrays.fill(stamp, 0);
+            currentStamp = 1;
+        }
+    }
+
+    /**
+     * Returns the number of rectangles of the decomposition.
+     * @return the rectangle count
+     */
+    public int getRectangleCount() {
+        return rectangleCount;
+    }
+
+    /**
+     * Returns the number of tiles on the perimeters of the rectangles, which are the only tiles the
+     * search expands (besides the start and the goal).
+     * @return the perimeter tile count
+     */
+    public int getPerimeterTiles() {
+        return perimeterTiles;
+    }
+
+    /**
+     * Returns the number of tiles settled by the last search.
+     * @return the settled tile count
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Returns the time spent on the decomposition.
+     * @return the preprocessing time in milliseconds
+     */
+    public double getPreprocessingMillis() {
+        return preprocessingNanos / 1e6;
+    }
+}
@@ -0,0 +1,40 @@
+// Mehmet Arda Kutlu
+
+import java.awt.*;
+
+/**
+ * A surface that MapRenderer draws frames on. Coordinates are canvas coordinates like in StdDraw:
+ * x grows to the right and y grows upwards, both measured in canvas units (30 per tile).
+ */
+public interface RenderTarget {
+    /**
+     * Returns how many pixels of the surface one canvas unit covers, so sprites can be scaled to
+     * the real pixel size once instead of on every draw.
+     * @return the pixel scale of the surface
+     */
+    int getPixelScale();
+
+    /**
+     * Draws a sprite centered at the given position.
+     * @param sprite the sprite to draw
+     * @param xCenter x center in canvas units
+     * @param yCenter y center in canvas units
+     * @param width width in canvas units
+     * @param height height in canvas units
+     */
+    void picture(Sprite sprite, double xCenter, double yCenter, double width, double height);
+
+    /**
+     * Draws a filled circle.
+     * @param color color of the circle
+     * @param xCenter x center in canvas units
+     * @param yCenter y center in canvas units
+     * @param radius radius in canvas units
+     */
+    void filledCircle(Color color, double xCenter, double yCenter, double radius);
+
+    /**
+     * Shows the frame that was drawn since the last call.
+     */
+    void show();
+}
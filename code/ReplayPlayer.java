@@ -0,0 +1,307 @@
+// Mehmet Arda Kutlu
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Plays the animation of a run on its own thread. The runner sends its step events at full speed;
+ * the player applies them to the map (knight position, marks, collected coins) and draws one frame
+ * per step at the playback rate. When drawing falls behind the schedule, frames are skipped so the
+ * playback keeps its rate. The rate is configured with the system properties
+ * goldtrail.replay.initialMillis (pause after the first frame, default 500),
+ * goldtrail.replay.stepMillis (pause after a step, default 200), goldtrail.replay.legMillis
+ * (extra pause after a leg, default 300) and goldtrail.replay.skipFrames (default true).
+ * At most goldtrail.replay.backlog events (default 65536) wait for the playback. When the backlog is full,
+ * the waiting steps are merged into one frame that leaves the map in the same state if frames can be
+ * skipped; otherwise the runner waits until the playback has room again.
+ */
+public class ReplayPlayer implements Consumer<StepEvent> {
+    // Event that marks the end of the stream.
+    private static final StepEvent END = new StepEvent(StepEvent.Type.LEG_FINISHED, -1, -1, -1);
+    // The map that is animated.
+    private final Map map;
+    // Whether the bonus visuals (one mark color per leg) are used.
+    private final boolean bonus;
+    // Events that were sent but not played yet, at most the backlog.
+    private final LinkedBlockingQueue<StepEvent> events;
+    // Pause after the first frame, after every step and extra pause after every leg in milliseconds.
+    private final long initialMillis;
+    private final long stepMillis;
+    private final long legMillis;
+    // Whether frames are skipped when the playback falls behind.
+    private final boolean skipFrames;
+    // Consumes the frames, drawing them on the map by default.
+    private final Runnable frameDrawer;
+    // The thread that plays the events.
+    private Thread thread;
+    // Tiles marked in the current leg, unmarked when the leg finishes (standard part).
+    private final ArrayList<Tile> legTiles = new ArrayList<>();
+    // Mark color of the current leg and the leg it belongs to (bonus part).
+    private Color markColor;
+    private int markColorLeg = -1;
+    // Number of frames drawn and skipped.
+    private int drawnFrames;
+    private int skippedFrames;
+    // Number of frames merged away when the backlog was full, only written by the runner.
+    private int mergedFrames;
+    // Events accepted so far, and the count from which a full backlog is merged again after a merge that
+    // freed less than half of it (too many marks), so merging costs at most one backlog per backlog events.
+    private long acceptedEvents;
+    private long nextMerge;
+
+    /**
+     * Constructor of the class. Uses the playback rate of the system properties and draws on the map.
+     * @param map the map to animate
+     * @param bonus whether the bonus visuals are used
+     */
+    ReplayPlayer(Map map, boolean bonus){
+        this(map, bonus, Long.getLong("goldtrail.replay.initialMillis", 500),
+                Long.getLong("goldtrail.replay.stepMillis", 200),
+                Long.getLong("goldtrail.replay.legMillis", 300),
+                !"false".equals(System.getProperty("goldtrail.replay.skipFrames")), null);
+    }
+
+    /**
+     * Constructor of the class.
+     * @param map the map to animate
+     * @param bonus whether the bonus visuals are used
+     * @param initialMillis pause after the first frame in milliseconds
+     * @param stepMillis pause after every step in milliseconds
+     * @param legMillis extra pause after every leg in milliseconds
+     * @param skipFrames whether frames are skipped when the playback falls behind
+     * @param frameDrawer draws a frame of the map, or null to use Map.draw/drawBonus
+     */
+    ReplayPlayer(Map map, boolean bonus, long initialMillis, long stepMillis, long legMillis, boolean skipFrames,
+                 Runnable frameDrawer){
+        this.map = map;
+        this.bonus = bonus;
+        this.initialMillis = initialMillis;
+        this.stepMillis = stepMillis;
+        this.legMillis = legMillis;
+        this.skipFrames = skipFrames;
+        this.events = new LinkedBlockingQueue<>(Math.max(1, Integer.getInteger("goldtrail.replay.backlog", 1 << 16)));
+        this.frameDrawer = frameDrawer != null ? frameDrawer : bonus ? map::drawBonus : map::draw;
+    }
+
+    /**
+     * Starts the playback thread, which draws the first frame right away.
+     */
+    public void start(){
+        thread = new Thread(this::play, "replay");
+        thread.start();
+    }
+
+    /**
+     * Queues an event for the playback. If the backlog is full, the queued steps are merged when frames can
+     * be skipped, otherwise (or shortly after a merge that freed less than half of it) the runner waits until
+     * the playback has taken an event.
+     * @param event the step event
+     */
+    @Override
+    public void accept(StepEvent event){
+        try{
+            acceptedEvents++;
+            if(events.offer(event)){
+                return;
+            }
+            if(!skipFrames || acceptedEvents < nextMerge){
+                events.put(event);
+                return;
+            }
+            ArrayList<StepEvent> queued = new ArrayList<>();
+            events.drainTo(queued);
+            queued.add(event);
+            ArrayList<StepEvent> merged = merge(queued);
+            if(merged.size() > queued.size() / 2){
+                nextMerge = acceptedEvents + queued.size();
+            }
+            for(StepEvent kept : merged){
+                events.put(kept);
+            }
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Keeps the fewest of the queued events that leave the map in the same state: only the last move, no
+    // mark that a later end of leg removes again (standard part) and only the last mark of a tile. The
+    // dropped moves are counted as skipped frames.
+    private ArrayList<StepEvent> merge(ArrayList<StepEvent> queued){
+        int lastMove = -1;
+        int lastLeg = -1;
+        for(int i = 0; i < queued.size(); i++){
+            StepEvent.Type type = queued.get(i).getType();
+            if(type == StepEvent.Type.MOVE){
+                lastMove = i;
+            }
+            else if(type == StepEvent.Type.LEG_FINISHED){
+                lastLeg = i;
+            }
+        }
+        boolean[] kept = new boolean[queued.size()];
+        HashSet<Long> markedLater = new HashSet<>();
+        for(int i = queued.size() - 1; i >= 0; i--){
+            StepEvent event = queued.get(i);
+            switch(event.getType()){
+                case MOVE -> {
+                    kept[i] = i == lastMove;
+                    if(!kept[i]){
+                        mergedFrames++;
+                    }
+                }
+                case MARK -> kept[i] = (bonus || i > lastLeg)
+                        && markedLater.add((long) event.getCol() << 32 | event.getRow());
+                default -> kept[i] = true;
+            }
+        }
+        ArrayList<StepEvent> merged = new ArrayList<>();
+        for(int i = 0; i < queued.size(); i++){
+            if(kept[i]){
+                merged.add(queued.get(i));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Marks the end of the events, the last state is drawn after the queued events are played.
+     */
+    public void finish(){
+        try{
+            events.put(END);
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until the playback thread has played every event.
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public void await() throws InterruptedException {
+        thread.join();
+    }
+
+    /**
+     * Returns the number of frames that were drawn.
+     * @return the drawn frame count
+     */
+    public int getDrawnFrames() {
+        return drawnFrames;
+    }
+
+    /**
+     * Returns the number of frames that were skipped to keep up with the playback rate.
+     * @return the skipped frame count
+     */
+    public int getSkippedFrames() {
+        return skippedFrames + mergedFrames;
+    }
+
+    // Plays the events until the end of the stream.
+    private void play(){
+        try{
+            drawFrame();
+            // Time when the next frame should be shown.
+            long due = System.nanoTime() + initialMillis * 1_000_000;
+            sleepUntil(due);
+            // Whether events of a step were applied but not drawn yet, and the pause after that step.
+            boolean pending = false;
+            long pauseMillis = 0;
+            while(true){
+                StepEvent event = events.take();
+                if(event == END || event.getType() == StepEvent.Type.MOVE){
+                    if(pending){
+                        long now = System.nanoTime();
+                        long pauseNanos = pauseMillis * 1_000_000;
+                        // Skip the frame if the playback is more than a pause behind, except the last one.
+                        if(event != END && skipFrames && pauseNanos > 0 && now - due > pauseNanos){
+                            skippedFrames++;
+                        }
+                        else{
+                            drawFrame();
+                        }
+                        due += pauseNanos;
+                        if(event != END){
+                            sleepUntil(due);
+                        }
+                    }
+                    if(event == END){
+                        return;
+                    }
+                    pending = true;
+                    pauseMillis = stepMillis;
+                }
+                apply(event);
+                if(event.getType() == StepEvent.Type.LEG_FINISHED){
+                    pauseMillis += legMillis;
+                }
+            }
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Applies an event to the map.
+    private void apply(StepEvent event){
+        switch(event.getType()){
+            case MOVE -> {
+                map.getKnight().setColNum(event.getCol());
+                map.getKnight().setRowNum(event.getRow());
+            }
+            case MARK -> {
+                Tile tile = map.getTiles()[event.getCol()][event.getRow()];
+                tile.setMarked(true);
+                if(bonus){
+                    // Every path between two objectives (coins) is drawn with a different color.
+                    if(markColorLeg != event.getIndex()){
+                        markColor = randomMarkColor();
+                        markColorLeg = event.getIndex();
+                    }
+                    tile.setMarkColor(markColor);
+                }
+                else{
+                    legTiles.add(tile);
+                }
+            }
+            case COIN_COLLECTED -> map.getCoins().get(event.getIndex()).setCollected(true);
+            case LEG_FINISHED -> {
+                // Remove the marks of the path before the knight starts a new one (standard part).
+                for(Tile tile : legTiles){
+                    tile.setMarked(false);
+                }
+                legTiles.clear();
+            }
+        }
+    }
+
+    // Draws the current state of the map.
+    private void drawFrame(){
+        frameDrawer.run();
+        drawnFrames++;
+    }
+
+    // Sleeps until the given time.
+    private static void sleepUntil(long due) throws InterruptedException {
+        long millis = (due - System.nanoTime()) / 1_000_000;
+        if(millis > 0){
+            Thread.sleep(millis);
+        }
+    }
+
+    /**
+     * Generates a random color used for different paths in bonus part.
+     * @return a randomly generated color
+     */
+    public Color randomMarkColor(){
+        Random random = new Random();
+        return new Color(random.nextInt(256),random.nextInt(256),random.nextInt(256));
+    }
+}
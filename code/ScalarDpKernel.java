@@ -0,0 +1,72 @@
+// Mehmet Arda Kutlu
+
+import java.util.Arrays;
+
+/**
+ * Plain Java implementation of the DP kernel, used when the Vector API is not available.
+ */
+public class ScalarDpKernel implements DpKernel {
+
+    /**
+     * Fills the DP and parent tables.
+     * @param costTransposed costTransposed[next][last] = travel cost from last to next (infinity if unreachable)
+     * @param dp the DP table with n << n entries
+     * @param parent the parent table with n << n entries
+     */
+    public void fill(double[][] costTransposed, double[] dp, int[] parent){
+        int n = costTransposed.length;
+        Arrays.fill(dp, Double.POSITIVE_INFINITY);
+        dp[n] = 0; // Cost of starting at first tile is 0 (state 1, tile 0).
+        for(int state = 3; state < (1 << n); state += 2){ // Ensure start tile is always included.
+            for(int next = 1; next < n; next++){
+                if((state & (1 << next)) == 0) continue;
+                // The state before next was added, the last tile of that state is searched.
+                int previousRow = (state ^ (1 << next)) * n;
+                double[] costRow = costTransposed[next];
+                double minCost = Double.POSITIVE_INFINITY;
+                int minLast = 0;
+                for(int last = 0; last < n; last++){
+                    double newCost = dp[previousRow + last] + costRow[last];
+                    if(newCost < minCost){
+                        minCost = newCost;
+                        minLast = last;
+                    }
+                }
+                dp[state * n + next] = minCost;
+                parent[state * n + next] = minLast;
+            }
+        }
+    }
+
+    /**
+     * Fills the DP and parent tables with fixed-point costs.
+     * @param costTransposed costTransposed[next][last] = travel cost from last to next (FixedCost.INFINITY if unreachable)
+     * @param dp the DP table with n << n entries
+     * @param parent the parent table with n << n entries
+     */
+    public void fill(int[][] costTransposed, int[] dp, int[] parent){
+        int n = costTransposed.length;
+        Arrays.fill(dp, FixedCost.INFINITY);
+        dp[n] = 0;
+        for(int state = 3; state < (1 << n); state += 2){
+            for(int next = 1; next < n; next++){
+                if((state & (1 << next)) == 0) continue;
+                int previousRow = (state ^ (1 << next)) * n;
+                int[] costRow = costTransposed[next];
+                // Sums with an infinite part are at least INFINITY and never win, so the minimum stays
+                // INFINITY for unreachable entries without overflowing.
+                int minCost = FixedCost.INFINITY;
+                int minLast = 0;
+                for(int last = 0; last < n; last++){
+                    int newCost = dp[previousRow + last] + costRow[last];
+                    if(newCost < minCost){
+                        minCost = newCost;
+                        minLast = last;
+                    }
+                }
+                dp[state * n + next] = minCost;
+                parent[state * n + next] = minLast;
+            }
+        }
+    }
+}
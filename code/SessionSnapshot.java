@@ -0,0 +1,504 @@
+// Mehmet Arda Kutlu
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Everything a run computes from its input files before it starts to walk, saved in one file so that a
+ * restarted run with the same files skips the parsing and the searches: the tile types, the travel cost
+ * of every move (indexed like the edge slots of GridGraph), the component labels of Reachability and
+ * the costs between the knight and the coins that the run asked PathFinder for. The file starts with a
+ * header (magic, version, whether the costs are fixed-point and the SHA-256 of the three input files),
+ * followed by the sections as flat big-endian arrays aligned to 8 bytes, so every section is mapped and
+ * copied into its array with bulk reads, one window of at most 64 MB at a time. The copies are kept because
+ * PathFinder and Reachability index plain arrays on every move; a map is limited by them to 2^31 / 4 tiles.
+ * A snapshot whose version, cost mode or input hashes differ is
+ * ignored and replaced. The file is written to a temporary file next to it and renamed over it, so a
+ * killed run never leaves a half-written snapshot.
+ * The Tile objects and their adjacent tiles are still created (they are objects, not arrays), which is
+ * a single pass over the types; the costs between the stops are only the ones the saving run asked for,
+ * the others are searched and added to the next snapshot.
+ */
+public class SessionSnapshot {
+    // File header.
+    private static final int MAGIC = 0x47545353;
+    private static final int VERSION = 2;
+    private static final int FIXED = 1;
+    private static final int TOUR_COSTS = 2;
+    private static final int DIGEST_BYTES = 32;
+    // Bytes of the header before the coins: magic, version, flags, digests, cols, rows, knight, coin count.
+    private static final int HEADER_BYTES = 12 + 3 * DIGEST_BYTES + 16;
+    // Matrix entry of a cost that was not computed (a NaN as a double, beyond FixedCost.INFINITY as a long).
+    private static final long UNKNOWN = Long.MAX_VALUE;
+    // Largest mapping of a section; larger sections are read in several windows.
+    private static final int WINDOW_BYTES = 1 << 26;
+
+    // The snapshot file and the digests of the input files.
+    private final File file;
+    private final byte[][] digests;
+    private final boolean fixed;
+    // Whether the file was valid and loaded, and why it was not.
+    private boolean loaded;
+    private String staleReason;
+    // Whether the saving run computed the costs of a tour (Bonus), so every stop pair it needed is known.
+    private boolean tourCosts;
+    // The map, indexed like GridGraph: types[id], costs[id * 4 + direction] (or fixedCosts), component[id].
+    private int cols;
+    private int rows;
+    private byte[] types;
+    private double[] costs;
+    private int[] fixedCosts;
+    private int[] component;
+    // The knight and the coins, as their tile ids col * rows + row.
+    private int knight;
+    private int[] coins;
+    // stopIndex[id] = index of the first stop on the tile, -1 if there is none; the knight is stop 0.
+    private int[] stopIndex;
+    // matrix[i * stops + j] = cost between the stops (double bits or centi-units), UNKNOWN if not computed.
+    private long[] matrix;
+    private int stops;
+    // Whether costs were added since the snapshot was loaded.
+    private boolean changed;
+    // The objects of the run.
+    private Map map;
+    private Reachability reachability;
+
+    /**
+     * Constructor of the class. Hashes the input files and loads the snapshot if it belongs to them.
+     * @param file the snapshot file, created when the snapshot is saved
+     * @param mapData the mapData.txt file
+     * @param travelCosts the travelCosts.txt file
+     * @param objectives the objectives.txt file
+     * @throws IOException if an input file cannot be read
+     */
+    SessionSnapshot(File file, File mapData, File travelCosts, File objectives) throws IOException {
+        this.file = file;
+        this.fixed = FixedCost.isEnabled();
+        long phaseStart = Metrics.startPhase();
+        this.digests = new byte[][]{digest(mapData), digest(travelCosts), digest(objectives)};
+        if(file.exists()){
+            try{
+                loaded = read();
+            }
+            catch(IOException e){
+                staleReason = "cannot be read (" + e.getMessage() + ")";
+            }
+        }
+        else{
+            staleReason = "does not exist yet";
+        }
+        Metrics.endPhase("snapshotLoad", phaseStart);
+    }
+
+    /**
+     * Creates the snapshot of the goldtrail.snapshot file, for the input files in the "misc" directory.
+     * @param mapDataName the name of the mapData.txt file
+     * @param travelCostsName the name of the travelCosts.txt file
+     * @param objectivesName the name of the objectives.txt file
+     * @return the snapshot, or null if goldtrail.snapshot is not set
+     * @throws IOException if an input file cannot be read
+     */
+    public static SessionSnapshot fromProperties(String mapDataName, String travelCostsName, String objectivesName)
+            throws IOException {
+        String path = System.getProperty("goldtrail.snapshot");
+        if(path == null){
+            return null;
+        }
+        return new SessionSnapshot(new File(path), new File("misc/" + mapDataName), new File("misc/" + travelCostsName),
+                new File("misc/" + objectivesName));
+    }
+
+    // SHA-256 of a file.
+    private static byte[] digest(File input) throws IOException {
+        MessageDigest digest;
+        try{
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch(NoSuchAlgorithmException e){
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] buffer = new byte[1 << 16];
+        try(InputStream stream = new FileInputStream(input)){
+            for(int read = stream.read(buffer); read >= 0; read = stream.read(buffer)){
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    // Reads the header and maps the sections, returns false (with the reason) if the snapshot is stale.
+    private boolean read() throws IOException {
+        try(RandomAccessFile randomAccess = new RandomAccessFile(file, "r")){
+            FileChannel channel = randomAccess.getChannel();
+            if(channel.size() < HEADER_BYTES){
+                staleReason = "is not a snapshot";
+                return false;
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if(header.getInt() != MAGIC){
+                staleReason = "is not a snapshot";
+                return false;
+            }
+            int version = header.getInt();
+            if(version != VERSION){
+                staleReason = "has version " + version + ", expected " + VERSION;
+                return false;
+            }
+            int flags = header.getInt();
+            if(((flags & FIXED) != 0) != fixed){
+                staleReason = "was saved with " + ((flags & FIXED) != 0 ? "fixed-point" : "double") + " costs";
+                return false;
+            }
+            String[] names = {"map data", "travel costs", "objectives"};
+            for(int input = 0; input < digests.length; input++){
+                byte[] saved = new byte[DIGEST_BYTES];
+                header.get(saved);
+                if(!Arrays.equals(saved, digests[input])){
+                    staleReason = "belongs to other " + names[input];
+                    return false;
+                }
+            }
+            tourCosts = (flags & TOUR_COSTS) != 0;
+            cols = header.getInt();
+            rows = header.getInt();
+            knight = header.getInt();
+            coins = new int[header.getInt()];
+            if(4L * cols * rows > Integer.MAX_VALUE){
+                throw new IOException(file + " has a " + cols + "x" + rows + " map, more than the cost arrays hold");
+            }
+            section(channel, HEADER_BYTES, 4L * coins.length, 4,
+                    (window, index) -> window.asIntBuffer().get(coins, index, window.capacity() / 4));
+            stops = coins.length + 1;
+            int tiles = cols * rows;
+
+            long offset = align(HEADER_BYTES + 4L * coins.length);
+            types = new byte[tiles];
+            section(channel, offset, tiles, 1,
+                    (window, index) -> window.get(types, index, window.capacity()));
+            offset = align(offset + tiles);
+            if(fixed){
+                fixedCosts = new int[tiles * 4];
+                section(channel, offset, 16L * tiles, 4,
+                        (window, index) -> window.asIntBuffer().get(fixedCosts, index, window.capacity() / 4));
+                offset += 16L * tiles;
+            }
+            else{
+                costs = new double[tiles * 4];
+                section(channel, offset, 32L * tiles, 8,
+                        (window, index) -> window.asDoubleBuffer().get(costs, index, window.capacity() / 8));
+                offset += 32L * tiles;
+            }
+            component = new int[tiles];
+            section(channel, offset, 4L * tiles, 4,
+                    (window, index) -> window.asIntBuffer().get(component, index, window.capacity() / 4));
+            offset = align(offset + 4L * tiles);
+            matrix = new long[stops * stops];
+            section(channel, offset, 8L * matrix.length, 8,
+                    (window, index) -> window.asLongBuffer().get(matrix, index, window.capacity() / 8));
+        }
+        return true;
+    }
+
+    // Maps a section of the snapshot in windows of at most WINDOW_BYTES and hands each window to the reader
+    // with the index of its first element, so a section can be larger than one mapping.
+    private void section(FileChannel channel, long offset, long bytes, int elementBytes,
+            ObjIntConsumer<MappedByteBuffer> reader) throws IOException {
+        if(offset + bytes > channel.size()){
+            throw new IOException(file + " is truncated");
+        }
+        for(long done = 0; done < bytes; done += WINDOW_BYTES){
+            long length = Math.min(WINDOW_BYTES, bytes - done);
+            reader.accept(channel.map(FileChannel.MapMode.READ_ONLY, offset + done, length), (int) (done / elementBytes));
+        }
+    }
+
+    // Rounds an offset up to a multiple of 8.
+    private static long align(long offset){
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Returns whether the snapshot file belonged to the input files and was loaded.
+     * @return true if the map, the costs and the labels come from the snapshot
+     */
+    public boolean isLoaded(){
+        return loaded;
+    }
+
+    /**
+     * Returns whether the snapshot holds the costs between the stops that a tour needs, saved by Bonus.
+     * @return true if the tour costs are known
+     */
+    public boolean hasTourCosts(){
+        return loaded && tourCosts;
+    }
+
+    /**
+     * Writes why the snapshot was or was not loaded.
+     * @param output the stream the line is written to
+     */
+    public void explain(PrintStream output){
+        if(loaded){
+            long known = Arrays.stream(matrix).filter(cost -> cost != UNKNOWN).count();
+            output.printf("snapshot: loaded %s (%dx%d map, %d coins, %d stop costs)%n", file, cols, rows, coins.length, known);
+        }
+        else{
+            output.printf("snapshot: %s %s, the inputs are loaded and it is saved at the end%n", file, staleReason);
+        }
+    }
+
+    /**
+     * Builds the map of the snapshot: its tiles with their adjacent tiles, the knight and the coins.
+     * Only valid if the snapshot is loaded.
+     * @return the Map object
+     */
+    public Map restoreMap(){
+        map = new Map(cols, rows);
+        for(int col = 0; col < cols; col++){
+            for(int row = 0; row < rows; row++){
+                map.fillTiles(col, row, new Tile(col, row, types[col * rows + row]));
+            }
+        }
+        map.adjacentFinder();
+        map.setKnight(new Knight(knight / rows, knight % rows));
+        for(int coin : coins){
+            map.addCoin(new Coin(coin / rows, coin % rows));
+        }
+        indexStops();
+        return map;
+    }
+
+    /**
+     * Builds the PathFinder of the snapshot from its cost slots. Only valid after restoreMap.
+     * @return the PathFinder, with the same costs as the one that loaded travelCosts.txt
+     */
+    public PathFinder restorePathFinder(){
+        PathFinder pathFinder = new PathFinder(costs, fixedCosts, cols, rows);
+        reachability = new Reachability(graph(pathFinder), component);
+        return pathFinder;
+    }
+
+    /**
+     * Takes the map and the costs of a run that loaded its input files, to save them at the end.
+     * @param map the loaded Map object
+     * @param pathFinder the PathFinder that loaded the travel costs
+     */
+    public void capture(Map map, PathFinder pathFinder){
+        long phaseStart = Metrics.startPhase();
+        this.map = map;
+        Tile[][] tiles = map.getTiles();
+        cols = tiles.length;
+        rows = tiles[0].length;
+        types = new byte[cols * rows];
+        if(fixed){
+            fixedCosts = new int[cols * rows * 4];
+        }
+        else{
+            costs = new double[cols * rows * 4];
+        }
+        // The costs as PathFinder stores them, also for the moves into impassable tiles.
+        for(int col = 0; col < cols; col++){
+            for(int row = 0; row < rows; row++){
+                int id = col * rows + row;
+                types[id] = (byte) tiles[col][row].getType();
+                Tile[] neighbors = {col > 0 ? tiles[col - 1][row] : null, col < cols - 1 ? tiles[col + 1][row] : null,
+                        row > 0 ? tiles[col][row - 1] : null, row < rows - 1 ? tiles[col][row + 1] : null};
+                for(int direction = 0; direction < 4; direction++){
+                    Tile neighbor = neighbors[direction];
+                    if(fixed){
+                        fixedCosts[id * 4 + direction] = neighbor == null ? -1 : pathFinder.fixedCost(tiles[col][row], neighbor);
+                    }
+                    else{
+                        costs[id * 4 + direction] = neighbor == null ? -1 : pathFinder.costCalculator(tiles[col][row], neighbor);
+                    }
+                }
+            }
+        }
+        reachability = new Reachability(graph(pathFinder));
+        component = reachability.getComponents();
+        Tile knightTile = map.knightIsOn(map.getKnight());
+        knight = knightTile.getColumn() * rows + knightTile.getRow();
+        ArrayList<Coin> mapCoins = map.getCoins();
+        coins = new int[mapCoins.size()];
+        for(int i = 0; i < coins.length; i++){
+            Tile coinTile = map.coinIsOn(mapCoins.get(i));
+            coins[i] = coinTile.getColumn() * rows + coinTile.getRow();
+        }
+        stops = coins.length + 1;
+        matrix = new long[stops * stops];
+        Arrays.fill(matrix, UNKNOWN);
+        indexStops();
+        Metrics.endPhase("snapshotCapture", phaseStart);
+    }
+
+    // The column-major graph the component labels belong to.
+    private GridGraph graph(PathFinder pathFinder){
+        return GridGraph.columnMajor(map, pathFinder);
+    }
+
+    // Fills stopIndex from the knight and the coins.
+    private void indexStops(){
+        stopIndex = new int[cols * rows];
+        Arrays.fill(stopIndex, -1);
+        for(int stop = stops - 1; stop >= 0; stop--){
+            int position = stop == 0 ? knight : coins[stop - 1];
+            stopIndex[position] = stop;
+        }
+    }
+
+    /**
+     * Returns the component labels of the map.
+     * @return the Reachability of the map, with column-major ids
+     */
+    public Reachability getReachability(){
+        return reachability;
+    }
+
+    // Index of the matrix entry of two tiles, -1 if one of them is not a stop.
+    private int entry(Tile start, Tile objective){
+        int from = stopIndex[start.getColumn() * rows + start.getRow()];
+        int to = stopIndex[objective.getColumn() * rows + objective.getRow()];
+        return from < 0 || to < 0 ? -1 : from * stops + to;
+    }
+
+    /**
+     * Returns whether PathFinder.algorithm finds a path between two tiles, from the saved cost if there
+     * is one and from the component labels otherwise.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @return true if there is a path with at least one move
+     */
+    public boolean hasPath(Tile start, Tile objective){
+        long cost = cost(start, objective);
+        if(cost != UNKNOWN){
+            return fixed ? cost < FixedCost.INFINITY : Double.longBitsToDouble(cost) != Double.POSITIVE_INFINITY;
+        }
+        return reachability.canReach(start, objective);
+    }
+
+    /**
+     * Returns the saved cost between two stops: the double bits of PathFinder.pathCost, or the centi-units
+     * of PathFinder.fixedPathCost with fixed-point costs.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @return the cost, or UNKNOWN if it was not computed
+     */
+    public synchronized long cost(Tile start, Tile objective){
+        int entry = entry(start, objective);
+        return entry < 0 ? UNKNOWN : matrix[entry];
+    }
+
+    /**
+     * Returns whether a value of cost is a saved cost.
+     * @param cost the value returned by cost
+     * @return true if the cost was computed
+     */
+    public static boolean isKnown(long cost){
+        return cost != UNKNOWN;
+    }
+
+    /**
+     * Saves a cost between two tiles if they are stops, to be written with the snapshot.
+     * @param start the starting tile
+     * @param objective the target tile
+     * @param cost the double bits of the cost, or its centi-units with fixed-point costs
+     */
+    public synchronized void record(Tile start, Tile objective, long cost){
+        int entry = entry(start, objective);
+        if(entry >= 0 && matrix[entry] != cost){
+            matrix[entry] = cost;
+            changed = true;
+        }
+    }
+
+    /**
+     * Writes the snapshot if it was not loaded or costs were added, to a temporary file that is renamed
+     * over the snapshot file. A snapshot that cannot be written is reported on stderr, the run still
+     * succeeds.
+     * @param tour whether the run computed the costs of a tour (Bonus)
+     */
+    public void save(boolean tour){
+        if(loaded && !changed && (tourCosts || !tour)){
+            return;
+        }
+        long phaseStart = Metrics.startPhase();
+        tourCosts |= tour;
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temporary = new File(directory, file.getName() + ".tmp");
+        try{
+            directory.mkdirs();
+            try(FileOutputStream stream = new FileOutputStream(temporary);
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))){
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt((fixed ? FIXED : 0) | (tourCosts ? TOUR_COSTS : 0));
+                for(byte[] digest : digests){
+                    output.write(digest);
+                }
+                output.writeInt(cols);
+                output.writeInt(rows);
+                output.writeInt(knight);
+                output.writeInt(coins.length);
+                for(int coin : coins){
+                    output.writeInt(coin);
+                }
+                long offset = pad(output, HEADER_BYTES + 4L * coins.length);
+                output.write(types);
+                pad(output, offset + types.length);
+                if(fixed){
+                    for(int cost : fixedCosts){
+                        output.writeInt(cost);
+                    }
+                }
+                else{
+                    for(double cost : costs){
+                        output.writeDouble(cost);
+                    }
+                }
+                for(int label : component){
+                    output.writeInt(label);
+                }
+                pad(output, 4L * component.length);
+                synchronized(this){
+                    for(long cost : matrix){
+                        output.writeLong(cost);
+                    }
+                }
+                output.flush();
+                stream.getFD().sync();
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            changed = false;
+        }
+        catch(IOException e){
+            temporary.delete();
+            System.err.println("snapshot: " + file + " could not be saved (" + e.getMessage() + ")");
+        }
+        Metrics.endPhase("snapshotSave", phaseStart);
+    }
+
+    // Writes zeros after a section that ends at the given offset, up to the next multiple of 8 bytes
+    // (the sections between start at multiples of 8), and returns the aligned offset.
+    private static long pad(DataOutputStream output, long offset) throws IOException {
+        for(long position = offset; position % 8 != 0; position++){
+            output.writeByte(0);
+        }
+        return align(offset);
+    }
+}
@@ -7,11 +7,22 @@ import java.util.*;
  * and return to starting position.
  */
 public class ShortestRoute {
+    // Fills the DP table (Vector API kernel if available, scalar otherwise).
+    private final DpKernel dpKernel;
 
     /**
      * Default constructor for the class.
      */
     ShortestRoute(){
+        this(DpKernel.create());
+    }
+
+    /**
+     * Constructor of the class with a specific DP kernel.
+     * @param dpKernel the kernel that fills the DP table
+     */
+    ShortestRoute(DpKernel dpKernel){
+        this.dpKernel = dpKernel;
     }
 
     /**
@@ -23,80 +34,77 @@ public class ShortestRoute {
      * @return an ArrayList of Tile objects representing the full path.
      */
     public ArrayList<Tile> findShortestTour(Tile start, List<Tile> objectives, PathFinder pathFinder) {
+        return planShortestTour(start, objectives, pathFinder).toList();
+    }
+
+    /**
+     * Finds the order of the shortest tour that starts at the knight's position,
+     * visits all reachable objectives, and returns to the start. Only the costs between the tiles
+     * are kept; the tour yields its path leg by leg when it is iterated.
+     * @param start the starting Tile (Knight's initial position)
+     * @param objectives list of objective tiles (coin positions)
+     * @param pathFinder the PathFinder object used for shortest path calculations
+     * @return the tour, empty if there is no valid tour
+     */
+    public Tour planShortestTour(Tile start, List<Tile> objectives, PathFinder pathFinder) {
         ArrayList<Tile> allTiles = new ArrayList<>();
         allTiles.add(start); // First index is the starting point.
 
         // Filter out unreachable objectives
+        long phaseStart = Metrics.startPhase();
         ArrayList<Tile> reachableObjectives = new ArrayList<>();
         for (Tile objective : objectives) {
-            ArrayList<Tile> testPath = pathFinder.algorithm(start, objective);
-            if (!testPath.isEmpty()) {
+            if (pathFinder.hasPath(start, objective)) {
                 reachableObjectives.add(objective);
             }
         }
 
+        Metrics.endPhase("reachability", phaseStart);
+
         if (reachableObjectives.isEmpty()) {
-            return new ArrayList<>();
+            return new Tour(new ArrayList<>(), pathFinder);
         }
 
         allTiles.addAll(reachableObjectives);
         int n = allTiles.size(); // Total number of tiles.
 
+        // With fixed-point costs the matrix and the DP table hold centi-units in ints, which halves the DP
+        // table (a third less with the parent table), as long as no tour can reach FixedCost.INFINITY.
+        phaseStart = Metrics.startPhase();
+        long[][] fixedMatrix = pathFinder.isFixed() ? fixedCostMatrix(allTiles, pathFinder) : null;
+
         double[][] costMatrix = new double[n][n]; // Stores travel cost between every tile pair.
-        HashMap<String, ArrayList<Tile>> pathMatrix = new HashMap<>(); // Stores full paths between tiles.
-        // Precompute the shortest paths and fill cost/path matrices.
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < n; j++) {
-                if (i == j) continue;
-                ArrayList<Tile> path = pathFinder.algorithm(allTiles.get(i), allTiles.get(j));
-                if (path.isEmpty()) {
-                    costMatrix[i][j] = Double.POSITIVE_INFINITY;
-                } else {
-                    costMatrix[i][j] = pathFinder.findTotalCost(path);
-                    pathMatrix.put(i + "-" + j, path);
+        if (fixedMatrix != null && !fitsInt(fixedMatrix)) {
+            // Too large for the int table, the double table is used with the same costs.
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    costMatrix[i][j] = fixedMatrix[i][j] >= FixedCost.INFINITY ? Double.POSITIVE_INFINITY
+                            : FixedCost.toDouble(fixedMatrix[i][j]);
                 }
             }
+            fixedMatrix = null;
         }
-
-        int END_STATE = (1 << n) - 1; // The state where all nodes are visited.
-        double[][] dp = new double[n][1 << n]; // dp[i][state] = Min cost to reach tile i having visited 'state'.
-        int[][] parent = new int[n][1 << n]; // parent[i][state] = Previous tile before i in optimal path.
-        // Initialize table with infinity.
-        for (double[] row : dp) Arrays.fill(row, Double.POSITIVE_INFINITY);
-        dp[0][1] = 0; // Cost of starting at first tile is 0.
-
-        // Filling the table.
-        for (int state = 1; state < (1 << n); state += 2) { // Ensure start tile is always included.
-            for (int last = 0; last < n; last++) {
-                if ((state & (1 << last)) == 0) continue; // Skip already visited ones.
-                for (int next = 0; next < n; next++) {
-                    if ((state & (1 << next)) != 0) continue;
-                    if (costMatrix[last][next] == Double.POSITIVE_INFINITY) continue;
-                    int nextState = state | (1 << next);
-                    double newCost = dp[last][state] + costMatrix[last][next];
-                    if (newCost < dp[next][nextState]) {
-                        dp[next][nextState] = newCost; // Update minimum cost
-                        parent[next][nextState] = last; // Track path
-                    }
+        // Precompute the shortest paths and fill the cost matrix.
+        if (!pathFinder.isFixed()) {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i == j) continue;
+                    costMatrix[i][j] = pathFinder.pathCost(allTiles.get(i), allTiles.get(j));
                 }
             }
         }
 
-        // Find the best path that ends at any tile and returns to initial position.
-        double minCost = Double.POSITIVE_INFINITY;
-        int lastIndex = -1;
-        for (int i = 1; i < n; i++) {
-            if (costMatrix[i][0] == Double.POSITIVE_INFINITY) continue; // Can't return to start.
-            double tourCost = dp[i][END_STATE] + costMatrix[i][0];
-            if (tourCost < minCost) {
-                minCost = tourCost;
-                lastIndex = i;
-            }
-        }
+        Metrics.endPhase("distanceMatrix", phaseStart);
+
+        int END_STATE = (1 << n) - 1; // The state where all nodes are visited.
+        int[] parent = new int[n << n]; // parent[state * n + i] = Previous tile before i in optimal path.
+        int lastIndex = fixedMatrix != null ? fillFixed(fixedMatrix, parent) : fill(costMatrix, parent);
+
+        phaseStart = Metrics.startPhase();
 
         // If there are no valid paths, return an empty path.
         if (lastIndex == -1) {
-            return new ArrayList<>();
+            return new Tour(new ArrayList<>(), pathFinder);
         }
 
         // Reconstruct the sequence of visited tiles.
@@ -105,7 +113,7 @@ public class ShortestRoute {
         int state = END_STATE;
         while (current != 0) {
             nodeOrder.add(current); // Add current node
-            int prev = parent[current][state]; // Backtrack
+            int prev = parent[state * n + current]; // Backtrack
             state ^= (1 << current); // Remove current from state
             current = prev;
         }
@@ -113,17 +121,106 @@ public class ShortestRoute {
         Collections.reverse(nodeOrder); // Reverse to get the correct order
         nodeOrder.add(0); // Return to initial position
 
-        // Build the complete path using the tile order and path matrix.
-        ArrayList<Tile> fullTour = new ArrayList<>();
-        for (int i = 0; i < nodeOrder.size() - 1; i++) {
-            int from = nodeOrder.get(i);
-            int to = nodeOrder.get(i + 1);
-            ArrayList<Tile> segment = pathMatrix.get(from + "-" + to);
-            if (segment == null || segment.isEmpty()) continue;
-            if (i > 0) segment.remove(0); // Avoid repeating tiles
-            fullTour.addAll(segment);
+        // The stops of the tour; the paths between them are found when the tour is iterated.
+        ArrayList<Tile> stops = new ArrayList<>();
+        for (int node : nodeOrder) {
+            stops.add(allTiles.get(node));
+        }
+        Metrics.endPhase("reconstruction", phaseStart);
+
+        return new Tour(stops, pathFinder);
+    }
+
+    // Fills the DP table with double costs and returns the last tile before the return to the start of
+    // the cheapest tour, or -1 if there is no tour.
+    private int fill(double[][] costMatrix, int[] parent) {
+        long phaseStart = Metrics.startPhase();
+        int n = costMatrix.length;
+        int END_STATE = (1 << n) - 1;
+        double[] dp = new double[n << n]; // dp[state * n + i] = Min cost to reach tile i having visited 'state'.
+        // The kernel reads the costs into each tile, so the cost matrix is passed transposed.
+        double[][] costTransposed = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                costTransposed[j][i] = i == j ? Double.POSITIVE_INFINITY : costMatrix[i][j];
+            }
+        }
+        // Filling the table.
+        dpKernel.fill(costTransposed, dp, parent);
+        Metrics.endPhase("dpFill", phaseStart);
+
+        // Find the best path that ends at any tile and returns to initial position.
+        double minCost = Double.POSITIVE_INFINITY;
+        int lastIndex = -1;
+        for (int i = 1; i < n; i++) {
+            if (costMatrix[i][0] == Double.POSITIVE_INFINITY) continue; // Can't return to start.
+            double tourCost = dp[END_STATE * n + i] + costMatrix[i][0];
+            if (tourCost < minCost) {
+                minCost = tourCost;
+                lastIndex = i;
+            }
+        }
+        return lastIndex;
+    }
+
+    // Fills an int DP table with the fixed-point costs and returns the last tile like fill. Exact ties go
+    // to the smallest tile; the double table decides them by the rounding of its sums, so a tour of the
+    // same cost can be picked there.
+    private int fillFixed(long[][] fixedMatrix, int[] parent) {
+        long phaseStart = Metrics.startPhase();
+        int n = fixedMatrix.length;
+        int END_STATE = (1 << n) - 1;
+        int[] dp = new int[n << n];
+        int[][] costTransposed = new int[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                costTransposed[j][i] = (int) fixedMatrix[i][j];
+            }
+        }
+        dpKernel.fill(costTransposed, dp, parent);
+        Metrics.endPhase("dpFill", phaseStart);
+
+        long minCost = FixedCost.INFINITY;
+        int lastIndex = -1;
+        for (int i = 1; i < n; i++) {
+            if (fixedMatrix[i][0] >= FixedCost.INFINITY) continue; // Can't return to start.
+            long tourCost = (long) dp[END_STATE * n + i] + fixedMatrix[i][0];
+            if (tourCost < minCost) {
+                minCost = tourCost;
+                lastIndex = i;
+            }
         }
+        return lastIndex;
+    }
 
-        return fullTour;
+    // Computes the travel costs between every tile pair in centi-units, FixedCost.INFINITY if there is
+    // no path (and between a tile and itself).
+    private static long[][] fixedCostMatrix(ArrayList<Tile> allTiles, PathFinder pathFinder) {
+        int n = allTiles.size();
+        long[][] fixedMatrix = new long[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i == j) {
+                    fixedMatrix[i][j] = FixedCost.INFINITY;
+                    continue;
+                }
+                fixedMatrix[i][j] = pathFinder.fixedPathCost(allTiles.get(i), allTiles.get(j));
+            }
+        }
+        return fixedMatrix;
+    }
+
+    // Returns whether every tour stays below FixedCost.INFINITY: a tour has as many moves as tiles, so
+    // it is enough that the tile count times the largest finite cost does.
+    private static boolean fitsInt(long[][] fixedMatrix) {
+        long largest = 0;
+        for (long[] row : fixedMatrix) {
+            for (long cost : row) {
+                if (cost < FixedCost.INFINITY) {
+                    largest = Math.max(largest, cost);
+                }
+            }
+        }
+        return largest * fixedMatrix.length < FixedCost.INFINITY;
     }
 }
@@ -0,0 +1,590 @@
+// Mehmet Arda Kutlu
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Races three tour solvers on the same cost matrix, for objective counts where it is not known in
+ * advance whether the bitmask DP finishes in time. The exact DP (filled forwards, so that hopeless
+ * states are skipped), a branch and bound search and a local search with random restarts run on their
+ * own threads and share the cheapest tour found so far: its cost is the upper bound the two exact
+ * solvers prune with. The first exact solver that finishes has proven its tour optimal, the others are
+ * told to stop and return at their next check. If the deadline comes first, the cheapest tour found so
+ * far is returned with the gap between its cost and a lower bound on the optimal cost; the first one is
+ * the nearest-neighbor tour, built before the race starts. When the DP wins
+ * the tour is the one ShortestRoute finds; the branch and bound search may prove a different tour with
+ * the same cost.
+ */
+public class SolverPortfolio {
+    // Largest number of objectives: the visited tiles are kept in an int mask.
+    public static final int MAX_OBJECTIVES = 30;
+    // Cost differences smaller than this are ignored when tours are compared.
+    private static final double EPSILON = 1e-9;
+    // Number of search steps between two checks of the stop flag.
+    private static final int CHECK_INTERVAL = 1 << 12;
+    // Nanoseconds between two checks for a tour after the deadline, while none was found.
+    private static final long WAIT_INTERVAL = 10_000_000;
+    // Names of the solvers.
+    private static final String HELD_KARP = "heldKarp";
+    private static final String BRANCH_AND_BOUND = "branchAndBound";
+    private static final String LOCAL_SEARCH = "localSearch";
+
+    // Milliseconds the solvers get before the best tour found is returned, 0 for no deadline.
+    private final long deadlineMillis;
+    // Result of the last solve.
+    private boolean optimal;
+    private double lastCost;
+    private double gap;
+    private String winner;
+
+    /**
+     * The cheapest tour found so far, shared by the solvers.
+     */
+    private static class Incumbent {
+        private volatile double bound = Double.POSITIVE_INFINITY;
+        private int[] order;
+        private String source;
+
+        // Keeps the tour if it is cheaper than the current one.
+        synchronized void offer(int[] order, double cost, String source){
+            if(cost < bound - EPSILON){
+                this.order = order.clone();
+                this.source = source;
+                bound = cost;
+            }
+        }
+
+        double bound(){
+            return bound;
+        }
+
+        synchronized int[] order(){
+            return order;
+        }
+
+        synchronized String source(){
+            return source;
+        }
+    }
+
+    /**
+     * A tour that an exact solver proved optimal.
+     */
+    private static class Proof {
+        private final String solver;
+        // The order of the tiles without the return to the start, null if there is no tour.
+        private final int[] order;
+        private final double cost;
+
+        Proof(String solver, int[] order, double cost){
+            this.solver = solver;
+            this.order = order;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * Constructor of the class.
+     * @param deadlineMillis milliseconds the solvers get before the best tour found is returned,
+     *                       0 to wait until a tour is proven optimal
+     */
+    SolverPortfolio(long deadlineMillis){
+        this.deadlineMillis = Math.max(0, deadlineMillis);
+    }
+
+    /**
+     * Finds the shortest tour that starts at the knight's position, visits all reachable objectives and
+     * returns to the start, or the best tour found before the deadline.
+     * @param start the starting Tile (Knight's initial position)
+     * @param objectives list of objective tiles (coin positions)
+     * @param pathFinder the PathFinder object used for shortest path calculations
+     * @return the tour, empty if there is no valid tour
+     */
+    public Tour planShortestTour(Tile start, List<Tile> objectives, PathFinder pathFinder){
+        long phaseStart = Metrics.startPhase();
+        ArrayList<Tile> allTiles = new ArrayList<>();
+        allTiles.add(start);
+        for(Tile objective : objectives){
+            if(pathFinder.hasPath(start, objective)){
+                allTiles.add(objective);
+            }
+        }
+        Metrics.endPhase("reachability", phaseStart);
+        int m = allTiles.size() - 1;
+        if(m == 0){
+            return new Tour(new ArrayList<>(), pathFinder);
+        }
+        if(m > MAX_OBJECTIVES){
+            throw new IllegalArgumentException("The solver portfolio supports up to " + MAX_OBJECTIVES + " objectives, got " + m);
+        }
+
+        phaseStart = Metrics.startPhase();
+        double[][] cost = new double[m + 1][m + 1];
+        for(int i = 0; i <= m; i++){
+            for(int j = 0; j <= m; j++){
+                if(i == j){
+                    cost[i][j] = Double.POSITIVE_INFINITY;
+                    continue;
+                }
+                cost[i][j] = pathFinder.pathCost(allTiles.get(i), allTiles.get(j));
+            }
+        }
+        Metrics.endPhase("distanceMatrix", phaseStart);
+
+        int[] order = solve(cost);
+        if(order == null){
+            return new Tour(new ArrayList<>(), pathFinder);
+        }
+        ArrayList<Tile> stops = new ArrayList<>();
+        for(int node : order){
+            stops.add(allTiles.get(node));
+        }
+        return new Tour(stops, pathFinder);
+    }
+
+    /**
+     * Races the solvers on a cost matrix whose first tile is the start.
+     * @param cost cost[i][j] = travel cost from tile i to tile j (infinity if unreachable)
+     * @return the tiles of the tour from the start back to it, or null if there is no tour
+     */
+    public int[] solve(double[][] cost){
+        int n = cost.length;
+        if(n == 1){
+            optimal = true;
+            lastCost = 0;
+            gap = 0;
+            winner = HELD_KARP;
+            return new int[]{0, 0};
+        }
+        long phaseStart = Metrics.startPhase();
+        // minIn[j] = cheapest move into tile j. Every tour moves into every tile once.
+        double[] minIn = new double[n];
+        double inBound = 0;
+        double outBound = 0;
+        for(int j = 0; j < n; j++){
+            minIn[j] = Double.POSITIVE_INFINITY;
+            double minOut = Double.POSITIVE_INFINITY;
+            for(int i = 0; i < n; i++){
+                minIn[j] = Math.min(minIn[j], cost[i][j]);
+                minOut = Math.min(minOut, cost[j][i]);
+            }
+            inBound += minIn[j];
+            outBound += minOut;
+        }
+        double lowerBound = Math.max(inBound, outBound);
+
+        // The first incumbent is built before the race, so that a deadline never ends it without a tour.
+        Incumbent incumbent = new Incumbent();
+        int[] nearest = nearestNeighborTour(cost);
+        incumbent.offer(nearest, ClusteredRoute.cycleCost(cost, nearest), LOCAL_SEARCH);
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        CompletionService<Proof> completion = new ExecutorCompletionService<>(executor);
+        int exactRunning = 0;
+        // The DP table has n << n entries of a double and an int, it only runs when it fits the heap.
+        if(n <= 26 && ((12L * n + 4) << n) < Runtime.getRuntime().maxMemory() / 2){
+            completion.submit(() -> heldKarp(cost, minIn, incumbent, stop));
+            exactRunning++;
+        }
+        completion.submit(() -> branchAndBound(cost, minIn, incumbent, stop));
+        exactRunning++;
+        Future<Proof> localSearch = completion.submit(() -> localSearch(cost, nearest, incumbent, stop));
+
+        Proof proof = null;
+        long deadline = System.nanoTime() + deadlineMillis * 1_000_000;
+        try{
+            while(proof == null && exactRunning > 0){
+                Future<Proof> finished = deadlineMillis == 0 ? completion.take()
+                        : completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if(finished == null){
+                    if(incumbent.order() != null){
+                        break; // The deadline came first.
+                    }
+                    // The nearest-neighbor tour misses a move and no solver found a tour yet, the race
+                    // goes on until one does.
+                    deadline = System.nanoTime() + WAIT_INTERVAL;
+                    continue;
+                }
+                if(finished != localSearch){
+                    exactRunning--;
+                    proof = finished.get();
+                }
+            }
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        catch(ExecutionException e){
+            throw new IllegalStateException("A solver of the portfolio failed", e.getCause());
+        }
+        finally{
+            // The solvers check the flag between their steps and return.
+            stop.set(true);
+            executor.shutdown();
+        }
+        Metrics.endPhase("portfolio", phaseStart);
+
+        int[] order;
+        if(proof != null){
+            optimal = true;
+            winner = proof.solver;
+            order = proof.order;
+            lastCost = proof.cost;
+            gap = 0;
+        }
+        else{
+            optimal = false;
+            winner = incumbent.source();
+            order = incumbent.order();
+            lastCost = incumbent.bound();
+            lowerBound = Math.max(lowerBound, assignmentBound(cost));
+            gap = order == null ? Double.POSITIVE_INFINITY : (lastCost - Math.min(lowerBound, lastCost)) / lastCost;
+        }
+        if(order == null){
+            return null;
+        }
+        int[] tour = Arrays.copyOf(order, n + 1);
+        tour[n] = 0;
+        return tour;
+    }
+
+    // The bitmask DP of ShortestRoute that only reads the live entries of the previous states. An entry
+    // whose cost plus the cheapest moves into the tiles still to visit is above the upper bound is on no
+    // optimal tour, and neither is any entry it could give its cost to, so it is left out of the live
+    // tiles of its state and the tour and its ties stay the same as those of the full table. The live
+    // tiles are read in increasing order like the kernels read every tile. Returns null if stopped.
+    private static Proof heldKarp(double[][] cost, double[] minIn, Incumbent incumbent, AtomicBoolean stop){
+        int n = cost.length;
+        int endState = (1 << n) - 1;
+        double[] dp = new double[n << n]; // dp[state * n + i] = Min cost to reach tile i having visited 'state'.
+        int[] parent = new int[n << n];
+        int[] live = new int[1 << n]; // live[state] = mask of the tiles whose entry of the state is kept.
+        double[][] costTransposed = new double[n][n];
+        for(int i = 0; i < n; i++){
+            for(int j = 0; j < n; j++){
+                costTransposed[j][i] = cost[i][j];
+            }
+        }
+        dp[n] = 0; // State 1, tile 0.
+        live[1] = 1;
+        for(int state = 3; state <= endState; state += 2){ // The start tile is always visited.
+            if((state & (CHECK_INTERVAL - 1)) == 1 && stop.get()){
+                return null;
+            }
+            // Cheapest moves into the tiles still to visit and back into the start.
+            double rest = minIn[0];
+            for(int j = 1; j < n; j++){
+                if((state & (1 << j)) == 0){
+                    rest += minIn[j];
+                }
+            }
+            double limit = incumbent.bound() + EPSILON;
+            int liveTiles = 0;
+            for(int next = 1; next < n; next++){
+                if((state & (1 << next)) == 0) continue;
+                int previous = state ^ (1 << next);
+                int previousRow = previous * n;
+                double[] costRow = costTransposed[next];
+                double minCost = Double.POSITIVE_INFINITY;
+                int minLast = 0;
+                for(int lasts = live[previous]; lasts != 0; lasts &= lasts - 1){
+                    int last = Integer.numberOfTrailingZeros(lasts);
+                    double newCost = dp[previousRow + last] + costRow[last];
+                    if(newCost < minCost){
+                        minCost = newCost;
+                        minLast = last;
+                    }
+                }
+                dp[state * n + next] = minCost;
+                parent[state * n + next] = minLast;
+                if(minCost != Double.POSITIVE_INFINITY && minCost + rest <= limit){
+                    liveTiles |= 1 << next;
+                }
+            }
+            live[state] = liveTiles;
+        }
+
+        double minCost = Double.POSITIVE_INFINITY;
+        int last = -1;
+        for(int i = 1; i < n; i++){
+            if(cost[i][0] == Double.POSITIVE_INFINITY) continue; // Can't return to start.
+            double tourCost = dp[endState * n + i] + cost[i][0];
+            if(tourCost < minCost){
+                minCost = tourCost;
+                last = i;
+            }
+        }
+        if(last == -1){
+            return new Proof(HELD_KARP, null, Double.POSITIVE_INFINITY);
+        }
+        int[] order = new int[n];
+        int state = endState;
+        for(int position = n - 1; position > 0; position--){
+            order[position] = last;
+            int previous = parent[state * n + last];
+            state ^= 1 << last;
+            last = previous;
+        }
+        return new Proof(HELD_KARP, order, minCost);
+    }
+
+    // Depth-first search over the tours that tries the nearest tiles first and cuts every partial tour
+    // whose cost plus the cheapest moves into the remaining tiles cannot beat the upper bound. The tours
+    // it completes are offered to the incumbent; once the whole tree is searched, the incumbent is
+    // optimal. Returns null if stopped.
+    private static Proof branchAndBound(double[][] cost, double[] minIn, Incumbent incumbent, AtomicBoolean stop){
+        int n = cost.length;
+        double rest = 0;
+        for(double value : minIn){
+            rest += value;
+        }
+        BranchAndBound search = new BranchAndBound(cost, minIn, incumbent, stop);
+        search.order[0] = 0;
+        search.search(1, 1, 0, rest);
+        if(search.stopped){
+            return null;
+        }
+        int[] order = incumbent.order();
+        return new Proof(BRANCH_AND_BOUND, order, order == null ? Double.POSITIVE_INFINITY : incumbent.bound());
+    }
+
+    /**
+     * State of one branch and bound search.
+     */
+    private static class BranchAndBound {
+        private final double[][] cost;
+        private final double[] minIn;
+        private final Incumbent incumbent;
+        private final AtomicBoolean stop;
+        // Tiles of the partial tour.
+        private final int[] order;
+        // Candidates of every depth, sorted by the cost from the last tile.
+        private final int[][] candidates;
+        private long steps;
+        private boolean stopped;
+
+        BranchAndBound(double[][] cost, double[] minIn, Incumbent incumbent, AtomicBoolean stop){
+            this.cost = cost;
+            this.minIn = minIn;
+            this.incumbent = incumbent;
+            this.stop = stop;
+            order = new int[cost.length];
+            candidates = new int[cost.length][cost.length];
+        }
+
+        // Extends the partial tour order[0..depth - 1], that visited the tiles in state and costs
+        // tourCost; rest is the cheapest moves into the unvisited tiles and back into the start.
+        void search(int depth, int state, double tourCost, double rest){
+            int n = cost.length;
+            if(++steps % CHECK_INTERVAL == 0 && stop.get()){
+                stopped = true;
+            }
+            if(stopped){
+                return;
+            }
+            int last = order[depth - 1];
+            if(depth == n){
+                incumbent.offer(order, tourCost + cost[last][0], BRANCH_AND_BOUND);
+                return;
+            }
+            int[] next = candidates[depth];
+            int count = 0;
+            for(int j = 1; j < n; j++){
+                if((state & (1 << j)) != 0 || cost[last][j] == Double.POSITIVE_INFINITY){
+                    continue;
+                }
+                // Insertion by the cost from the last tile.
+                int position = count++;
+                while(position > 0 && cost[last][next[position - 1]] > cost[last][j]){
+                    next[position] = next[position - 1];
+                    position--;
+                }
+                next[position] = j;
+            }
+            for(int c = 0; c < count && !stopped; c++){
+                int j = next[c];
+                double newCost = tourCost + cost[last][j];
+                double newRest = rest - minIn[j];
+                // Only tours that are strictly cheaper than the incumbent are searched.
+                if(newCost + newRest >= incumbent.bound() - EPSILON){
+                    continue;
+                }
+                order[depth] = j;
+                search(depth + 1, state | (1 << j), newCost, newRest);
+            }
+        }
+    }
+
+    // Nearest-neighbor tour improved by the local search of ClusteredRoute, without the return to the start.
+    private static int[] nearestNeighborTour(double[][] cost){
+        int n = cost.length;
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        visited[0] = true;
+        for(int position = 1; position < n; position++){
+            int current = order[position - 1];
+            int next = -1;
+            for(int candidate = 1; candidate < n; candidate++){
+                if(!visited[candidate] && (next < 0 || cost[current][candidate] < cost[current][next])){
+                    next = candidate;
+                }
+            }
+            order[position] = next;
+            visited[next] = true;
+        }
+        ClusteredRoute.improve(cost, order, 1, n - 1);
+        return order;
+    }
+
+    // The nearest-neighbor tour perturbed by random double bridge moves and improved again until it is
+    // stopped. It never proves a tour optimal, so it always returns null.
+    private static Proof localSearch(double[][] cost, int[] nearest, Incumbent incumbent, AtomicBoolean stop){
+        int n = cost.length;
+        int[] best = nearest.clone();
+        double bestCost = ClusteredRoute.cycleCost(cost, best);
+        // A double bridge needs three cut points between the tiles after the start.
+        if(n < 5){
+            return null;
+        }
+        Random random = new Random(n);
+        int[] cuts = new int[3];
+        while(!stop.get()){
+            for(int c = 0; c < 3; c++){
+                cuts[c] = 2 + random.nextInt(n - 2);
+            }
+            Arrays.sort(cuts);
+            if(cuts[0] == cuts[1] || cuts[1] == cuts[2]){
+                continue;
+            }
+            // 0 A B C D becomes 0 A C B D.
+            int[] candidate = best.clone();
+            int length = cuts[2] - cuts[1];
+            System.arraycopy(best, cuts[1], candidate, cuts[0], length);
+            System.arraycopy(best, cuts[0], candidate, cuts[0] + length, cuts[1] - cuts[0]);
+            ClusteredRoute.improve(cost, candidate, 1, n - 1);
+            double candidateCost = ClusteredRoute.cycleCost(cost, candidate);
+            if(candidateCost < bestCost - EPSILON){
+                best = candidate;
+                bestCost = candidateCost;
+                incumbent.offer(best, bestCost, LOCAL_SEARCH);
+            }
+        }
+        return null;
+    }
+
+    // Cost of the cheapest assignment of a next tile to every tile (a set of cycles that covers every tile
+    // once), found with the Hungarian method. Every tour is such an assignment, so it is a lower bound
+    // on the optimal cost; 0 if no assignment avoids the missing moves.
+    private static double assignmentBound(double[][] cost){
+        int n = cost.length;
+        // Missing moves get a cost that no assignment without them reaches.
+        double missing = 1;
+        for(double[] row : cost){
+            for(double value : row){
+                if(value != Double.POSITIVE_INFINITY){
+                    missing += value;
+                }
+            }
+        }
+        // u and v are the potentials of the rows and columns, match[j] the row of column j (1-based,
+        // column 0 is the row being added).
+        double[] u = new double[n + 1];
+        double[] v = new double[n + 1];
+        int[] match = new int[n + 1];
+        int[] way = new int[n + 1];
+        for(int i = 1; i <= n; i++){
+            match[0] = i;
+            int column = 0;
+            double[] minSlack = new double[n + 1];
+            boolean[] used = new boolean[n + 1];
+            Arrays.fill(minSlack, Double.POSITIVE_INFINITY);
+            do{
+                used[column] = true;
+                int row = match[column];
+                double delta = Double.POSITIVE_INFINITY;
+                int nextColumn = 0;
+                for(int j = 1; j <= n; j++){
+                    if(used[j]) continue;
+                    double value = cost[row - 1][j - 1] == Double.POSITIVE_INFINITY ? missing : cost[row - 1][j - 1];
+                    double slack = value - u[row] - v[j];
+                    if(slack < minSlack[j]){
+                        minSlack[j] = slack;
+                        way[j] = column;
+                    }
+                    if(minSlack[j] < delta){
+                        delta = minSlack[j];
+                        nextColumn = j;
+                    }
+                }
+                for(int j = 0; j <= n; j++){
+                    if(used[j]){
+                        u[match[j]] += delta;
+                        v[j] -= delta;
+                    }
+                    else{
+                        minSlack[j] -= delta;
+                    }
+                }
+                column = nextColumn;
+            } while(match[column] != 0);
+            do{
+                int previous = way[column];
+                match[column] = match[previous];
+                column = previous;
+            } while(column != 0);
+        }
+        double total = 0;
+        for(int j = 1; j <= n; j++){
+            double value = cost[match[j] - 1][j - 1];
+            if(value == Double.POSITIVE_INFINITY){
+                return 0;
+            }
+            total += value;
+        }
+        return total;
+    }
+
+    /**
+     * Returns whether the last tour was proven optimal before the deadline.
+     * @return true if an exact solver finished first
+     */
+    public boolean isOptimal(){
+        return optimal;
+    }
+
+    /**
+     * Returns how far the cost of the last tour can be above the optimal cost, as a fraction of its
+     * cost: 0 for a proven tour, otherwise measured against the cheapest assignment of a next tile to
+     * every tile (or the cheapest moves into or out of every tile, if that is higher).
+     * @return the gap of the last tour
+     */
+    public double getGap(){
+        return gap;
+    }
+
+    /**
+     * Returns the solver that proved the last tour, or that found it if the deadline came first.
+     * @return heldKarp, branchAndBound or localSearch
+     */
+    public String getWinner(){
+        return winner;
+    }
+
+    /**
+     * Returns the cost of the last tour.
+     * @return the cost, infinity if there was no tour
+     */
+    public double getLastCost(){
+        return lastCost;
+    }
+}
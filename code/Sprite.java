@@ -0,0 +1,77 @@
+// Mehmet Arda Kutlu
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * An image that is decoded and scaled once and then drawn many times by a RenderTarget.
+ * StdDraw can only draw images from files, so a sprite writes itself to a temporary PNG file
+ * the first time a file is requested.
+ */
+public class Sprite {
+    // The decoded and scaled image.
+    private final BufferedImage image;
+    // Temporary file of the image, created on first use.
+    private String file;
+
+    /**
+     * Constructor of the class.
+     * @param image the image of the sprite
+     */
+    Sprite(BufferedImage image){
+        this.image = image;
+    }
+
+    /**
+     * Decodes an image file and scales it to the given size.
+     * @param fileName the path of the image file
+     * @param width width of the scaled image in pixels
+     * @param height height of the scaled image in pixels
+     * @return the scaled sprite
+     * @throws IOException if the file cannot be read
+     */
+    public static Sprite load(String fileName, int width, int height) throws IOException {
+        BufferedImage source = ImageIO.read(new File(fileName));
+        if(source == null){
+            throw new IOException("Unsupported image: " + fileName);
+        }
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        graphics.drawImage(source, 0, 0, width, height, null);
+        graphics.dispose();
+        return new Sprite(scaled);
+    }
+
+    /**
+     * Returns the image of the sprite.
+     * @return the decoded image
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Returns a file that contains the image, writing it to a temporary PNG file on the first call.
+     * @return the path of the image file
+     */
+    public synchronized String getFile(){
+        if(file == null){
+            try{
+                File temporary = File.createTempFile("goldtrail-sprite", ".png");
+                temporary.deleteOnExit();
+                ImageIO.write(image, "png", temporary);
+                file = temporary.getPath();
+            }
+            catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,53 @@
+// Mehmet Arda Kutlu
+
+import java.awt.*;
+
+/**
+ * RenderTarget that draws on the StdDraw window. The canvas size and scales must be set and double
+ * buffering must be enabled before the first frame, as Main and Bonus do.
+ */
+public class StdDrawTarget implements RenderTarget {
+
+    /**
+     * Returns the pixel scale of StdDraw, whose offscreen image is twice the canvas size.
+     * @return 2
+     */
+    @Override
+    public int getPixelScale(){
+        return 2;
+    }
+
+    /**
+     * Draws a sprite through its image file.
+     * @param sprite the sprite to draw
+     * @param xCenter x center in canvas units
+     * @param yCenter y center in canvas units
+     * @param width width in canvas units
+     * @param height height in canvas units
+     */
+    @Override
+    public void picture(Sprite sprite, double xCenter, double yCenter, double width, double height){
+        StdDraw.picture(xCenter, yCenter, sprite.getFile(), width, height);
+    }
+
+    /**
+     * Draws a filled circle with the given pen color.
+     * @param color color of the circle
+     * @param xCenter x center in canvas units
+     * @param yCenter y center in canvas units
+     * @param radius radius in canvas units
+     */
+    @Override
+    public void filledCircle(Color color, double xCenter, double yCenter, double radius){
+        StdDraw.setPenColor(color);
+        StdDraw.filledCircle(xCenter, yCenter, radius);
+    }
+
+    /**
+     * Copies the offscreen canvas to the window.
+     */
+    @Override
+    public void show(){
+        StdDraw.show();
+    }
+}
@@ -0,0 +1,113 @@
+// Mehmet Arda Kutlu
+
+/**
+ * One change of the knight's walk that the runners emit for the animation: the knight moved, a tile
+ * was marked as part of the path, a coin was collected or a leg (the path to one objective) finished.
+ * The events of one step start with its MOVE event.
+ */
+public class StepEvent {
+    /**
+     * Kinds of events.
+     */
+    public enum Type {
+        // The knight moved to the tile (col, row).
+        MOVE,
+        // The tile (col, row) was marked as a part of the path of the leg.
+        MARK,
+        // The coin with the given index was collected.
+        COIN_COLLECTED,
+        // The leg with the given index finished.
+        LEG_FINISHED
+    }
+
+    // Kind of the event.
+    private final Type type;
+    // Column and row of the tile (MOVE and MARK), -1 otherwise.
+    private final int col;
+    private final int row;
+    // Index of the coin (COIN_COLLECTED) or of the leg (MARK and LEG_FINISHED), -1 otherwise.
+    private final int index;
+
+    /**
+     * Constructor of the class.
+     * @param type kind of the event
+     * @param col column of the tile, or -1
+     * @param row row of the tile, or -1
+     * @param index index of the coin or the leg, or -1
+     */
+    StepEvent(Type type, int col, int row, int index){
+        this.type = type;
+        this.col = col;
+        this.row = row;
+        this.index = index;
+    }
+
+    /**
+     * Creates the event of the knight moving to a tile.
+     * @param tile the tile the knight moved to
+     * @return the event
+     */
+    public static StepEvent move(Tile tile){
+        return new StepEvent(Type.MOVE, tile.getColumn(), tile.getRow(), -1);
+    }
+
+    /**
+     * Creates the event of a tile being marked.
+     * @param tile the marked tile
+     * @param leg index of the leg the tile belongs to
+     * @return the event
+     */
+    public static StepEvent mark(Tile tile, int leg){
+        return new StepEvent(Type.MARK, tile.getColumn(), tile.getRow(), leg);
+    }
+
+    /**
+     * Creates the event of a coin being collected.
+     * @param coin index of the coin in the coins of the map
+     * @return the event
+     */
+    public static StepEvent coinCollected(int coin){
+        return new StepEvent(Type.COIN_COLLECTED, -1, -1, coin);
+    }
+
+    /**
+     * Creates the event of a leg finishing.
+     * @param leg index of the leg
+     * @return the event
+     */
+    public static StepEvent legFinished(int leg){
+        return new StepEvent(Type.LEG_FINISHED, -1, -1, leg);
+    }
+
+    /**
+     * Returns the kind of the event.
+     * @return the event type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the column of the tile of the event.
+     * @return the column, or -1
+     */
+    public int getCol() {
+        return col;
+    }
+
+    /**
+     * Returns the row of the tile of the event.
+     * @return the row, or -1
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Returns the index of the coin or the leg of the event.
+     * @return the index, or -1
+     */
+    public int getIndex() {
+        return index;
+    }
+}
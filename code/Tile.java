@@ -2,6 +2,7 @@
 
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.function.Consumer;
 
 /**
  * Represents each tile in the map. Stores the position, type and the adjacent tiles of each tile.
@@ -20,6 +21,8 @@ public class Tile {
     private boolean isMarked;
     // The color of the mark (used in the bonus part).
     private Color markColor;
+    // Called when the mark or its color changes, so the renderer only redraws the changed tiles.
+    private Consumer<Tile> changeListener;
 
     /**
      * Constructor of the class. Creates a tile object at specified positions with the specified type.
@@ -95,6 +98,9 @@ public class Tile {
      * @param marked the new marking status
      */
     public void setMarked(boolean marked) {
+        if(isMarked != marked && changeListener != null){
+            changeListener.accept(this);
+        }
         isMarked = marked;
     }
 
@@ -112,6 +118,17 @@ public class Tile {
      * @param markColor the new color of the mark
      */
     public void setMarkColor(Color markColor) {
+        if(this.markColor != markColor && changeListener != null){
+            changeListener.accept(this);
+        }
         this.markColor = markColor;
     }
+
+    /**
+     * Sets the listener that is notified when the mark or the mark color of the tile changes.
+     * @param changeListener the listener, or null to remove it
+     */
+    public void setChangeListener(Consumer<Tile> changeListener) {
+        this.changeListener = changeListener;
+    }
 }
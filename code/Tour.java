@@ -0,0 +1,105 @@
+// Mehmet Arda Kutlu
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The shortest tour found by ShortestRoute, stored as the order of its stops (the start, the visited
+ * objectives and the start again). Iterating it yields the tiles of the tour leg by leg: the path of a
+ * leg is searched again when the iterator reaches it and dropped after it is passed, so only one leg is
+ * kept in memory no matter how long the tour is. PathFinder.algorithm is deterministic, so the legs are
+ * the same paths that were used to compute the tour costs.
+ */
+public class Tour implements Iterable<Tile> {
+    // The stops of the tour in order, empty if there is no tour.
+    private final List<Tile> stops;
+    // The PathFinder that finds the path of each leg.
+    private final PathFinder pathFinder;
+
+    /**
+     * Constructor of the class.
+     * @param stops the stops of the tour in order, or an empty list if there is no tour
+     * @param pathFinder the PathFinder that finds the path of each leg
+     */
+    Tour(List<Tile> stops, PathFinder pathFinder){
+        this.stops = stops;
+        this.pathFinder = pathFinder;
+    }
+
+    /**
+     * Checks whether there is no tour (no objective can be reached and returned from).
+     * @return true if the tour is empty, false otherwise
+     */
+    public boolean isEmpty(){
+        return stops.isEmpty();
+    }
+
+    /**
+     * Returns the stops of the tour.
+     * @return the start, the visited objectives in order and the start again
+     */
+    public List<Tile> getStops() {
+        return stops;
+    }
+
+    /**
+     * Returns an iterator over the tiles of the tour, starting with the start tile.
+     * @return the streaming route iterator
+     */
+    @Override
+    public Iterator<Tile> iterator(){
+        return new RouteIterator();
+    }
+
+    /**
+     * Collects every tile of the tour into a list.
+     * @return the full path of the tour
+     */
+    public ArrayList<Tile> toList(){
+        ArrayList<Tile> fullTour = new ArrayList<>();
+        for(Tile tile : this){
+            fullTour.add(tile);
+        }
+        return fullTour;
+    }
+
+    /**
+     * Yields the tiles of the tour, searching the path of one leg at a time.
+     */
+    private class RouteIterator implements Iterator<Tile> {
+        // Index of the next leg to search.
+        private int nextLeg;
+        // Path of the current leg and the position of the next tile in it.
+        private ArrayList<Tile> leg = new ArrayList<>();
+        private int position;
+
+        /**
+         * Checks whether there are more tiles, searching the next leg if the current one is finished.
+         * @return true if there are more tiles, false otherwise
+         */
+        @Override
+        public boolean hasNext(){
+            while(position >= leg.size() && nextLeg < stops.size() - 1){
+                leg = pathFinder.algorithm(stops.get(nextLeg), stops.get(nextLeg + 1));
+                // Every leg after the first starts where the previous one ended.
+                position = nextLeg == 0 ? 0 : 1;
+                nextLeg++;
+            }
+            return position < leg.size();
+        }
+
+        /**
+         * Returns the next tile of the tour.
+         * @return the next tile
+         */
+        @Override
+        public Tile next(){
+            if(!hasNext()){
+                throw new NoSuchElementException();
+            }
+            return leg.get(position++);
+        }
+    }
+}
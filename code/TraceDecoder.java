@@ -0,0 +1,224 @@
+// Mehmet Arda Kutlu
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Turns a binary trace written by TraceEncoder back into the text output of AlgorithmRunner. The trace
+ * only stores the moves, so the step costs are recomputed with the travel costs of the map in the same
+ * order AlgorithmRunner adds them; the cost checkpoints and the total of the trace are compared with the
+ * recomputed costs, so a trace decoded with the wrong travelCosts.txt is rejected. A trace written with
+ * fixed-point costs is decoded with fixed-point costs (goldtrail.costs=fixed). The trace is read one
+ * record at a time and the text is written as it is decoded.
+ * Usage: java TraceDecoder trace travelCosts.txt [output.txt]
+ */
+public class TraceDecoder {
+    // The stream after the header (inflated if the trace is compressed).
+    private final DataInputStream input;
+    // The PathFinder that stores the travel costs.
+    private final PathFinder pathFinder;
+    // Whether the trace belongs to the bonus run.
+    private final boolean bonus;
+    // Whether the costs are fixed-point centi-units.
+    private final boolean fixed;
+    // Tile the knight is on.
+    private int col;
+    private int row;
+    // Step count and cost of the current leg (standard run) and of the whole run.
+    private int legStep;
+    private double legCost;
+    private int totalStep;
+    private double totalCost;
+    // The same costs in centi-units when the costs are fixed-point.
+    private long legFixedCost;
+    private long totalFixedCost;
+
+    /**
+     * Constructor of the class. Reads the header of the trace.
+     * @param in the stream of the trace
+     * @param pathFinder the PathFinder with the travel costs of the map
+     * @throws IOException if the stream is not a trace, or its costs are fixed-point and the PathFinder's are
+     *         not (or the other way round)
+     */
+    TraceDecoder(InputStream in, PathFinder pathFinder) throws IOException {
+        this.pathFinder = pathFinder;
+        DataInputStream header = new DataInputStream(in);
+        if(header.readInt() != TraceEncoder.MAGIC || header.readUnsignedByte() != TraceEncoder.VERSION){
+            throw new IOException("Not a route trace of version " + TraceEncoder.VERSION);
+        }
+        int flags = header.readUnsignedByte();
+        header.readInt();
+        this.bonus = (flags & TraceEncoder.FLAG_BONUS) != 0;
+        this.fixed = (flags & TraceEncoder.FLAG_FIXED) != 0;
+        if(fixed != pathFinder.isFixed()){
+            throw new IOException(fixed ? "The trace has fixed-point costs, decode it with -Dgoldtrail.costs=fixed"
+                    : "The trace has double costs, decode it without -Dgoldtrail.costs=fixed");
+        }
+        this.input = new DataInputStream((flags & TraceEncoder.FLAG_DEFLATE) != 0
+                ? new InflaterInputStream(in, new Inflater(), 1 << 16) : in);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2){
+            System.err.println("Usage: java TraceDecoder trace travelCosts.txt [output.txt]");
+            System.exit(2);
+        }
+        PathFinder pathFinder = new PathFinder(new File(args[1]));
+        try(InputStream in = new BufferedInputStream(new FileInputStream(args[0]), 1 << 16);
+            BufferedWriter out = new BufferedWriter(args.length > 2 ? new FileWriter(args[2])
+                    : new OutputStreamWriter(System.out), 1 << 16)){
+            new TraceDecoder(in, pathFinder).decode(out);
+        }
+    }
+
+    /**
+     * Decodes the whole trace and writes the text output.
+     * @param out the writer of the text output
+     * @throws IOException if the trace is broken, does not match the travel costs or writing fails
+     */
+    public void decode(BufferedWriter out) throws IOException {
+        while(true){
+            int record = input.read();
+            switch(record){
+                case TraceEncoder.START:
+                    col = readVarint();
+                    row = readVarint();
+                    // The bonus run does not print its start tile.
+                    if(!bonus){
+                        legStep = 0;
+                        legCost = 0;
+                        legFixedCost = 0;
+                        out.write(String.format("Starting position: (%d, %d)\n", col, row));
+                    }
+                    break;
+                case TraceEncoder.MOVES:
+                    int moves = readVarint();
+                    int packed = 0;
+                    for(int move = 0; move < moves; move++){
+                        if((move & 3) == 0){
+                            packed = input.readUnsignedByte();
+                        }
+                        step((packed >> ((move & 3) * 2)) & 3, out);
+                    }
+                    break;
+                case TraceEncoder.REACHED:
+                    // The standard run adds the cost of a leg to the total when its objective is reached.
+                    if(!bonus){
+                        totalCost += legCost;
+                        totalFixedCost += legFixedCost;
+                    }
+                    out.write(String.format("Objective %d reached!\n", readVarint()));
+                    break;
+                case TraceEncoder.UNREACHABLE:
+                    out.write(String.format("Objective %d cannot be reached!\n", readVarint()));
+                    break;
+                case TraceEncoder.CHECKPOINT:
+                    if(fixed){
+                        check(input.readLong(), bonus ? totalFixedCost : legFixedCost, "checkpoint at step " + totalStep);
+                    }
+                    else{
+                        check(input.readLong(), bonus ? totalCost : legCost, "checkpoint at step " + totalStep);
+                    }
+                    break;
+                case TraceEncoder.TOTAL:
+                    int recordedSteps = readVarint();
+                    long recordedCost = input.readLong();
+                    if(recordedSteps != totalStep){
+                        throw new IOException("Trace has " + totalStep + " steps, its total says " + recordedSteps);
+                    }
+                    if(fixed){
+                        check(recordedCost, totalFixedCost, "total cost");
+                        out.write("Total Step: " + totalStep + ", Total Cost: " + FixedCost.format(totalFixedCost) + "\n");
+                        break;
+                    }
+                    check(recordedCost, totalCost, "total cost");
+                    out.write(String.format("Total Step: %d, Total Cost: %.2f\n", totalStep, totalCost));
+                    break;
+                case TraceEncoder.END:
+                    return;
+                case -1:
+                    throw new EOFException("Trace ends without an end record");
+                default:
+                    throw new IOException("Unknown record type " + record);
+            }
+        }
+    }
+
+    // Moves the knight in a direction and writes the step with its recomputed cost.
+    private void step(int direction, BufferedWriter out) throws IOException {
+        Tile from = new Tile(col, row, 0);
+        col += direction == GridGraph.LEFT ? -1 : direction == GridGraph.RIGHT ? 1 : 0;
+        row += direction == GridGraph.UP ? -1 : direction == GridGraph.DOWN ? 1 : 0;
+        double cost = pathFinder.costCalculator(from, new Tile(col, row, 0));
+        if(cost < 0){
+            throw new IOException("No travel cost for the move to (" + col + ", " + row + ") at step " + (totalStep + 1));
+        }
+        totalStep++;
+        if(fixed){
+            int fixedCost = pathFinder.fixedCost(from, new Tile(col, row, 0));
+            if(bonus){
+                totalFixedCost += fixedCost;
+                writeStep(out, totalStep, totalFixedCost);
+            }
+            else{
+                legStep++;
+                legFixedCost += fixedCost;
+                writeStep(out, legStep, legFixedCost);
+            }
+            return;
+        }
+        if(bonus){
+            totalCost += cost;
+            out.write(String.format("Step Count: %d, move to (%d, %d). Total Cost: %.2f.\n", totalStep, col, row, totalCost));
+        }
+        else{
+            legStep++;
+            legCost += cost;
+            out.write(String.format("Step Count: %d, move to (%d, %d). Total Cost: %.2f.\n", legStep, col, row, legCost));
+        }
+    }
+
+    // Writes a step with a fixed-point cost like AlgorithmRunner.
+    private void writeStep(BufferedWriter out, int stepCount, long fixedCost) throws IOException {
+        out.write("Step Count: " + stepCount + ", move to (" + col + ", " + row + "). Total Cost: "
+                + FixedCost.format(fixedCost) + ".\n");
+    }
+
+    // Compares a recorded fixed-point cost with the recomputed one.
+    private static void check(long recorded, long recomputed, String what) throws IOException {
+        if(recorded != recomputed){
+            throw new IOException("The travel costs do not match the trace: " + what + " is "
+                    + FixedCost.format(recorded) + ", recomputed " + FixedCost.format(recomputed));
+        }
+    }
+
+    // Compares a recorded cost with the recomputed one.
+    private static void check(long recordedBits, double recomputed, String what) throws IOException {
+        if(recordedBits != Double.doubleToLongBits(recomputed)){
+            throw new IOException("The travel costs do not match the trace: " + what + " is "
+                    + Double.longBitsToDouble(recordedBits) + ", recomputed " + recomputed);
+        }
+    }
+
+    // Reads a number written in 7-bit groups.
+    private int readVarint() throws IOException {
+        int value = 0;
+        for(int shift = 0; ; shift += 7){
+            int part = input.readUnsignedByte();
+            value |= (part & 0x7F) << shift;
+            if((part & 0x80) == 0){
+                return value;
+            }
+        }
+    }
+}
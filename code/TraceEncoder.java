@@ -0,0 +1,259 @@
+// Mehmet Arda Kutlu
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the route of a run as a compact binary trace instead of the text output. The trace stores the
+ * start tile of every leg, the moves as 2-bit direction codes (left, right, up, down like GridGraph),
+ * the reached and unreachable objectives, and a cost checkpoint every few steps so the decoder can check
+ * that it recomputes the same costs. With fixed-point costs the checkpoints hold centi-units instead of
+ * the bits of a double. Everything after the header can go through a deflate stream.
+ * Moves are buffered in a fixed-size block, so the memory does not depend on the length of the route.
+ * TraceDecoder turns a trace back into the exact text output.
+ */
+public class TraceEncoder {
+    // Header of a trace file.
+    static final int MAGIC = 0x47545452;
+    static final int VERSION = 1;
+    static final int FLAG_BONUS = 1;
+    static final int FLAG_DEFLATE = 2;
+    static final int FLAG_FIXED = 4;
+    // Record types.
+    static final int END = 0;
+    static final int START = 1;
+    static final int MOVES = 2;
+    static final int REACHED = 3;
+    static final int UNREACHABLE = 4;
+    static final int CHECKPOINT = 5;
+    static final int TOTAL = 6;
+    // Largest number of moves in one MOVES record.
+    static final int BLOCK_MOVES = 4096;
+
+    // The stream after the header (deflated if compression is on).
+    private final DataOutputStream output;
+    // Number of steps between two cost checkpoints.
+    private final int checkpointInterval;
+    // Packed direction codes of the moves that are not written yet.
+    private final byte[] block = new byte[BLOCK_MOVES / 4];
+    private int blockMoves;
+    // Tile the knight is on.
+    private int col = -1;
+    private int row = -1;
+    // Steps since the last checkpoint.
+    private int stepsSinceCheckpoint;
+
+    /**
+     * Constructor of the class. Writes the header of the trace.
+     * @param out the stream of the trace, closed by close()
+     * @param bonus whether the trace belongs to the bonus run
+     * @param deflate whether the records are compressed
+     * @param checkpointInterval number of steps between two cost checkpoints
+     * @throws IOException if writing fails
+     */
+    TraceEncoder(OutputStream out, boolean bonus, boolean deflate, int checkpointInterval) throws IOException {
+        this(out, bonus, deflate, false, checkpointInterval);
+    }
+
+    /**
+     * Constructor of the class. Writes the header of the trace.
+     * @param out the stream of the trace, closed by close()
+     * @param bonus whether the trace belongs to the bonus run
+     * @param deflate whether the records are compressed
+     * @param fixed whether the costs are fixed-point centi-units
+     * @param checkpointInterval number of steps between two cost checkpoints
+     * @throws IOException if writing fails
+     */
+    TraceEncoder(OutputStream out, boolean bonus, boolean deflate, boolean fixed, int checkpointInterval)
+            throws IOException {
+        this.checkpointInterval = Math.max(1, checkpointInterval);
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte((bonus ? FLAG_BONUS : 0) | (deflate ? FLAG_DEFLATE : 0) | (fixed ? FLAG_FIXED : 0));
+        header.writeInt(this.checkpointInterval);
+        header.flush();
+        this.output = new DataOutputStream(deflate
+                ? new DeflaterOutputStream(out, new Deflater(Deflater.BEST_COMPRESSION), 1 << 16) : out);
+    }
+
+    /**
+     * Creates the encoder configured by the goldtrail.trace system property: "binary" writes the records
+     * as they are, "deflate" compresses them. goldtrail.trace.checkpoint sets the steps between two cost
+     * checkpoints (default 4096). The costs are marked fixed-point if goldtrail.costs is fixed.
+     * @param fileName the name of the trace file
+     * @param bonus whether the trace belongs to the bonus run
+     * @return the encoder, or null if the text output is used
+     * @throws IOException if the file cannot be created
+     */
+    public static TraceEncoder fromProperties(String fileName, boolean bonus) throws IOException {
+        String format = System.getProperty("goldtrail.trace", "text");
+        if(format.equals("text")){
+            return null;
+        }
+        if(!format.equals("binary") && !format.equals("deflate")){
+            throw new IllegalArgumentException("Unknown goldtrail.trace format: " + format);
+        }
+        return new TraceEncoder(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16), bonus,
+                format.equals("deflate"), FixedCost.isEnabled(), Integer.getInteger("goldtrail.trace.checkpoint", 4096));
+    }
+
+    /**
+     * Records the tile a leg starts on ("Starting position" in the standard run, the knight's tile in the
+     * bonus run).
+     * @param tile the start tile
+     * @throws IOException if writing fails
+     */
+    public void start(Tile tile) throws IOException {
+        flushMoves();
+        output.writeByte(START);
+        writeVarint(tile.getColumn());
+        writeVarint(tile.getRow());
+        col = tile.getColumn();
+        row = tile.getRow();
+    }
+
+    /**
+     * Records a move to a neighboring tile.
+     * @param tile the tile the knight moves to
+     * @param cost the cost shown for this step, stored at the checkpoints
+     * @throws IOException if writing fails
+     */
+    public void step(Tile tile, double cost) throws IOException {
+        recordStep(tile, Double.doubleToLongBits(cost));
+    }
+
+    /**
+     * Records a move to a neighboring tile with a fixed-point cost.
+     * @param tile the tile the knight moves to
+     * @param fixedCost the cost shown for this step in centi-units, stored at the checkpoints
+     * @throws IOException if writing fails
+     */
+    public void step(Tile tile, long fixedCost) throws IOException {
+        recordStep(tile, fixedCost);
+    }
+
+    // Records a move, the cost is stored as it is given (double bits or centi-units) at the checkpoints.
+    private void recordStep(Tile tile, long cost) throws IOException {
+        int direction = direction(tile.getColumn() - col, tile.getRow() - row);
+        block[blockMoves >> 2] |= (byte) (direction << ((blockMoves & 3) * 2));
+        blockMoves++;
+        col = tile.getColumn();
+        row = tile.getRow();
+        if(blockMoves == BLOCK_MOVES){
+            flushMoves();
+        }
+        stepsSinceCheckpoint++;
+        if(stepsSinceCheckpoint == checkpointInterval){
+            flushMoves();
+            output.writeByte(CHECKPOINT);
+            output.writeLong(cost);
+            stepsSinceCheckpoint = 0;
+        }
+    }
+
+    /**
+     * Records that an objective is reached.
+     * @param objective the number of the objective (starting from 1)
+     * @throws IOException if writing fails
+     */
+    public void reached(int objective) throws IOException {
+        flushMoves();
+        output.writeByte(REACHED);
+        writeVarint(objective);
+    }
+
+    /**
+     * Records that an objective cannot be reached.
+     * @param objective the number of the objective (starting from 1)
+     * @throws IOException if writing fails
+     */
+    public void unreachable(int objective) throws IOException {
+        flushMoves();
+        output.writeByte(UNREACHABLE);
+        writeVarint(objective);
+    }
+
+    /**
+     * Records the total step count and cost of the run.
+     * @param totalStep the total number of steps
+     * @param totalCost the total cost
+     * @throws IOException if writing fails
+     */
+    public void total(int totalStep, double totalCost) throws IOException {
+        recordTotal(totalStep, Double.doubleToLongBits(totalCost));
+    }
+
+    /**
+     * Records the total step count and the fixed-point cost of the run.
+     * @param totalStep the total number of steps
+     * @param totalFixedCost the total cost in centi-units
+     * @throws IOException if writing fails
+     */
+    public void total(int totalStep, long totalFixedCost) throws IOException {
+        recordTotal(totalStep, totalFixedCost);
+    }
+
+    // Records the total, the cost is stored as it is given like in recordStep.
+    private void recordTotal(int totalStep, long totalCost) throws IOException {
+        flushMoves();
+        output.writeByte(TOTAL);
+        writeVarint(totalStep);
+        output.writeLong(totalCost);
+    }
+
+    /**
+     * Ends the trace and closes the stream.
+     * @throws IOException if writing fails
+     */
+    public void close() throws IOException {
+        flushMoves();
+        output.writeByte(END);
+        output.close();
+    }
+
+    // Writes the buffered moves as one MOVES record.
+    private void flushMoves() throws IOException {
+        if(blockMoves == 0){
+            return;
+        }
+        output.writeByte(MOVES);
+        writeVarint(blockMoves);
+        int bytes = (blockMoves + 3) / 4;
+        output.write(block, 0, bytes);
+        Arrays.fill(block, 0, bytes, (byte) 0);
+        blockMoves = 0;
+    }
+
+    // Returns the direction code of a move between neighboring tiles.
+    private static int direction(int colChange, int rowChange){
+        if(colChange == -1 && rowChange == 0){
+            return GridGraph.LEFT;
+        }
+        if(colChange == 1 && rowChange == 0){
+            return GridGraph.RIGHT;
+        }
+        if(colChange == 0 && rowChange == -1){
+            return GridGraph.UP;
+        }
+        if(colChange == 0 && rowChange == 1){
+            return GridGraph.DOWN;
+        }
+        throw new IllegalArgumentException("Not a move to a neighboring tile: (" + colChange + ", " + rowChange + ")");
+    }
+
+    // Writes a non-negative number in 7-bit groups.
+    private void writeVarint(int value) throws IOException {
+        while((value & ~0x7F) != 0){
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+}
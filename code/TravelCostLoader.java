@@ -0,0 +1,382 @@
+// Mehmet Arda Kutlu
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads travelCosts.txt on several threads into a primitive array indexed like the edge slots of
+ * GridGraph (tile id * 4 + direction). The file is split at line boundaries into pieces that are
+ * memory-mapped and parsed byte by byte by the workers, which write the costs straight into the shared
+ * array. A move only writes its own two slots, so the workers need no locking as long as every move is
+ * listed once (a move listed twice keeps one of its costs). Lines that are not neighboring moves of the
+ * map are ignored like PathFinder ignores them; lines that cannot be parsed stop the loading with the
+ * file name and the line number of the first bad line.
+ */
+public class TravelCostLoader {
+    // Smallest piece of the file that a worker parses at once; larger files are split into four pieces per thread.
+    private static final int PIECE_BYTES = 1 << 20;
+    // Powers of ten that are exact doubles, for the fast decimal parser.
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for(int i = 1; i < POWERS_OF_TEN.length; i++){
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    // The travelCosts.txt file.
+    private final File file;
+    // Map size is x,y (col,row)
+    private final int cols;
+    private final int rows;
+    // Whether the costs are parsed into fixed-point centi-units instead of doubles.
+    private final boolean fixed;
+    // costs[id * 4 + direction], -1 if the move is not listed (null with fixed-point costs).
+    private double[] costs;
+    // The same slots in centi-units with fixed-point costs (null otherwise).
+    private int[] fixedCosts;
+
+    /**
+     * Thrown by a worker when a line cannot be parsed. Only the byte offset of the line is known there;
+     * the line number is counted afterwards, for the first bad line only.
+     */
+    private static class LineException extends Exception {
+        private static final long serialVersionUID = 1L;
+        private final long lineStart;
+
+        LineException(long lineStart, String message){
+            super(message);
+            this.lineStart = lineStart;
+        }
+    }
+
+    /**
+     * Constructor of the class.
+     * @param file the travelCosts.txt file
+     * @param cols number of tile columns of the map
+     * @param rows number of tile rows of the map
+     * @param fixed whether the costs are parsed into fixed-point centi-units
+     */
+    TravelCostLoader(File file, int cols, int rows, boolean fixed){
+        this.file = file;
+        this.cols = cols;
+        this.rows = rows;
+        this.fixed = fixed;
+    }
+
+    /**
+     * Loads the costs on the given number of threads.
+     * @param threads number of worker threads, at least one is used
+     * @throws IOException if the file cannot be read or a line is malformed (the message names the file and line)
+     */
+    public void load(int threads) throws IOException {
+        long phaseStart = Metrics.startPhase();
+        int workers = Math.max(1, threads);
+        int slots = cols * rows * 4;
+        if(fixed){
+            fixedCosts = new int[slots];
+            Arrays.fill(fixedCosts, -1);
+        }
+        else{
+            costs = new double[slots];
+            Arrays.fill(costs, -1);
+        }
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            long[] bounds = splitAtLines(channel, Math.max(PIECE_BYTES, channel.size() / (workers * 4L) + 1));
+            ExecutorService executor = Executors.newFixedThreadPool(workers);
+            try{
+                List<Future<Void>> pieces = new ArrayList<>();
+                for(int piece = 0; piece + 1 < bounds.length; piece++){
+                    long start = bounds[piece];
+                    long end = bounds[piece + 1];
+                    pieces.add(executor.submit((Callable<Void>) () -> {
+                        parse(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), start);
+                        return null;
+                    }));
+                }
+                // Every piece is waited for, the first bad line of the file is reported.
+                LineException firstError = null;
+                for(Future<Void> piece : pieces){
+                    try{
+                        piece.get();
+                    }
+                    catch(ExecutionException e){
+                        if(!(e.getCause() instanceof LineException)){
+                            throw new IOException("Cannot load " + file, e.getCause());
+                        }
+                        LineException error = (LineException) e.getCause();
+                        if(firstError == null || error.lineStart < firstError.lineStart){
+                            firstError = error;
+                        }
+                    }
+                }
+                if(firstError != null){
+                    throw new IOException(file + ":" + lineNumber(channel, firstError.lineStart) + ": "
+                            + firstError.getMessage());
+                }
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading " + file, e);
+            }
+            finally{
+                executor.shutdownNow();
+            }
+        }
+        Metrics.endPhase("travelCosts", phaseStart);
+    }
+
+    // Returns the start offsets of the pieces (and the file size at the end): every piece is about
+    // pieceBytes long and ends right after a line break.
+    private static long[] splitAtLines(FileChannel channel, long pieceBytes) throws IOException {
+        long size = channel.size();
+        ArrayList<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = pieceBytes;
+        while(position < size){
+            // Move forward to the byte after the next line break.
+            long lineEnd = -1;
+            while(lineEnd < 0 && position < size){
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                for(int i = 0; i < read; i++){
+                    if(buffer.get(i) == '\n'){
+                        lineEnd = position + i + 1;
+                        break;
+                    }
+                }
+                if(lineEnd < 0){
+                    position += Math.max(read, 0);
+                }
+            }
+            if(lineEnd < 0 || lineEnd >= size){
+                break;
+            }
+            bounds.add(lineEnd);
+            position = lineEnd + pieceBytes;
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for(int i = 0; i < result.length; i++){
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // Counts the lines before the given offset, only used to report a bad line.
+    private static long lineNumber(FileChannel channel, long offset) throws IOException {
+        long line = 1;
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for(long position = 0; position < offset; ){
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), offset - position));
+            int read = channel.read(buffer, position);
+            if(read <= 0){
+                break;
+            }
+            for(int i = 0; i < read; i++){
+                if(buffer.get(i) == '\n'){
+                    line++;
+                }
+            }
+            position += read;
+        }
+        return line;
+    }
+
+    // Parses the lines of one piece and writes their costs. offset is the position of the piece in the file.
+    private void parse(MappedByteBuffer piece, long offset) throws LineException {
+        int limit = piece.limit();
+        int position = 0;
+        // Positions of the five fields of the current line.
+        int[] fieldStart = new int[5];
+        int[] fieldEnd = new int[5];
+        while(position < limit){
+            int lineStart = position;
+            int fields = 0;
+            // Split the line at spaces and tabs.
+            while(position < limit && piece.get(position) != '\n'){
+                byte b = piece.get(position);
+                if(b == ' ' || b == '\t' || b == '\r'){
+                    position++;
+                    continue;
+                }
+                int start = position;
+                while(position < limit){
+                    b = piece.get(position);
+                    if(b == ' ' || b == '\t' || b == '\r' || b == '\n'){
+                        break;
+                    }
+                    position++;
+                }
+                if(fields == 5){
+                    throw new LineException(offset + lineStart, "expected 5 fields (x1 y1 x2 y2 cost), found more");
+                }
+                fieldStart[fields] = start;
+                fieldEnd[fields] = position;
+                fields++;
+            }
+            position++; // Skip the line break.
+            // Blank lines are allowed, Scanner skips them as well.
+            if(fields == 0){
+                continue;
+            }
+            if(fields != 5){
+                throw new LineException(offset + lineStart, "expected 5 fields (x1 y1 x2 y2 cost), found " + fields);
+            }
+            int x1 = parseCoordinate(piece, fieldStart[0], fieldEnd[0], offset + lineStart);
+            int y1 = parseCoordinate(piece, fieldStart[1], fieldEnd[1], offset + lineStart);
+            int x2 = parseCoordinate(piece, fieldStart[2], fieldEnd[2], offset + lineStart);
+            int y2 = parseCoordinate(piece, fieldStart[3], fieldEnd[3], offset + lineStart);
+            int direction = x2 == x1 - 1 && y2 == y1 ? GridGraph.LEFT : x2 == x1 + 1 && y2 == y1 ? GridGraph.RIGHT
+                    : x2 == x1 && y2 == y1 - 1 ? GridGraph.UP : x2 == x1 && y2 == y1 + 1 ? GridGraph.DOWN : -1;
+            boolean used = direction >= 0 && x1 < cols && y1 < rows && x2 < cols && y2 < rows;
+            // The cost is parsed even if the move is not used, so a bad cost is reported anyway.
+            int slot = used ? (x1 * rows + y1) * 4 + direction : 0;
+            int oppositeSlot = used ? (x2 * rows + y2) * 4 + (direction ^ 1) : 0;
+            if(fixed){
+                int cost = parseFixedCost(piece, fieldStart[4], fieldEnd[4], offset + lineStart);
+                if(used){
+                    fixedCosts[slot] = cost;
+                    fixedCosts[oppositeSlot] = cost;
+                }
+            }
+            else{
+                double cost = parseCost(piece, fieldStart[4], fieldEnd[4], offset + lineStart);
+                if(used){
+                    costs[slot] = cost;
+                    costs[oppositeSlot] = cost;
+                }
+            }
+        }
+    }
+
+    // Parses a non-negative integer field.
+    private static int parseCoordinate(MappedByteBuffer piece, int start, int end, long lineStart) throws LineException {
+        long value = 0;
+        for(int i = start; i < end; i++){
+            int digit = piece.get(i) - '0';
+            if(digit < 0 || digit > 9 || value > Integer.MAX_VALUE){
+                throw new LineException(lineStart, "bad coordinate " + text(piece, start, end));
+            }
+            value = value * 10 + digit;
+        }
+        if(value > Integer.MAX_VALUE){
+            throw new LineException(lineStart, "bad coordinate " + text(piece, start, end));
+        }
+        return (int) value;
+    }
+
+    // Parses a cost into the same double as Double.parseDouble. Plain decimals with up to 15 significant
+    // digits are divided by an exact power of ten, which rounds once like parseDouble; anything else
+    // (signs, exponents, long numbers) goes through parseDouble.
+    private static double parseCost(MappedByteBuffer piece, int start, int end, long lineStart) throws LineException {
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        boolean plain = end - start <= 16;
+        for(int i = start; plain && i < end; i++){
+            byte b = piece.get(i);
+            if(b == '.' && decimals < 0){
+                decimals = 0;
+            }
+            else if(b >= '0' && b <= '9'){
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if(decimals >= 0){
+                    decimals++;
+                }
+            }
+            else{
+                plain = false;
+            }
+        }
+        if(plain && digits > 0 && digits <= 15){
+            return decimals <= 0 ? mantissa : mantissa / POWERS_OF_TEN[decimals];
+        }
+        try{
+            return Double.parseDouble(text(piece, start, end));
+        }
+        catch(NumberFormatException e){
+            throw new LineException(lineStart, "bad cost " + text(piece, start, end));
+        }
+    }
+
+    // Parses a cost into centi-units with the rules of FixedCost.parse. Plain decimals are parsed from the
+    // bytes; anything else goes through FixedCost.parse, which accepts it or explains what is wrong.
+    private static int parseFixedCost(MappedByteBuffer piece, int start, int end, long lineStart) throws LineException {
+        long value = 0;
+        int digits = 0;
+        int decimals = -1;
+        boolean plain = end - start <= 10;
+        for(int i = start; plain && i < end; i++){
+            byte b = piece.get(i);
+            if(b == '.' && decimals < 0){
+                decimals = 0;
+            }
+            else if(b >= '0' && b <= '9' && decimals < FixedCost.DECIMALS){
+                value = value * 10 + (b - '0');
+                digits++;
+                if(decimals >= 0){
+                    decimals++;
+                }
+            }
+            else{
+                plain = false;
+            }
+        }
+        if(plain && digits > 0){
+            for(int i = Math.max(decimals, 0); i < FixedCost.DECIMALS; i++){
+                value *= 10;
+            }
+            if(value < FixedCost.INFINITY){
+                return (int) value;
+            }
+        }
+        try{
+            return FixedCost.parse(text(piece, start, end));
+        }
+        catch(NumberFormatException e){
+            throw new LineException(lineStart, e.getMessage());
+        }
+    }
+
+    // Returns the text of a field.
+    private static String text(MappedByteBuffer piece, int start, int end){
+        byte[] bytes = new byte[end - start];
+        for(int i = start; i < end; i++){
+            bytes[i - start] = piece.get(i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the loaded costs indexed by tile id * 4 + direction, -1 for moves that are not listed.
+     * @return the cost slots, or null with fixed-point costs
+     */
+    public double[] getCosts() {
+        return costs;
+    }
+
+    /**
+     * Returns the loaded fixed-point costs indexed like getCosts.
+     * @return the cost slots in centi-units, or null with double costs
+     */
+    public int[] getFixedCosts() {
+        return fixedCosts;
+    }
+}
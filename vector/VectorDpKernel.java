@@ -0,0 +1,152 @@
+// Mehmet Arda Kutlu
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * DP kernel built on the incubating Vector API. For every (state, next) pair the candidates
+ * dp[previous state][last] + cost[last][next] are added lane by lane over 'last', keeping a lane-wise
+ * minimum and the index that first reached it with compare masks instead of branches. The smallest
+ * index holding the overall minimum becomes the parent, which gives the same tie-breaking as the scalar
+ * kernel. The cost rows are padded with infinity to a whole number of vectors; only the very last
+ * dp rows, where a padded read would run past the table, fall back to masked loads.
+ * Needs --add-modules jdk.incubator.vector both when compiling and running.
+ */
+public class VectorDpKernel implements DpKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    // Int lanes of the same vector size, twice as many as the double lanes.
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+
+    /**
+     * Fills the DP and parent tables.
+     * @param costTransposed costTransposed[next][last] = travel cost from last to next (infinity if unreachable)
+     * @param dp the DP table with n << n entries
+     * @param parent the parent table with n << n entries
+     */
+    public void fill(double[][] costTransposed, double[] dp, int[] parent){
+        int n = costTransposed.length;
+        int lanes = SPECIES.length();
+        int loopBound = SPECIES.loopBound(n);
+        DoubleVector infinity = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        double[] firstIndices = new double[lanes];
+        for(int lane = 0; lane < lanes; lane++){
+            firstIndices[lane] = lane;
+        }
+        DoubleVector laneIndices = DoubleVector.fromArray(SPECIES, firstIndices, 0);
+        // Cost rows padded to a whole number of vectors with infinity.
+        int paddedLength = (n + lanes - 1) / lanes * lanes;
+        double[][] paddedCosts = new double[n][paddedLength];
+        for(int next = 0; next < n; next++){
+            Arrays.fill(paddedCosts[next], Double.POSITIVE_INFINITY);
+            System.arraycopy(costTransposed[next], 0, paddedCosts[next], 0, n);
+        }
+        Arrays.fill(dp, Double.POSITIVE_INFINITY);
+        dp[n] = 0; // Cost of starting at first tile is 0 (state 1, tile 0).
+        for(int state = 3; state < (1 << n); state += 2){ // Ensure start tile is always included.
+            for(int next = 1; next < n; next++){
+                if((state & (1 << next)) == 0) continue;
+                int previousRow = (state ^ (1 << next)) * n;
+                double[] costRow = paddedCosts[next];
+                // Lane-wise minimum and the first index that reached it in each lane.
+                DoubleVector minCosts = infinity;
+                DoubleVector minIndices = DoubleVector.zero(SPECIES);
+                DoubleVector indices = laneIndices;
+                int last = 0;
+                // The padded cost lanes are infinity, so reading past the dp row never wins the minimum.
+                int bound = previousRow + paddedLength <= dp.length ? paddedLength : loopBound;
+                for(; last < bound; last += lanes){
+                    DoubleVector candidates = DoubleVector.fromArray(SPECIES, dp, previousRow + last)
+                            .add(DoubleVector.fromArray(SPECIES, costRow, last));
+                    VectorMask<Double> improved = candidates.compare(VectorOperators.LT, minCosts);
+                    minCosts = minCosts.blend(candidates, improved);
+                    minIndices = minIndices.blend(indices, improved);
+                    indices = indices.add(lanes);
+                }
+                if(last < n){
+                    // Lanes past the end of the row are masked and count as infinity.
+                    VectorMask<Double> inRange = SPECIES.indexInRange(last, n);
+                    DoubleVector candidates = DoubleVector.fromArray(SPECIES, dp, previousRow + last, inRange)
+                            .add(DoubleVector.fromArray(SPECIES, costRow, last, inRange))
+                            .blend(infinity, inRange.not());
+                    VectorMask<Double> improved = candidates.compare(VectorOperators.LT, minCosts);
+                    minCosts = minCosts.blend(candidates, improved);
+                    minIndices = minIndices.blend(indices, improved);
+                }
+                double minCost = minCosts.reduceLanes(VectorOperators.MIN);
+                int minLast = 0;
+                if(minCost != Double.POSITIVE_INFINITY){
+                    // Several lanes can hold the minimum, the smallest index wins like in the scalar kernel.
+                    minLast = (int) minIndices.blend(infinity, minCosts.compare(VectorOperators.NE, minCost))
+                            .reduceLanes(VectorOperators.MIN);
+                }
+                dp[state * n + next] = minCost;
+                parent[state * n + next] = minLast;
+            }
+        }
+    }
+
+    /**
+     * Fills the DP and parent tables with fixed-point costs, the same way as the double version.
+     * @param costTransposed costTransposed[next][last] = travel cost from last to next (FixedCost.INFINITY if unreachable)
+     * @param dp the DP table with n << n entries
+     * @param parent the parent table with n << n entries
+     */
+    public void fill(int[][] costTransposed, int[] dp, int[] parent){
+        int n = costTransposed.length;
+        int lanes = INT_SPECIES.length();
+        int loopBound = INT_SPECIES.loopBound(n);
+        IntVector infinity = IntVector.broadcast(INT_SPECIES, FixedCost.INFINITY);
+        IntVector laneIndices = IntVector.zero(INT_SPECIES).addIndex(1);
+        int paddedLength = (n + lanes - 1) / lanes * lanes;
+        int[][] paddedCosts = new int[n][paddedLength];
+        for(int next = 0; next < n; next++){
+            Arrays.fill(paddedCosts[next], FixedCost.INFINITY);
+            System.arraycopy(costTransposed[next], 0, paddedCosts[next], 0, n);
+        }
+        Arrays.fill(dp, FixedCost.INFINITY);
+        dp[n] = 0;
+        for(int state = 3; state < (1 << n); state += 2){
+            for(int next = 1; next < n; next++){
+                if((state & (1 << next)) == 0) continue;
+                int previousRow = (state ^ (1 << next)) * n;
+                int[] costRow = paddedCosts[next];
+                IntVector minCosts = infinity;
+                IntVector minIndices = IntVector.zero(INT_SPECIES);
+                IntVector indices = laneIndices;
+                int last = 0;
+                // INFINITY is small enough that the sum of two infinite lanes does not overflow.
+                int bound = previousRow + paddedLength <= dp.length ? paddedLength : loopBound;
+                for(; last < bound; last += lanes){
+                    IntVector candidates = IntVector.fromArray(INT_SPECIES, dp, previousRow + last)
+                            .add(IntVector.fromArray(INT_SPECIES, costRow, last));
+                    VectorMask<Integer> improved = candidates.compare(VectorOperators.LT, minCosts);
+                    minCosts = minCosts.blend(candidates, improved);
+                    minIndices = minIndices.blend(indices, improved);
+                    indices = indices.add(lanes);
+                }
+                if(last < n){
+                    VectorMask<Integer> inRange = INT_SPECIES.indexInRange(last, n);
+                    IntVector candidates = IntVector.fromArray(INT_SPECIES, dp, previousRow + last, inRange)
+                            .add(IntVector.fromArray(INT_SPECIES, costRow, last, inRange))
+                            .blend(infinity, inRange.not());
+                    VectorMask<Integer> improved = candidates.compare(VectorOperators.LT, minCosts);
+                    minCosts = minCosts.blend(candidates, improved);
+                    minIndices = minIndices.blend(indices, improved);
+                }
+                int minCost = minCosts.reduceLanes(VectorOperators.MIN);
+                int minLast = 0;
+                if(minCost != FixedCost.INFINITY){
+                    minLast = minIndices.blend(infinity, minCosts.compare(VectorOperators.NE, minCost))
+                            .reduceLanes(VectorOperators.MIN);
+                }
+                dp[state * n + next] = minCost;
+                parent[state * n + next] = minLast;
+            }
+        }
+    }
+}